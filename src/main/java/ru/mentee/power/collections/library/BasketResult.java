@@ -0,0 +1,35 @@
+package ru.mentee.power.collections.library;
+
+import java.util.List;
+
+/**
+ * Итог пакетной выдачи или возврата корзины книг. Корзина применяется
+ * целиком или не применяется вовсе: если хотя бы одна позиция не прошла
+ * проверку, ни одна книга не выдана (не возвращена), а статусы показывают,
+ * какие позиции помешали.
+ *
+ * @param applied  {@code true}, если корзина применена
+ * @param statuses статус каждой позиции в порядке корзины
+ */
+public record BasketResult(boolean applied, List<ItemStatus> statuses) {
+
+    /**
+     * Результат проверки одной позиции корзины.
+     */
+    public enum ItemStatus {
+        /** Позиция прошла проверку. */
+        OK,
+        /** Книги с таким ISBN нет в каталоге. */
+        UNKNOWN_BOOK,
+        /** Книга уже выдана. */
+        UNAVAILABLE,
+        /** У читателя нет активной выдачи этой книги. */
+        NOT_BORROWED,
+        /** ISBN уже встречался в корзине раньше. */
+        DUPLICATE
+    }
+
+    public BasketResult {
+        statuses = List.copyOf(statuses);
+    }
+}
@@ -1,6 +1,9 @@
 package ru.mentee.power.collections.library;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -12,9 +15,30 @@ public class Book implements Serializable {
     private Genre genre;
     private int publicationYear;
     private int pageCount;
-    private boolean available;
+    private volatile boolean available;
+    /** Библиотека, индексы которой нужно известить об изменении доступности. */
+    private transient volatile AvailabilityListener availabilityListener;
+    /** Ключ сортировки названия; вычисляется при первом сравнении, название не меняется. */
+    private transient volatile byte[] titleSortKey;
     private static final long serialVersionUID = 1L;
 
+    private static final VarHandle AVAILABLE;
+
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(Book.class, "available", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Получатель изменений доступности книги. Вызывается после изменения.
+     */
+    interface AvailabilityListener {
+        void availabilityChanged(Book book);
+    }
+
     public enum Genre {
         FICTION, NON_FICTION, SCIENCE, HISTORY, FANTASY, DETECTIVE, ROMANCE, BIOGRAPHY, CHILDREN, PROGRAMMING, SCIENTIFIC
     }
@@ -60,8 +84,94 @@ public class Book implements Serializable {
         this.pageCount = pageCount;
     }
 
+    /**
+     * Меняет доступность книги и сообщает об этом библиотеке, в каталоге
+     * которой лежит книга, чтобы её индексы доступности не устарели.
+     *
+     * @param available новое значение доступности
+     */
     public void setAvailable(boolean available) {
         this.available = available;
+        fireAvailabilityChanged();
+    }
+
+    /**
+     * Атомарно меняет доступность книги, если текущее значение равно ожидаемому.
+     * Позволяет нескольким потокам выдавать книги без блокировок и без двойной выдачи.
+     *
+     * @param expected ожидаемое значение доступности
+     * @param updated  новое значение доступности
+     * @return {@code true}, если значение было изменено
+     */
+    public boolean compareAndSetAvailable(boolean expected, boolean updated) {
+        if (!AVAILABLE.compareAndSet(this, expected, updated)) {
+            return false;
+        }
+        fireAvailabilityChanged();
+        return true;
+    }
+
+    /**
+     * @return получатель изменений доступности или {@code null}
+     */
+    AvailabilityListener getAvailabilityListener() {
+        return availabilityListener;
+    }
+
+    /**
+     * Подключает получателя изменений доступности вместо прежнего: книга
+     * сообщает только одной библиотеке — той, в каталог которой добавлена последней.
+     *
+     * @param listener получатель или {@code null}, чтобы отключить
+     */
+    void setAvailabilityListener(AvailabilityListener listener) {
+        this.availabilityListener = listener;
+    }
+
+    private void fireAvailabilityChanged() {
+        AvailabilityListener listener = availabilityListener;
+        if (listener != null) {
+            listener.availabilityChanged(this);
+        }
+    }
+
+    /**
+     * Сравнивает названия без учёта регистра в том же порядке, что и
+     * {@link String#compareToIgnoreCase(String)}, но через ключи сортировки,
+     * которые вычисляются один раз для книги: каждый символ приводится к
+     * одному регистру и записывается тремя байтами номера кодовой точки.
+     * Само сравнение — это беззнаковое сравнение массивов байтов без
+     * повторного приведения регистра.
+     *
+     * @param other другая книга; названия обеих книг не {@code null}
+     * @return отрицательное число, ноль или положительное число
+     */
+    public int compareTitleIgnoreCase(Book other) {
+        return Arrays.compareUnsigned(titleSortKey(), other.titleSortKey());
+    }
+
+    private byte[] titleSortKey() {
+        byte[] key = titleSortKey;
+        if (key == null) {
+            // Гонка безопасна: все потоки вычислят одинаковый ключ
+            key = sortKey(title);
+            titleSortKey = key;
+        }
+        return key;
+    }
+
+    private static byte[] sortKey(String text) {
+        byte[] key = new byte[text.codePointCount(0, text.length()) * 3];
+        int position = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int folded = Character.toLowerCase(Character.toUpperCase(codePoint));
+            key[position++] = (byte) (folded >>> 16);
+            key[position++] = (byte) (folded >>> 8);
+            key[position++] = (byte) folded;
+        }
+        return key;
     }
 
     public void addAuthor(String author) {
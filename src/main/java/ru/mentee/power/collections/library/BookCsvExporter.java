@@ -0,0 +1,209 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * Потоковый экспорт книг в CSV (UTF-8) в любой {@link WritableByteChannel}:
+ * файл, GZIP-поток через {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)},
+ * буфер в памяти.
+ *
+ * <p>Строка собирается в переиспользуемый {@link StringBuilder}, копируется
+ * в переиспользуемый {@link CharBuffer} и кодируется прямо в выходной буфер,
+ * который сбрасывается в канал крупными блоками. Поля, содержащие
+ * разделитель, кавычки, переводы строк или пробелы по краям, берутся
+ * в кавычки по RFC 4180, кавычки внутри удваиваются. Строки заканчиваются
+ * {@code \r\n}.
+ *
+ * <p>Авторы внутри поля разделяются {@code ';'}; точка с запятой и обратная
+ * косая черта в имени автора экранируются обратной косой чертой. Книга без
+ * жанра выгружается с пустым полем жанра. {@link BookCsvImporter} читает
+ * оба соглашения, так что экспорт и импорт возвращают те же книги.
+ */
+final class BookCsvExporter {
+
+    static final String[] COLUMNS = {
+            "ISBN", "Title", "Authors", "Genre", "Publication Year", "Page Count", "Available"
+    };
+
+    /** Разделитель авторов внутри поля. */
+    static final char AUTHOR_SEPARATOR = ';';
+
+    /** Экранирует разделитель авторов и саму себя в имени автора. */
+    static final char AUTHOR_ESCAPE = '\\';
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String delimiter;
+    private final StringBuilder row = new StringBuilder(256);
+    private final StringBuilder authors = new StringBuilder(64);
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    BookCsvExporter(String delimiter) {
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Разделитель не может быть пустым");
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Пишет заголовок и подходящие книги. Канал не закрывается.
+     *
+     * @param books   книги
+     * @param filter  какие книги выгружать
+     * @param channel канал для записи
+     * @return количество записанных книг
+     * @throws IOException при ошибке записи
+     */
+    long export(Iterable<Book> books, Predicate<? super Book> filter, WritableByteChannel channel)
+            throws IOException {
+        encoder.reset();
+        bytes.clear();
+
+        row.setLength(0);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                row.append(delimiter);
+            }
+            appendField(COLUMNS[i]);
+        }
+        writeRow(channel);
+
+        long written = 0;
+        for (Book book : books) {
+            if (!filter.test(book)) {
+                continue;
+            }
+            row.setLength(0);
+            appendField(book.getIsbn());
+            row.append(delimiter);
+            appendField(book.getTitle());
+            row.append(delimiter);
+            authors.setLength(0);
+            for (String author : book.getAuthors()) {
+                if (authors.length() > 0) {
+                    authors.append(AUTHOR_SEPARATOR);
+                }
+                for (int i = 0; i < author.length(); i++) {
+                    char c = author.charAt(i);
+                    if (c == AUTHOR_SEPARATOR || c == AUTHOR_ESCAPE) {
+                        authors.append(AUTHOR_ESCAPE);
+                    }
+                    authors.append(c);
+                }
+            }
+            appendField(authors);
+            row.append(delimiter);
+            if (book.getGenre() != null) {
+                row.append(book.getGenre().name());
+            }
+            row.append(delimiter).append(book.getPublicationYear());
+            row.append(delimiter).append(book.getPageCount());
+            row.append(delimiter).append(book.isAvailable());
+            writeRow(channel);
+            written++;
+        }
+
+        chars.clear().flip();
+        encode(channel, true);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain(channel);
+        }
+        drain(channel);
+        return written;
+    }
+
+    private void appendField(CharSequence value) {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private boolean needsQuotes(CharSequence value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        // Импорт обрезает пробелы по краям поля без кавычек
+        if (value.charAt(0) <= ' ' || value.charAt(length - 1) <= ' ') {
+            return true;
+        }
+        char first = delimiter.charAt(0);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+            if (c == first && startsWithDelimiter(value, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean startsWithDelimiter(CharSequence value, int offset) {
+        if (offset + delimiter.length() > value.length()) {
+            return false;
+        }
+        for (int d = 1; d < delimiter.length(); d++) {
+            if (value.charAt(offset + d) != delimiter.charAt(d)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeRow(WritableByteChannel channel) throws IOException {
+        row.append("\r\n");
+        int length = row.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        row.getChars(0, length, chars.array(), 0);
+        chars.limit(length);
+        encode(channel, false);
+    }
+
+    private void encode(WritableByteChannel channel, boolean endOfInput) throws IOException {
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain(channel);
+            }
+        } while (result.isOverflow());
+    }
+
+    private void drain(WritableByteChannel channel) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
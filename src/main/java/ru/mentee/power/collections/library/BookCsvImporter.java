@@ -0,0 +1,623 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Параллельный импорт книг из CSV-файла в формате
+ * {@link LibraryManager#exportBooksToCsv(String, String)}.
+ *
+ * <p>Файл после заголовка делится на диапазоны байт, границы которых
+ * сдвигаются на начало следующей строки. Каждый диапазон отображается
+ * в память и разбирается отдельной задачей пула: записи ищутся по байту
+ * {@code '\n'}, поля — побайтовым сравнением с разделителем (без регулярных
+ * выражений), числа разбираются прямо из байт. Готовые книги добавляются
+ * в библиотеку одним вызовом {@link LibraryManager#addBooks(java.util.Collection)}.
+ *
+ * <p>Поля в кавычках по RFC 4180 могут содержать переводы строки. Граница
+ * диапазона тогда может попасть внутрь записи: диапазон дочитывает свою
+ * последнюю запись за границей, а следующий диапазон, начатый не с начала
+ * записи, после параллельного разбора разбирается заново с того места,
+ * где закончился предыдущий. Как и в RFC 4180, незакрытая кавычка делает
+ * одной записью весь остаток файла. Пустое поле жанра означает книгу без жанра.
+ */
+final class BookCsvImporter {
+
+    static final int FIELD_COUNT = BookCsvExporter.COLUMNS.length;
+
+    /** Меньше этого размера диапазон не делится, чтобы не плодить задачи. */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    /** Верхняя граница диапазона: он должен помещаться в один {@link MappedByteBuffer}. */
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    /** Диапазонов больше, чем потоков, чтобы потоки загружались равномерно. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final Book.Genre[] GENRES = Book.Genre.values();
+
+    private final byte[] delimiter;
+    private final int threads;
+
+    BookCsvImporter(String delimiter, int threads) {
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Разделитель не может быть пустым");
+        }
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Разбирает файл и добавляет книги в библиотеку.
+     *
+     * @param manager библиотека
+     * @param file    CSV-файл
+     * @return итог импорта
+     * @throws IOException при ошибке чтения или неверном заголовке
+     */
+    CsvImportReport importInto(LibraryManager manager, Path file) throws IOException {
+        List<Chunk> chunks;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long dataStart = readHeader(channel);
+            long[] bounds = split(channel, dataStart, channel.size());
+            chunks = parseAll(channel, bounds, channel.size());
+        }
+
+        // Номера строк внутри диапазонов становятся номерами строк файла
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.books.size();
+        }
+        List<Book> books = new ArrayList<>(total);
+        long[] bookLines = new long[total];
+        List<CsvImportReport.RejectedRow> rejected = new ArrayList<>();
+        long firstLine = 2;
+        long rows = 0;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.books.size(); i++) {
+                bookLines[books.size()] = firstLine + chunk.bookLines[i];
+                books.add(chunk.books.get(i));
+            }
+            for (CsvImportReport.RejectedRow row : chunk.rejected) {
+                rejected.add(new CsvImportReport.RejectedRow(firstLine + row.lineNumber(), row.line(), row.reason()));
+            }
+            firstLine += chunk.lines;
+            rows += chunk.rows;
+        }
+
+        List<Book> skipped = manager.addBooks(books);
+
+        // Пропущенные книги идут в том же порядке, что и переданные, — находим их строки одним проходом
+        List<CsvImportReport.RejectedRow> duplicates = new ArrayList<>(skipped.size());
+        int next = 0;
+        for (Book book : skipped) {
+            while (books.get(next) != book) {
+                next++;
+            }
+            duplicates.add(new CsvImportReport.RejectedRow(bookLines[next], null,
+                    "Книга с ISBN " + book.getIsbn() + " уже есть в каталоге"));
+        }
+        rejected.addAll(duplicates);
+        rejected.sort((left, right) -> Long.compare(left.lineNumber(), right.lineNumber()));
+        return new CsvImportReport(rows, books.size() - skipped.size(), skipped.size(), rejected);
+    }
+
+    /**
+     * Проверяет заголовок.
+     *
+     * @return позиция начала данных
+     */
+    private long readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        int end = 0;
+        while (end < buffer.position() && buffer.get(end) != '\n') {
+            end++;
+        }
+        int length = end > 0 && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        // Метка порядка байт UTF-8 в начале файла пропускается
+        int start = length >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF ? 3 : 0;
+        LineParser parser = new LineParser();
+        parser.load(buffer, start, length - start);
+        if (!parser.hasFields(BookCsvExporter.COLUMNS)) {
+            throw new IOException("Неверный формат файла");
+        }
+        return Math.min(end + 1, channel.size());
+    }
+
+    /**
+     * Делит данные на диапазоны, выравнивая каждую границу на начало строки.
+     */
+    private long[] split(FileChannel channel, long from, long to) throws IOException {
+        long size = to - from;
+        long wanted = Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE));
+        wanted = Math.max(wanted, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long[] bounds = new long[(int) wanted + 1];
+        bounds[0] = from;
+        ByteBuffer probe = ByteBuffer.allocate(8 * 1024);
+        for (int i = 1; i < wanted; i++) {
+            long position = Math.max(from + size * i / wanted, bounds[i - 1]);
+            bounds[i] = nextLineStart(channel, position, to, probe);
+        }
+        bounds[bounds.length - 1] = to;
+        return bounds;
+    }
+
+    /**
+     * @return позиция сразу после первого {@code '\n'}, начиная с {@code position - 1}
+     */
+    private static long nextLineStart(FileChannel channel, long position, long end, ByteBuffer probe)
+            throws IOException {
+        long scan = position - 1;
+        while (scan < end) {
+            probe.clear();
+            int read = channel.read(probe, scan);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return scan + i + 1;
+                }
+            }
+            scan += read;
+        }
+        return end;
+    }
+
+    private List<Chunk> parseAll(FileChannel channel, long[] bounds, long fileSize) throws IOException {
+        int count = bounds.length - 1;
+        if (count == 1) {
+            return List.of(parseChunk(channel, bounds[0], bounds[1], fileSize));
+        }
+        List<Callable<Chunk>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = bounds[i];
+            long to = bounds[i + 1];
+            tasks.add(() -> parseChunk(channel, from, to, fileSize));
+        }
+        List<Chunk> chunks = new ArrayList<>(count);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, count));
+        try {
+            for (Future<Chunk> future : pool.invokeAll(tasks)) {
+                chunks.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Импорт прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Если запись с переводом строки в кавычках пересекла границу, следующий диапазон
+        // начался не с начала записи: он разбирается заново с конца предыдущего
+        long position = bounds[0];
+        for (int i = 0; i < count; i++) {
+            if (chunks.get(i).from != position) {
+                chunks.set(i, parseChunk(channel, position, Math.max(position, bounds[i + 1]), fileSize));
+            }
+            position = chunks.get(i).end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Разбирает записи, начинающиеся в диапазоне {@code [from, to)}. Последняя запись
+     * дочитывается за {@code to}, если перевод строки в кавычках не дал ей закончиться.
+     */
+    private Chunk parseChunk(FileChannel channel, long from, long to, long fileSize) throws IOException {
+        Chunk chunk = new Chunk(from);
+        if (from >= to) {
+            return chunk;
+        }
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        long base = from;
+        LineParser parser = new LineParser();
+        int limit = data.limit();
+        int lineStart = 0;
+        boolean tail = false;
+        while (lineStart < limit && !tail) {
+            int lineEnd = parser.recordEnd(data, lineStart, limit);
+            if (lineEnd < 0 && to < fileSize) {
+                // Запись продолжается за границей диапазона: отображаем её отдельно
+                base += lineStart;
+                data = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(fileSize - base, MAX_CHUNK_SIZE));
+                limit = data.limit();
+                lineStart = 0;
+                lineEnd = parser.recordEnd(data, 0, limit);
+                if (lineEnd < 0 && base + limit < fileSize) {
+                    throw new IOException("Запись CSV длиннее " + MAX_CHUNK_SIZE + " байт");
+                }
+                tail = true;
+            }
+            if (lineEnd < 0) {
+                // Кавычка не закрыта до конца файла — запись отклонит разбор полей
+                lineEnd = limit;
+            }
+            int contentEnd = lineEnd > lineStart && data.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            parser.load(data, lineStart, contentEnd - lineStart);
+            if (!parser.isBlank()) {
+                chunk.rows++;
+                Book book = parser.parse();
+                if (book != null) {
+                    chunk.addBook(book, chunk.lines);
+                } else {
+                    chunk.rejected.add(new CsvImportReport.RejectedRow(chunk.lines, parser.lineText(), parser.error));
+                }
+            }
+            chunk.lines += 1 + parser.lineBreaks;
+            lineStart = lineEnd + 1;
+        }
+        chunk.end = Math.min(base + lineStart, fileSize);
+        return chunk;
+    }
+
+    /**
+     * Результат разбора одного диапазона. Номера строк — от начала диапазона.
+     */
+    private static final class Chunk {
+
+        /** Начало диапазона в файле. */
+        final long from;
+        /** Позиция сразу за последней разобранной записью. */
+        long end;
+        final List<Book> books = new ArrayList<>();
+        int[] bookLines = new int[64];
+        final List<CsvImportReport.RejectedRow> rejected = new ArrayList<>();
+        int lines;
+        int rows;
+
+        Chunk(long from) {
+            this.from = from;
+            this.end = from;
+        }
+
+        void addBook(Book book, int line) {
+            if (books.size() == bookLines.length) {
+                bookLines = Arrays.copyOf(bookLines, bookLines.length * 2);
+            }
+            bookLines[books.size()] = line;
+            books.add(book);
+        }
+    }
+
+    /**
+     * Разбор одной строки. Буфер строки и массивы границ полей переиспользуются.
+     */
+    private final class LineParser {
+
+        private byte[] line = new byte[256];
+        private int length;
+        private final int[] starts = new int[FIELD_COUNT];
+        private final int[] ends = new int[FIELD_COUNT];
+        private final boolean[] quoted = new boolean[FIELD_COUNT];
+        private String error;
+        /** Переводы строки внутри полей в кавычках последней найденной записи. */
+        private int lineBreaks;
+
+        /**
+         * Ищет конец записи: первый {@code '\n'} вне поля в кавычках. Как и при разборе полей,
+         * кавычка открывает поле, только если стоит в самом его начале.
+         *
+         * @return позиция {@code '\n'}, {@code limit}, если данные кончились вне кавычек,
+         * или -1, если поле в кавычках не закрыто до {@code limit}
+         */
+        int recordEnd(ByteBuffer data, int from, int limit) {
+            lineBreaks = 0;
+            for (int i = from; i < limit; i++) {
+                byte b = data.get(i);
+                if (b == '\n') {
+                    return i;
+                }
+                if (b == '"') {
+                    return quotedRecordEnd(data, from, limit);
+                }
+            }
+            return limit;
+        }
+
+        private int quotedRecordEnd(ByteBuffer data, int from, int limit) {
+            boolean fieldStart = true;
+            boolean inQuotes = false;
+            int i = from;
+            while (i < limit) {
+                byte b = data.get(i);
+                if (inQuotes) {
+                    if (b == '"') {
+                        if (i + 1 < limit && data.get(i + 1) == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        inQuotes = false;
+                    } else if (b == '\n') {
+                        lineBreaks++;
+                    }
+                    i++;
+                } else if (b == '\n') {
+                    return i;
+                } else if (fieldStart && b == '"') {
+                    inQuotes = true;
+                    fieldStart = false;
+                    i++;
+                } else if (startsWithDelimiter(data, i, limit)) {
+                    fieldStart = true;
+                    i += delimiter.length;
+                } else {
+                    fieldStart = false;
+                    i++;
+                }
+            }
+            return inQuotes ? -1 : limit;
+        }
+
+        private boolean startsWithDelimiter(ByteBuffer data, int offset, int limit) {
+            if (offset + delimiter.length > limit) {
+                return false;
+            }
+            for (int d = 0; d < delimiter.length; d++) {
+                if (data.get(offset + d) != delimiter[d]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void load(ByteBuffer data, int offset, int length) {
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            data.get(offset, line, 0, length);
+            this.length = length;
+        }
+
+        boolean isBlank() {
+            for (int i = 0; i < length; i++) {
+                if (!isSpace(line[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String lineText() {
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return {@code true}, если поля строки в точности равны {@code expected}
+         */
+        boolean hasFields(String[] expected) {
+            if (splitFields() != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (!field(i).equals(expected[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return книга или {@code null}, если строка отклонена (причина в {@link #error})
+         */
+        Book parse() {
+            int fields = splitFields();
+            if (fields < 0) {
+                error = "Неверно расставлены кавычки";
+                return null;
+            }
+            if (fields != FIELD_COUNT) {
+                error = "Неверное количество полей: " + fields;
+                return null;
+            }
+            // Пустое поле — книга без жанра, так её выгружает экспорт
+            String genreName = field(3);
+            Book.Genre genre = genreName.isEmpty() ? null : parseGenre(genreName);
+            if (genre == null && !genreName.isEmpty()) {
+                error = "Неизвестный жанр: " + genreName;
+                return null;
+            }
+            long year = parseInt(4);
+            long pages = parseInt(5);
+            if (year == Long.MIN_VALUE || pages == Long.MIN_VALUE) {
+                error = "Неверное число в строке: " + (year == Long.MIN_VALUE ? field(4) : field(5));
+                return null;
+            }
+
+            Book book = new Book(field(0), field(1), (int) year, genre);
+            book.setPageCount((int) pages);
+            book.setAvailable(isTrue(6));
+            addAuthors(book, field(2));
+            return book;
+        }
+
+        /**
+         * Авторы внутри поля разделены {@link BookCsvExporter#AUTHOR_SEPARATOR}, экранированный
+         * разделитель и экранированная обратная косая черта относятся к имени.
+         */
+        private void addAuthors(Book book, String value) {
+            StringBuilder author = new StringBuilder();
+            for (int i = 0; i <= value.length(); i++) {
+                char c = i < value.length() ? value.charAt(i) : BookCsvExporter.AUTHOR_SEPARATOR;
+                if (c == BookCsvExporter.AUTHOR_ESCAPE && i + 1 < value.length()
+                        && (value.charAt(i + 1) == BookCsvExporter.AUTHOR_SEPARATOR
+                        || value.charAt(i + 1) == BookCsvExporter.AUTHOR_ESCAPE)) {
+                    author.append(value.charAt(++i));
+                } else if (c == BookCsvExporter.AUTHOR_SEPARATOR) {
+                    String trimmed = author.toString().trim();
+                    if (!trimmed.isEmpty()) {
+                        book.addAuthor(trimmed);
+                    }
+                    author.setLength(0);
+                } else {
+                    author.append(c);
+                }
+            }
+        }
+
+        /**
+         * Находит границы полей. У поля в кавычках границы указывают на
+         * содержимое между кавычками.
+         *
+         * @return количество полей в строке или -1, если кавычки не закрыты
+         * или после закрывающей кавычки нет разделителя
+         */
+        private int splitFields() {
+            int count = 0;
+            int i = 0;
+            while (true) {
+                int start;
+                int end;
+                boolean isQuoted = i < length && line[i] == '"';
+                if (isQuoted) {
+                    int j = i + 1;
+                    while (true) {
+                        if (j >= length) {
+                            return -1;
+                        }
+                        if (line[j] == '"') {
+                            if (j + 1 < length && line[j + 1] == '"') {
+                                j += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        j++;
+                    }
+                    start = i + 1;
+                    end = j;
+                    i = j + 1;
+                    if (i < length && (i > length - delimiter.length || !matchesDelimiter(i))) {
+                        return -1;
+                    }
+                } else {
+                    start = i;
+                    while (i <= length - delimiter.length && !matchesDelimiter(i)) {
+                        i++;
+                    }
+                    if (i > length - delimiter.length) {
+                        i = length;
+                    }
+                    end = i;
+                }
+                if (count < FIELD_COUNT) {
+                    starts[count] = start;
+                    ends[count] = end;
+                    quoted[count] = isQuoted;
+                }
+                count++;
+                if (i >= length) {
+                    return count;
+                }
+                i += delimiter.length;
+            }
+        }
+
+        private boolean matchesDelimiter(int offset) {
+            for (int d = 0; d < delimiter.length; d++) {
+                if (line[offset + d] != delimiter[d]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String field(int index) {
+            if (quoted[index]) {
+                return new String(line, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8)
+                        .replace("\"\"", "\"");
+            }
+            return trimmed(starts[index], ends[index]);
+        }
+
+        private String trimmed(int from, int to) {
+            while (from < to && isSpace(line[from])) {
+                from++;
+            }
+            while (to > from && isSpace(line[to - 1])) {
+                to--;
+            }
+            return new String(line, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        private Book.Genre parseGenre(String name) {
+            for (Book.Genre genre : GENRES) {
+                if (genre.name().equalsIgnoreCase(name)) {
+                    return genre;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Разбирает целое число прямо из байт поля.
+         *
+         * @return значение или {@link Long#MIN_VALUE}, если поле не является числом типа int
+         */
+        private long parseInt(int index) {
+            int from = starts[index];
+            int to = ends[index];
+            while (from < to && isSpace(line[from])) {
+                from++;
+            }
+            while (to > from && isSpace(line[to - 1])) {
+                to--;
+            }
+            boolean negative = from < to && line[from] == '-';
+            if (negative || from < to && line[from] == '+') {
+                from++;
+            }
+            if (from == to) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = line[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Long.MIN_VALUE;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+
+        private boolean isTrue(int index) {
+            return "true".equalsIgnoreCase(field(index));
+        }
+    }
+
+    /**
+     * Пробельный символ ASCII, как в {@link String#trim()}. Байты многобайтовых
+     * символов UTF-8 отрицательны и пробелами не считаются.
+     */
+    private static boolean isSpace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,45 @@
+package ru.mentee.power.collections.library;
+
+import ru.mentee.power.collections.library.comparator.AvailabilityComparator;
+import ru.mentee.power.collections.library.comparator.GenreAndTitleComparator;
+import ru.mentee.power.collections.library.comparator.PublicationYearComparator;
+import ru.mentee.power.collections.library.comparator.TitleComparator;
+
+import java.util.Comparator;
+
+/**
+ * Порядок просмотра каталога. Каждый порядок строгий: книги с равными
+ * ключами упорядочиваются по названию и затем по ISBN, поэтому страницы
+ * {@link LibraryManager#listBooks(BookOrder, int, int)} не пересекаются.
+ * Названия сравниваются через закэшированные в книгах ключи сортировки.
+ */
+public enum BookOrder {
+
+    /** По названию без учёта регистра. */
+    TITLE(new TitleComparator(true), true),
+    /** По жанру, внутри жанра — по названию. */
+    GENRE_AND_TITLE(new GenreAndTitleComparator(true), true),
+    /** По году публикации, от новых к старым. */
+    PUBLICATION_YEAR(new PublicationYearComparator(), false),
+    /** Сначала доступные книги, внутри групп — по названию. */
+    AVAILABILITY(new AvailabilityComparator(), false);
+
+    private final Comparator<Book> comparator;
+
+    /**
+     * @param key           компаратор основного ключа
+     * @param endsWithTitle ключ уже заканчивается сравнением названий,
+     *                      и повторно сравнивать их не нужно
+     */
+    BookOrder(Comparator<Book> key, boolean endsWithTitle) {
+        Comparator<Book> byTitle = endsWithTitle ? key : key.thenComparing(new TitleComparator(true));
+        this.comparator = byTitle.thenComparing(Book::getIsbn, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+
+    /**
+     * @return строгий компаратор этого порядка
+     */
+    public Comparator<Book> comparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.mentee.power.collections.library;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Условие выборки книг из каталога. Простые условия (жанр, диапазон лет,
+ * автор, доступность, число авторов, текст в названии) комбинируются через
+ * {@link #and(BookQuery)} и {@link #or(BookQuery)}:
+ *
+ * <pre>{@code
+ * BookQuery query = BookQuery.genre(Book.Genre.SCIENCE)
+ *         .and(BookQuery.yearBetween(2000, 2010))
+ *         .and(BookQuery.author("Лев Толстой").or(BookQuery.minAuthors(2)));
+ * }</pre>
+ *
+ * <p>Выполняет запрос {@link LibraryManager#findBooks(BookQuery)}: условие
+ * служит и описанием для планировщика, который выбирает подходящие индексы,
+ * и проверкой {@link #test(Book)} для книг, которые по индексам не отсечь.
+ */
+public sealed interface BookQuery {
+
+    /**
+     * @param book книга
+     * @return {@code true}, если книга удовлетворяет условию
+     */
+    boolean test(Book book);
+
+    /**
+     * @param other второе условие
+     * @return условие «это и {@code other}»
+     */
+    default BookQuery and(BookQuery other) {
+        return allOf(this, other);
+    }
+
+    /**
+     * @param other второе условие
+     * @return условие «это или {@code other}»
+     */
+    default BookQuery or(BookQuery other) {
+        return anyOf(this, other);
+    }
+
+    /**
+     * @param genre жанр или {@code null} для книг без жанра
+     * @return условие на жанр
+     */
+    static BookQuery genre(Book.Genre genre) {
+        return new GenreIs(genre);
+    }
+
+    static BookQuery year(int year) {
+        return new YearBetween(year, year);
+    }
+
+    /**
+     * @param from первый год диапазона включительно
+     * @param to   последний год диапазона включительно
+     * @return условие на год публикации
+     */
+    static BookQuery yearBetween(int from, int to) {
+        return new YearBetween(from, to);
+    }
+
+    static BookQuery author(String author) {
+        return new AuthorIs(author);
+    }
+
+    static BookQuery available(boolean available) {
+        return new AvailableIs(available);
+    }
+
+    static BookQuery minAuthors(int count) {
+        return new MinAuthors(count);
+    }
+
+    /**
+     * @param text подстрока названия, регистр не важен
+     * @return условие на название
+     */
+    static BookQuery titleContains(String text) {
+        return new TitleContains(text);
+    }
+
+    static BookQuery allOf(BookQuery... queries) {
+        return new And(List.of(queries));
+    }
+
+    static BookQuery anyOf(BookQuery... queries) {
+        return new Or(List.of(queries));
+    }
+
+    /** Жанр книги; {@code null} выбирает книги без жанра. */
+    record GenreIs(Book.Genre genre) implements BookQuery {
+
+        @Override
+        public boolean test(Book book) {
+            return book.getGenre() == genre;
+        }
+    }
+
+    record YearBetween(int from, int to) implements BookQuery {
+
+        public YearBetween {
+            if (from > to) {
+                throw new IllegalArgumentException("Неверный диапазон лет: " + from + ".." + to);
+            }
+        }
+
+        @Override
+        public boolean test(Book book) {
+            return book.getPublicationYear() >= from && book.getPublicationYear() <= to;
+        }
+    }
+
+    record AuthorIs(String author) implements BookQuery {
+
+        public AuthorIs {
+            Objects.requireNonNull(author, "author");
+        }
+
+        @Override
+        public boolean test(Book book) {
+            return book.getAuthors().contains(author);
+        }
+    }
+
+    record AvailableIs(boolean available) implements BookQuery {
+
+        @Override
+        public boolean test(Book book) {
+            return book.isAvailable() == available;
+        }
+    }
+
+    record MinAuthors(int count) implements BookQuery {
+
+        @Override
+        public boolean test(Book book) {
+            return book.getAuthors().size() >= count;
+        }
+    }
+
+    record TitleContains(String text) implements BookQuery {
+
+        public TitleContains {
+            Objects.requireNonNull(text, "text");
+        }
+
+        @Override
+        public boolean test(Book book) {
+            return TextSearchIndex.normalize(book.getTitle()).contains(TextSearchIndex.normalize(text));
+        }
+    }
+
+    record And(List<BookQuery> queries) implements BookQuery {
+
+        public And {
+            queries = List.copyOf(queries);
+        }
+
+        @Override
+        public boolean test(Book book) {
+            for (BookQuery query : queries) {
+                if (!query.test(book)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    record Or(List<BookQuery> queries) implements BookQuery {
+
+        public Or {
+            queries = List.copyOf(queries);
+        }
+
+        @Override
+        public boolean test(Book book) {
+            for (BookQuery query : queries) {
+                if (query.test(book)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -8,6 +8,9 @@ import java.util.Objects;
  * Модель одной операции выдачи книги читателю.
  * Содержит информацию об ISBN, читателе, датах выдачи,
  * сроке возврата и фактическом возврате.
+ *
+ * <p>Методы сравнения и проверки состояния работают через геттеры, поэтому
+ * наследник может хранить поля вне объекта (см. {@link CompactBorrowingHistory}).
  */
 public class Borrowing implements Serializable {
 
@@ -94,7 +97,7 @@ public class Borrowing implements Serializable {
      * @param returnDate дата возврата
      */
     public void returnBook(LocalDate returnDate) {
-        this.returnDate = returnDate;
+        setReturnDate(returnDate);
     }
 
     /**
@@ -104,7 +107,7 @@ public class Borrowing implements Serializable {
      * @return {@code true}, если просрочено и нет returnDate
      */
     public boolean isOverdue() {
-        return returnDate == null && LocalDate.now().isAfter(dueDate);
+        return getReturnDate() == null && LocalDate.now().isAfter(getDueDate());
     }
 
     /**
@@ -113,7 +116,7 @@ public class Borrowing implements Serializable {
      * @return {@code true}, если returnDate не {@code null}
      */
     public boolean isReturned() {
-        return returnDate != null;
+        return getReturnDate() != null;
     }
 
     /**
@@ -131,9 +134,9 @@ public class Borrowing implements Serializable {
             return false;
         }
         Borrowing that = (Borrowing) o;
-        return Objects.equals(isbn, that.isbn)
-                && Objects.equals(readerId, that.readerId)
-                && Objects.equals(borrowDate, that.borrowDate);
+        return Objects.equals(getIsbn(), that.getIsbn())
+                && Objects.equals(getReaderId(), that.getReaderId())
+                && Objects.equals(getBorrowDate(), that.getBorrowDate());
     }
 
     /**
@@ -143,7 +146,7 @@ public class Borrowing implements Serializable {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(isbn, readerId, borrowDate);
+        return Objects.hash(getIsbn(), getReaderId(), getBorrowDate());
     }
 
     /**
@@ -155,17 +158,17 @@ public class Borrowing implements Serializable {
     public String toString() {
         return "Borrowing{"
                 + "isbn='"
-                + isbn
+                + getIsbn()
                 + '\''
                 + ", readerId='"
-                + readerId
+                + getReaderId()
                 + '\''
                 + ", borrowDate="
-                + borrowDate
+                + getBorrowDate()
                 + ", dueDate="
-                + dueDate
+                + getDueDate()
                 + ", returnDate="
-                + returnDate
+                + getReturnDate()
                 + '}';
     }
 }
\ No newline at end of file
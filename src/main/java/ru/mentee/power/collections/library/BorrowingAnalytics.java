@@ -0,0 +1,473 @@
+package ru.mentee.power.collections.library;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Аналитика по истории выдач.
+ *
+ * <p>Каждая выдача хранится как строка в параллельных массивах примитивов:
+ * даты выдачи, срока и возврата в днях от эпохи, порядковые номера книги и
+ * читателя. Жанр книги и категория читателя лежат в словарях по этим номерам.
+ * Вместо объектов {@link Borrowing} с пятью ссылками получается 20 байт на выдачу.
+ *
+ * <p>Кроме строк поддерживаются дневные агрегаты: число выдач по жанрам,
+ * число возвратов и суммарная длительность по категориям читателей для каждого
+ * дня выдачи. Вопросы вида «выдачи по жанрам за каждый месяц» и «средний срок
+ * чтения по категориям» складывают агрегаты за дни диапазона, не трогая строки.
+ * Вопросы, которые зависят от даты запроса (например, доля просрочек),
+ * отвечаются сканированием столбцов: на больших объёмах — параллельно по блокам строк.
+ *
+ * <p>{@link LibraryManager} строит аналитику один раз и затем пополняет её
+ * при каждой выдаче, возврате и продлении: возвращённая выдача находится
+ * по строке активной выдачи той же книги тому же читателю. Наружу менеджер
+ * аналитику не отдаёт, а выполняет по ней запросы сам
+ * (например, {@link LibraryManager#loansPerGenreByMonth(LocalDate, LocalDate)}).
+ *
+ * <p>Класс не потокобезопасен: запросы не меняют аналитику и могут идти
+ * параллельно друг с другом, но не с её пополнением.
+ */
+public final class BorrowingAnalytics {
+
+    /** Отсутствующая дата возврата или срока. */
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int GENRES = Book.Genre.values().length;
+    private static final Reader.ReaderCategory[] CATEGORIES = Reader.ReaderCategory.values();
+    private static final Book.Genre[] GENRE_VALUES = Book.Genre.values();
+    /** Неизвестный жанр или категория в словаре. */
+    private static final byte UNKNOWN = -1;
+    /** Строк в одном блоке параллельного сканирования. */
+    private static final int SCAN_CHUNK = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_DAYS = 366;
+
+    // Столбцы
+    private int size;
+    private int[] borrowDays = new int[INITIAL_CAPACITY];
+    private int[] dueDays = new int[INITIAL_CAPACITY];
+    private int[] returnDays = new int[INITIAL_CAPACITY];
+    private int[] bookOrdinals = new int[INITIAL_CAPACITY];
+    private int[] readerOrdinals = new int[INITIAL_CAPACITY];
+
+    // Словари
+    private final Map<String, Integer> bookIds = new HashMap<>();
+    private byte[] bookGenres = new byte[INITIAL_CAPACITY];
+    private final Map<String, Integer> readerIds = new HashMap<>();
+    private byte[] readerCategories = new byte[INITIAL_CAPACITY];
+    /** ISBN и ID читателя активной выдачи → её строка; для учёта возвратов. */
+    private final Map<String, Integer> activeRows = new HashMap<>();
+
+    // Дневные агрегаты по дню выдачи: дни firstDay .. firstDay + days - 1
+    private int firstDay;
+    private int days;
+    /** [день][жанр] → число выдач. */
+    private long[] loansByGenre = new long[0];
+    /** [день][категория] → число возвращённых выдач. */
+    private long[] returnedByCategory = new long[0];
+    /** [день][категория] → суммарная длительность возвращённых выдач в днях. */
+    private long[] durationByCategory = new long[0];
+
+    /**
+     * Строит аналитику по истории выдач.
+     *
+     * @param borrowings история выдач
+     * @param books      книга по ISBN (или {@code null}, если книги уже нет)
+     * @param readers    читатель по ID (или {@code null})
+     * @return заполненная аналитика
+     */
+    static BorrowingAnalytics of(Collection<Borrowing> borrowings,
+                                 Function<String, Book> books,
+                                 Function<String, Reader> readers) {
+        BorrowingAnalytics analytics = new BorrowingAnalytics();
+        for (Borrowing borrowing : borrowings) {
+            analytics.add(borrowing, books, readers);
+        }
+        return analytics;
+    }
+
+    /** Создаёт пустую аналитику, которая пополняется через {@link #addLoan}. */
+    public BorrowingAnalytics() {
+    }
+
+    /**
+     * Добавляет выдачу из истории; выдачи без даты выдачи пропускаются.
+     *
+     * @param borrowing выдача
+     * @param books     книга по ISBN (или {@code null}, если книги уже нет)
+     * @param readers   читатель по ID (или {@code null})
+     */
+    void add(Borrowing borrowing, Function<String, Book> books, Function<String, Reader> readers) {
+        if (borrowing.getBorrowDate() == null) {
+            return;
+        }
+        Book book = books.apply(borrowing.getIsbn());
+        Reader reader = readers.apply(borrowing.getReaderId());
+        append(borrowing.getIsbn(), book == null ? null : book.getGenre(),
+                borrowing.getReaderId(), reader == null ? null : reader.getCategory(),
+                toDay(borrowing.getBorrowDate()), toDay(borrowing.getDueDate()),
+                toDay(borrowing.getReturnDate()));
+    }
+
+    /**
+     * Учитывает возврат ранее добавленной активной выдачи.
+     *
+     * @param borrowing выдача с уже проставленной датой возврата
+     * @return {@code false}, если строка выдачи не найдена и аналитику нужно построить заново
+     */
+    boolean markReturned(Borrowing borrowing) {
+        int row = activeRow(borrowing);
+        if (row < 0 || borrowing.getReturnDate() == null) {
+            return false;
+        }
+        activeRows.remove(activeKey(borrowing.getIsbn(), borrowing.getReaderId()));
+        int returnDay = toDay(borrowing.getReturnDate());
+        returnDays[row] = returnDay;
+        byte readerCategory = readerCategories[readerOrdinals[row]];
+        if (readerCategory != UNKNOWN) {
+            int day = borrowDays[row] - firstDay;
+            returnedByCategory[day * CATEGORIES.length + readerCategory]++;
+            durationByCategory[day * CATEGORIES.length + readerCategory] += returnDay - borrowDays[row];
+        }
+        return true;
+    }
+
+    /**
+     * Учитывает новый срок возврата активной выдачи.
+     *
+     * @param borrowing выдача с уже изменённым сроком
+     * @return {@code false}, если строка выдачи не найдена и аналитику нужно построить заново
+     */
+    boolean updateDueDate(Borrowing borrowing) {
+        int row = borrowing.isReturned() ? -1 : activeRow(borrowing);
+        if (row < 0) {
+            return false;
+        }
+        dueDays[row] = toDay(borrowing.getDueDate());
+        return true;
+    }
+
+    /**
+     * @return {@code true}, если в аналитике есть выдачи книги
+     */
+    boolean hasBook(String isbn) {
+        return bookIds.containsKey(isbn);
+    }
+
+    /**
+     * @return {@code true}, если в аналитике есть выдачи читателя
+     */
+    boolean hasReader(String readerId) {
+        return readerIds.containsKey(readerId);
+    }
+
+    /**
+     * @return строка активной выдачи той же книги тому же читателю с той же датой выдачи или -1
+     */
+    private int activeRow(Borrowing borrowing) {
+        Integer row = activeRows.get(activeKey(borrowing.getIsbn(), borrowing.getReaderId()));
+        if (row == null || borrowing.getBorrowDate() == null
+                || borrowDays[row] != toDay(borrowing.getBorrowDate())) {
+            return -1;
+        }
+        return row;
+    }
+
+    private static String activeKey(String isbn, String readerId) {
+        return isbn + '\u0000' + readerId;
+    }
+
+    /**
+     * Добавляет выдачу. Используется для загрузки больших архивов выдач
+     * без создания объектов {@link Borrowing}.
+     *
+     * @param isbn       ISBN книги
+     * @param genre      жанр книги или {@code null}
+     * @param readerId   ID читателя
+     * @param category   категория читателя или {@code null}
+     * @param borrowDate дата выдачи
+     * @param dueDate    срок возврата или {@code null}
+     * @param returnDate дата возврата или {@code null}, если книга не возвращена
+     * @throws NullPointerException если дата выдачи не указана
+     */
+    public void addLoan(String isbn, Book.Genre genre, String readerId, Reader.ReaderCategory category,
+                        LocalDate borrowDate, LocalDate dueDate, LocalDate returnDate) {
+        Objects.requireNonNull(borrowDate, "borrowDate");
+        append(isbn, genre, readerId, category, toDay(borrowDate), toDay(dueDate), toDay(returnDate));
+    }
+
+    /**
+     * @return количество выдач
+     */
+    public int size() {
+        return size;
+    }
+
+    // ===========================================================================
+    // Запросы по дневным агрегатам
+    // ===========================================================================
+
+    /**
+     * Считает выдачи по жанрам за каждый месяц диапазона.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @return месяц → жанр → число выдач; месяцы без выдач не попадают в результат
+     */
+    public SortedMap<YearMonth, Map<Book.Genre, Long>> loansPerGenreByMonth(LocalDate from, LocalDate to) {
+        SortedMap<YearMonth, Map<Book.Genre, Long>> result = new TreeMap<>();
+        int start = Math.max(toDay(from), firstDay);
+        int end = Math.min(toDay(to), firstDay + days - 1);
+        for (int day = start; day <= end; ) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(day));
+            int monthEnd = Math.min(end, (int) month.atEndOfMonth().toEpochDay());
+            long[] counts = new long[GENRES];
+            boolean any = false;
+            for (; day <= monthEnd; day++) {
+                int base = (day - firstDay) * GENRES;
+                for (int genre = 0; genre < GENRES; genre++) {
+                    counts[genre] += loansByGenre[base + genre];
+                    any |= loansByGenre[base + genre] != 0;
+                }
+            }
+            if (any) {
+                Map<Book.Genre, Long> byGenre = new EnumMap<>(Book.Genre.class);
+                for (int genre = 0; genre < GENRES; genre++) {
+                    if (counts[genre] != 0) {
+                        byGenre.put(GENRE_VALUES[genre], counts[genre]);
+                    }
+                }
+                result.put(month, byGenre);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Считает среднюю длительность выдачи (от выдачи до возврата) по категориям
+     * читателей для возвращённых книг, выданных в диапазоне.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @return категория → средняя длительность в днях; категории без возвратов не попадают в результат
+     */
+    public Map<Reader.ReaderCategory, Double> averageLoanDurationByCategory(LocalDate from, LocalDate to) {
+        long[] returned = new long[CATEGORIES.length];
+        long[] duration = new long[CATEGORIES.length];
+        int start = Math.max(toDay(from), firstDay);
+        int end = Math.min(toDay(to), firstDay + days - 1);
+        for (int day = start; day <= end; day++) {
+            int base = (day - firstDay) * CATEGORIES.length;
+            for (int category = 0; category < CATEGORIES.length; category++) {
+                returned[category] += returnedByCategory[base + category];
+                duration[category] += durationByCategory[base + category];
+            }
+        }
+        Map<Reader.ReaderCategory, Double> result = new EnumMap<>(Reader.ReaderCategory.class);
+        for (int category = 0; category < CATEGORIES.length; category++) {
+            if (returned[category] != 0) {
+                result.put(CATEGORIES[category], (double) duration[category] / returned[category]);
+            }
+        }
+        return result;
+    }
+
+    // ===========================================================================
+    // Запросы сканированием столбцов
+    // ===========================================================================
+
+    /**
+     * Считает долю просроченных выдач по неделям выдачи. Выдача просрочена,
+     * если книгу вернули позже срока или на дату {@code asOf} она не возвращена
+     * и срок прошёл. Ответ зависит от {@code asOf}, поэтому агрегатов для него
+     * нет: столбцы сканируются, на больших объёмах — параллельно.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @param asOf дата, на которую оцениваются невозвращённые книги
+     * @return понедельник недели → доля просрочек от 0 до 1; недели без выдач не попадают в результат
+     */
+    public SortedMap<LocalDate, Double> overdueRateByWeek(LocalDate from, LocalDate to, LocalDate asOf) {
+        LocalDate firstMonday = from.with(DayOfWeek.MONDAY);
+        int weekBase = toDay(firstMonday);
+        int fromDay = toDay(from);
+        int toDay = toDay(to);
+        int asOfDay = toDay(asOf);
+        int weeks = Math.max(0, (toDay - weekBase) / 7 + 1);
+
+        // Чётные ячейки — все выдачи недели, нечётные — просроченные
+        long[] counts = scan(weeks * 2, (row, partial) -> {
+            int borrowDay = borrowDays[row];
+            if (borrowDay < fromDay || borrowDay > toDay) {
+                return;
+            }
+            int week = (borrowDay - weekBase) / 7;
+            partial[week * 2]++;
+            int dueDay = dueDays[row];
+            int returnDay = returnDays[row];
+            boolean overdue = dueDay != NO_DATE
+                    && (returnDay == NO_DATE ? asOfDay > dueDay : returnDay > dueDay);
+            if (overdue) {
+                partial[week * 2 + 1]++;
+            }
+        });
+
+        SortedMap<LocalDate, Double> result = new TreeMap<>();
+        for (int week = 0; week < weeks; week++) {
+            if (counts[week * 2] != 0) {
+                result.put(firstMonday.plusWeeks(week), (double) counts[week * 2 + 1] / counts[week * 2]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Обходит все строки: каждый блок строк заполняет свой массив счётчиков,
+     * затем массивы складываются.
+     */
+    private long[] scan(int width, RowVisitor visitor) {
+        int rows = size;
+        int chunks = (rows + SCAN_CHUNK - 1) / SCAN_CHUNK;
+        IntStream stream = IntStream.range(0, chunks);
+        if (rows >= CatalogIndexBuilder.PARALLEL_THRESHOLD) {
+            stream = stream.parallel();
+        }
+        return stream
+                .mapToObj(chunk -> {
+                    long[] partial = new long[width];
+                    int end = Math.min(rows, (chunk + 1) * SCAN_CHUNK);
+                    for (int row = chunk * SCAN_CHUNK; row < end; row++) {
+                        visitor.visit(row, partial);
+                    }
+                    return partial;
+                })
+                .reduce((left, right) -> {
+                    for (int i = 0; i < width; i++) {
+                        left[i] += right[i];
+                    }
+                    return left;
+                })
+                .orElseGet(() -> new long[width]);
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor {
+        void visit(int row, long[] partial);
+    }
+
+    // ===========================================================================
+    // Заполнение
+    // ===========================================================================
+
+    private void append(String isbn, Book.Genre genre, String readerId, Reader.ReaderCategory category,
+                        int borrowDay, int dueDay, int returnDay) {
+        if (size == borrowDays.length) {
+            int capacity = size + (size >> 1);
+            borrowDays = Arrays.copyOf(borrowDays, capacity);
+            dueDays = Arrays.copyOf(dueDays, capacity);
+            returnDays = Arrays.copyOf(returnDays, capacity);
+            bookOrdinals = Arrays.copyOf(bookOrdinals, capacity);
+            readerOrdinals = Arrays.copyOf(readerOrdinals, capacity);
+        }
+        int book = bookOrdinal(isbn, genre);
+        int reader = readerOrdinal(readerId, category);
+        borrowDays[size] = borrowDay;
+        dueDays[size] = dueDay;
+        returnDays[size] = returnDay;
+        bookOrdinals[size] = book;
+        readerOrdinals[size] = reader;
+        if (returnDay == NO_DATE) {
+            activeRows.put(activeKey(isbn, readerId), size);
+        }
+        size++;
+
+        ensureDay(borrowDay);
+        int day = borrowDay - firstDay;
+        byte bookGenre = bookGenres[book];
+        if (bookGenre != UNKNOWN) {
+            loansByGenre[day * GENRES + bookGenre]++;
+        }
+        byte readerCategory = readerCategories[reader];
+        if (returnDay != NO_DATE && readerCategory != UNKNOWN) {
+            returnedByCategory[day * CATEGORIES.length + readerCategory]++;
+            durationByCategory[day * CATEGORIES.length + readerCategory] += returnDay - borrowDay;
+        }
+    }
+
+    private int bookOrdinal(String isbn, Book.Genre genre) {
+        Integer ordinal = bookIds.get(isbn);
+        if (ordinal == null) {
+            ordinal = bookIds.size();
+            bookIds.put(isbn, ordinal);
+            if (ordinal == bookGenres.length) {
+                bookGenres = Arrays.copyOf(bookGenres, ordinal * 2);
+            }
+            bookGenres[ordinal] = genre == null ? UNKNOWN : (byte) genre.ordinal();
+        }
+        return ordinal;
+    }
+
+    private int readerOrdinal(String readerId, Reader.ReaderCategory category) {
+        Integer ordinal = readerIds.get(readerId);
+        if (ordinal == null) {
+            ordinal = readerIds.size();
+            readerIds.put(readerId, ordinal);
+            if (ordinal == readerCategories.length) {
+                readerCategories = Arrays.copyOf(readerCategories, ordinal * 2);
+            }
+            readerCategories[ordinal] = category == null ? UNKNOWN : (byte) category.ordinal();
+        }
+        return ordinal;
+    }
+
+    /**
+     * Расширяет дневные агрегаты так, чтобы они покрывали день. Ёмкость
+     * растёт вдвое в ту сторону, куда вышел день, поэтому массивы копируются редко.
+     */
+    private void ensureDay(int day) {
+        if (days == 0) {
+            firstDay = day;
+            days = INITIAL_DAYS;
+            loansByGenre = new long[days * GENRES];
+            returnedByCategory = new long[days * CATEGORIES.length];
+            durationByCategory = new long[days * CATEGORIES.length];
+            return;
+        }
+        if (day >= firstDay && day < firstDay + days) {
+            return;
+        }
+        int newFirst = Math.min(firstDay, day);
+        int newEnd = Math.max(firstDay + days, day + 1);
+        int newDays = Math.max(newEnd - newFirst, days * 2);
+        if (day < firstDay) {
+            newFirst = newEnd - newDays;
+        }
+        int shift = firstDay - newFirst;
+        loansByGenre = regrow(loansByGenre, GENRES, shift, newDays);
+        returnedByCategory = regrow(returnedByCategory, CATEGORIES.length, shift, newDays);
+        durationByCategory = regrow(durationByCategory, CATEGORIES.length, shift, newDays);
+        firstDay = newFirst;
+        days = newDays;
+    }
+
+    private static long[] regrow(long[] buckets, int width, int shiftDays, int newDays) {
+        long[] grown = new long[newDays * width];
+        System.arraycopy(buckets, 0, grown, shiftDays * width, buckets.length);
+        return grown;
+    }
+
+    private static int toDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+}
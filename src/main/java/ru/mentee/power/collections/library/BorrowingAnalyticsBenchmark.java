@@ -0,0 +1,60 @@
+package ru.mentee.power.collections.library;
+
+import java.time.LocalDate;
+
+/**
+ * Замер запросов {@link BorrowingAnalytics} на большой истории выдач.
+ *
+ * <p>Аргумент: количество выдач (по умолчанию 10 000 000). Для 30M выдач
+ * запускайте с {@code -Xmx4g}.
+ */
+public class BorrowingAnalyticsBenchmark {
+
+    private static final int DEFAULT_LOANS = 10_000_000;
+    private static final int BOOKS = 100_000;
+    private static final int READERS = 50_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LOANS;
+
+        System.out.println("Генерация истории: " + loans + " выдач...");
+        long start = System.nanoTime();
+        BorrowingAnalytics analytics = new BorrowingAnalytics();
+        Book.Genre[] genres = Book.Genre.values();
+        Reader.ReaderCategory[] categories = Reader.ReaderCategory.values();
+        LocalDate origin = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < loans; i++) {
+            int book = i % BOOKS;
+            int reader = i % READERS;
+            LocalDate borrowDate = origin.plusDays(i % 9_000);
+            analytics.addLoan("ISBN-" + book, genres[book % genres.length],
+                    "RDR" + reader, categories[reader % categories.length],
+                    borrowDate, borrowDate.plusDays(14), i % 5 == 0 ? null : borrowDate.plusDays(i % 21));
+        }
+        System.out.printf("Загрузка: %d мс%n", (System.nanoTime() - start) / 1_000_000);
+
+        LocalDate from = origin.plusYears(5);
+        LocalDate to = origin.plusYears(15);
+        LocalDate asOf = origin.plusYears(25);
+        long byMonth = Long.MAX_VALUE;
+        long byCategory = Long.MAX_VALUE;
+        long overdue = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            start = System.nanoTime();
+            analytics.loansPerGenreByMonth(from, to);
+            byMonth = Math.min(byMonth, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            analytics.averageLoanDurationByCategory(from, to);
+            byCategory = Math.min(byCategory, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            analytics.overdueRateByWeek(from, to, asOf);
+            overdue = Math.min(overdue, System.nanoTime() - start);
+        }
+        System.out.printf("Выдачи по жанрам за месяц (агрегаты): %.2f мс%n", byMonth / 1e6);
+        System.out.printf("Средний срок по категориям (агрегаты): %.2f мс%n", byCategory / 1e6);
+        System.out.printf("Доля просрочек по неделям (сканирование): %.2f мс%n", overdue / 1e6);
+    }
+}
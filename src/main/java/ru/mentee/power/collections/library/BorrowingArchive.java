@@ -0,0 +1,540 @@
+package ru.mentee.power.collections.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Архив возвращённых выдач в виде сжатых сегментов в каталоге. Каждый
+ * сегмент пишется один раз целиком и больше не меняется; новые выдачи
+ * дописываются новыми файлами.
+ *
+ * <p>Файл сегмента — несжатый заголовок с метаданными (число записей,
+ * минимальные и максимальные даты выдачи и возврата, фильтры Блума
+ * по ISBN и ID читателей) и тело, сжатое {@link DeflaterOutputStream}.
+ * Тело хранится по столбцам: словари ISBN и читателей, номера по словарям
+ * и даты в днях как разности с соседними значениями, поэтому повторы идут
+ * подряд и хорошо сжимаются. Метаданные всех сегментов держатся в памяти,
+ * и запрос распаковывает только сегменты, которые могут содержать ответ.
+ * Полное чтение ({@link #readAll()}) кешируется через {@link SoftReference}:
+ * повторные вызовы не распаковывают сегменты, пока хватает памяти.
+ *
+ * <p>Запросы можно выполнять из нескольких потоков одновременно: кеши полного
+ * чтения и счётчиков заполняются под монитором архива. Запись ({@link #append})
+ * не должна идти параллельно с запросами. Ошибки чтения сегментов при запросах
+ * пробрасываются как {@link UncheckedIOException}.
+ */
+public final class BorrowingArchive {
+
+    static final int MAGIC = 0x4C494241;
+    static final int VERSION = 1;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".bin";
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final List<Segment> segments = new ArrayList<>();
+    private int nextNumber = 1;
+    private int size;
+
+    /** Количество выдач по ISBN и по читателям; считаются при первом запросе. */
+    private Map<String, Integer> bookCounts;
+    private Map<String, Integer> readerCounts;
+
+    /** Все выдачи архива после последнего полного чтения; сборщик мусора может их выбросить. */
+    private SoftReference<List<Borrowing>> all = new SoftReference<>(null);
+
+    /** Сколько сегментов распаковано за время жизни архива. */
+    private final AtomicInteger segmentsRead = new AtomicInteger();
+
+    private BorrowingArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Открывает архив в каталоге, создавая каталог при необходимости.
+     * Читаются только заголовки сегментов.
+     *
+     * @param directory каталог архива
+     * @return открытый архив
+     * @throws IOException при ошибке чтения или неизвестном формате сегмента
+     */
+    public static BorrowingArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        BorrowingArchive archive = new BorrowingArchive(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(BorrowingArchive::isSegment).sorted().toList();
+        }
+        for (Path file : files) {
+            Segment segment = readHeader(file);
+            archive.segments.add(segment);
+            archive.size += segment.count();
+            archive.nextNumber = segmentNumber(file) + 1;
+        }
+        return archive;
+    }
+
+    /**
+     * Записывает выдачи новым сегментом. Файл сначала пишется во временный,
+     * сбрасывается на диск и затем атомарно переименовывается, поэтому
+     * оборванная запись не оставляет в архиве неполного сегмента.
+     *
+     * @param borrowings возвращённые выдачи
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если среди выдач есть невозвращённые
+     */
+    public void append(Collection<Borrowing> borrowings) throws IOException {
+        if (borrowings.isEmpty()) {
+            return;
+        }
+        for (Borrowing borrowing : borrowings) {
+            if (!borrowing.isReturned()) {
+                throw new IllegalArgumentException("В архив попадают только возвращённые выдачи: " + borrowing);
+            }
+        }
+        Path file = directory.resolve(String.format("%s%06d%s", PREFIX, nextNumber, SUFFIX));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Segment segment = write(tmp, file, borrowings);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LibrarySnapshot.syncDirectory(directory);
+        segments.add(segment);
+        nextNumber++;
+        size += segment.count();
+        synchronized (this) {
+            List<Borrowing> cached = all.get();
+            if (cached != null) {
+                for (Borrowing borrowing : borrowings) {
+                    cached.add(copy(borrowing));
+                }
+            }
+            if (bookCounts != null) {
+                for (Borrowing borrowing : borrowings) {
+                    bookCounts.merge(borrowing.getIsbn(), 1, Integer::sum);
+                    readerCounts.merge(borrowing.getReaderId(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    // ===========================================================================
+    // Запросы
+    // ===========================================================================
+
+    /**
+     * Возвращает архивные выдачи книги. Пропускаются сегменты, фильтр
+     * которых не содержит ISBN.
+     *
+     * @param isbn ISBN книги
+     * @return выдачи в порядке архивирования
+     */
+    public List<Borrowing> findByBook(String isbn) {
+        return scan(segment -> segment.isbns().mightContain(isbn),
+                borrowing -> Objects.equals(borrowing.getIsbn(), isbn));
+    }
+
+    /**
+     * Возвращает архивные выдачи читателя. Пропускаются сегменты, фильтр
+     * которых не содержит ID читателя.
+     *
+     * @param readerId ID читателя
+     * @return выдачи в порядке архивирования
+     */
+    public List<Borrowing> findByReader(String readerId) {
+        return scan(segment -> segment.readers().mightContain(readerId),
+                borrowing -> Objects.equals(borrowing.getReaderId(), readerId));
+    }
+
+    /**
+     * Возвращает архивные выдачи с датой выдачи в диапазоне. Пропускаются
+     * сегменты, диапазон дат выдачи которых не пересекается с запрошенным.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return выдачи в порядке архивирования
+     */
+    public List<Borrowing> findBorrowedBetween(LocalDate from, LocalDate to) {
+        int fromDay = LibrarySnapshot.toDay(from);
+        int toDay = LibrarySnapshot.toDay(to);
+        return scan(segment -> segment.minBorrowDay() <= toDay && segment.maxBorrowDay() >= fromDay,
+                borrowing -> borrowing.getBorrowDate() != null
+                        && !borrowing.getBorrowDate().isBefore(from)
+                        && !borrowing.getBorrowDate().isAfter(to));
+    }
+
+    /**
+     * Читает весь архив. Сегменты распаковываются только при первом вызове
+     * или после того, как сборщик мусора выбросил кеш.
+     *
+     * @return изменяемый список копий всех архивных выдач в порядке архивирования
+     */
+    public List<Borrowing> readAll() {
+        List<Borrowing> cached = cachedAll();
+        List<Borrowing> result = new ArrayList<>(cached.size());
+        for (Borrowing borrowing : cached) {
+            result.add(copy(borrowing));
+        }
+        return result;
+    }
+
+    private synchronized List<Borrowing> cachedAll() {
+        List<Borrowing> cached = all.get();
+        if (cached == null) {
+            cached = scan(segment -> true, borrowing -> true);
+            all = new SoftReference<>(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Возвращает самую позднюю дату возврата среди архивных выдач. Архив
+     * забирает из истории все выдачи, возвращённые раньше порога, поэтому
+     * все выдачи, возвращённые не позже этой даты, уже лежат в архиве.
+     *
+     * @return дата или {@code null}, если архив пуст
+     */
+    public LocalDate archivedThrough() {
+        int max = NO_DATE;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.maxReturnDay());
+        }
+        return toDate(max);
+    }
+
+    /**
+     * @return ISBN → количество архивных выдач
+     */
+    public Map<String, Integer> bookCounts() {
+        countIfNeeded();
+        return Collections.unmodifiableMap(bookCounts);
+    }
+
+    /**
+     * @return ID читателя → количество архивных выдач
+     */
+    public Map<String, Integer> readerCounts() {
+        countIfNeeded();
+        return Collections.unmodifiableMap(readerCounts);
+    }
+
+    /**
+     * @return общее количество выдач в архиве
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return количество сегментов
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return сколько сегментов распаковано за время жизни архива
+     */
+    int segmentsRead() {
+        return segmentsRead.get();
+    }
+
+    // ===========================================================================
+    // Формат сегмента
+    // ===========================================================================
+
+    private List<Borrowing> scan(Predicate<Segment> segmentFilter, Predicate<Borrowing> filter) {
+        List<Borrowing> result = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segmentFilter.test(segment)) {
+                read(segment, borrowing -> {
+                    if (filter.test(borrowing)) {
+                        result.add(borrowing);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private synchronized void countIfNeeded() {
+        if (bookCounts != null) {
+            return;
+        }
+        Map<String, Integer> books = new HashMap<>();
+        Map<String, Integer> readers = new HashMap<>();
+        for (Segment segment : segments) {
+            read(segment, borrowing -> {
+                books.merge(borrowing.getIsbn(), 1, Integer::sum);
+                readers.merge(borrowing.getReaderId(), 1, Integer::sum);
+            });
+        }
+        bookCounts = books;
+        readerCounts = readers;
+    }
+
+    private static Segment write(Path tmp, Path file, Collection<Borrowing> borrowings) throws IOException {
+        int count = borrowings.size();
+        Map<String, Integer> isbnIds = new LinkedHashMap<>();
+        Map<String, Integer> readerIds = new LinkedHashMap<>();
+        int[] books = new int[count];
+        int[] readers = new int[count];
+        int[] borrowDays = new int[count];
+        int[] dueDays = new int[count];
+        int[] returnDays = new int[count];
+        int row = 0;
+        for (Borrowing borrowing : borrowings) {
+            books[row] = isbnIds.computeIfAbsent(borrowing.getIsbn(), key -> isbnIds.size());
+            readers[row] = readerIds.computeIfAbsent(borrowing.getReaderId(), key -> readerIds.size());
+            borrowDays[row] = LibrarySnapshot.toDay(borrowing.getBorrowDate());
+            dueDays[row] = LibrarySnapshot.toDay(borrowing.getDueDate());
+            returnDays[row] = LibrarySnapshot.toDay(borrowing.getReturnDate());
+            row++;
+        }
+        KeyFilter isbnFilter = new KeyFilter(isbnIds.keySet());
+        KeyFilter readerFilter = new KeyFilter(readerIds.keySet());
+        Segment segment = new Segment(file, count, min(borrowDays), max(borrowDays),
+                min(returnDays), max(returnDays), isbnFilter, readerFilter);
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            try (ChannelDataOutput header = new ChannelDataOutput(channel)) {
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                header.writeInt(segment.count());
+                header.writeInt(segment.minBorrowDay());
+                header.writeInt(segment.maxBorrowDay());
+                header.writeInt(segment.minReturnDay());
+                header.writeInt(segment.maxReturnDay());
+                isbnFilter.write(header);
+                readerFilter.write(header);
+            }
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+                 ChannelDataOutput body = new ChannelDataOutput(Channels.newChannel(deflater))) {
+                writeStrings(body, isbnIds.keySet());
+                writeStrings(body, readerIds.keySet());
+                // Разности переполняются по модулю 2^32 и так же восстанавливаются,
+                // поэтому отсутствующие даты кодируются без особых случаев.
+                int previous = 0;
+                for (int i = 0; i < count; i++) {
+                    body.writeInt(books[i]);
+                    body.writeInt(readers[i]);
+                    body.writeInt(borrowDays[i] - previous);
+                    body.writeInt(dueDays[i] - borrowDays[i]);
+                    body.writeInt(returnDays[i] - borrowDays[i]);
+                    previous = borrowDays[i];
+                }
+                // Закрытие потока закрывает и канал, поэтому дописываем и сбрасываем на диск до него
+                body.flush();
+                deflater.finish();
+                deflater.flush();
+                channel.force(true);
+            }
+        }
+        return segment;
+    }
+
+    private void read(Segment segment, Consumer<Borrowing> sink) {
+        segmentsRead.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(segment.file(), StandardOpenOption.READ).position(segment.bodyOffset());
+             InflaterInputStream inflater = new InflaterInputStream(
+                     new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            ChannelDataInput in = new ChannelDataInput(Channels.newChannel(inflater));
+            String[] isbns = readStrings(in);
+            String[] readers = readStrings(in);
+            int borrowDay = 0;
+            for (int i = 0; i < segment.count(); i++) {
+                String isbn = isbns[in.readInt()];
+                String readerId = readers[in.readInt()];
+                borrowDay += in.readInt();
+                int dueDay = borrowDay + in.readInt();
+                int returnDay = borrowDay + in.readInt();
+                Borrowing borrowing = new Borrowing(isbn, readerId, toDate(borrowDay), toDate(dueDay));
+                borrowing.setReturnDate(toDate(returnDay));
+                sink.accept(borrowing);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент архива " + segment.file(), e);
+        }
+    }
+
+    private static Segment readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelDataInput in = new ChannelDataInput(channel);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Не сегмент архива выдач: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия сегмента " + version + ": " + file);
+            }
+            return new Segment(file, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    KeyFilter.read(in), KeyFilter.read(in));
+        }
+    }
+
+    private static void writeStrings(ChannelDataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeString(value);
+        }
+    }
+
+    private static String[] readStrings(ChannelDataInput in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readString();
+        }
+        return values;
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static LocalDate toDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Копирует выдачу в обычный объект: в архив могут прийти представления
+     * {@link CompactBorrowingHistory}, а наружу нельзя отдавать объекты кеша.
+     */
+    private static Borrowing copy(Borrowing borrowing) {
+        Borrowing copy = new Borrowing(borrowing.getIsbn(), borrowing.getReaderId(),
+                borrowing.getBorrowDate(), borrowing.getDueDate());
+        copy.setReturnDate(borrowing.getReturnDate());
+        return copy;
+    }
+
+    /** Минимум без учёта отсутствующих дат; для пустого столбца — {@link Integer#MAX_VALUE}. */
+    private static int min(int[] days) {
+        int min = Integer.MAX_VALUE;
+        for (int day : days) {
+            if (day != NO_DATE) {
+                min = Math.min(min, day);
+            }
+        }
+        return min;
+    }
+
+    private static int max(int[] days) {
+        int max = NO_DATE;
+        for (int day : days) {
+            max = Math.max(max, day);
+        }
+        return max;
+    }
+
+    /**
+     * Метаданные сегмента: диапазоны дат выдачи и возврата в днях от эпохи
+     * и фильтры ключей.
+     */
+    private record Segment(Path file, int count, int minBorrowDay, int maxBorrowDay,
+                           int minReturnDay, int maxReturnDay, KeyFilter isbns, KeyFilter readers) {
+
+        /** Смещение сжатого тела: магическое число, версия, пять чисел и два фильтра. */
+        long bodyOffset() {
+            return 7L * Integer.BYTES + isbns.byteSize() + readers.byteSize();
+        }
+    }
+
+    /**
+     * Фильтр Блума по строковым ключам: отрицательный ответ точный,
+     * положительный — с вероятностью ложного срабатывания около 1%.
+     */
+    static final class KeyFilter {
+
+        private static final int BITS_PER_KEY = 10;
+        private static final int HASHES = 7;
+
+        private final long[] words;
+
+        KeyFilter(Collection<String> keys) {
+            this.words = new long[Math.max(1, (keys.size() * BITS_PER_KEY + Long.SIZE - 1) / Long.SIZE)];
+            for (String key : keys) {
+                int hash = Objects.hashCode(key);
+                int step = step(hash);
+                for (int i = 0; i < HASHES; i++) {
+                    int bit = bit(hash + i * step);
+                    words[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        private KeyFilter(long[] words) {
+            this.words = words;
+        }
+
+        boolean mightContain(String key) {
+            int hash = Objects.hashCode(key);
+            int step = step(hash);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = bit(hash + i * step);
+                if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int byteSize() {
+            return Integer.BYTES + words.length * Long.BYTES;
+        }
+
+        void write(ChannelDataOutput out) throws IOException {
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        static KeyFilter read(ChannelDataInput in) throws IOException {
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new KeyFilter(words);
+        }
+
+        /** Второй хеш для двойного хеширования; нечётный, чтобы обходить все биты. */
+        private static int step(int hash) {
+            return (Integer.rotateLeft(hash, 16) * 0x9E3779B9) | 1;
+        }
+
+        private int bit(int hash) {
+            return Math.floorMod(hash * 0x85EBCA6B, words.length * Long.SIZE);
+        }
+    }
+}
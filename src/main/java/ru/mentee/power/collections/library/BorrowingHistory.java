@@ -0,0 +1,378 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * История выдач с вторичными индексами.
+ * Хранит все записи {@link Borrowing} в порядке добавления и поддерживает
+ * индексы по ISBN и по ID читателя — отдельно для всей истории и для
+ * активных (ещё не возвращённых) выдач, а также упорядоченный по сроку
+ * возврата индекс активных выдач для поиска просрочек. Дополнительно
+ * ведёт счётчики выдач по книгам и читателям для рейтингов.
+ *
+ * <p>Индексы не сериализуются и восстанавливаются из списка записей
+ * при загрузке. Компактная альтернатива — {@link CompactBorrowingHistory}.
+ */
+public class BorrowingHistory extends BorrowingStore {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Все записи о выдачах в порядке добавления. */
+    private final List<Borrowing> records;
+
+    /** ISBN → все выдачи этой книги. */
+    private transient Map<String, List<Borrowing>> historyByIsbn;
+
+    /** ID читателя → все выдачи этого читателя. */
+    private transient Map<String, List<Borrowing>> historyByReader;
+
+    /** ISBN → активные выдачи этой книги (обычно не больше одной). */
+    private transient Map<String, List<Borrowing>> activeByIsbn;
+
+    /** ID читателя → активные выдачи этого читателя. */
+    private transient Map<String, List<Borrowing>> activeByReader;
+
+    /** Срок возврата → активные выдачи с этим сроком. */
+    private transient NavigableMap<LocalDate, List<Borrowing>> activeByDueDate;
+
+    /** Количество выдач по ISBN. */
+    private transient RankedCounter bookCounts;
+
+    /** Количество выдач по ID читателя. */
+    private transient RankedCounter readerCounts;
+
+    /**
+     * Создаёт пустую историю выдач.
+     */
+    public BorrowingHistory() {
+        this.records = new ArrayList<>();
+        rebuildIndexes();
+    }
+
+    /**
+     * Создаёт историю выдач из существующего набора записей.
+     *
+     * @param borrowings исходные записи
+     */
+    public BorrowingHistory(Collection<Borrowing> borrowings) {
+        this.records = new ArrayList<>(borrowings);
+        rebuildIndexes();
+    }
+
+    // ===========================================================================
+    // Реализация List
+    // ===========================================================================
+
+    @Override
+    public Borrowing get(int index) {
+        return records.get(index);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public void add(int index, Borrowing borrowing) {
+        records.add(index, borrowing);
+        modCount++;
+        index(borrowing);
+        if (index == records.size() - 1) {
+            fireAdded(borrowing);
+        } else {
+            fireChanged();
+        }
+    }
+
+    @Override
+    public Borrowing set(int index, Borrowing borrowing) {
+        Borrowing old = records.set(index, borrowing);
+        unindex(old);
+        index(borrowing);
+        fireChanged();
+        return old;
+    }
+
+    @Override
+    public Borrowing remove(int index) {
+        Borrowing old = records.remove(index);
+        modCount++;
+        unindex(old);
+        fireChanged();
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие записи за один проход с одной пересборкой индексов,
+     * а не по одной через {@link #remove(int)}.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Borrowing> filter) {
+        boolean removed = records.removeIf(filter);
+        if (removed) {
+            modCount++;
+            rebuildIndexes();
+            fireChanged();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        records.clear();
+        modCount++;
+        rebuildIndexes();
+        fireChanged();
+    }
+
+    // ===========================================================================
+    // Операции с индексами
+    // ===========================================================================
+
+    /**
+     * Пересобирает все индексы по списку записей за один проход.
+     */
+    @Override
+    public final void rebuildIndexes() {
+        historyByIsbn = new HashMap<>();
+        historyByReader = new HashMap<>();
+        activeByIsbn = new LinkedHashMap<>();
+        activeByReader = new HashMap<>();
+        activeByDueDate = new TreeMap<>();
+        for (Borrowing borrowing : records) {
+            indexRecord(borrowing);
+        }
+        // Счётчики равны размерам списков истории, поэтому строятся одним
+        // заполнением, без пошагового увеличения на каждую запись.
+        bookCounts = RankedCounter.fromSizes(historyByIsbn);
+        readerCounts = RankedCounter.fromSizes(historyByReader);
+    }
+
+    /**
+     * Ищет активную выдачу книги указанному читателю.
+     *
+     * @param isbn     ISBN книги
+     * @param readerId ID читателя
+     * @return активная выдача или {@code null}, если её нет
+     */
+    @Override
+    public Borrowing findActive(String isbn, String readerId) {
+        List<Borrowing> active = activeByIsbn.get(isbn);
+        if (active == null) {
+            return null;
+        }
+        for (Borrowing borrowing : active) {
+            if (!borrowing.isReturned() && borrowing.getReaderId().equals(readerId)) {
+                return borrowing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Отмечает выдачу как возвращённую и убирает её из индексов активных выдач.
+     *
+     * @param borrowing  активная выдача
+     * @param returnDate дата возврата
+     */
+    @Override
+    public void markReturned(Borrowing borrowing, LocalDate returnDate) {
+        borrowing.setReturnDate(returnDate);
+        removeFrom(activeByIsbn, borrowing.getIsbn(), borrowing);
+        removeFrom(activeByReader, borrowing.getReaderId(), borrowing);
+        removeFrom(activeByDueDate, borrowing.getDueDate(), borrowing);
+        fireReturned(borrowing);
+    }
+
+    /**
+     * Меняет срок возврата выдачи с переносом в индексе по сроку.
+     *
+     * @param borrowing выдача
+     * @param dueDate   новый срок возврата
+     */
+    @Override
+    public void updateDueDate(Borrowing borrowing, LocalDate dueDate) {
+        boolean active = removeFrom(activeByDueDate, borrowing.getDueDate(), borrowing);
+        borrowing.setDueDate(dueDate);
+        if (active) {
+            activeByDueDate.computeIfAbsent(dueDate, key -> new ArrayList<>()).add(borrowing);
+        }
+        fireDueDateChanged(borrowing);
+    }
+
+    /**
+     * Возвращает активные выдачи, срок возврата которых истёк к указанной дате,
+     * то есть {@code dueDate} строго раньше {@code date}. Просматриваются только
+     * подходящие ключи индекса по сроку, а не вся история. Срок каждой выдачи
+     * проверяется ещё раз: его могли изменить через {@link Borrowing#setDueDate}
+     * в обход {@link #updateDueDate}, и тогда выдача лежит под старым ключом.
+     *
+     * @param date дата, на которую проверяется просрочка
+     * @return список просроченных выдач в порядке срока возврата
+     */
+    @Override
+    public List<Borrowing> getOverdue(LocalDate date) {
+        List<Borrowing> result = new ArrayList<>();
+        for (List<Borrowing> dueOnDate : activeByDueDate.headMap(date, false).values()) {
+            for (Borrowing borrowing : dueOnDate) {
+                if (!borrowing.isReturned() && borrowing.getDueDate().isBefore(date)) {
+                    result.add(borrowing);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает ISBN с количеством выдач по убыванию количества.
+     * Поток ленивый, поэтому {@code limit(n)} не сортирует все книги.
+     *
+     * @return поток пар (ISBN, количество выдач)
+     */
+    @Override
+    public Stream<Entry<String, Integer>> getMostBorrowedBooks() {
+        return bookCounts.descending();
+    }
+
+    /**
+     * Возвращает ID читателей с количеством выдач по убыванию количества.
+     *
+     * @return поток пар (ID читателя, количество выдач)
+     */
+    @Override
+    public Stream<Entry<String, Integer>> getMostActiveReaders() {
+        return readerCounts.descending();
+    }
+
+    /**
+     * Возвращает все выдачи книги в порядке добавления.
+     *
+     * @param isbn ISBN книги
+     * @return неизменяемый список выдач
+     */
+    @Override
+    public List<Borrowing> getByBook(String isbn) {
+        return Collections.unmodifiableList(historyByIsbn.getOrDefault(isbn, Collections.emptyList()));
+    }
+
+    /**
+     * Возвращает все выдачи читателя в порядке добавления.
+     *
+     * @param readerId ID читателя
+     * @return неизменяемый список выдач
+     */
+    @Override
+    public List<Borrowing> getByReader(String readerId) {
+        return Collections.unmodifiableList(historyByReader.getOrDefault(readerId, Collections.emptyList()));
+    }
+
+    /**
+     * Возвращает активные выдачи читателя.
+     *
+     * @param readerId ID читателя
+     * @return список ещё не возвращённых выдач
+     */
+    @Override
+    public List<Borrowing> getActiveByReader(String readerId) {
+        List<Borrowing> result = new ArrayList<>();
+        for (Borrowing borrowing : activeByReader.getOrDefault(readerId, Collections.emptyList())) {
+            if (!borrowing.isReturned()) {
+                result.add(borrowing);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает все активные выдачи.
+     *
+     * @return список ещё не возвращённых выдач
+     */
+    @Override
+    public List<Borrowing> getActive() {
+        List<Borrowing> result = new ArrayList<>();
+        for (List<Borrowing> active : activeByIsbn.values()) {
+            for (Borrowing borrowing : active) {
+                if (!borrowing.isReturned()) {
+                    result.add(borrowing);
+                }
+            }
+        }
+        return result;
+    }
+
+    // ===========================================================================
+    // Вспомогательные методы
+    // ===========================================================================
+
+    private void index(Borrowing borrowing) {
+        indexRecord(borrowing);
+        bookCounts.increment(borrowing.getIsbn());
+        readerCounts.increment(borrowing.getReaderId());
+    }
+
+    private void indexRecord(Borrowing borrowing) {
+        historyByIsbn.computeIfAbsent(borrowing.getIsbn(), key -> new ArrayList<>()).add(borrowing);
+        historyByReader.computeIfAbsent(borrowing.getReaderId(), key -> new ArrayList<>()).add(borrowing);
+        if (!borrowing.isReturned()) {
+            activeByIsbn.computeIfAbsent(borrowing.getIsbn(), key -> new ArrayList<>(1)).add(borrowing);
+            activeByReader.computeIfAbsent(borrowing.getReaderId(), key -> new ArrayList<>()).add(borrowing);
+            activeByDueDate.computeIfAbsent(borrowing.getDueDate(), key -> new ArrayList<>()).add(borrowing);
+        }
+    }
+
+    private void unindex(Borrowing borrowing) {
+        removeFrom(historyByIsbn, borrowing.getIsbn(), borrowing);
+        removeFrom(historyByReader, borrowing.getReaderId(), borrowing);
+        bookCounts.decrement(borrowing.getIsbn());
+        readerCounts.decrement(borrowing.getReaderId());
+        removeFrom(activeByIsbn, borrowing.getIsbn(), borrowing);
+        removeFrom(activeByReader, borrowing.getReaderId(), borrowing);
+        removeFrom(activeByDueDate, borrowing.getDueDate(), borrowing);
+    }
+
+    /**
+     * Удаляет запись из списка по ключу. Сравнение по ссылке, так как разные
+     * выдачи одной книги одному читателю в один день равны по {@code equals}.
+     */
+    private static <K> boolean removeFrom(Map<K, List<Borrowing>> index, K key, Borrowing borrowing) {
+        List<Borrowing> list = index.get(key);
+        if (list == null) {
+            return false;
+        }
+        boolean removed = false;
+        Iterator<Borrowing> it = list.iterator();
+        while (it.hasNext()) {
+            if (it.next() == borrowing) {
+                it.remove();
+                removed = true;
+                break;
+            }
+        }
+        if (list.isEmpty()) {
+            index.remove(key);
+        }
+        return removed;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        rebuildIndexes();
+    }
+}
@@ -0,0 +1,170 @@
+package ru.mentee.power.collections.library;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище истории выдач с индексами по книгам, читателям и активным выдачам.
+ * Реализует {@link List}, поэтому изменения через List API (в том числе через
+ * {@link LibraryManager#getAllBorrowings()}) сразу отражаются в индексах.
+ *
+ * <p>Реализации: {@link BorrowingHistory} хранит сами объекты {@link Borrowing},
+ * {@link CompactBorrowingHistory} — столбцы примитивов и выдаёт записи
+ * как представления над ними.
+ *
+ * <p>Реализации сообщают об изменениях получателю {@link ChangeListener}, если он
+ * подключён: так {@link LibraryManager} пополняет аналитику выдач, не обходя историю заново.
+ */
+public abstract class BorrowingStore extends AbstractList<Borrowing> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Получатель изменений хранилища. Вызывается после изменения.
+     */
+    interface ChangeListener {
+
+        /** Выдача добавлена в конец истории. */
+        void added(Borrowing borrowing);
+
+        /** Выдача отмечена возвращённой через {@link #markReturned}. */
+        void returned(Borrowing borrowing);
+
+        /** Срок возврата выдачи изменён через {@link #updateDueDate}. */
+        void dueDateChanged(Borrowing borrowing);
+
+        /** Любое другое изменение: вставка не в конец, замена или удаление записей. */
+        void changed();
+    }
+
+    private transient ChangeListener listener;
+
+    /**
+     * Подключает получателя изменений вместо прежнего.
+     *
+     * @param listener получатель или {@code null}, чтобы отключить
+     */
+    void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return подключённый получатель изменений или {@code null}
+     */
+    ChangeListener getChangeListener() {
+        return listener;
+    }
+
+    void fireAdded(Borrowing borrowing) {
+        if (listener != null) {
+            listener.added(borrowing);
+        }
+    }
+
+    void fireReturned(Borrowing borrowing) {
+        if (listener != null) {
+            listener.returned(borrowing);
+        }
+    }
+
+    void fireDueDateChanged(Borrowing borrowing) {
+        if (listener != null) {
+            listener.dueDateChanged(borrowing);
+        }
+    }
+
+    void fireChanged() {
+        if (listener != null) {
+            listener.changed();
+        }
+    }
+
+    /**
+     * Пересобирает все индексы по записям хранилища.
+     */
+    public abstract void rebuildIndexes();
+
+    /**
+     * Ищет активную выдачу книги указанному читателю.
+     *
+     * @param isbn     ISBN книги
+     * @param readerId ID читателя
+     * @return активная выдача или {@code null}, если её нет
+     */
+    public abstract Borrowing findActive(String isbn, String readerId);
+
+    /**
+     * Отмечает выдачу как возвращённую и убирает её из индексов активных выдач.
+     *
+     * @param borrowing  активная выдача
+     * @param returnDate дата возврата
+     */
+    public abstract void markReturned(Borrowing borrowing, LocalDate returnDate);
+
+    /**
+     * Меняет срок возврата выдачи с переносом в индексе по сроку.
+     *
+     * @param borrowing выдача
+     * @param dueDate   новый срок возврата
+     */
+    public abstract void updateDueDate(Borrowing borrowing, LocalDate dueDate);
+
+    /**
+     * Возвращает активные выдачи, срок возврата которых истёк к указанной дате,
+     * то есть {@code dueDate} строго раньше {@code date}.
+     *
+     * @param date дата, на которую проверяется просрочка
+     * @return список просроченных выдач в порядке срока возврата
+     */
+    public abstract List<Borrowing> getOverdue(LocalDate date);
+
+    /**
+     * Возвращает ISBN с количеством выдач по убыванию количества.
+     *
+     * @return поток пар (ISBN, количество выдач)
+     */
+    public abstract Stream<Entry<String, Integer>> getMostBorrowedBooks();
+
+    /**
+     * Возвращает ID читателей с количеством выдач по убыванию количества.
+     *
+     * @return поток пар (ID читателя, количество выдач)
+     */
+    public abstract Stream<Entry<String, Integer>> getMostActiveReaders();
+
+    /**
+     * Возвращает все выдачи книги в порядке добавления.
+     *
+     * @param isbn ISBN книги
+     * @return неизменяемый список выдач
+     */
+    public abstract List<Borrowing> getByBook(String isbn);
+
+    /**
+     * Возвращает все выдачи читателя в порядке добавления.
+     *
+     * @param readerId ID читателя
+     * @return неизменяемый список выдач
+     */
+    public abstract List<Borrowing> getByReader(String readerId);
+
+    /**
+     * Возвращает активные выдачи читателя.
+     *
+     * @param readerId ID читателя
+     * @return список ещё не возвращённых выдач
+     */
+    public abstract List<Borrowing> getActiveByReader(String readerId);
+
+    /**
+     * Возвращает все активные выдачи.
+     *
+     * @return список ещё не возвращённых выдач
+     */
+    public abstract List<Borrowing> getActive();
+}
@@ -0,0 +1,81 @@
+package ru.mentee.power.collections.library;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение памяти и скорости заполнения {@link BorrowingHistory}
+ * и {@link CompactBorrowingHistory} на большой истории выдач.
+ *
+ * <p>Аргумент: количество выдач (по умолчанию 10 000 000). Для 10M выдач
+ * запускайте с {@code -Xmx4g}: объектная история занимает больше гигабайта.
+ */
+public class BorrowingStoreBenchmark {
+
+    private static final int DEFAULT_LOANS = 10_000_000;
+    private static final int BOOKS = 100_000;
+    private static final int READERS = 50_000;
+    /** Последние выдачи остаются на руках, остальные возвращены. */
+    private static final int ACTIVE = 10_000;
+
+    private static String[] isbns;
+    private static String[] readerIds;
+
+    public static void main(String[] args) {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LOANS;
+        isbns = new String[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            isbns[i] = "ISBN-" + i;
+        }
+        readerIds = new String[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readerIds[i] = "RDR" + i;
+        }
+
+        System.out.println("История: " + loans + " выдач");
+        measure("Объекты Borrowing", BorrowingHistory::new, loans);
+        measure("Столбцы примитивов", CompactBorrowingHistory::new, loans);
+    }
+
+    private static void measure(String name, Supplier<BorrowingStore> factory, int loans) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        BorrowingStore store = fill(factory.get(), loans);
+        long fillMillis = (System.nanoTime() - start) / 1_000_000;
+        long bytes = usedMemory() - before;
+
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < BOOKS; i += 100) {
+            found += store.getByBook(isbns[i]).size();
+        }
+        long queryMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("%-20s память %,d МБ (%.1f байт/выдачу), заполнение %d мс, "
+                        + "история 1000 книг %d мс (%d выдач), активных %d%n",
+                name, bytes / (1024 * 1024), (double) bytes / loans, fillMillis,
+                queryMillis, found, store.getActive().size());
+    }
+
+    private static BorrowingStore fill(BorrowingStore store, int loans) {
+        LocalDate origin = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < loans; i++) {
+            LocalDate borrowDate = origin.plusDays(i / 1_000);
+            Borrowing borrowing = new Borrowing(isbns[i % BOOKS], readerIds[i % READERS],
+                    borrowDate, borrowDate.plusDays(14));
+            if (i < loans - ACTIVE) {
+                borrowing.setReturnDate(borrowDate.plusDays(i % 21));
+            }
+            store.add(borrowing);
+        }
+        return store;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,456 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Битовые индексы каталога и планировщик запросов {@link BookQuery}.
+ *
+ * <p>Каждой книге выдаётся плотный порядковый номер (ordinal); освободившиеся
+ * номера переиспользуются. Для жанров и годов публикации хранятся битовые
+ * множества номеров, поэтому пересечение и объединение условий — это
+ * поразрядные AND/OR над массивами {@code long}, а не сравнение объектов.
+ * Книги автора и результаты поиска по названию берутся из уже существующих
+ * индексов {@link LibraryManager} и переводятся в битовые множества по требованию.
+ *
+ * <p>Доступность книг тоже хранится битовым множеством, которое обновляется
+ * при выдаче и возврате ({@link #refreshAvailability(Book)}). Поэтому «доступные
+ * книги жанра» — это AND двух множеств, а их количество — подсчёт единичных битов.
+ * Выдача и возврат в {@link ConcurrentLibraryManager} идут параллельно под общей
+ * блокировкой чтения, поэтому множество доступности защищено собственным монитором.
+ *
+ * <p>Планировщик оценивает размер выборки каждого условия по индексу,
+ * пересекает условия от самого избирательного к менее избирательным и
+ * перестаёт обращаться к индексам, когда кандидатов уже меньше, чем дала бы
+ * следующая выборка: такие условия, как и условия без индекса (число авторов),
+ * проверяются на самих кандидатах во время обхода.
+ */
+final class CatalogBitmapIndex {
+
+    /** Оценка для условия, у которого нет индекса. */
+    private static final long UNINDEXED = Long.MAX_VALUE;
+
+    private final List<Book> books = new ArrayList<>();
+    private final Map<Book, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    /** Все номера меньше этого заняты. */
+    private int freeHint;
+
+    private final Map<Book.Genre, Posting> genres = new EnumMap<>(Book.Genre.class);
+    /** Книги без жанра. */
+    private final Posting noGenre = new Posting();
+    private final TreeMap<Integer, Posting> years = new TreeMap<>();
+    /** Доступные книги; все обращения — под монитором самого объекта. */
+    private final Posting available = new Posting();
+
+    private final Function<String, ? extends Collection<Book>> authorLookup;
+    private final Function<String, List<Book>> titleSearch;
+
+    /**
+     * @param authorLookup книги автора
+     * @param titleSearch  книги, в названии которых встречается подстрока
+     */
+    CatalogBitmapIndex(Function<String, ? extends Collection<Book>> authorLookup,
+                       Function<String, List<Book>> titleSearch) {
+        this.authorLookup = authorLookup;
+        this.titleSearch = titleSearch;
+        for (Book.Genre genre : Book.Genre.values()) {
+            genres.put(genre, new Posting());
+        }
+    }
+
+    /**
+     * Строит индекс по коллекции книг.
+     *
+     * @param books        книги каталога
+     * @param authorLookup книги автора
+     * @param titleSearch  книги, в названии которых встречается подстрока
+     * @return заполненный индекс
+     */
+    static CatalogBitmapIndex build(Collection<Book> books,
+                                    Function<String, ? extends Collection<Book>> authorLookup,
+                                    Function<String, List<Book>> titleSearch) {
+        CatalogBitmapIndex index = new CatalogBitmapIndex(authorLookup, titleSearch);
+        for (Book book : books) {
+            index.add(book);
+        }
+        return index;
+    }
+
+    void add(Book book) {
+        if (ordinals.containsKey(book)) {
+            return;
+        }
+        int ordinal = live.nextClearBit(freeHint);
+        freeHint = ordinal + 1;
+        if (ordinal == books.size()) {
+            books.add(book);
+        } else {
+            books.set(ordinal, book);
+        }
+        ordinals.put(book, ordinal);
+        live.set(ordinal);
+        genre(book.getGenre()).set(ordinal);
+        years.computeIfAbsent(book.getPublicationYear(), key -> new Posting()).set(ordinal);
+        refreshAvailability(book);
+    }
+
+    void remove(Book book) {
+        Integer ordinal = ordinals.remove(book);
+        if (ordinal == null) {
+            return;
+        }
+        books.set(ordinal, null);
+        live.clear(ordinal);
+        freeHint = Math.min(freeHint, ordinal);
+        genre(book.getGenre()).clear(ordinal);
+        Posting year = years.get(book.getPublicationYear());
+        year.clear(ordinal);
+        if (year.count == 0) {
+            years.remove(book.getPublicationYear());
+        }
+        synchronized (available) {
+            available.clear(ordinal);
+        }
+    }
+
+    /**
+     * Перечитывает доступность книги.
+     *
+     * @param book книга каталога
+     */
+    void refreshAvailability(Book book) {
+        Integer ordinal = ordinals.get(book);
+        if (ordinal == null) {
+            return;
+        }
+        synchronized (available) {
+            if (book.isAvailable()) {
+                available.set(ordinal);
+            } else {
+                available.clear(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Перечитывает доступность всех книг под одним захватом монитора.
+     *
+     * @param books книги каталога
+     */
+    void refreshAvailability(Collection<Book> books) {
+        synchronized (available) {
+            for (Book book : books) {
+                refreshAvailability(book);
+            }
+        }
+    }
+
+    /**
+     * Считает книги, удовлетворяющие запросу; для запроса, полностью
+     * вычисленного по индексам, — без обращения к самим книгам.
+     *
+     * @param query запрос
+     * @return количество книг
+     */
+    int count(BookQuery query) {
+        Plan plan = plan(query);
+        if (plan.exact()) {
+            return plan.candidates() == null ? ordinals.size() : plan.candidates().cardinality();
+        }
+        int count = 0;
+        for (Iterator<Book> cursor = new Cursor(plan.candidates() == null ? live : plan.candidates(), query::test);
+             cursor.hasNext(); cursor.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает ленивый итератор по книгам, удовлетворяющим запросу,
+     * в порядке их номеров. Кандидаты вычисляются сразу, а книги и проверки
+     * условий без индекса — по мере обхода.
+     *
+     * @param query запрос
+     * @return итератор по найденным книгам
+     */
+    Iterator<Book> iterator(BookQuery query) {
+        Plan plan = plan(query);
+        return new Cursor(plan.candidates() == null ? live : plan.candidates(),
+                plan.exact() ? null : query::test);
+    }
+
+    /**
+     * Возвращает одну страницу результатов запроса. Если запрос полностью
+     * вычислен по индексам, общее количество — это число единичных битов,
+     * и после нужной страницы обход прекращается.
+     *
+     * @param query    запрос
+     * @param page     номер страницы, начиная с 0
+     * @param pageSize размер страницы
+     * @return страница результатов
+     */
+    Page<Book> page(BookQuery query, int page, int pageSize) {
+        Page.checkBounds(page, pageSize);
+        Plan plan = plan(query);
+        BitSet candidates = plan.candidates() == null ? live : plan.candidates();
+        Cursor cursor = new Cursor(candidates, plan.exact() ? null : query::test);
+
+        long from = (long) page * pageSize;
+        int seen = 0;
+        List<Book> items = new ArrayList<>(Math.min(pageSize, 64));
+        while (cursor.hasNext() && (items.size() < pageSize || !plan.exact())) {
+            Book book = cursor.next();
+            if (seen >= from && items.size() < pageSize) {
+                items.add(book);
+            }
+            seen++;
+        }
+        int total = plan.exact() ? candidates.cardinality() : seen;
+        return new Page<>(List.copyOf(items), page, pageSize, total);
+    }
+
+    /**
+     * @return номера книг жанра; для {@code null} — книг без жанра
+     */
+    private Posting genre(Book.Genre genre) {
+        return genre == null ? noGenre : genres.get(genre);
+    }
+
+    // ===========================================================================
+    // Планировщик
+    // ===========================================================================
+
+    private Plan plan(BookQuery query) {
+        return switch (query) {
+            case BookQuery.GenreIs genre -> new Plan((BitSet) genre(genre.genre()).bits.clone(), true);
+            case BookQuery.YearBetween range -> {
+                BitSet result = new BitSet();
+                for (Posting year : years.subMap(range.from(), true, range.to(), true).values()) {
+                    result.or(year.bits);
+                }
+                yield new Plan(result, true);
+            }
+            case BookQuery.AuthorIs author -> new Plan(toBitSet(authorLookup.apply(author.author())), true);
+            case BookQuery.TitleContains title -> new Plan(toBitSet(titleSearch.apply(title.text())), true);
+            case BookQuery.AvailableIs availability -> new Plan(availability(availability.available()), true);
+            case BookQuery.MinAuthors minAuthors -> new Plan(null, false);
+            case BookQuery.And and -> planAnd(and);
+            case BookQuery.Or or -> planOr(or);
+        };
+    }
+
+    private Plan planAnd(BookQuery.And and) {
+        List<BookQuery> children = new ArrayList<>(and.queries());
+        Map<BookQuery, Long> estimates = new HashMap<>();
+        for (BookQuery child : children) {
+            estimates.put(child, estimate(child));
+        }
+        children.sort(Comparator.comparing(estimates::get));
+
+        BitSet result = null;
+        boolean exact = true;
+        for (BookQuery child : children) {
+            long estimate = estimates.get(child);
+            if (estimate == UNINDEXED || (result != null && estimate >= result.cardinality())) {
+                // Дешевле проверить оставшихся кандидатов, чем обращаться к индексу
+                exact = false;
+                continue;
+            }
+            Plan plan = plan(child);
+            if (plan.candidates() == null) {
+                exact = false;
+                continue;
+            }
+            if (result == null) {
+                result = plan.candidates();
+            } else {
+                result.and(plan.candidates());
+            }
+            exact &= plan.exact();
+            if (result.isEmpty()) {
+                return new Plan(result, true);
+            }
+        }
+        return new Plan(result, exact);
+    }
+
+    private Plan planOr(BookQuery.Or or) {
+        BitSet result = new BitSet();
+        boolean exact = true;
+        for (BookQuery child : or.queries()) {
+            if (estimate(child) == UNINDEXED) {
+                return new Plan(null, false);
+            }
+            Plan plan = plan(child);
+            if (plan.candidates() == null) {
+                return new Plan(null, false);
+            }
+            result.or(plan.candidates());
+            exact &= plan.exact();
+        }
+        return new Plan(result, exact);
+    }
+
+    /**
+     * @return ожидаемое число кандидатов по индексу или {@link #UNINDEXED}
+     */
+    private long estimate(BookQuery query) {
+        return switch (query) {
+            case BookQuery.GenreIs genre -> genre(genre.genre()).count;
+            case BookQuery.YearBetween range -> {
+                long count = 0;
+                for (Posting year : years.subMap(range.from(), true, range.to(), true).values()) {
+                    count += year.count;
+                }
+                yield count;
+            }
+            case BookQuery.AuthorIs author -> authorLookup.apply(author.author()).size();
+            // Размер выдачи поиска заранее неизвестен: считаем худший случай
+            case BookQuery.TitleContains title -> ordinals.size();
+            case BookQuery.AvailableIs availability -> {
+                synchronized (available) {
+                    yield availability.available() ? available.count : ordinals.size() - available.count;
+                }
+            }
+            case BookQuery.MinAuthors minAuthors -> UNINDEXED;
+            case BookQuery.And and -> {
+                long min = UNINDEXED;
+                for (BookQuery child : and.queries()) {
+                    min = Math.min(min, estimate(child));
+                }
+                yield and.queries().isEmpty() ? ordinals.size() : min;
+            }
+            case BookQuery.Or or -> {
+                long sum = 0;
+                for (BookQuery child : or.queries()) {
+                    long estimate = estimate(child);
+                    if (estimate == UNINDEXED) {
+                        yield UNINDEXED;
+                    }
+                    sum += estimate;
+                }
+                yield Math.min(sum, ordinals.size());
+            }
+        };
+    }
+
+    private BitSet availability(boolean isAvailable) {
+        synchronized (available) {
+            if (isAvailable) {
+                return (BitSet) available.bits.clone();
+            }
+            BitSet result = (BitSet) live.clone();
+            result.andNot(available.bits);
+            return result;
+        }
+    }
+
+    private BitSet toBitSet(Collection<Book> found) {
+        BitSet result = new BitSet();
+        for (Book book : found) {
+            Integer ordinal = ordinals.get(book);
+            if (ordinal != null) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Кандидаты запроса: {@code null} — все книги каталога; {@code exact} — кандидаты
+     * совпадают с результатом и проверять условие на каждой книге не нужно.
+     */
+    private record Plan(BitSet candidates, boolean exact) {
+    }
+
+    /** Битовое множество номеров с поддерживаемым числом элементов. */
+    private static final class Posting {
+
+        final BitSet bits = new BitSet();
+        int count;
+
+        void set(int ordinal) {
+            if (!bits.get(ordinal)) {
+                bits.set(ordinal);
+                count++;
+            }
+        }
+
+        void clear(int ordinal) {
+            if (bits.get(ordinal)) {
+                bits.clear(ordinal);
+                count--;
+            }
+        }
+    }
+
+    /** Ленивый обход кандидатов с проверкой условия, если оно не вычислено по индексам. */
+    private final class Cursor implements Iterator<Book> {
+
+        private final BitSet candidates;
+        private final Predicate<Book> residual;
+        private int position = -1;
+        private Book next;
+        private boolean canRemove;
+
+        Cursor(BitSet candidates, Predicate<Book> residual) {
+            this.candidates = candidates;
+            this.residual = residual;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                position = candidates.nextSetBit(position + 1);
+                if (position < 0) {
+                    return;
+                }
+                Book book = position < books.size() ? books.get(position) : null;
+                if (book != null && (residual == null || residual.test(book))) {
+                    next = book;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Book next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Book result = next;
+            advance();
+            canRemove = true;
+            return result;
+        }
+
+        /**
+         * Исключает последнюю книгу из обхода, не трогая каталог, — так же,
+         * как итератор по копии выборки, который возвращался раньше.
+         */
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+        }
+    }
+}
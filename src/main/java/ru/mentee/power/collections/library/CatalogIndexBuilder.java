@@ -0,0 +1,87 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Строит вторичные индексы каталога (по жанру и по автору) за один проход
+ * по книгам. Используется как {@link Collector}, поэтому на больших каталогах
+ * проход выполняется параллельно в общем fork-join пуле: каждая подзадача
+ * строит свои частичные индексы, которые затем сливаются.
+ */
+final class CatalogIndexBuilder {
+
+    /** Начиная с этого размера каталога индексы строятся параллельно. */
+    static final int PARALLEL_THRESHOLD = 10_000;
+
+    private final Map<Book.Genre, Set<Book>> byGenre = new EnumMap<>(Book.Genre.class);
+    private final Map<String, List<Book>> byAuthor = new HashMap<>();
+
+    private CatalogIndexBuilder() {
+    }
+
+    /**
+     * Строит индексы по коллекции книг.
+     *
+     * @param books все книги каталога
+     * @return построитель с заполненными индексами
+     */
+    static CatalogIndexBuilder build(Collection<Book> books) {
+        Stream<Book> stream = books.size() >= PARALLEL_THRESHOLD ? books.parallelStream() : books.stream();
+        return stream.collect(Collector.of(
+                CatalogIndexBuilder::new,
+                CatalogIndexBuilder::add,
+                CatalogIndexBuilder::merge,
+                Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * @return индекс жанр → книги, содержащий все жанры (в том числе пустые)
+     */
+    Map<Book.Genre, Set<Book>> genreIndex() {
+        Map<Book.Genre, Set<Book>> result = new HashMap<>();
+        for (Book.Genre genre : Book.Genre.values()) {
+            result.put(genre, byGenre.getOrDefault(genre, new HashSet<>()));
+        }
+        return result;
+    }
+
+    /**
+     * @return индекс автор → книги
+     */
+    Map<String, List<Book>> authorIndex() {
+        return byAuthor;
+    }
+
+    private void add(Book book) {
+        // Книга без жанра (пустое поле жанра в CSV) в индекс жанров не попадает
+        if (book.getGenre() != null) {
+            byGenre.computeIfAbsent(book.getGenre(), key -> new HashSet<>()).add(book);
+        }
+        for (String author : book.getAuthors()) {
+            byAuthor.computeIfAbsent(author, key -> new ArrayList<>()).add(book);
+        }
+    }
+
+    private CatalogIndexBuilder merge(CatalogIndexBuilder other) {
+        other.byGenre.forEach((genre, books) ->
+                byGenre.merge(genre, books, (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                }));
+        other.byAuthor.forEach((author, books) ->
+                byAuthor.merge(author, books, (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                }));
+        return this;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поддерживаемые отсортированные представления каталога для каждого {@link BookOrder}.
+ *
+ * <p>Название, жанр и год книги не меняются, поэтому для этих порядков хватает
+ * одного {@link SortedBookIndex}, который обновляется при добавлении и удалении
+ * книги. Доступность меняется при каждой выдаче, поэтому порядок
+ * {@link BookOrder#AVAILABILITY} хранится как два списка по названию — доступные
+ * и выданные книги, — и книга переносится между ними за O(log n). Выдача
+ * в {@link ConcurrentLibraryManager} идёт под общей блокировкой чтения, поэтому
+ * эти два списка защищены собственным монитором.
+ */
+final class CatalogSortedViews {
+
+    private final Map<BookOrder, SortedBookIndex> views = new EnumMap<>(BookOrder.class);
+    private final SortedBookIndex available;
+    private final SortedBookIndex unavailable;
+    private final Object availabilityLock = new Object();
+
+    private CatalogSortedViews(Collection<Book> books) {
+        for (BookOrder order : BookOrder.values()) {
+            if (order != BookOrder.AVAILABILITY) {
+                views.put(order, SortedBookIndex.build(books, order.comparator()));
+            }
+        }
+        List<Book> availableBooks = new ArrayList<>();
+        List<Book> unavailableBooks = new ArrayList<>();
+        for (Book book : books) {
+            (book.isAvailable() ? availableBooks : unavailableBooks).add(book);
+        }
+        available = SortedBookIndex.build(availableBooks, BookOrder.TITLE.comparator());
+        unavailable = SortedBookIndex.build(unavailableBooks, BookOrder.TITLE.comparator());
+    }
+
+    /**
+     * Строит представления по коллекции книг.
+     *
+     * @param books книги каталога
+     * @return представления
+     */
+    static CatalogSortedViews build(Collection<Book> books) {
+        return new CatalogSortedViews(books);
+    }
+
+    void add(Book book) {
+        for (SortedBookIndex view : views.values()) {
+            view.add(book);
+        }
+        synchronized (availabilityLock) {
+            (book.isAvailable() ? available : unavailable).add(book);
+        }
+    }
+
+    void remove(Book book) {
+        for (SortedBookIndex view : views.values()) {
+            view.remove(book);
+        }
+        synchronized (availabilityLock) {
+            available.remove(book);
+            unavailable.remove(book);
+        }
+    }
+
+    /**
+     * Переносит книгу в список, соответствующий её текущей доступности.
+     *
+     * @param book книга каталога
+     */
+    void refreshAvailability(Book book) {
+        synchronized (availabilityLock) {
+            if (book.isAvailable()) {
+                if (unavailable.remove(book)) {
+                    available.add(book);
+                }
+            } else if (available.remove(book)) {
+                unavailable.add(book);
+            }
+        }
+    }
+
+    /**
+     * Переносит книги в списки, соответствующие их текущей доступности.
+     *
+     * @param books книги каталога
+     */
+    void refreshAvailability(Collection<Book> books) {
+        synchronized (availabilityLock) {
+            for (Book book : books) {
+                refreshAvailability(book);
+            }
+        }
+    }
+
+    int size() {
+        return views.get(BookOrder.TITLE).size();
+    }
+
+    /**
+     * Возвращает книги с позиции {@code from} в заданном порядке.
+     *
+     * @param order порядок
+     * @param from  позиция первой книги
+     * @param count сколько книг вернуть
+     * @return книги
+     */
+    List<Book> slice(BookOrder order, int from, int count) {
+        if (order != BookOrder.AVAILABILITY) {
+            return views.get(order).slice(from, count);
+        }
+        synchronized (availabilityLock) {
+            List<Book> result = available.slice(from, count);
+            if (result.size() < count) {
+                result.addAll(unavailable.slice(Math.max(0, from - available.size()), count - result.size()));
+            }
+            return result;
+        }
+    }
+}
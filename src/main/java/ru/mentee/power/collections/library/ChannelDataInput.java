@@ -0,0 +1,95 @@
+package ru.mentee.power.collections.library;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Буферизованное чтение данных, записанных {@link ChannelDataOutput},
+ * из {@link ReadableByteChannel}.
+ */
+class ChannelDataInput {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    ChannelDataInput(ReadableByteChannel channel) {
+        this(channel, ChannelDataOutput.DEFAULT_BUFFER_SIZE);
+    }
+
+    ChannelDataInput(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+    }
+
+    byte readByte() throws IOException {
+        require(Byte.BYTES);
+        return buffer.get();
+    }
+
+    int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            require(1);
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Проверяет, остались ли непрочитанные данные.
+     *
+     * @return {@code true}, если в канале или буфере есть данные
+     */
+    boolean hasRemaining() throws IOException {
+        return buffer.hasRemaining() || fill() > 0;
+    }
+
+    /**
+     * Гарантирует, что в буфере есть не меньше {@code bytes} байт.
+     *
+     * @throws EOFException если данные в канале закончились раньше
+     */
+    private void require(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (fill() < 0) {
+                throw new EOFException("Неожиданный конец данных");
+            }
+        }
+    }
+
+    private int fill() throws IOException {
+        buffer.compact();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+        return read;
+    }
+}
@@ -0,0 +1,655 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Компактная история выдач: записи хранятся не объектами, а параллельными
+ * столбцами примитивов — номер книги, номер читателя и три даты в днях
+ * от эпохи. ISBN и ID читателей лежат в словарях по одному разу, поэтому
+ * запись вместе с индексами занимает около 32 байт вместо сотни с лишним
+ * у объекта {@link Borrowing} с тремя {@link LocalDate}.
+ *
+ * <p>Чтение возвращает лёгкие представления {@link Borrowing} над строкой
+ * столбцов. Они создаются на каждое обращение: равны по {@code equals},
+ * но не тождественны. Изменения через представление ({@code setReturnDate},
+ * {@code setDueDate}) идут через {@link #markReturned} и {@link #updateDueDate}
+ * и обновляют индексы. Представление привязано к постоянному номеру записи,
+ * а не к номеру строки: после удаления или вставки в середину списка оно
+ * заново находит свою строку, а обращение к удалённой записи бросает
+ * {@link IllegalStateException}. Добавленный объект копируется в столбцы,
+ * и его дальнейшие изменения на историю не влияют.
+ *
+ * <p>Истории книг и читателей — цепочки номеров строк в массивах, без
+ * объектов на запись. Индексы активных выдач устроены как в
+ * {@link BorrowingHistory}: их размер ограничен числом книг на руках,
+ * а не длиной истории. Добавление в конец обновляет индексы за O(1),
+ * вставка, замена и удаление сдвигают столбцы и пересобирают индексы.
+ */
+public class CompactBorrowingHistory extends BorrowingStore {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Отсутствующая дата в столбцах. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Номер книги → ISBN. */
+    private final List<String> isbns = new ArrayList<>();
+
+    /** Номер читателя → ID. */
+    private final List<String> readerIds = new ArrayList<>();
+
+    private int size;
+    private int[] bookColumn = new int[INITIAL_CAPACITY];
+    private int[] readerColumn = new int[INITIAL_CAPACITY];
+    private int[] borrowDays = new int[INITIAL_CAPACITY];
+    private int[] dueDays = new int[INITIAL_CAPACITY];
+    private int[] returnDays = new int[INITIAL_CAPACITY];
+
+    /**
+     * Постоянные номера записей, за которыми следят представления. Номера растут
+     * при добавлении, поэтому, пока не было вставки в середину или замены,
+     * столбец упорядочен и строка находится двоичным поиском.
+     */
+    private transient int[] ids = new int[INITIAL_CAPACITY];
+    private transient int nextId;
+    private transient boolean idsAscending = true;
+
+    /** Счётчик сдвигов и замен строк; по нему представление проверяет свой номер строки. */
+    private transient int generation;
+
+    /** ISBN → номер книги. */
+    private transient Map<String, Integer> isbnOrdinals = new HashMap<>();
+
+    /** ID читателя → номер читателя. */
+    private transient Map<String, Integer> readerOrdinals = new HashMap<>();
+
+    /** Номер книги → все её выдачи. */
+    private transient RowChains rowsByBook;
+
+    /** Номер читателя → все его выдачи. */
+    private transient RowChains rowsByReader;
+
+    /** Номер книги → строки активных выдач. */
+    private transient Map<Integer, List<Integer>> activeByBook;
+
+    /** Номер читателя → строки активных выдач. */
+    private transient Map<Integer, List<Integer>> activeByReader;
+
+    /** Срок возврата в днях → строки активных выдач. */
+    private transient NavigableMap<Integer, List<Integer>> activeByDueDay;
+
+    private transient RankedCounter bookCounts;
+    private transient RankedCounter readerCounts;
+
+    /**
+     * Создаёт пустую историю выдач.
+     */
+    public CompactBorrowingHistory() {
+        rebuildIndexes();
+    }
+
+    /**
+     * Создаёт историю выдач из существующего набора записей.
+     *
+     * @param borrowings исходные записи
+     */
+    public CompactBorrowingHistory(Collection<Borrowing> borrowings) {
+        ensureCapacity(borrowings.size());
+        for (Borrowing borrowing : borrowings) {
+            writeRow(size++, borrowing);
+        }
+        rebuildIndexes();
+    }
+
+    // ===========================================================================
+    // Реализация List
+    // ===========================================================================
+
+    @Override
+    public Borrowing get(int index) {
+        Objects.checkIndex(index, size);
+        return new View(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int index, Borrowing borrowing) {
+        Objects.checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        modCount++;
+        if (index == size) {
+            writeRow(size++, borrowing);
+            index(index);
+            fireAdded(borrowing);
+            return;
+        }
+        moveRows(index, index + 1, size - index);
+        writeRow(index, borrowing);
+        size++;
+        generation++;
+        idsAscending = false;
+        rebuildIndexes();
+        fireChanged();
+    }
+
+    @Override
+    public Borrowing set(int index, Borrowing borrowing) {
+        Objects.checkIndex(index, size);
+        Borrowing old = detach(index);
+        writeRow(index, borrowing);
+        generation++;
+        idsAscending &= index == size - 1;
+        rebuildIndexes();
+        fireChanged();
+        return old;
+    }
+
+    @Override
+    public Borrowing remove(int index) {
+        Objects.checkIndex(index, size);
+        Borrowing old = detach(index);
+        moveRows(index + 1, index, size - index - 1);
+        size--;
+        generation++;
+        modCount++;
+        rebuildIndexes();
+        fireChanged();
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие записи за один проход со сдвигом столбцов
+     * и одной пересборкой индексов, а не по одной через {@link #remove(int)}.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Borrowing> filter) {
+        Objects.requireNonNull(filter);
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (!filter.test(new View(row))) {
+                if (kept != row) {
+                    moveRows(row, kept, 1);
+                }
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        size = kept;
+        generation++;
+        modCount++;
+        rebuildIndexes();
+        fireChanged();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        isbns.clear();
+        readerIds.clear();
+        bookColumn = new int[INITIAL_CAPACITY];
+        readerColumn = new int[INITIAL_CAPACITY];
+        borrowDays = new int[INITIAL_CAPACITY];
+        dueDays = new int[INITIAL_CAPACITY];
+        returnDays = new int[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        idsAscending = true;
+        generation++;
+        modCount++;
+        rebuildIndexes();
+        fireChanged();
+    }
+
+    // ===========================================================================
+    // Операции с индексами
+    // ===========================================================================
+
+    @Override
+    public final void rebuildIndexes() {
+        isbnOrdinals = ordinals(isbns);
+        readerOrdinals = ordinals(readerIds);
+        rowsByBook = new RowChains(isbns.size(), size);
+        rowsByReader = new RowChains(readerIds.size(), size);
+        activeByBook = new LinkedHashMap<>();
+        activeByReader = new HashMap<>();
+        activeByDueDay = new TreeMap<>();
+        for (int row = 0; row < size; row++) {
+            indexRow(row);
+        }
+        bookCounts = RankedCounter.fromCounts(isbns, rowsByBook.counts);
+        readerCounts = RankedCounter.fromCounts(readerIds, rowsByReader.counts);
+    }
+
+    @Override
+    public Borrowing findActive(String isbn, String readerId) {
+        Integer book = isbnOrdinals.get(isbn);
+        Integer reader = readerOrdinals.get(readerId);
+        if (book == null || reader == null) {
+            return null;
+        }
+        for (int row : activeByBook.getOrDefault(book, Collections.emptyList())) {
+            if (returnDays[row] == NO_DATE && readerColumn[row] == reader) {
+                return new View(row);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void markReturned(Borrowing borrowing, LocalDate returnDate) {
+        int row = rowOf(borrowing);
+        if (row == NONE) {
+            borrowing.setReturnDate(returnDate);
+            return;
+        }
+        setReturnDate(row, returnDate);
+    }
+
+    /**
+     * Меняет дату возврата строки с переносом в индексах активных выдач.
+     * Дата {@code null} снова делает выдачу активной.
+     */
+    private void setReturnDate(int row, LocalDate returnDate) {
+        boolean wasActive = returnDays[row] == NO_DATE;
+        if (wasActive) {
+            removeFrom(activeByBook, bookColumn[row], row);
+            removeFrom(activeByReader, readerColumn[row], row);
+            removeFrom(activeByDueDay, dueDays[row], row);
+        }
+        returnDays[row] = LibrarySnapshot.toDay(returnDate);
+        if (returnDays[row] == NO_DATE) {
+            indexActive(row);
+        }
+        if (wasActive && returnDate != null) {
+            fireReturned(new View(row));
+        } else {
+            fireChanged();
+        }
+    }
+
+    @Override
+    public void updateDueDate(Borrowing borrowing, LocalDate dueDate) {
+        int row = rowOf(borrowing);
+        if (row == NONE) {
+            borrowing.setDueDate(dueDate);
+            return;
+        }
+        boolean active = removeFrom(activeByDueDay, dueDays[row], row);
+        dueDays[row] = LibrarySnapshot.toDay(dueDate);
+        if (active) {
+            activeByDueDay.computeIfAbsent(dueDays[row], key -> new ArrayList<>()).add(row);
+        }
+        fireDueDateChanged(borrowing);
+    }
+
+    @Override
+    public List<Borrowing> getOverdue(LocalDate date) {
+        List<Borrowing> result = new ArrayList<>();
+        for (List<Integer> dueOnDay : activeByDueDay.headMap(LibrarySnapshot.toDay(date), false).values()) {
+            addActive(dueOnDay, result);
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<Entry<String, Integer>> getMostBorrowedBooks() {
+        return bookCounts.descending();
+    }
+
+    @Override
+    public Stream<Entry<String, Integer>> getMostActiveReaders() {
+        return readerCounts.descending();
+    }
+
+    @Override
+    public List<Borrowing> getByBook(String isbn) {
+        return views(rowsByBook, isbnOrdinals.get(isbn));
+    }
+
+    @Override
+    public List<Borrowing> getByReader(String readerId) {
+        return views(rowsByReader, readerOrdinals.get(readerId));
+    }
+
+    @Override
+    public List<Borrowing> getActiveByReader(String readerId) {
+        List<Borrowing> result = new ArrayList<>();
+        Integer reader = readerOrdinals.get(readerId);
+        if (reader != null) {
+            addActive(activeByReader.getOrDefault(reader, Collections.emptyList()), result);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Borrowing> getActive() {
+        List<Borrowing> result = new ArrayList<>();
+        for (List<Integer> active : activeByBook.values()) {
+            addActive(active, result);
+        }
+        return result;
+    }
+
+    // ===========================================================================
+    // Вспомогательные методы
+    // ===========================================================================
+
+    private void index(int row) {
+        indexRow(row);
+        bookCounts.increment(isbns.get(bookColumn[row]));
+        readerCounts.increment(readerIds.get(readerColumn[row]));
+    }
+
+    private void indexRow(int row) {
+        rowsByBook.append(bookColumn[row], row);
+        rowsByReader.append(readerColumn[row], row);
+        if (returnDays[row] == NO_DATE) {
+            indexActive(row);
+        }
+    }
+
+    private void indexActive(int row) {
+        activeByBook.computeIfAbsent(bookColumn[row], key -> new ArrayList<>(1)).add(row);
+        activeByReader.computeIfAbsent(readerColumn[row], key -> new ArrayList<>()).add(row);
+        activeByDueDay.computeIfAbsent(dueDays[row], key -> new ArrayList<>()).add(row);
+    }
+
+    private void writeRow(int row, Borrowing borrowing) {
+        ids[row] = nextId++;
+        bookColumn[row] = ordinal(borrowing.getIsbn(), isbns, isbnOrdinals);
+        readerColumn[row] = ordinal(borrowing.getReaderId(), readerIds, readerOrdinals);
+        borrowDays[row] = LibrarySnapshot.toDay(borrowing.getBorrowDate());
+        dueDays[row] = LibrarySnapshot.toDay(borrowing.getDueDate());
+        returnDays[row] = LibrarySnapshot.toDay(borrowing.getReturnDate());
+    }
+
+    /**
+     * Находит строку выдачи: для представления этой истории — по номеру,
+     * для постороннего объекта — среди активных выдач по ISBN, читателю
+     * и дате выдачи.
+     */
+    private int rowOf(Borrowing borrowing) {
+        if (borrowing instanceof View view && view.owner() == this) {
+            return view.row();
+        }
+        Integer book = isbnOrdinals.get(borrowing.getIsbn());
+        if (book == null) {
+            return NONE;
+        }
+        for (int row : activeByBook.getOrDefault(book, Collections.emptyList())) {
+            if (returnDays[row] == NO_DATE && new View(row).equals(borrowing)) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Находит строку записи по постоянному номеру.
+     *
+     * @return номер строки или {@link #NONE}, если запись удалена
+     */
+    private int rowById(int id) {
+        if (idsAscending) {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            return row < 0 ? NONE : row;
+        }
+        for (int row = 0; row < size; row++) {
+            if (ids[row] == id) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    private void addActive(List<Integer> rows, List<Borrowing> result) {
+        for (int row : rows) {
+            if (returnDays[row] == NO_DATE) {
+                result.add(new View(row));
+            }
+        }
+    }
+
+    private List<Borrowing> views(RowChains chains, Integer key) {
+        if (key == null || chains.counts[key] == 0) {
+            return Collections.emptyList();
+        }
+        List<Borrowing> result = new ArrayList<>(chains.counts[key]);
+        for (int row = chains.first[key]; row != NONE; row = chains.next[row]) {
+            result.add(new View(row));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Копирует запись в обычный объект {@link Borrowing}, не связанный с историей.
+     */
+    private Borrowing detach(int row) {
+        Borrowing borrowing = new Borrowing(isbns.get(bookColumn[row]), readerIds.get(readerColumn[row]),
+                toDate(borrowDays[row]), toDate(dueDays[row]));
+        borrowing.setReturnDate(toDate(returnDays[row]));
+        return borrowing;
+    }
+
+    private void moveRows(int from, int to, int length) {
+        System.arraycopy(bookColumn, from, bookColumn, to, length);
+        System.arraycopy(readerColumn, from, readerColumn, to, length);
+        System.arraycopy(borrowDays, from, borrowDays, to, length);
+        System.arraycopy(dueDays, from, dueDays, to, length);
+        System.arraycopy(returnDays, from, returnDays, to, length);
+        System.arraycopy(ids, from, ids, to, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bookColumn.length) {
+            resize(Math.max(capacity, bookColumn.length + (bookColumn.length >> 1)));
+        }
+    }
+
+    private void resize(int capacity) {
+        bookColumn = Arrays.copyOf(bookColumn, capacity);
+        readerColumn = Arrays.copyOf(readerColumn, capacity);
+        borrowDays = Arrays.copyOf(borrowDays, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        returnDays = Arrays.copyOf(returnDays, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    private static int ordinal(String key, List<String> keys, Map<String, Integer> ordinals) {
+        Integer ordinal = ordinals.get(key);
+        if (ordinal == null) {
+            ordinal = keys.size();
+            keys.add(key);
+            ordinals.put(key, ordinal);
+        }
+        return ordinal;
+    }
+
+    private static Map<String, Integer> ordinals(List<String> keys) {
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            ordinals.put(keys.get(i), i);
+        }
+        return ordinals;
+    }
+
+    private static LocalDate toDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    private static <K> boolean removeFrom(Map<K, List<Integer>> index, K key, int row) {
+        List<Integer> rows = index.get(key);
+        if (rows == null || !rows.remove(Integer.valueOf(row))) {
+            return false;
+        }
+        if (rows.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // Запас ёмкости столбцов не сохраняем.
+        resize(size);
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ids = new int[bookColumn.length];
+        for (int row = 0; row < size; row++) {
+            ids[row] = row;
+        }
+        nextId = size;
+        idsAscending = true;
+        rebuildIndexes();
+    }
+
+    /**
+     * Односвязные цепочки номеров строк по номеру ключа в порядке добавления.
+     */
+    private static final class RowChains {
+
+        private int[] first;
+        private int[] last;
+        private int[] counts;
+        private int[] next;
+
+        RowChains(int keys, int rows) {
+            first = new int[Math.max(keys, INITIAL_CAPACITY)];
+            last = new int[first.length];
+            counts = new int[first.length];
+            next = new int[Math.max(rows, INITIAL_CAPACITY)];
+        }
+
+        void append(int key, int row) {
+            if (key >= counts.length) {
+                int capacity = Math.max(key + 1, counts.length * 2);
+                first = Arrays.copyOf(first, capacity);
+                last = Arrays.copyOf(last, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            if (row >= next.length) {
+                next = Arrays.copyOf(next, Math.max(row + 1, next.length + (next.length >> 1)));
+            }
+            next[row] = NONE;
+            if (counts[key] == 0) {
+                first[key] = row;
+            } else {
+                next[last[key]] = row;
+            }
+            last[key] = row;
+            counts[key]++;
+        }
+    }
+
+    /**
+     * Представление записи в виде {@link Borrowing}. Собственные поля
+     * базового класса не используются; при сериализации заменяется копией.
+     */
+    private final class View extends Borrowing {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+        private int row;
+        /** Поколение истории, для которого найден {@link #row}. */
+        private int seen;
+
+        View(int row) {
+            super(null, null, null, null);
+            this.id = ids[row];
+            this.row = row;
+            this.seen = generation;
+        }
+
+        CompactBorrowingHistory owner() {
+            return CompactBorrowingHistory.this;
+        }
+
+        /**
+         * @return текущая строка записи
+         * @throws IllegalStateException если запись удалена из истории
+         */
+        int row() {
+            if (seen != generation) {
+                int found = rowById(id);
+                if (found == NONE) {
+                    throw new IllegalStateException("Выдача удалена из истории");
+                }
+                row = found;
+                seen = generation;
+            }
+            return row;
+        }
+
+        @Override
+        public String getIsbn() {
+            return isbns.get(bookColumn[row()]);
+        }
+
+        @Override
+        public String getReaderId() {
+            return readerIds.get(readerColumn[row()]);
+        }
+
+        @Override
+        public LocalDate getBorrowDate() {
+            return toDate(borrowDays[row()]);
+        }
+
+        @Override
+        public LocalDate getDueDate() {
+            return toDate(dueDays[row()]);
+        }
+
+        @Override
+        public LocalDate getReturnDate() {
+            return toDate(returnDays[row()]);
+        }
+
+        @Override
+        public void setDueDate(LocalDate dueDate) {
+            updateDueDate(this, dueDate);
+        }
+
+        @Override
+        public void setReturnDate(LocalDate returnDate) {
+            CompactBorrowingHistory.this.setReturnDate(row(), returnDate);
+        }
+
+        @Override
+        public boolean isReturned() {
+            return returnDays[row()] != NO_DATE;
+        }
+
+        private Object writeReplace() {
+            return detach(row());
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасный вариант {@link LibraryManager} для нескольких пунктов выдачи,
+ * работающих с одной библиотекой.
+ *
+ * <p>Схема блокировок:
+ * <ul>
+ *     <li>каталог (книги, читатели и их индексы) защищён {@link ReentrantReadWriteLock}:
+ *     выдача, возврат и чтение идут параллельно под блокировкой чтения,
+ *     изменения каталога берут блокировку записи;</li>
+ *     <li>доступность книги меняется атомарно через
+ *     {@link Book#compareAndSetAvailable(boolean, boolean)}, поэтому одну книгу
+ *     нельзя выдать дважды;</li>
+ *     <li>выдача и возврат одной книги берут блокировку её полосы
+ *     (ISBN распределяются по {@value #ISBN_STRIPES} полосам), поэтому
+ *     доступность и активная выдача книги меняются вместе, а книги из разных
+ *     полос выдаются и возвращаются параллельно;</li>
+ *     <li>история выдач защищена {@link ReentrantReadWriteLock}: поиск активной
+ *     выдачи и все запросы истории идут под блокировкой чтения и не мешают
+ *     друг другу, а запись держится только на время обновления индексов,
+ *     общих для всех книг (по читателю, по сроку, счётчики); раз
+ *     в {@code ARCHIVE_CHECK_INTERVAL} выдач под ней же пишется сегмент
+ *     архива, если архивирование включено. Ленивые кеши, которые запросы
+ *     заполняют при первом обращении (аналитика, счётчики и полное чтение
+ *     архива), строятся под собственными мониторами.</li>
+ * </ul>
+ * Блокировки всегда берутся в порядке «каталог → полоса ISBN → история».
+ *
+ * <p>Методы, возвращающие коллекции, возвращают копии, чтобы их можно было
+ * безопасно обходить во время работы других потоков.
+ */
+public class ConcurrentLibraryManager extends LibraryManager {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Число полос блокировок по ISBN, степень двойки. */
+    private static final int ISBN_STRIPES = 64;
+
+    private final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] isbnLocks = new ReentrantLock[ISBN_STRIPES];
+    private final ReentrantReadWriteLock historyLock = new ReentrantReadWriteLock();
+
+    public ConcurrentLibraryManager() {
+        for (int i = 0; i < ISBN_STRIPES; i++) {
+            isbnLocks[i] = new ReentrantLock();
+        }
+    }
+
+    // ===========================================================================
+    // Выдача и возврат
+    // ===========================================================================
+
+    @Override
+    public boolean borrowBook(String isbn, String readerId, int days) {
+        return withLock(catalogLock.readLock(), () -> withLock(isbnLock(isbn), () -> {
+            Book book = super.getBookByIsbn(isbn);
+            if (book == null || !book.compareAndSetAvailable(true, false)) {
+                return false;
+            }
+            LocalDate today = LocalDate.now();
+            Borrowing borrowing = new Borrowing(isbn, readerId, today, today.plusDays(days));
+            withLock(historyLock.writeLock(), () -> {
+                getBorrowingHistory().add(borrowing);
+                archiveIfDue();
+                return null;
+            });
+            return true;
+        }));
+    }
+
+    @Override
+    public boolean returnBook(String isbn, String readerId) {
+        return withLock(catalogLock.readLock(), () -> withLock(isbnLock(isbn), () -> {
+            Borrowing borrowing = withLock(historyLock.readLock(),
+                    () -> getBorrowingHistory().findActive(isbn, readerId));
+            if (borrowing == null) {
+                return false;
+            }
+            boolean returned = withLock(historyLock.writeLock(), () -> {
+                // Корзины возвращаются без блокировки полосы, поэтому выдачу
+                // могли вернуть между поиском и этой проверкой
+                if (borrowing.isReturned()) {
+                    return false;
+                }
+                getBorrowingHistory().markReturned(borrowing, LocalDate.now());
+                return true;
+            });
+            if (returned) {
+                Book book = super.getBookByIsbn(isbn);
+                if (book != null) {
+                    book.setAvailable(true);
+                }
+            }
+            return returned;
+        }));
+    }
+
+    /**
+     * Вся корзина проверяется и применяется за один захват блокировок
+     * каталога и истории.
+     */
+    @Override
+    public BasketResult borrowBooks(String readerId, List<String> isbns, int days) {
+        return updateHistory(() -> super.borrowBooks(readerId, isbns, days));
+    }
+
+    @Override
+    public BasketResult returnBooks(String readerId, List<String> isbns) {
+        return updateHistory(() -> super.returnBooks(readerId, isbns));
+    }
+
+    @Override
+    public boolean extendBorrowingPeriod(String isbn, String readerId, int extraDays) {
+        return updateHistory(() -> super.extendBorrowingPeriod(isbn, readerId, extraDays));
+    }
+
+    // ===========================================================================
+    // Изменение каталога
+    // ===========================================================================
+
+    @Override
+    public boolean addBook(Book book) {
+        return withLock(catalogLock.writeLock(), () -> super.addBook(book));
+    }
+
+    @Override
+    public boolean removeBook(String isbn) {
+        return withLock(catalogLock.writeLock(), () -> super.removeBook(isbn));
+    }
+
+    @Override
+    public boolean addReader(Reader reader) {
+        return withLock(catalogLock.writeLock(), () -> super.addReader(reader));
+    }
+
+    @Override
+    public boolean removeReader(String readerId) {
+        return withLock(catalogLock.writeLock(), () -> super.removeReader(readerId));
+    }
+
+    @Override
+    public void rebuildIndexes() {
+        withLock(catalogLock.writeLock(), () -> withLock(historyLock.writeLock(), () -> {
+            super.rebuildIndexes();
+            return null;
+        }));
+    }
+
+    @Override
+    public void enableArchiving(Path directory, Period horizon) throws IOException {
+        historyLock.writeLock().lock();
+        try {
+            super.enableArchiving(directory, horizon);
+        } finally {
+            historyLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int archiveOldBorrowings(LocalDate today) {
+        return withLock(historyLock.writeLock(), () -> super.archiveOldBorrowings(today));
+    }
+
+    @Override
+    public void setCompactHistory(boolean compact) {
+        withLock(catalogLock.writeLock(), () -> withLock(historyLock.writeLock(), () -> {
+            super.setCompactHistory(compact);
+            return null;
+        }));
+    }
+
+    /**
+     * Блокировка записи берётся только на вставку: разбор CSV при импорте
+     * идёт до неё и не мешает выдаче книг.
+     */
+    @Override
+    public List<Book> addBooks(Collection<Book> books) {
+        return withLock(catalogLock.writeLock(), () -> super.addBooks(books));
+    }
+
+    // ===========================================================================
+    // Чтение каталога
+    // ===========================================================================
+
+    @Override
+    public Book getBookByIsbn(String isbn) {
+        return withLock(catalogLock.readLock(), () -> super.getBookByIsbn(isbn));
+    }
+
+    @Override
+    public Reader getReaderById(String readerId) {
+        return withLock(catalogLock.readLock(), () -> super.getReaderById(readerId));
+    }
+
+    @Override
+    public Collection<Book> getAllBooks() {
+        return withLock(catalogLock.readLock(), () -> new ArrayList<>(super.getAllBooks()));
+    }
+
+    @Override
+    public Collection<Reader> getAllReaders() {
+        return withLock(catalogLock.readLock(), () -> new ArrayList<>(super.getAllReaders()));
+    }
+
+    @Override
+    public List<Book> getBooksByGenre(Book.Genre genre) {
+        return withLock(catalogLock.readLock(), () -> super.getBooksByGenre(genre));
+    }
+
+    @Override
+    public List<Book> getBooksByAuthor(String author) {
+        return withLock(catalogLock.readLock(), () -> new ArrayList<>(super.getBooksByAuthor(author)));
+    }
+
+    @Override
+    public List<Book> searchBooksByTitle(String titlePart) {
+        return withLock(catalogLock.readLock(), () -> super.searchBooksByTitle(titlePart));
+    }
+
+    @Override
+    public List<String> completeAuthors(String prefix, int limit) {
+        return withLock(catalogLock.readLock(), () -> super.completeAuthors(prefix, limit));
+    }
+
+    @Override
+    public List<String> completeTitles(String prefix, int limit) {
+        return withLock(catalogLock.readLock(), () -> super.completeTitles(prefix, limit));
+    }
+
+    @Override
+    public List<Book> getBooksByAuthorPrefix(String prefix) {
+        return withLock(catalogLock.readLock(), () -> super.getBooksByAuthorPrefix(prefix));
+    }
+
+    @Override
+    public Page<Book> searchBooks(String query, int page, int pageSize) {
+        return withLock(catalogLock.readLock(), () -> super.searchBooks(query, page, pageSize));
+    }
+
+    @Override
+    public List<Book> getAvailableBooks() {
+        return withLock(catalogLock.readLock(), super::getAvailableBooks);
+    }
+
+    @Override
+    public Map<Book.Genre, Integer> getGenreStatistics() {
+        return withLock(catalogLock.readLock(), super::getGenreStatistics);
+    }
+
+    /**
+     * Обход идёт под блокировкой чтения целиком: ленивый итератор базового класса
+     * нельзя отдавать наружу, пока каталог могут менять другие потоки.
+     */
+    @Override
+    public Iterator<Book> findBooks(BookQuery query) {
+        return withLock(catalogLock.readLock(), () -> {
+            List<Book> found = new ArrayList<>();
+            super.findBooks(query).forEachRemaining(found::add);
+            return found.iterator();
+        });
+    }
+
+    @Override
+    public Page<Book> findBooks(BookQuery query, int page, int pageSize) {
+        return withLock(catalogLock.readLock(), () -> super.findBooks(query, page, pageSize));
+    }
+
+    @Override
+    public Page<Book> listBooks(BookOrder order, int page, int pageSize) {
+        return withLock(catalogLock.readLock(), () -> super.listBooks(order, page, pageSize));
+    }
+
+    @Override
+    public int countBooks(BookQuery query) {
+        return withLock(catalogLock.readLock(), () -> super.countBooks(query));
+    }
+
+    @Override
+    public List<Book> getAvailableBooksByGenre(Book.Genre genre) {
+        return withLock(catalogLock.readLock(), () -> super.getAvailableBooksByGenre(genre));
+    }
+
+    @Override
+    public long exportBooksToCsv(WritableByteChannel channel, String delimiter, Predicate<Book> filter)
+            throws IOException {
+        return withIoLock(catalogLock.readLock(), () -> super.exportBooksToCsv(channel, delimiter, filter));
+    }
+
+    @Override
+    public long exportBooksByGenreToCsv(WritableByteChannel channel, String delimiter, Book.Genre genre)
+            throws IOException {
+        return withIoLock(catalogLock.readLock(), () -> super.exportBooksByGenreToCsv(channel, delimiter, genre));
+    }
+
+    @Override
+    public long exportBooksByAuthorToCsv(WritableByteChannel channel, String delimiter, String author)
+            throws IOException {
+        return withIoLock(catalogLock.readLock(), () -> super.exportBooksByAuthorToCsv(channel, delimiter, author));
+    }
+
+    // ===========================================================================
+    // Чтение истории выдач
+    // ===========================================================================
+
+    @Override
+    public List<Borrowing> getBorrowings() {
+        return readHistory(super::getBorrowings);
+    }
+
+    /**
+     * Возвращает копию истории выдач в памяти, без архива, как и базовый класс.
+     */
+    @Override
+    public List<Borrowing> getAllBorrowings() {
+        return readHistory(() -> new ArrayList<>(super.getAllBorrowings()));
+    }
+
+    @Override
+    public List<Borrowing> getOverdueBorrowings(LocalDate date) {
+        return readHistory(() -> super.getOverdueBorrowings(date));
+    }
+
+    @Override
+    public List<Borrowing> getBorrowingsByReader(String readerId) {
+        return readHistory(() -> super.getBorrowingsByReader(readerId));
+    }
+
+    @Override
+    public List<Borrowing> getBorrowingsByBook(String isbn) {
+        return readHistory(() -> super.getBorrowingsByBook(isbn));
+    }
+
+    @Override
+    public List<Borrowing> getBorrowingsBetween(LocalDate from, LocalDate to) {
+        return readHistory(() -> super.getBorrowingsBetween(from, to));
+    }
+
+    @Override
+    public int getArchivedBorrowingsCount() {
+        return withLock(historyLock.readLock(), super::getArchivedBorrowingsCount);
+    }
+
+    @Override
+    public List<Entry<Book, Integer>> getTopPopularBooks(int topN) {
+        return readHistory(() -> super.getTopPopularBooks(topN));
+    }
+
+    @Override
+    public List<Entry<Reader, Integer>> getTopActiveReaders(int topN) {
+        return readHistory(() -> super.getTopActiveReaders(topN));
+    }
+
+    @Override
+    public List<Reader> findReadersWithOverdueBooks() {
+        return readHistory(super::findReadersWithOverdueBooks);
+    }
+
+    @Override
+    public SortedMap<YearMonth, Map<Book.Genre, Long>> loansPerGenreByMonth(LocalDate from, LocalDate to) {
+        return readHistory(() -> super.loansPerGenreByMonth(from, to));
+    }
+
+    @Override
+    public Map<Reader.ReaderCategory, Double> averageLoanDurationByCategory(LocalDate from, LocalDate to) {
+        return readHistory(() -> super.averageLoanDurationByCategory(from, to));
+    }
+
+    @Override
+    public SortedMap<LocalDate, Double> overdueRateByWeek(LocalDate from, LocalDate to, LocalDate asOf) {
+        return readHistory(() -> super.overdueRateByWeek(from, to, asOf));
+    }
+
+    @Override
+    public void printStatistics() {
+        readHistory(() -> {
+            super.printStatistics();
+            return null;
+        });
+    }
+
+    @Override
+    public void saveLibraryState(String filePath) throws IOException {
+        catalogLock.readLock().lock();
+        historyLock.writeLock().lock();
+        try {
+            super.saveLibraryState(filePath);
+        } finally {
+            historyLock.writeLock().unlock();
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    // ===========================================================================
+    // Вспомогательные методы
+    // ===========================================================================
+
+    /**
+     * Выполняет запрос под блокировками чтения каталога и истории.
+     */
+    private <T> T readHistory(Supplier<T> action) {
+        return withLock(catalogLock.readLock(), () -> withLock(historyLock.readLock(), action));
+    }
+
+    /**
+     * Выполняет изменение истории под блокировкой чтения каталога
+     * и блокировкой записи истории.
+     */
+    private <T> T updateHistory(Supplier<T> action) {
+        return withLock(catalogLock.readLock(), () -> withLock(historyLock.writeLock(), action));
+    }
+
+    /**
+     * Возвращает блокировку полосы, к которой относится ISBN.
+     */
+    private Lock isbnLock(String isbn) {
+        int hash = isbn.hashCode();
+        return isbnLocks[(hash ^ (hash >>> 16)) & (ISBN_STRIPES - 1)];
+    }
+
+    private static <T> T withLock(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T> T withIoLock(Lock lock, IoAction<T> action) throws IOException {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Действие, которое может бросить {@link IOException}.
+     */
+    @FunctionalInterface
+    private interface IoAction<T> {
+        T get() throws IOException;
+    }
+}
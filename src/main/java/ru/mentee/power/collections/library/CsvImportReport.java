@@ -0,0 +1,71 @@
+package ru.mentee.power.collections.library;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Итог импорта книг из CSV: сколько строк прочитано, сколько книг добавлено
+ * и какие строки отклонены с указанием причины.
+ */
+public final class CsvImportReport {
+
+    /**
+     * Отклонённая строка файла.
+     *
+     * @param lineNumber номер строки в файле, начиная с 1 (заголовок — строка 1)
+     * @param line       текст строки
+     * @param reason     причина отказа
+     */
+    public record RejectedRow(long lineNumber, String line, String reason) {
+    }
+
+    private final long totalRows;
+    private final int importedCount;
+    private final int duplicateCount;
+    private final List<RejectedRow> rejectedRows;
+
+    CsvImportReport(long totalRows, int importedCount, int duplicateCount, List<RejectedRow> rejectedRows) {
+        this.totalRows = totalRows;
+        this.importedCount = importedCount;
+        this.duplicateCount = duplicateCount;
+        this.rejectedRows = Collections.unmodifiableList(rejectedRows);
+    }
+
+    /**
+     * @return количество строк данных в файле (без заголовка и пустых строк)
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return количество добавленных книг
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return количество строк, отклонённых из-за уже существующего ISBN
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return отклонённые строки в порядке следования в файле
+     */
+    public List<RejectedRow> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvImportReport{" +
+                "totalRows=" + totalRows +
+                ", importedCount=" + importedCount +
+                ", duplicateCount=" + duplicateCount +
+                ", rejectedRows=" + rejectedRows.size() +
+                '}';
+    }
+}
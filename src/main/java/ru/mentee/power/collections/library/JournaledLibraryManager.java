@@ -0,0 +1,698 @@
+package ru.mentee.power.collections.library;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link LibraryManager}, который сохраняет каждое изменение в журнал
+ * упреждающей записи ({@link LibraryJournal}) вместо полной перезаписи
+ * состояния.
+ *
+ * <p>Каталог хранения содержит:
+ * <ul>
+ *     <li>{@code journal.log} — изменения после последнего снимка;</li>
+ *     <li>{@code library-<номер>.snapshot} — снимок {@link LibrarySnapshot},
+ *     в котором отражены все записи журнала до указанного номера включительно.</li>
+ * </ul>
+ * При открытии загружается самый свежий снимок и поверх него воспроизводится
+ * хвост журнала. {@link #checkpoint()} пишет новый снимок и убирает из журнала
+ * вошедшие в него записи, не останавливая изменения на время записи,
+ * а {@link #startBackgroundCheckpoints(long, Duration)} делает это в фоне,
+ * когда журнал разрастается.
+ *
+ * <p>Журналируются {@code addBook}, {@code addBooks}, {@code removeBook}, {@code addReader},
+ * {@code removeReader}, {@code borrowBook}, {@code returnBook}, пакетные
+ * {@code borrowBooks} и {@code returnBooks} и {@code extendBorrowingPeriod}. Изменения применяются под монитором
+ * менеджера, а ожидание {@code fsync} идёт уже без него, поэтому изменения
+ * из разных потоков подтверждаются общим сбросом журнала на диск.
+ * Метод возвращает управление только после того, как запись стала
+ * устойчивой. Если запись журнала на диск не удалась, метод бросает
+ * {@link UncheckedIOException}, а следующие изменения отклоняются до повторного
+ * открытия каталога: иначе в памяти и в журнале оказались бы разные истории.
+ * Прямые изменения через {@code set*} и {@link #getAllBorrowings()}
+ * в журнал не попадают — после них нужно вызвать {@link #checkpoint()}.
+ *
+ * <p>Чтение тоже идёт под монитором менеджера, поэтому запросы из других
+ * потоков не видят каталог и историю посреди изменения. В отличие от
+ * {@link ConcurrentLibraryManager}, читатели здесь не идут параллельно
+ * с изменениями и друг с другом. Методы, возвращающие коллекции каталога,
+ * возвращают копии; {@link #getAllBorrowings()} возвращает саму историю,
+ * и обходить её из разных потоков можно только под монитором менеджера.
+ */
+public class JournaledLibraryManager extends LibraryManager implements Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String JOURNAL_FILE = "journal.log";
+    private static final String SNAPSHOT_PREFIX = "library-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    // Типы записей журнала
+    static final byte ADD_BOOK = 1;
+    static final byte REMOVE_BOOK = 2;
+    static final byte ADD_READER = 3;
+    static final byte REMOVE_READER = 4;
+    static final byte BORROW = 5;
+    static final byte RETURN = 6;
+    static final byte EXTEND = 7;
+
+    private static final Book.Genre[] GENRES = Book.Genre.values();
+    private static final Reader.ReaderCategory[] CATEGORIES = Reader.ReaderCategory.values();
+
+    private final transient Path directory;
+    private final transient LibraryJournal journal;
+    /** Не даёт двум снимкам писаться одновременно; изменения его не берут. */
+    private final transient Object checkpointLock = new Object();
+    private transient ScheduledExecutorService checkpointer;
+
+    private JournaledLibraryManager(Path directory, LibraryJournal journal) {
+        this.directory = directory;
+        this.journal = journal;
+    }
+
+    /**
+     * Открывает библиотеку в каталоге хранения: загружает последний снимок
+     * и воспроизводит журнал. Если каталог пуст, создаётся пустая библиотека.
+     *
+     * @param directory каталог хранения
+     * @return восстановленная библиотека
+     * @throws IOException при ошибке чтения снимка или журнала
+     */
+    public static JournaledLibraryManager open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        LibraryJournal journal = new LibraryJournal(directory.resolve(JOURNAL_FILE));
+        try {
+            JournaledLibraryManager manager = new JournaledLibraryManager(directory, journal);
+            long snapshotSequence = latestSnapshotSequence(directory);
+            if (snapshotSequence >= 0) {
+                LibrarySnapshot.read(snapshotFile(directory, snapshotSequence), manager);
+            }
+            journal.continueAfter(snapshotSequence);
+            journal.replay(snapshotSequence, manager::apply);
+            return manager;
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    // ===========================================================================
+    // Журналируемые изменения
+    // ===========================================================================
+
+    @Override
+    public boolean addBook(Book book) {
+        return commit(() -> super.addBook(book), () -> appendAddBook(book));
+    }
+
+    /**
+     * Каждая добавленная книга пишется в журнал отдельной записью, но все
+     * записи пачки сбрасываются на диск одним {@code fsync}.
+     */
+    @Override
+    public List<Book> addBooks(Collection<Book> books) {
+        List<Book> skipped;
+        long sequence;
+        synchronized (this) {
+            ensureWritable();
+            skipped = super.addBooks(books);
+            sequence = journal.lastSequence();
+            for (Book book : books) {
+                if (super.getBookByIsbn(book.getIsbn()) == book) {
+                    sequence = appendAddBook(book);
+                }
+            }
+        }
+        awaitDurable(sequence);
+        return skipped;
+    }
+
+    @Override
+    public boolean removeBook(String isbn) {
+        return commit(() -> super.removeBook(isbn), () -> journal.append(REMOVE_BOOK,
+                new LibraryJournal.PayloadWriter().writeString(isbn).toByteArray()));
+    }
+
+    @Override
+    public boolean addReader(Reader reader) {
+        return commit(() -> super.addReader(reader), () -> journal.append(ADD_READER,
+                new LibraryJournal.PayloadWriter()
+                        .writeString(reader.getId())
+                        .writeString(reader.getName())
+                        .writeString(reader.getEmail())
+                        .writeInt(reader.getCategory() == null ? -1 : reader.getCategory().ordinal())
+                        .toByteArray()));
+    }
+
+    @Override
+    public boolean removeReader(String readerId) {
+        return commit(() -> super.removeReader(readerId), () -> journal.append(REMOVE_READER,
+                new LibraryJournal.PayloadWriter().writeString(readerId).toByteArray()));
+    }
+
+    @Override
+    public boolean borrowBook(String isbn, String readerId, int days) {
+        // Даты пишутся в журнал явно, чтобы воспроизведение не зависело от дня восстановления
+        return commit(() -> super.borrowBook(isbn, readerId, days), () -> appendBorrow(isbn, readerId));
+    }
+
+    @Override
+    public boolean returnBook(String isbn, String readerId) {
+        // Запись готовится до изменения: после возврата активной выдачи уже нет
+        Borrowing[] active = new Borrowing[1];
+        return commit(() -> {
+            active[0] = getBorrowingHistory().findActive(isbn, readerId);
+            return super.returnBook(isbn, readerId);
+        }, () -> appendReturn(active[0]));
+    }
+
+    /**
+     * Каждая позиция корзины пишется в журнал отдельной записью, но все
+     * записи сбрасываются на диск одним {@code fsync}.
+     */
+    @Override
+    public BasketResult borrowBooks(String readerId, List<String> isbns, int days) {
+        BasketResult result;
+        long sequence;
+        synchronized (this) {
+            ensureWritable();
+            result = super.borrowBooks(readerId, isbns, days);
+            if (!result.applied()) {
+                return result;
+            }
+            sequence = journal.lastSequence();
+            for (String isbn : isbns) {
+                sequence = appendBorrow(isbn, readerId);
+            }
+        }
+        awaitDurable(sequence);
+        return result;
+    }
+
+    @Override
+    public BasketResult returnBooks(String readerId, List<String> isbns) {
+        BasketResult result;
+        long sequence;
+        synchronized (this) {
+            ensureWritable();
+            List<Borrowing> active = new ArrayList<>(isbns.size());
+            for (String isbn : isbns) {
+                active.add(getBorrowingHistory().findActive(isbn, readerId));
+            }
+            result = super.returnBooks(readerId, isbns);
+            if (!result.applied()) {
+                return result;
+            }
+            sequence = journal.lastSequence();
+            for (Borrowing borrowing : active) {
+                sequence = appendReturn(borrowing);
+            }
+        }
+        awaitDurable(sequence);
+        return result;
+    }
+
+    @Override
+    public boolean extendBorrowingPeriod(String isbn, String readerId, int extraDays) {
+        return commit(() -> super.extendBorrowingPeriod(isbn, readerId, extraDays), () -> {
+            Borrowing borrowing = getBorrowingHistory().findActive(isbn, readerId);
+            return journal.append(EXTEND, new LibraryJournal.PayloadWriter()
+                    .writeString(isbn)
+                    .writeString(readerId)
+                    .writeInt(LibrarySnapshot.toDay(borrowing.getDueDate()))
+                    .toByteArray());
+        });
+    }
+
+    private long appendBorrow(String isbn, String readerId) {
+        Borrowing borrowing = getBorrowingHistory().findActive(isbn, readerId);
+        return journal.append(BORROW, new LibraryJournal.PayloadWriter()
+                .writeString(isbn)
+                .writeString(readerId)
+                .writeInt(LibrarySnapshot.toDay(borrowing.getBorrowDate()))
+                .writeInt(LibrarySnapshot.toDay(borrowing.getDueDate()))
+                .toByteArray());
+    }
+
+    private long appendReturn(Borrowing borrowing) {
+        return journal.append(RETURN, new LibraryJournal.PayloadWriter()
+                .writeString(borrowing.getIsbn())
+                .writeString(borrowing.getReaderId())
+                .writeInt(LibrarySnapshot.toDay(borrowing.getReturnDate()))
+                .toByteArray());
+    }
+
+    private long appendAddBook(Book book) {
+        LibraryJournal.PayloadWriter payload = new LibraryJournal.PayloadWriter()
+                .writeString(book.getIsbn())
+                .writeString(book.getTitle())
+                .writeInt(book.getPublicationYear())
+                .writeInt(book.getGenre() == null ? -1 : book.getGenre().ordinal())
+                .writeInt(book.getPageCount())
+                .writeInt(book.isAvailable() ? 1 : 0)
+                .writeInt(book.getAuthors().size());
+        for (String author : book.getAuthors()) {
+            payload.writeString(author);
+        }
+        return journal.append(ADD_BOOK, payload.toByteArray());
+    }
+
+    /**
+     * Применяет изменение и добавляет запись в журнал под монитором менеджера,
+     * затем ждёт сброса журнала на диск уже без монитора.
+     */
+    private boolean commit(BooleanSupplier change, Supplier<Long> record) {
+        long sequence;
+        synchronized (this) {
+            ensureWritable();
+            if (!change.getAsBoolean()) {
+                return false;
+            }
+            sequence = record.get();
+        }
+        awaitDurable(sequence);
+        return true;
+    }
+
+    private void awaitDurable(long sequence) {
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать журнал библиотеки", e);
+        }
+    }
+
+    private void ensureWritable() {
+        try {
+            journal.ensureWritable();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Библиотека не принимает изменения после ошибки журнала", e);
+        }
+    }
+
+    // ===========================================================================
+    // Чтение
+    // ===========================================================================
+
+    @Override
+    public synchronized Book getBookByIsbn(String isbn) {
+        return super.getBookByIsbn(isbn);
+    }
+
+    @Override
+    public synchronized Reader getReaderById(String readerId) {
+        return super.getReaderById(readerId);
+    }
+
+    @Override
+    public synchronized Collection<Book> getAllBooks() {
+        return new ArrayList<>(super.getAllBooks());
+    }
+
+    @Override
+    public synchronized Collection<Reader> getAllReaders() {
+        return new ArrayList<>(super.getAllReaders());
+    }
+
+    @Override
+    public synchronized List<Book> getBooksByGenre(Book.Genre genre) {
+        return super.getBooksByGenre(genre);
+    }
+
+    @Override
+    public synchronized List<Book> getBooksByAuthor(String author) {
+        return new ArrayList<>(super.getBooksByAuthor(author));
+    }
+
+    @Override
+    public synchronized List<Book> searchBooksByTitle(String titlePart) {
+        return super.searchBooksByTitle(titlePart);
+    }
+
+    @Override
+    public synchronized List<String> completeAuthors(String prefix, int limit) {
+        return super.completeAuthors(prefix, limit);
+    }
+
+    @Override
+    public synchronized List<String> completeTitles(String prefix, int limit) {
+        return super.completeTitles(prefix, limit);
+    }
+
+    @Override
+    public synchronized List<Book> getBooksByAuthorPrefix(String prefix) {
+        return super.getBooksByAuthorPrefix(prefix);
+    }
+
+    @Override
+    public synchronized Page<Book> searchBooks(String query, int page, int pageSize) {
+        return super.searchBooks(query, page, pageSize);
+    }
+
+    @Override
+    public synchronized List<Book> getAvailableBooks() {
+        return super.getAvailableBooks();
+    }
+
+    @Override
+    public synchronized List<Book> getAvailableBooksByGenre(Book.Genre genre) {
+        return super.getAvailableBooksByGenre(genre);
+    }
+
+    @Override
+    public synchronized Map<Book.Genre, Integer> getGenreStatistics() {
+        return super.getGenreStatistics();
+    }
+
+    /**
+     * Результаты собираются под монитором целиком: ленивый итератор базового
+     * класса нельзя отдавать наружу, пока каталог могут менять другие потоки.
+     */
+    @Override
+    public synchronized Iterator<Book> findBooks(BookQuery query) {
+        List<Book> found = new ArrayList<>();
+        super.findBooks(query).forEachRemaining(found::add);
+        return found.iterator();
+    }
+
+    @Override
+    public synchronized Page<Book> findBooks(BookQuery query, int page, int pageSize) {
+        return super.findBooks(query, page, pageSize);
+    }
+
+    @Override
+    public synchronized Page<Book> listBooks(BookOrder order, int page, int pageSize) {
+        return super.listBooks(order, page, pageSize);
+    }
+
+    @Override
+    public synchronized int countBooks(BookQuery query) {
+        return super.countBooks(query);
+    }
+
+    @Override
+    public synchronized long exportBooksToCsv(WritableByteChannel channel, String delimiter, Predicate<Book> filter)
+            throws IOException {
+        return super.exportBooksToCsv(channel, delimiter, filter);
+    }
+
+    @Override
+    public synchronized long exportBooksByGenreToCsv(WritableByteChannel channel, String delimiter, Book.Genre genre)
+            throws IOException {
+        return super.exportBooksByGenreToCsv(channel, delimiter, genre);
+    }
+
+    @Override
+    public synchronized long exportBooksByAuthorToCsv(WritableByteChannel channel, String delimiter, String author)
+            throws IOException {
+        return super.exportBooksByAuthorToCsv(channel, delimiter, author);
+    }
+
+    @Override
+    public synchronized void saveLibraryState(String filePath) throws IOException {
+        super.saveLibraryState(filePath);
+    }
+
+    @Override
+    public synchronized List<Borrowing> getBorrowings() {
+        return super.getBorrowings();
+    }
+
+    @Override
+    public synchronized List<Borrowing> getOverdueBorrowings(LocalDate date) {
+        return super.getOverdueBorrowings(date);
+    }
+
+    @Override
+    public synchronized List<Borrowing> getBorrowingsByReader(String readerId) {
+        return super.getBorrowingsByReader(readerId);
+    }
+
+    @Override
+    public synchronized List<Borrowing> getBorrowingsByBook(String isbn) {
+        return super.getBorrowingsByBook(isbn);
+    }
+
+    @Override
+    public synchronized List<Borrowing> getBorrowingsBetween(LocalDate from, LocalDate to) {
+        return super.getBorrowingsBetween(from, to);
+    }
+
+    @Override
+    public synchronized int getArchivedBorrowingsCount() {
+        return super.getArchivedBorrowingsCount();
+    }
+
+    @Override
+    public synchronized List<Entry<Book, Integer>> getTopPopularBooks(int topN) {
+        return super.getTopPopularBooks(topN);
+    }
+
+    @Override
+    public synchronized List<Entry<Reader, Integer>> getTopActiveReaders(int topN) {
+        return super.getTopActiveReaders(topN);
+    }
+
+    @Override
+    public synchronized List<Reader> findReadersWithOverdueBooks() {
+        return super.findReadersWithOverdueBooks();
+    }
+
+    @Override
+    public synchronized SortedMap<YearMonth, Map<Book.Genre, Long>> loansPerGenreByMonth(LocalDate from, LocalDate to) {
+        return super.loansPerGenreByMonth(from, to);
+    }
+
+    @Override
+    public synchronized Map<Reader.ReaderCategory, Double> averageLoanDurationByCategory(LocalDate from, LocalDate to) {
+        return super.averageLoanDurationByCategory(from, to);
+    }
+
+    @Override
+    public synchronized SortedMap<LocalDate, Double> overdueRateByWeek(LocalDate from, LocalDate to, LocalDate asOf) {
+        return super.overdueRateByWeek(from, to, asOf);
+    }
+
+    @Override
+    public synchronized void printStatistics() {
+        super.printStatistics();
+    }
+
+    // ===========================================================================
+    // Снимки и сжатие журнала
+    // ===========================================================================
+
+    /**
+     * Сохраняет снимок текущего состояния и убирает из журнала вошедшие в него
+     * записи. Под монитором менеджера состояние только кодируется в память;
+     * запись снимка, сброс на диск и сжатие журнала идут без монитора,
+     * и изменения библиотеки в это время продолжаются. Старые снимки удаляются.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long sequence;
+            byte[] image;
+            synchronized (this) {
+                sequence = journal.lastSequence();
+                image = LibrarySnapshot.toByteArray(this);
+            }
+            // Снимок не должен опережать журнал: вошедшие в него изменения сначала становятся устойчивыми
+            journal.awaitDurable(sequence);
+            LibrarySnapshot.write(image, snapshotFile(directory, sequence));
+            // Если сбой произойдёт до сжатия, записи журнала до sequence будут пропущены при воспроизведении
+            journal.discardUpTo(sequence);
+            deleteSnapshotsBefore(sequence);
+        }
+    }
+
+    private void deleteSnapshotsBefore(long sequence) throws IOException {
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                long other = parseSequence(snapshot);
+                if (other >= 0 && other < sequence) {
+                    Files.deleteIfExists(snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Запускает фоновую проверку размера журнала: если он превысил
+     * {@code maxJournalBytes}, делается {@link #checkpoint()}.
+     *
+     * @param maxJournalBytes размер журнала, после которого он сжимается в снимок
+     * @param period          период проверки
+     */
+    public synchronized void startBackgroundCheckpoints(long maxJournalBytes, Duration period) {
+        if (checkpointer != null) {
+            throw new IllegalStateException("Фоновые снимки уже запущены");
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        checkpointer.scheduleWithFixedDelay(() -> {
+            try {
+                if (journal.size() >= maxJournalBytes) {
+                    checkpoint();
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка при создании снимка библиотеки: " + e.getMessage());
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return размер журнала на диске в байтах
+     * @throws IOException при ошибке ввода-вывода
+     */
+    public long getJournalSize() throws IOException {
+        return journal.size();
+    }
+
+    /**
+     * Останавливает фоновые снимки и закрывает журнал, дождавшись
+     * записи всех изменений.
+     *
+     * @throws IOException при ошибке записи журнала
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = checkpointer;
+            checkpointer = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    // ===========================================================================
+    // Воспроизведение журнала
+    // ===========================================================================
+
+    private void apply(long sequence, byte type, DataInput in) throws IOException {
+        switch (type) {
+            case ADD_BOOK -> {
+                String isbn = LibraryJournal.readString(in);
+                String title = LibraryJournal.readString(in);
+                int year = in.readInt();
+                int genre = in.readInt();
+                Book book = new Book(isbn, title, year, genre < 0 ? null : GENRES[genre]);
+                book.setPageCount(in.readInt());
+                book.setAvailable(in.readInt() != 0);
+                int authors = in.readInt();
+                for (int i = 0; i < authors; i++) {
+                    book.addAuthor(LibraryJournal.readString(in));
+                }
+                super.addBook(book);
+            }
+            case REMOVE_BOOK -> super.removeBook(LibraryJournal.readString(in));
+            case ADD_READER -> {
+                String id = LibraryJournal.readString(in);
+                String name = LibraryJournal.readString(in);
+                String email = LibraryJournal.readString(in);
+                int category = in.readInt();
+                super.addReader(new Reader(id, name, email, category < 0 ? null : CATEGORIES[category]));
+            }
+            case REMOVE_READER -> super.removeReader(LibraryJournal.readString(in));
+            case BORROW -> {
+                String isbn = LibraryJournal.readString(in);
+                String readerId = LibraryJournal.readString(in);
+                LocalDate borrowDate = LocalDate.ofEpochDay(in.readInt());
+                LocalDate dueDate = LocalDate.ofEpochDay(in.readInt());
+                Book book = super.getBookByIsbn(isbn);
+                if (book != null) {
+                    book.setAvailable(false);
+                }
+                getBorrowingHistory().add(new Borrowing(isbn, readerId, borrowDate, dueDate));
+            }
+            case RETURN -> {
+                String isbn = LibraryJournal.readString(in);
+                String readerId = LibraryJournal.readString(in);
+                LocalDate returnDate = LocalDate.ofEpochDay(in.readInt());
+                Borrowing borrowing = getBorrowingHistory().findActive(isbn, readerId);
+                if (borrowing != null) {
+                    getBorrowingHistory().markReturned(borrowing, returnDate);
+                }
+                Book book = super.getBookByIsbn(isbn);
+                if (book != null) {
+                    book.setAvailable(true);
+                }
+            }
+            case EXTEND -> {
+                String isbn = LibraryJournal.readString(in);
+                String readerId = LibraryJournal.readString(in);
+                LocalDate dueDate = LocalDate.ofEpochDay(in.readInt());
+                Borrowing borrowing = getBorrowingHistory().findActive(isbn, readerId);
+                if (borrowing != null) {
+                    getBorrowingHistory().updateDueDate(borrowing, dueDate);
+                }
+            }
+            default -> throw new IOException("Неизвестный тип записи журнала " + type + " (№" + sequence + ")");
+        }
+    }
+
+    // ===========================================================================
+    // Файлы снимков
+    // ===========================================================================
+
+    private static Path snapshotFile(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * @return номер самого свежего снимка или -1, если снимков нет
+     */
+    private static long latestSnapshotSequence(Path directory) throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                latest = Math.max(latest, parseSequence(snapshot));
+            }
+        }
+        return latest;
+    }
+
+    private static long parseSequence(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package ru.mentee.power.collections.library;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи (write-ahead log) изменений библиотеки.
+ *
+ * <p>Каждая запись — кадр вида
+ * <pre>
+ * int  длина полезной нагрузки
+ * long порядковый номер записи
+ * byte тип операции
+ * byte[] полезная нагрузка
+ * int  CRC32 от номера, типа и нагрузки
+ * </pre>
+ * Файл только дописывается. При открытии журнал проверяется целиком:
+ * оборванный или повреждённый хвост (например, после сбоя питания)
+ * отрезается, и запись продолжается с последнего целого кадра.
+ *
+ * <p>Сброс на диск сделан по схеме group commit: {@link #append(byte, byte[])}
+ * только кладёт кадр в общий буфер, а {@link #awaitDurable(long)} ждёт, пока
+ * кадр окажется на диске. Первый ожидающий поток записывает весь накопленный
+ * буфер и вызывает {@code fsync}, остальные ждут его результата, поэтому
+ * параллельные изменения разделяют один {@code fsync} на всех.
+ *
+ * <p>Если запись на диск не удалась, журнал переходит в состояние ошибки:
+ * следующие кадры уже не пишутся, иначе в файле после пропущенной пачки
+ * оказались бы более поздние записи. При воспроизведении номера записей
+ * проверяются на непрерывность.
+ */
+public class LibraryJournal implements Closeable {
+
+    /** Размер заголовка кадра: длина, номер и тип. */
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Byte.BYTES;
+
+    private final Path file;
+    /** Меняется только при сжатии ({@link #discardUpTo(long)}), пока запись на диск остановлена. */
+    private volatile FileChannel channel;
+    private final Object lock = new Object();
+
+    /** Кадры, ещё не записанные на диск. Защищено {@link #lock}. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private long lastAppended;
+    private long lastDurable;
+    private boolean flushing;
+    /** Ошибка записи на диск, после которой журнал не принимает изменения. */
+    private IOException failure;
+
+    /**
+     * Обработчик записей журнала при воспроизведении.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+
+        /**
+         * Применяет одну запись.
+         *
+         * @param sequence номер записи
+         * @param type     тип операции
+         * @param payload  полезная нагрузка записи
+         * @throws IOException если нагрузку не удалось разобрать
+         */
+        void apply(long sequence, byte type, DataInput payload) throws IOException;
+    }
+
+    /**
+     * Открывает журнал, при необходимости создавая файл, и отрезает
+     * повреждённый хвост.
+     *
+     * @param file путь к файлу журнала
+     * @throws IOException при ошибке ввода-вывода
+     */
+    public LibraryJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = scan(0, null);
+        if (validEnd < channel.size()) {
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        this.lastDurable = lastAppended;
+    }
+
+    /**
+     * Добавляет запись в буфер журнала. Запись не считается сохранённой,
+     * пока не завершится {@link #awaitDurable(long)} с её номером.
+     *
+     * @param type    тип операции
+     * @param payload полезная нагрузка
+     * @return номер записи
+     */
+    public long append(byte type, byte[] payload) {
+        synchronized (lock) {
+            long sequence = ++lastAppended;
+            CRC32 crc = new CRC32();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(payload.length)
+                    .putLong(sequence)
+                    .put(type);
+            crc.update(header.array(), Integer.BYTES, Long.BYTES + Byte.BYTES);
+            crc.update(payload);
+            pending.write(header.array(), 0, HEADER_SIZE);
+            pending.write(payload, 0, payload.length);
+            pending.write(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array(), 0, Integer.BYTES);
+            return sequence;
+        }
+    }
+
+    /**
+     * Ждёт, пока запись с указанным номером (и все предыдущие) будут записаны
+     * на диск. Если запись буфера уже идёт в другом потоке, текущий поток
+     * дожидается её и при необходимости записывает следующую пачку сам.
+     *
+     * @param sequence номер записи
+     * @throws IOException при ошибке записи или если поток прерван
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        byte[] batch;
+        long batchEnd;
+        FileChannel target;
+        synchronized (lock) {
+            while (lastDurable < sequence && flushing) {
+                waitForFlush();
+            }
+            if (lastDurable >= sequence) {
+                return;
+            }
+            checkFailure();
+            flushing = true;
+            batch = pending.toByteArray();
+            pending.reset();
+            batchEnd = lastAppended;
+            target = channel;
+        }
+
+        IOException error = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            target.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (lock) {
+            flushing = false;
+            if (error == null) {
+                lastDurable = batchEnd;
+            } else {
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Проверяет, что журнал принимает записи. Вызывается до применения
+     * изменения, чтобы после ошибки записи не менять состояние в памяти.
+     *
+     * @throws IOException если запись журнала на диск уже завершилась ошибкой
+     */
+    public void ensureWritable() throws IOException {
+        synchronized (lock) {
+            checkFailure();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Журнал " + file + " недоступен после ошибки записи", failure);
+        }
+    }
+
+    private void waitForFlush() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи журнала прервано");
+        }
+    }
+
+    /**
+     * Воспроизводит записи журнала с номером больше {@code afterSequence}.
+     * Номера должны идти подряд начиная с {@code afterSequence + 1}.
+     *
+     * @param afterSequence номер последней записи, уже отражённой в снимке
+     * @param handler       обработчик записей
+     * @throws IOException при ошибке чтения или разбора записи либо при пропуске в нумерации
+     */
+    public void replay(long afterSequence, RecordHandler handler) throws IOException {
+        synchronized (lock) {
+            scan(afterSequence, handler);
+        }
+    }
+
+    /**
+     * Убирает из журнала записи с номером не больше {@code sequence}, которые
+     * уже попали в снимок. Более поздние записи переписываются в новый файл,
+     * который атомарно заменяет журнал. Добавлять записи при этом можно,
+     * а их сброс на диск ждёт окончания замены. Нумерация продолжается.
+     *
+     * @param sequence номер последней записи, отражённой в снимке
+     * @throws IOException при ошибке ввода-вывода
+     */
+    public void discardUpTo(long sequence) throws IOException {
+        awaitDurable(sequence);
+        FileChannel source;
+        synchronized (lock) {
+            while (flushing) {
+                waitForFlush();
+            }
+            checkFailure();
+            flushing = true;
+            source = channel;
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel replacement = null;
+        boolean moved = false;
+        IOException error = null;
+        try {
+            try (FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long from = offsetAfter(source, sequence);
+                long end = source.size();
+                while (from < end) {
+                    from += source.transferTo(from, end - from, target);
+                }
+                target.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            LibrarySnapshot.syncDirectory(file.toAbsolutePath().getParent());
+            replacement = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replacement.position(replacement.size());
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (lock) {
+            flushing = false;
+            if (replacement != null) {
+                channel = replacement;
+            } else if (moved) {
+                // Старый канал указывает на заменённый файл: писать в него больше нельзя
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (replacement != null) {
+            source.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return смещение первого кадра с номером больше {@code sequence}
+     * или конец файла, если таких кадров нет
+     */
+    private static long offsetAfter(FileChannel source, long sequence) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long size = source.size();
+        long position = 0;
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (source.read(header, position + header.position()) < 0) {
+                    throw new EOFException("Неожиданный конец журнала");
+                }
+            }
+            if (header.getLong(Integer.BYTES) > sequence) {
+                return position;
+            }
+            position += HEADER_SIZE + header.getInt(0) + Integer.BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * @return номер последней добавленной записи
+     */
+    public long lastSequence() {
+        synchronized (lock) {
+            return lastAppended;
+        }
+    }
+
+    /**
+     * Устанавливает номер, с которого продолжится нумерация. Используется
+     * при открытии пустого журнала после загрузки снимка.
+     *
+     * @param sequence номер последней записи, отражённой в снимке
+     */
+    public void continueAfter(long sequence) {
+        synchronized (lock) {
+            if (sequence > lastAppended) {
+                lastAppended = sequence;
+                lastDurable = sequence;
+            }
+        }
+    }
+
+    /**
+     * @return размер файла журнала в байтах
+     * @throws IOException при ошибке ввода-вывода
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * @return путь к файлу журнала
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitDurable(lastSequence());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Последовательно читает кадры с начала файла, передавая обработчику записи
+     * с номером больше {@code afterSequence}. Останавливается на первом
+     * неполном или повреждённом кадре.
+     *
+     * @return позиция конца последнего целого кадра
+     */
+    private long scan(long afterSequence, RecordHandler handler) throws IOException {
+        ChannelDataInput in = new ChannelDataInput(channel.position(0));
+        long position = 0;
+        long lastSequence = 0;
+        long expected = Math.max(afterSequence, 0) + 1;
+        while (true) {
+            byte[] payload;
+            long sequence;
+            byte type;
+            try {
+                int length = in.readInt();
+                sequence = in.readLong();
+                type = in.readByte();
+                if (length < 0 || position + HEADER_SIZE + length + Integer.BYTES > channel.size()) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                int storedCrc = in.readInt();
+                CRC32 crc = new CRC32();
+                crc.update(ByteBuffer.allocate(Long.BYTES + Byte.BYTES).putLong(sequence).put(type).array());
+                crc.update(payload);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                position += HEADER_SIZE + length + Integer.BYTES;
+            } catch (EOFException e) {
+                break;
+            }
+            lastSequence = sequence;
+            if (handler != null && sequence > afterSequence) {
+                if (sequence != expected) {
+                    throw new IOException("В журнале " + file + " пропущены записи: ожидалась №" + expected
+                            + ", найдена №" + sequence);
+                }
+                expected++;
+                handler.apply(sequence, type, new DataInputStream(new ByteArrayInputStream(payload)));
+            }
+        }
+        if (handler == null) {
+            lastAppended = Math.max(lastAppended, lastSequence);
+        }
+        channel.position(channel.size());
+        return position;
+    }
+
+    /**
+     * Помогает собрать полезную нагрузку записи.
+     */
+    static final class PayloadWriter {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        PayloadWriter writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        PayloadWriter writeString(String value) {
+            if (value == null) {
+                return writeInt(-1);
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(utf8.length);
+            bytes.write(utf8, 0, utf8.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Читает строку, записанную {@link PayloadWriter#writeString(String)}.
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -1,10 +1,20 @@
 package ru.mentee.power.collections.library;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Менеджер библиотеки. Держит в памяти книги, читателей и историю выдач.
@@ -13,20 +23,49 @@ public class LibraryManager implements Serializable {
 
     private static final long serialVersionUID = 100L;
 
+    /** Через сколько новых выдач проверять, не пора ли архивировать старые. */
+    private static final int ARCHIVE_CHECK_INTERVAL = 1_000;
+
     private Map<String, Book> booksByIsbn;
     private Map<String, Reader> readersById;
-    private List<Borrowing> borrowings;
-    private Map<Book.Genre, Set<Book>> booksByGenre;
-    private Map<String, List<Book>> booksByAuthor;
+    private BorrowingStore borrowings;
+    /** Вторичные индексы не сериализуются и строятся заново при загрузке. */
+    private transient Map<Book.Genre, Set<Book>> booksByGenre;
+    private transient Map<String, List<Book>> booksByAuthor;
+    /** Полнотекстовый индекс строится при первом поиске. */
+    private transient volatile TextSearchIndex searchIndex;
+    /** Битовые индексы для запросов {@link BookQuery} строятся при первом запросе. */
+    private transient volatile CatalogBitmapIndex bitmapIndex;
+    /** Отсортированные представления строятся при первом листании каталога. */
+    private transient volatile CatalogSortedViews sortedViews;
+    /** Через него книги каталога сообщают об изменении доступности. */
+    private transient Book.AvailabilityListener availabilityFeed;
+    /** Архив старых выдач не сериализуется: после загрузки его подключают заново. */
+    private transient BorrowingArchive archive;
+    private transient Period archiveHorizon;
+    private transient int borrowingsSinceArchive;
+    /**
+     * Водяной знак архива: выдачи, возвращённые не позже этой даты, уже перенесены
+     * в архив и из истории удалены. Сохраняется в снимке {@link LibrarySnapshot}.
+     */
+    private transient LocalDate archivedThrough;
+    /**
+     * Аналитика выдач строится при первом запросе и затем пополняется
+     * изменениями истории; {@code null} — построить заново при следующем запросе.
+     * Строится под монитором библиотеки, как и индексы каталога: запросы
+     * истории в {@link ConcurrentLibraryManager} идут параллельно.
+     */
+    private transient volatile BorrowingAnalytics analytics;
 
     /**
      * Конструктор. Инициализирует все внутренние структуры и создает пустые множества
      * в booksByGenre для каждого жанра.
      */
     public LibraryManager() {
+        this.availabilityFeed = this::availabilityChanged;
         this.booksByIsbn = new HashMap<>();
         this.readersById = new HashMap<>();
-        this.borrowings = new ArrayList<>();
+        useHistory(new BorrowingHistory());
         this.booksByGenre = new HashMap<>();
         this.booksByAuthor = new HashMap<>();
 
@@ -59,22 +98,222 @@ public class LibraryManager implements Serializable {
         return readersById.get(readerId);
     }
 
-    // Метод для получения всех выдач
+    /**
+     * Возвращает копию всей истории выдач: сначала архивные, затем
+     * из памяти.
+     *
+     * @return список Borrowing
+     */
     public List<Borrowing> getBorrowings() {
-        return new ArrayList<>(borrowings);
+        return fullHistory();
+    }
+
+    private List<Borrowing> fullHistory() {
+        List<Borrowing> result = archive == null ? new ArrayList<>(borrowings.size()) : archive.readAll();
+        result.addAll(borrowings);
+        return result;
     }
 
 
+    /**
+     * Возвращает индексированную историю выдач для наследников,
+     * которым нужен прямой доступ к индексам.
+     *
+     * @return история выдач
+     */
+    protected BorrowingStore getBorrowingHistory() {
+        return borrowings;
+    }
+
     public void setBooksByIsbn(Map<String, Book> booksByIsbn) {
         this.booksByIsbn = booksByIsbn;
+        this.analytics = null;
+        rebuildCatalogIndexes();
     }
 
     public void setReadersById(Map<String, Reader> readersById) {
         this.readersById = readersById;
+        this.analytics = null;
     }
 
     public void setBorrowings(List<Borrowing> borrowings) {
-        this.borrowings = borrowings;
+        useHistory(isCompactHistory()
+                ? new CompactBorrowingHistory(borrowings)
+                : new BorrowingHistory(borrowings));
+    }
+
+    /**
+     * Делает хранилище текущей историей выдач и подключает к нему
+     * пополнение аналитики; прежняя аналитика сбрасывается.
+     */
+    private void useHistory(BorrowingStore store) {
+        this.borrowings = store;
+        this.analytics = null;
+        store.setChangeListener(new AnalyticsFeed());
+    }
+
+    /**
+     * Пополняет построенную аналитику изменениями истории. Изменения, которые
+     * нельзя учесть по одной записи, сбрасывают аналитику.
+     */
+    private class AnalyticsFeed implements BorrowingStore.ChangeListener {
+
+        @Override
+        public void added(Borrowing borrowing) {
+            if (analytics != null) {
+                analytics.add(borrowing, booksByIsbn::get, readersById::get);
+            }
+        }
+
+        @Override
+        public void returned(Borrowing borrowing) {
+            if (analytics != null && !analytics.markReturned(borrowing)) {
+                analytics = null;
+            }
+        }
+
+        @Override
+        public void dueDateChanged(Borrowing borrowing) {
+            if (analytics != null && !analytics.updateDueDate(borrowing)) {
+                analytics = null;
+            }
+        }
+
+        @Override
+        public void changed() {
+            analytics = null;
+        }
+    }
+
+    /**
+     * Переключает хранилище истории выдач, перенося в него все записи.
+     * Компактное хранилище ({@link CompactBorrowingHistory}) держит выдачи
+     * в столбцах примитивов и занимает в несколько раз меньше памяти,
+     * но возвращает при чтении новые объекты-представления, а не ранее
+     * добавленные экземпляры {@link Borrowing}.
+     *
+     * @param compact {@code true} — компактное хранилище, {@code false} — объекты
+     */
+    public void setCompactHistory(boolean compact) {
+        if (compact != isCompactHistory()) {
+            useHistory(compact
+                    ? new CompactBorrowingHistory(borrowings)
+                    : new BorrowingHistory(borrowings));
+        }
+    }
+
+    /**
+     * @return {@code true}, если история выдач хранится в компактном виде
+     */
+    public boolean isCompactHistory() {
+        return borrowings instanceof CompactBorrowingHistory;
+    }
+
+    /**
+     * Включает архивирование истории: возвращённые выдачи, дата возврата
+     * которых старше горизонта, переносятся в сжатые сегменты
+     * {@link BorrowingArchive} в указанном каталоге. В памяти остаются
+     * активные и недавние выдачи, а запросы по истории дочитывают архив.
+     * Старые выдачи архивируются сразу и затем автоматически каждые
+     * {@value #ARCHIVE_CHECK_INTERVAL} выдач. Снимок библиотеки сохраняет
+     * только историю в памяти и водяной знак архива, архив остаётся в своём каталоге.
+     *
+     * <p>Если водяной знак истории отстаёт от архива (снимок сохранён до
+     * последнего архивирования или процесс упал между записью сегмента
+     * и очисткой истории), возвращённые не позже последней даты возврата
+     * в архиве выдачи уже лежат в архиве: они удаляются из истории
+     * без повторной записи.
+     *
+     * @param directory каталог архива
+     * @param horizon   сколько хранить возвращённые выдачи в памяти
+     * @throws IOException при ошибке открытия архива
+     */
+    public void enableArchiving(Path directory, Period horizon) throws IOException {
+        this.archive = BorrowingArchive.open(directory);
+        this.archiveHorizon = horizon;
+        this.analytics = null;
+        LocalDate archived = archive.archivedThrough();
+        if (archived != null && (archivedThrough == null || archivedThrough.isBefore(archived))) {
+            borrowings.removeIf(b -> b.isReturned() && !b.getReturnDate().isAfter(archived));
+            archivedThrough = archived;
+        }
+        archiveOldBorrowings(LocalDate.now());
+    }
+
+    /**
+     * Переносит в архив возвращённые выдачи с датой возврата раньше
+     * {@code today} минус горизонт. Если архивирование не включено,
+     * ничего не делает.
+     *
+     * @param today текущая дата
+     * @return сколько выдач перенесено
+     * @throws UncheckedIOException при ошибке записи сегмента; история в памяти не меняется
+     */
+    public int archiveOldBorrowings(LocalDate today) {
+        borrowingsSinceArchive = 0;
+        if (archive == null) {
+            return 0;
+        }
+        LocalDate cutoff = today.minus(archiveHorizon);
+        Predicate<Borrowing> expired = b -> b.isReturned() && b.getReturnDate().isBefore(cutoff);
+        List<Borrowing> old = borrowings.stream().filter(expired).toList();
+        if (old.isEmpty()) {
+            return 0;
+        }
+        try {
+            archive.append(old);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось заархивировать выдачи", e);
+        }
+        // Перенос в архив не меняет полную историю, поэтому аналитику не сбрасываем
+        BorrowingStore.ChangeListener listener = borrowings.getChangeListener();
+        borrowings.setChangeListener(null);
+        try {
+            borrowings.removeIf(expired);
+        } finally {
+            borrowings.setChangeListener(listener);
+        }
+        archivedThrough = archive.archivedThrough();
+        return old.size();
+    }
+
+    /**
+     * @return количество выдач в архиве; 0, если архивирование не включено
+     */
+    public int getArchivedBorrowingsCount() {
+        return archive == null ? 0 : archive.size();
+    }
+
+    /**
+     * @return дата, по которую возвращённые выдачи перенесены в архив, или {@code null}
+     */
+    LocalDate getArchivedThrough() {
+        return archivedThrough;
+    }
+
+    /**
+     * Восстанавливает водяной знак архива из снимка.
+     *
+     * @param archivedThrough дата или {@code null}
+     */
+    void setArchivedThrough(LocalDate archivedThrough) {
+        this.archivedThrough = archivedThrough;
+    }
+
+    /**
+     * Учитывает новую выдачу и по достижении интервала архивирует старые.
+     * Вызывается после добавления выдачи в историю. Ошибка записи архива
+     * не отменяет состоявшуюся выдачу: она выводится в журнал ошибок,
+     * а архивирование повторяется при следующей проверке.
+     */
+    protected void archiveIfDue() {
+        if (archive != null && ++borrowingsSinceArchive >= ARCHIVE_CHECK_INTERVAL) {
+            try {
+                archiveOldBorrowings(LocalDate.now());
+            } catch (UncheckedIOException e) {
+                System.err.println("Не удалось заархивировать старые выдачи: " + e.getMessage());
+            }
+        }
     }
 
     private void initializeGenreSets() {
@@ -83,12 +322,151 @@ public class LibraryManager implements Serializable {
         }
     }
 
+    /**
+     * Пересобирает все вторичные индексы по основным данным: индексы каталога
+     * по жанру и автору строятся за один проход по книгам (параллельно для
+     * больших каталогов), индексы выдач — по истории выдач.
+     */
     public void rebuildIndexes() {
-        this.booksByIsbn = new HashMap<>();
-        this.booksByGenre = new HashMap<>();
-        this.booksByAuthor = new HashMap<>();
+        rebuildCatalogIndexes();
+        borrowings.rebuildIndexes();
+    }
 
-        initializeGenreSets();
+    private void rebuildCatalogIndexes() {
+        for (Book book : booksByIsbn.values()) {
+            book.setAvailabilityListener(availabilityFeed);
+        }
+        CatalogIndexBuilder indexes = CatalogIndexBuilder.build(booksByIsbn.values());
+        this.booksByGenre = indexes.genreIndex();
+        this.booksByAuthor = indexes.authorIndex();
+        this.searchIndex = null;
+        this.bitmapIndex = null;
+        this.sortedViews = null;
+    }
+
+    /**
+     * Возвращает полнотекстовый индекс, при необходимости строя его.
+     * Построение синхронизировано: поиск может идти из нескольких потоков
+     * под общей блокировкой чтения.
+     */
+    private TextSearchIndex searchIndex() {
+        TextSearchIndex index = searchIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = searchIndex;
+                if (index == null) {
+                    index = TextSearchIndex.build(booksByIsbn.values());
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Возвращает битовые индексы каталога, при необходимости строя их.
+     */
+    private CatalogBitmapIndex bitmapIndex() {
+        CatalogBitmapIndex index = bitmapIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = bitmapIndex;
+                if (index == null) {
+                    index = CatalogBitmapIndex.build(booksByIsbn.values(),
+                            author -> booksByAuthor.getOrDefault(author, Collections.emptyList()),
+                            title -> searchIndex().search(title, true));
+                    bitmapIndex = index;
+                    // Выдача во время построения могла не застать индекс (см. availabilityChanged)
+                    index.refreshAvailability(booksByIsbn.values());
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Возвращает отсортированные представления каталога, при необходимости строя их.
+     */
+    private CatalogSortedViews sortedViews() {
+        CatalogSortedViews views = sortedViews;
+        if (views == null) {
+            synchronized (this) {
+                views = sortedViews;
+                if (views == null) {
+                    views = CatalogSortedViews.build(booksByIsbn.values());
+                    sortedViews = views;
+                    // Выдача во время построения могла не застать представления (см. availabilityChanged)
+                    views.refreshAvailability(booksByIsbn.values());
+                }
+            }
+        }
+        return views;
+    }
+
+    /**
+     * Сообщает индексам, что доступность книги изменилась. Вызывается самой
+     * книгой из {@link Book#setAvailable} и {@link Book#compareAndSetAvailable},
+     * поэтому индексы не устаревают, кто бы ни поменял флаг.
+     *
+     * <p>Индекс перечитывает текущее значение у самой книги, поэтому при
+     * одновременных выдаче и возврате в нём остаётся последнее значение.
+     * Метод не берёт монитор библиотеки и не ждёт построения индексов:
+     * построитель, опубликовав индекс, ещё раз перечитывает доступность всех
+     * книг. Доступность книги и ссылки на индексы — {@code volatile}-поля,
+     * поэтому выдача, не заставшая опубликованный индекс, видна построителю
+     * при перечитывании.
+     *
+     * @param book книга каталога
+     */
+    protected void availabilityChanged(Book book) {
+        CatalogBitmapIndex index = bitmapIndex;
+        if (index != null) {
+            index.refreshAvailability(book);
+        }
+        CatalogSortedViews views = sortedViews;
+        if (views != null) {
+            views.refreshAvailability(book);
+        }
+    }
+
+    /**
+     * Сериализуемая форма совпадает со старыми версиями: история выдач записана
+     * как {@link List}. В файлах старых версий там лежит обычный список выдач,
+     * при чтении он оборачивается в {@link BorrowingHistory}.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("booksByIsbn", Map.class),
+            new ObjectStreamField("readersById", Map.class),
+            new ObjectStreamField("borrowings", List.class)
+    };
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("booksByIsbn", booksByIsbn);
+        fields.put("readersById", readersById);
+        fields.put("borrowings", borrowings);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        availabilityFeed = this::availabilityChanged;
+        booksByIsbn = (Map<String, Book>) fields.get("booksByIsbn", null);
+        readersById = (Map<String, Reader>) fields.get("readersById", null);
+        Object history = fields.get("borrowings", null);
+        if (history instanceof BorrowingStore store) {
+            useHistory(store);
+        } else if (history instanceof List<?> legacy) {
+            useHistory(new BorrowingHistory((List<Borrowing>) legacy));
+        } else if (history == null) {
+            useHistory(new BorrowingHistory());
+        } else {
+            throw new InvalidObjectException("Неизвестный тип истории выдач: " + history.getClass().getName());
+        }
+        // Не вызываем rebuildIndexes(): наследник может его переопределить,
+        // а его поля в этот момент ещё не восстановлены.
+        rebuildCatalogIndexes();
     }
 
     // Инициализация данных (при первом запуске)
@@ -100,7 +478,7 @@ public class LibraryManager implements Serializable {
             readersById = new HashMap<>();
         }
         if (borrowings == null) {
-            borrowings = new ArrayList<>();
+            useHistory(new BorrowingHistory());
         }
     }
 
@@ -111,7 +489,7 @@ public class LibraryManager implements Serializable {
 
 
         // Подсчет доступных книг
-        long availableBooksCount = booksByIsbn.values().stream().filter(Book::isAvailable).count();
+        int availableBooksCount = countBooks(BookQuery.available(true));
         System.out.println("Количество доступных книг: " + availableBooksCount);
 
         // Подсчет книг по жанрам
@@ -137,106 +515,126 @@ public class LibraryManager implements Serializable {
     }
 
 
+    /**
+     * Сохраняет состояние библиотеки в бинарный снимок {@link LibrarySnapshot}.
+     *
+     * @param filePath путь к файлу
+     * @throws IOException при ошибке записи
+     */
     public void saveLibraryState(String filePath) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(this); // Записываем всю библиотеку целиком
-        }
+        LibrarySnapshot.write(this, Paths.get(filePath));
     }
 
+    /**
+     * Загружает состояние библиотеки. Поддерживает бинарные снимки и файлы,
+     * сохранённые старыми версиями через Java-сериализацию.
+     *
+     * @param filePath путь к файлу
+     * @return библиотека или {@code null}, если файла нет или он повреждён
+     */
     public static LibraryManager loadLibraryState(String filePath) {
         File file = new File(filePath);
         if (!file.exists()) {
             return null; // Нет файла - возвращаем null
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+        try {
+            if (LibrarySnapshot.isSnapshot(file.toPath())) {
+                return LibrarySnapshot.read(file.toPath());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
             return (LibraryManager) ois.readObject(); // Загружаем полную библиотеку
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     public void exportBooksToCsv(String filename, String delimiter) {
-        String BOOK_CSV_HEADER = "ISBN" + delimiter +
-                "Title" + delimiter +
-                "Authors" + delimiter +
-                "Genre" + delimiter +
-                "Publication Year" + delimiter +
-                "Page Count" + delimiter +
-                "Available";
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(BOOK_CSV_HEADER + "\r\n");
-            for (Book book : booksByIsbn.values()) { // Итерируемся по всем книгам
-                String line = book.getIsbn() + delimiter +
-                        book.getTitle() + delimiter +
-                        String.join(";", book.getAuthors()) + delimiter + // Объединяем авторов в строку
-                        book.getGenre() + delimiter +
-                        book.getPublicationYear() + delimiter +
-                        book.getPageCount() + delimiter +
-                        book.isAvailable() + "\r\n";
-                writer.write(line);
-            }
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            exportBooksToCsv(channel, delimiter, book -> true);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Не удалось экспортировать книги в " + filename, e);
         }
     }
 
-    public int importBooksFromCsv(String filename, String delimiter, boolean append) {
-        int importedCount = 0;
+    /**
+     * Выгружает книги в CSV (UTF-8, поля в кавычках по RFC 4180 при необходимости)
+     * прямо из каталога, без промежуточной копии. Канал не закрывается, поэтому
+     * в него можно писать файл, GZIP-поток или буфер в памяти.
+     *
+     * @param channel   канал для записи
+     * @param delimiter разделитель полей
+     * @param filter    какие книги выгружать, например {@code Book::isAvailable}
+     * @return количество выгруженных книг
+     * @throws IOException при ошибке записи
+     */
+    public long exportBooksToCsv(WritableByteChannel channel, String delimiter, Predicate<Book> filter)
+            throws IOException {
+        return new BookCsvExporter(delimiter).export(booksByIsbn.values(), filter, channel);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String headerLine = reader.readLine(); // Чтение заголовка
-            // Проверка заголовка на соответствие ожидаемому формату
-            if (headerLine == null || !headerLine.equals("ISBN" + delimiter + "Title" + delimiter + "Authors" + delimiter + "Genre" + delimiter + "Publication Year" + delimiter + "Page Count" + delimiter + "Available")) {
-                throw new IOException("Неверный формат файла");
-            }
+    /**
+     * Выгружает в CSV книги одного жанра, обходя индекс по жанру.
+     *
+     * @param channel   канал для записи
+     * @param delimiter разделитель полей
+     * @param genre     жанр
+     * @return количество выгруженных книг
+     * @throws IOException при ошибке записи
+     */
+    public long exportBooksByGenreToCsv(WritableByteChannel channel, String delimiter, Book.Genre genre)
+            throws IOException {
+        return new BookCsvExporter(delimiter).export(
+                booksByGenre.getOrDefault(genre, Collections.emptySet()), book -> true, channel);
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    String[] parts = line.split(delimiter);
-                    // Проверка на количество полей
-                    if (parts.length != 7) {
-                        System.err.println("Неверное количество полей в строке: " + line);
-                        continue; // Пропустить эту строку
-                    }
-
-                    String isbn = parts[0].trim();
-                    String title = parts[1].trim();
-                    String authors = parts[2].trim(); // Список авторов
-                    Book.Genre genre = Book.Genre.valueOf(parts[3].trim().toUpperCase()); // Приводим к верхнему регистру
-                    int publicationYear = Integer.parseInt(parts[4].trim());
-                    int pageCount = Integer.parseInt(parts[5].trim());
-                    boolean available = Boolean.parseBoolean(parts[6].trim());
-
-                    // Создание нового объекта Book
-                    Book newBook = new Book(isbn, title, publicationYear, genre);
-                    newBook.setPageCount(pageCount);
-                    newBook.setAvailable(available);
-
-                    // Добавление авторов
-                    for (String author : authors.split(";")) {
-                        newBook.addAuthor(author.trim()); // Добавляем каждого автора
-                    }
-
-                    // Добавление книги в библиотеку
-                    if (addBook(newBook)) {
-                        importedCount++; // Увеличиваем счетчик успешно импортированных книг
-                    }
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Ошибка при парсинге строки: " + line + " - Неверный формат данных: " + e.getMessage());
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    System.err.println("Ошибка при доступе к элементам массива в строке: " + line + " - " + e.getMessage());
-                }
-            }
-        } catch (FileNotFoundException e) {
+    /**
+     * Выгружает в CSV книги одного автора, обходя индекс по автору.
+     *
+     * @param channel   канал для записи
+     * @param delimiter разделитель полей
+     * @param author    автор
+     * @return количество выгруженных книг
+     * @throws IOException при ошибке записи
+     */
+    public long exportBooksByAuthorToCsv(WritableByteChannel channel, String delimiter, String author)
+            throws IOException {
+        return new BookCsvExporter(delimiter).export(
+                booksByAuthor.getOrDefault(author, Collections.emptyList()), book -> true, channel);
+    }
+
+    public int importBooksFromCsv(String filename, String delimiter, boolean append) {
+        try {
+            return importBooksFromCsv(Paths.get(filename), delimiter).getImportedCount();
+        } catch (NoSuchFileException e) {
             System.err.println("Файл не найден: " + e.getMessage());
         } catch (IOException e) {
             System.err.println("Ошибка ввода-вывода: " + e.getMessage());
         }
+        return 0;
+    }
 
-        return importedCount; // Возвращаем количество успешно импортированных книг
+    /**
+     * Импортирует книги из CSV-файла в формате {@link #exportBooksToCsv(String, String)}.
+     * Файл разбирается параллельно по диапазонам строк, книги добавляются
+     * одним вызовом {@link #addBooks(Collection)}. Ошибочные строки и книги
+     * с уже существующим ISBN не прерывают импорт и перечисляются в отчёте.
+     *
+     * @param file      CSV-файл
+     * @param delimiter разделитель полей (обычная строка, не регулярное выражение)
+     * @return отчёт об импорте
+     * @throws IOException при ошибке чтения или неверном заголовке файла
+     */
+    public CsvImportReport importBooksFromCsv(Path file, String delimiter) throws IOException {
+        return new BookCsvImporter(delimiter, Runtime.getRuntime().availableProcessors())
+                .importInto(this, file);
     }
 
 
@@ -256,15 +654,62 @@ public class LibraryManager implements Serializable {
         }
 
         booksByIsbn.put(book.getIsbn(), book);
-        booksByGenre.get(book.getGenre()).add(book);
+        indexBook(book);
+        bookChanged(book.getIsbn());
+        return true;
+    }
+
+    /**
+     * Добавляет книги пачкой. Если пачка сравнима по размеру со всем каталогом,
+     * вторичные индексы не обновляются по одной книге, а строятся заново
+     * за один (при большом каталоге — параллельный) проход.
+     *
+     * @param books новые книги
+     * @return книги, которые не добавлены, потому что их ISBN уже есть в каталоге
+     * (в порядке следования в {@code books})
+     */
+    public List<Book> addBooks(Collection<Book> books) {
+        List<Book> added = new ArrayList<>(books.size());
+        List<Book> skipped = new ArrayList<>();
+        for (Book book : books) {
+            if (booksByIsbn.putIfAbsent(book.getIsbn(), book) == null) {
+                added.add(book);
+                bookChanged(book.getIsbn());
+            } else {
+                skipped.add(book);
+            }
+        }
+
+        if (added.size() >= CatalogIndexBuilder.PARALLEL_THRESHOLD && added.size() * 2 >= booksByIsbn.size()) {
+            rebuildCatalogIndexes();
+        } else {
+            for (Book book : added) {
+                indexBook(book);
+            }
+        }
+        return skipped;
+    }
+
+    private void indexBook(Book book) {
+        book.setAvailabilityListener(availabilityFeed);
+        if (book.getGenre() != null) {
+            booksByGenre.get(book.getGenre()).add(book);
+        }
+        if (searchIndex != null) {
+            searchIndex.add(book);
+        }
+        if (bitmapIndex != null) {
+            bitmapIndex.add(book);
+        }
+        if (sortedViews != null) {
+            sortedViews.add(book);
+        }
 
         for (String author : book.getAuthors()) {
             booksByAuthor
                     .computeIfAbsent(author, key -> new ArrayList<>())
                     .add(book);
         }
-
-        return true;
     }
 
     /**
@@ -288,8 +733,22 @@ public class LibraryManager implements Serializable {
         if (removed == null) {
             return false;
         }
+        if (removed.getAvailabilityListener() == availabilityFeed) {
+            removed.setAvailabilityListener(null);
+        }
 
-        booksByGenre.get(removed.getGenre()).remove(removed);
+        if (removed.getGenre() != null) {
+            booksByGenre.get(removed.getGenre()).remove(removed);
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(removed);
+        }
+        if (bitmapIndex != null) {
+            bitmapIndex.remove(removed);
+        }
+        if (sortedViews != null) {
+            sortedViews.remove(removed);
+        }
         for (String author : removed.getAuthors()) {
             List<Book> byAuthor = booksByAuthor.get(author);
             byAuthor.remove(removed);
@@ -297,10 +756,30 @@ public class LibraryManager implements Serializable {
                 booksByAuthor.remove(author);
             }
         }
+        bookChanged(isbn);
 
         return true;
     }
 
+    /**
+     * Сбрасывает аналитику, если в ней есть выдачи книги: жанр книги
+     * в аналитике берётся из каталога на момент построения.
+     */
+    private void bookChanged(String isbn) {
+        if (analytics != null && analytics.hasBook(isbn)) {
+            analytics = null;
+        }
+    }
+
+    /**
+     * Сбрасывает аналитику, если в ней есть выдачи читателя.
+     */
+    private void readerChanged(String readerId) {
+        if (analytics != null && analytics.hasReader(readerId)) {
+            analytics = null;
+        }
+    }
+
     /**
      * Возвращает все книги в библиотеке.
      *
@@ -331,15 +810,63 @@ public class LibraryManager implements Serializable {
     }
 
     /**
-     * Ищет книги по части названия.
+     * Ищет книги по части названия без учёта регистра через n-граммный индекс.
      *
      * @param titlePart часть строки названия
-     * @return список книг, в названии которых встречается подстрока
+     * @return список книг, в названии которых встречается подстрока, по убыванию релевантности
      */
     public List<Book> searchBooksByTitle(String titlePart) {
-        return booksByIsbn.values().stream()
-                .filter(book -> book.getTitle().contains(titlePart))
-                .collect(Collectors.toList());
+        return searchIndex().search(titlePart, true);
+    }
+
+    /**
+     * Подсказывает имена авторов, начинающиеся с префикса (без учёта регистра).
+     * Первыми идут авторы с наибольшим числом книг.
+     *
+     * @param prefix начало имени
+     * @param limit  максимальное количество подсказок
+     * @return имена авторов
+     */
+    public List<String> completeAuthors(String prefix, int limit) {
+        return searchIndex().authors().complete(prefix, limit);
+    }
+
+    /**
+     * Подсказывает названия, начинающиеся с префикса (без учёта регистра).
+     * Первыми идут названия, под которыми в каталоге больше всего книг.
+     *
+     * @param prefix начало названия
+     * @param limit  максимальное количество подсказок
+     * @return названия
+     */
+    public List<String> completeTitles(String prefix, int limit) {
+        return searchIndex().titles().complete(prefix, limit);
+    }
+
+    /**
+     * Возвращает книги авторов, имя которых начинается с префикса
+     * (без учёта регистра), например все книги авторов на «Tol».
+     *
+     * @param prefix начало имени автора
+     * @return книги без повторов, сгруппированные по авторам в алфавитном порядке
+     */
+    public List<Book> getBooksByAuthorPrefix(String prefix) {
+        return new ArrayList<>(searchIndex().authors().books(prefix));
+    }
+
+    /**
+     * Ищет книги по подстроке названия или имени автора без учёта регистра
+     * и возвращает одну страницу результатов, упорядоченных по релевантности:
+     * сначала совпадения с началом названия и слов в нём, затем совпадения
+     * внутри названия, затем по авторам.
+     *
+     * @param query    подстрока для поиска
+     * @param page     номер страницы, начиная с 0
+     * @param pageSize размер страницы
+     * @return страница результатов
+     */
+    public Page<Book> searchBooks(String query, int page, int pageSize) {
+        return Page.of(searchIndex().search(query, false), page, pageSize);
     }
 
     /**
@@ -348,13 +875,49 @@ public class LibraryManager implements Serializable {
      * @return список доступных книг
      */
     public List<Book> getAvailableBooks() {
-        return booksByIsbn.values().stream()
-                .filter(Book::isAvailable)
-                .collect(Collectors.toList());
+        List<Book> available = new ArrayList<>();
+        findBooks(BookQuery.available(true)).forEachRemaining(available::add);
+        return available;
+    }
+
+    /**
+     * Возвращает доступные для выдачи книги жанра: пересечение битовых
+     * множеств жанра и доступности.
+     *
+     * @param genre жанр
+     * @return список доступных книг жанра
+     */
+    public List<Book> getAvailableBooksByGenre(Book.Genre genre) {
+        List<Book> available = new ArrayList<>();
+        findBooks(BookQuery.genre(genre).and(BookQuery.available(true))).forEachRemaining(available::add);
+        return available;
+    }
+
+    /**
+     * Возвращает страницу каталога в заданном порядке. Порядки поддерживаются
+     * отсортированными индексами, которые обновляются при каждом изменении
+     * каталога и выдаче книг, поэтому страница стоит O(log n + размер страницы)
+     * и не требует сортировки.
+     *
+     * @param order    порядок
+     * @param page     номер страницы, начиная с 0
+     * @param pageSize размер страницы
+     * @return страница книг
+     */
+    public Page<Book> listBooks(BookOrder order, int page, int pageSize) {
+        Page.checkBounds(page, pageSize);
+        CatalogSortedViews views = sortedViews();
+        long from = (long) page * pageSize;
+        List<Book> items = from >= views.size()
+                ? Collections.emptyList()
+                : views.slice(order, (int) from, pageSize);
+        return new Page<>(List.copyOf(items), page, pageSize, views.size());
     }
 
     /**
      * Сортирует переданный список книг по названию в алфавитном порядке.
+     * Сортировка устойчивая: книги с одинаковым названием остаются в исходном порядке.
+     * Для постраничного просмотра каталога по названию см. {@link #listBooks}.
      *
      * @param books список для сортировки
      * @return новый отсортированный список
@@ -367,6 +930,7 @@ public class LibraryManager implements Serializable {
 
     /**
      * Сортирует переданный список книг по году публикации (от новых к старым).
+     * Сортировка устойчивая: книги одного года остаются в исходном порядке.
      *
      * @param books список для сортировки
      * @return новый отсортированный список
@@ -379,6 +943,7 @@ public class LibraryManager implements Serializable {
 
     /**
      * Сортирует переданный список книг по доступности (сначала доступные).
+     * Сортировка устойчивая: внутри групп книги остаются в исходном порядке.
      *
      * @param books список для сортировки
      * @return новый отсортированный список
@@ -404,6 +969,7 @@ public class LibraryManager implements Serializable {
             return false;
         }
         readersById.put(reader.getId(), reader);
+        readerChanged(reader.getId());
         return true;
     }
 
@@ -424,7 +990,11 @@ public class LibraryManager implements Serializable {
      * @return {@code true}, если удалён, иначе {@code false}
      */
     public boolean removeReader(String readerId) {
-        return readersById.remove(readerId) != null;
+        if (readersById.remove(readerId) == null) {
+            return false;
+        }
+        readerChanged(readerId);
+        return true;
     }
 
     /**
@@ -456,6 +1026,7 @@ public class LibraryManager implements Serializable {
         book.setAvailable(false);
         Borrowing b = new Borrowing(isbn, readerId, LocalDate.now(), LocalDate.now().plusDays(days));
         borrowings.add(b);
+        archiveIfDue();
         return true;
     }
 
@@ -467,20 +1038,107 @@ public class LibraryManager implements Serializable {
      * @return {@code true}, если возврат успешен, иначе {@code false}
      */
     public boolean returnBook(String isbn, String readerId) {
-        Optional<Borrowing> opt = borrowings.stream()
-                .filter(b -> b.getIsbn().equals(isbn) && b.getReaderId().equals(readerId))
-                .findFirst();
-        if (!opt.isPresent()) {
+        Borrowing b = borrowings.findActive(isbn, readerId);
+        if (b == null) {
             return false;
         }
-        Borrowing b = opt.get();
-        b.setReturnDate(LocalDate.now());
-        booksByIsbn.get(isbn).setAvailable(true);
+        borrowings.markReturned(b, LocalDate.now());
+        Book book = booksByIsbn.get(isbn);
+        if (book != null) {
+            book.setAvailable(true);
+        }
         return true;
     }
 
     /**
-     * Возвращает историю всех выдач.
+     * Выдаёт читателю корзину книг целиком или не выдаёт ничего. Все позиции
+     * проверяются за один проход: ISBN есть в каталоге, книга доступна и не
+     * повторяется в корзине. Затем книги резервируются через
+     * {@link Book#compareAndSetAvailable(boolean, boolean)}; если книгу
+     * успели выдать другому между проверкой и резервированием, уже
+     * зарезервированные книги освобождаются и корзина не применяется.
+     *
+     * @param readerId ID читателя
+     * @param isbns    ISBN книг корзины
+     * @param days     срок в днях
+     * @return применена ли корзина и статус каждой позиции
+     */
+    public BasketResult borrowBooks(String readerId, List<String> isbns, int days) {
+        List<BasketResult.ItemStatus> statuses = new ArrayList<>(isbns.size());
+        List<Book> books = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        boolean valid = true;
+        for (String isbn : isbns) {
+            Book book = booksByIsbn.get(isbn);
+            BasketResult.ItemStatus status = !seen.add(isbn) ? BasketResult.ItemStatus.DUPLICATE
+                    : book == null ? BasketResult.ItemStatus.UNKNOWN_BOOK
+                    : !book.isAvailable() ? BasketResult.ItemStatus.UNAVAILABLE
+                    : BasketResult.ItemStatus.OK;
+            statuses.add(status);
+            books.add(book);
+            valid &= status == BasketResult.ItemStatus.OK;
+        }
+        if (!valid) {
+            return new BasketResult(false, statuses);
+        }
+        for (int i = 0; i < books.size(); i++) {
+            if (!books.get(i).compareAndSetAvailable(true, false)) {
+                for (int j = 0; j < i; j++) {
+                    books.get(j).setAvailable(true);
+                }
+                statuses.set(i, BasketResult.ItemStatus.UNAVAILABLE);
+                return new BasketResult(false, statuses);
+            }
+        }
+        LocalDate today = LocalDate.now();
+        for (Book book : books) {
+            borrowings.add(new Borrowing(book.getIsbn(), readerId, today, today.plusDays(days)));
+            archiveIfDue();
+        }
+        return new BasketResult(true, statuses);
+    }
+
+    /**
+     * Принимает от читателя корзину книг целиком или не принимает ничего.
+     * Активная выдача каждой позиции ищется по индексу активных выдач;
+     * если хотя бы для одной её нет, ни одна книга не возвращается.
+     *
+     * @param readerId ID читателя
+     * @param isbns    ISBN возвращаемых книг
+     * @return применена ли корзина и статус каждой позиции
+     */
+    public BasketResult returnBooks(String readerId, List<String> isbns) {
+        List<BasketResult.ItemStatus> statuses = new ArrayList<>(isbns.size());
+        List<Borrowing> active = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        boolean valid = true;
+        for (String isbn : isbns) {
+            Borrowing b = borrowings.findActive(isbn, readerId);
+            BasketResult.ItemStatus status = !seen.add(isbn) ? BasketResult.ItemStatus.DUPLICATE
+                    : b == null ? BasketResult.ItemStatus.NOT_BORROWED
+                    : BasketResult.ItemStatus.OK;
+            statuses.add(status);
+            active.add(b);
+            valid &= status == BasketResult.ItemStatus.OK;
+        }
+        if (!valid) {
+            return new BasketResult(false, statuses);
+        }
+        LocalDate today = LocalDate.now();
+        for (Borrowing b : active) {
+            borrowings.markReturned(b, today);
+            Book book = booksByIsbn.get(b.getIsbn());
+            if (book != null) {
+                book.setAvailable(true);
+            }
+        }
+        return new BasketResult(true, statuses);
+    }
+
+    /**
+     * Возвращает историю выдач в памяти; при включённом архивировании
+     * это только активные и недавние выдачи.
+     * Изменения через возвращаемый список сразу отражаются в индексах выдач.
      *
      * @return список Borrowing
      */
@@ -494,9 +1152,18 @@ public class LibraryManager implements Serializable {
      * @return список просроченных выдач
      */
     public List<Borrowing> getOverdueBorrowings() {
-        return borrowings.stream()
-                .filter(Borrowing::isOverdue)
-                .collect(Collectors.toList());
+        return getOverdueBorrowings(LocalDate.now());
+    }
+
+    /**
+     * Возвращает выдачи, просроченные на указанную дату: не возвращённые
+     * и со сроком возврата раньше {@code date}.
+     *
+     * @param date дата, на которую проверяется просрочка
+     * @return список просроченных выдач в порядке срока возврата
+     */
+    public List<Borrowing> getOverdueBorrowings(LocalDate date) {
+        return borrowings.getOverdue(date);
     }
 
     /**
@@ -506,21 +1173,40 @@ public class LibraryManager implements Serializable {
      * @return список выдач данного читателя
      */
     public List<Borrowing> getBorrowingsByReader(String readerId) {
-        return borrowings.stream()
-                .filter(b -> b.getReaderId().equals(readerId))
-                .collect(Collectors.toList());
+        List<Borrowing> result = archive == null ? new ArrayList<>() : archive.findByReader(readerId);
+        result.addAll(borrowings.getByReader(readerId));
+        return result;
     }
 
-    /**getReadersWithOverdueBooks
+    /**
      * Возвращает историю выдач по книге.
      *
      * @param isbn ISBN книги
      * @return список выдач данной книги
      */
     public List<Borrowing> getBorrowingsByBook(String isbn) {
-        return borrowings.stream()
-                .filter(b -> b.getIsbn().equals(isbn))
-                .collect(Collectors.toList());
+        List<Borrowing> result = archive == null ? new ArrayList<>() : archive.findByBook(isbn);
+        result.addAll(borrowings.getByBook(isbn));
+        return result;
+    }
+
+    /**
+     * Возвращает выдачи с датой выдачи в диапазоне, включая архивные.
+     * Сегменты архива вне диапазона не читаются.
+     *
+     * @param from начало диапазона включительно
+     * @param to   конец диапазона включительно
+     * @return список выдач
+     */
+    public List<Borrowing> getBorrowingsBetween(LocalDate from, LocalDate to) {
+        List<Borrowing> result = archive == null ? new ArrayList<>() : archive.findBorrowedBetween(from, to);
+        for (Borrowing b : borrowings) {
+            LocalDate borrowDate = b.getBorrowDate();
+            if (borrowDate != null && !borrowDate.isBefore(from) && !borrowDate.isAfter(to)) {
+                result.add(b);
+            }
+        }
+        return result;
     }
 
     /**
@@ -532,14 +1218,11 @@ public class LibraryManager implements Serializable {
      * @return {@code true}, если продление выполнено, иначе {@code false}
      */
     public boolean extendBorrowingPeriod(String isbn, String readerId, int extraDays) {
-        Optional<Borrowing> opt = borrowings.stream()
-                .filter(b -> b.getIsbn().equals(isbn) && b.getReaderId().equals(readerId))
-                .findFirst();
-        if (!opt.isPresent()) {
+        Borrowing b = borrowings.findActive(isbn, readerId);
+        if (b == null) {
             return false;
         }
-        Borrowing b = opt.get();
-        b.setDueDate(b.getDueDate().plusDays(extraDays));
+        borrowings.updateDueDate(b, b.getDueDate().plusDays(extraDays));
         return true;
     }
 
@@ -567,16 +1250,10 @@ public class LibraryManager implements Serializable {
      * @return список пар (Book, count)
      */
     public List<Entry<Book, Integer>> getTopPopularBooks(int topN) {
-        Map<String, Long> isbnCounts = borrowings.stream()
-                .collect(Collectors.groupingBy(Borrowing::getIsbn, Collectors.counting()));
-        Map<Book, Integer> bookCounts = isbnCounts.entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> getBookByIsbn(e.getKey()),
-                        e -> e.getValue().intValue()
-                ));
-        return bookCounts.entrySet().stream()
-                .sorted(Entry.<Book, Integer>comparingByValue().reversed())
+        return withArchived(borrowings.getMostBorrowedBooks(), archive == null ? null : archive.bookCounts())
+                .filter(e -> booksByIsbn.containsKey(e.getKey()))
                 .limit(topN)
+                .map(e -> Map.entry(getBookByIsbn(e.getKey()), e.getValue()))
                 .collect(Collectors.toList());
     }
 
@@ -587,25 +1264,101 @@ public class LibraryManager implements Serializable {
      * @return список пар (Reader, count)
      */
     public List<Entry<Reader, Integer>> getTopActiveReaders(int topN) {
-        Map<Reader, Integer> readerCounts = borrowings.stream()
-                .collect(Collectors.groupingBy(
-                        b -> getReaderById(b.getReaderId()),
-                        Collectors.summingInt(b -> 1)
-                ));
-        return readerCounts.entrySet().stream()
-                .sorted(Entry.<Reader, Integer>comparingByValue().reversed())
+        return withArchived(borrowings.getMostActiveReaders(), archive == null ? null : archive.readerCounts())
+                .filter(e -> readersById.containsKey(e.getKey()))
                 .limit(topN)
+                .map(e -> Map.entry(getReaderById(e.getKey()), e.getValue()))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Считает выдачи по жанрам за каждый месяц диапазона, включая архивные.
+     * Ответ складывается из дневных агрегатов аналитики выдач без обхода
+     * объектов {@link Borrowing}.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @return месяц → жанр → число выдач
+     * @see BorrowingAnalytics#loansPerGenreByMonth(LocalDate, LocalDate)
+     */
+    public SortedMap<YearMonth, Map<Book.Genre, Long>> loansPerGenreByMonth(LocalDate from, LocalDate to) {
+        return analytics().loansPerGenreByMonth(from, to);
+    }
+
+    /**
+     * Считает средний срок чтения по категориям читателей для книг,
+     * выданных в диапазоне и уже возвращённых.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @return категория → средняя длительность в днях
+     * @see BorrowingAnalytics#averageLoanDurationByCategory(LocalDate, LocalDate)
+     */
+    public Map<Reader.ReaderCategory, Double> averageLoanDurationByCategory(LocalDate from, LocalDate to) {
+        return analytics().averageLoanDurationByCategory(from, to);
+    }
+
+    /**
+     * Считает долю просроченных выдач по неделям выдачи на дату {@code asOf}.
+     *
+     * @param from первый день диапазона выдач включительно
+     * @param to   последний день диапазона выдач включительно
+     * @param asOf дата, на которую оцениваются невозвращённые книги
+     * @return понедельник недели → доля просрочек от 0 до 1
+     * @see BorrowingAnalytics#overdueRateByWeek(LocalDate, LocalDate, LocalDate)
+     */
+    public SortedMap<LocalDate, Double> overdueRateByWeek(LocalDate from, LocalDate to, LocalDate asOf) {
+        return analytics().overdueRateByWeek(from, to, asOf);
+    }
+
+    /**
+     * Возвращает столбцовую аналитику истории выдач, при необходимости строя её.
+     *
+     * <p>Полная история (вместе с архивом) обходится только при первом запросе:
+     * дальше аналитика пополняется при выдаче, возврате и продлении, а заново
+     * строится лишь после изменений, которые нельзя учесть по одной записи
+     * (замена истории, удаление выдач, изменение книг или читателей из истории).
+     * Наружу аналитика не отдаётся: запросы выполняются прямо по ней, без копий.
+     */
+    private BorrowingAnalytics analytics() {
+        BorrowingAnalytics built = analytics;
+        if (built == null) {
+            synchronized (this) {
+                built = analytics;
+                if (built == null) {
+                    built = BorrowingAnalytics.of(archive == null ? borrowings : fullHistory(),
+                            booksByIsbn::get, readersById::get);
+                    analytics = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Складывает счётчики выдач из памяти с архивными и упорядочивает так же,
+     * как {@link RankedCounter}: по убыванию значения, при равенстве —
+     * по убыванию ключа.
+     */
+    private static Stream<Entry<String, Integer>> withArchived(Stream<Entry<String, Integer>> hot,
+                                                               Map<String, Integer> archived) {
+        if (archived == null || archived.isEmpty()) {
+            return hot;
+        }
+        Map<String, Integer> merged = new HashMap<>(archived);
+        hot.forEach(e -> merged.merge(e.getKey(), e.getValue(), Integer::sum));
+        return merged.entrySet().stream()
+                .sorted(Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Entry.comparingByKey(Comparator.reverseOrder())));
+    }
+
     /**
      * Находит читателей с хотя бы одной просроченной выдачей.
      *
      * @return список читателей
      */
     public List<Reader> findReadersWithOverdueBooks() {
-        return borrowings.stream()
-                .filter(Borrowing::isOverdue)
+        return getOverdueBorrowings().stream()
                 .map(b -> getReaderById(b.getReaderId()))
                 .distinct()
                 .collect(Collectors.toList());
@@ -618,15 +1371,12 @@ public class LibraryManager implements Serializable {
     /**
      * Итератор книг по жанру и году.
      *
-     * @param genre жанр
+     * @param genre жанр или {@code null} для книг без жанра
      * @param year  год публикации
      * @return итератор по найденным книгам
      */
     public Iterator<Book> getBooksByGenreAndYearIterator(Book.Genre genre, int year) {
-        List<Book> filtered = booksByIsbn.values().stream()
-                .filter(b -> b.getGenre() == genre && b.getPublicationYear() == year)
-                .collect(Collectors.toList());
-        return filtered.iterator();
+        return findBooks(BookQuery.genre(genre).and(BookQuery.year(year)));
     }
 
     /**
@@ -636,10 +1386,49 @@ public class LibraryManager implements Serializable {
      * @return итератор по найденным книгам
      */
     public Iterator<Book> getBooksWithMultipleAuthorsIterator(int minAuthorsCount) {
-        List<Book> filtered = booksByIsbn.values().stream()
-                .filter(b -> b.getAuthors().size() >= minAuthorsCount)
-                .collect(Collectors.toList());
-        return filtered.iterator();
+        return findBooks(BookQuery.minAuthors(minAuthorsCount));
+    }
+
+    /**
+     * Выполняет составной запрос. Планировщик начинает с самого избирательного
+     * индекса (жанр, годы, автор, поиск по названию), пересекает и объединяет
+     * кандидатов как битовые множества, а остальные условия проверяет на
+     * кандидатах во время обхода. Книги не копируются в промежуточный список.
+     *
+     * <p>Книги идут в порядке их номеров в индексе. Номер удалённой книги
+     * получает следующая добавленная, поэтому с порядком добавления этот порядок
+     * совпадает, только пока из каталога ничего не удаляли.
+     *
+     * @param query запрос, например {@code BookQuery.genre(SCIENCE).and(BookQuery.yearBetween(2000, 2010))}
+     * @return ленивый итератор по найденным книгам в порядке номеров в индексе
+     */
+    public Iterator<Book> findBooks(BookQuery query) {
+        return bitmapIndex().iterator(query);
+    }
+
+    /**
+     * Выполняет составной запрос и возвращает одну страницу результатов.
+     *
+     * @param query    запрос
+     * @param page     номер страницы, начиная с 0
+     * @param pageSize размер страницы
+     * @return страница результатов в порядке номеров книг в индексе
+     * @see #findBooks(BookQuery)
+     */
+    public Page<Book> findBooks(BookQuery query, int page, int pageSize) {
+        return bitmapIndex().page(query, page, pageSize);
+    }
+
+    /**
+     * Считает книги, удовлетворяющие запросу. Если запрос целиком вычисляется
+     * по индексам (жанр, годы, автор, доступность), это подсчёт единичных битов
+     * без обхода книг, например {@code countBooks(genre(FICTION).and(available(true)))}.
+     *
+     * @param query запрос
+     * @return количество книг
+     */
+    public int countBooks(BookQuery query) {
+        return bitmapIndex().count(query);
     }
 
     /**
@@ -648,10 +1437,7 @@ public class LibraryManager implements Serializable {
      * @return итератор по просроченным выдачам
      */
     public Iterator<Borrowing> getOverdueBorrowingsIterator() {
-        List<Borrowing> filtered = borrowings.stream()
-                .filter(b -> b.isOverdue() && !b.isReturned())
-                .collect(Collectors.toList());
-        return filtered.iterator();
+        return getOverdueBorrowings().iterator();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,387 @@
+package ru.mentee.power.collections.library;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактный версионированный бинарный формат снимка библиотеки.
+ *
+ * <p>Структура файла:
+ * <pre>
+ * int  MAGIC ("LIBS"), int VERSION
+ * int  количество книг,     затем книги
+ * int  количество читателей, затем читатели
+ * int  количество выдач,    затем выдачи
+ * int  водяной знак архива выдач (с версии 2)
+ * </pre>
+ * ISBN, имена авторов и ID читателей пишутся через общую таблицу строк:
+ * при первом появлении строка получает следующий номер и записывается
+ * целиком, дальше пишется только номер. Даты хранятся как номер дня
+ * от эпохи ({@link LocalDate#toEpochDay()}), отсутствующая дата — {@link #NO_DATE}.
+ * Запись идёт через буферизованный {@link FileChannel} во временный файл,
+ * который сбрасывается на диск и затем атомарно заменяет старый снимок;
+ * после переименования на диск сбрасывается и каталог.
+ */
+public final class LibrarySnapshot {
+
+    /** Сигнатура файла снимка: байты "LIBS". */
+    static final int MAGIC = 0x4C494253;
+
+    /** Текущая версия формата. */
+    static final int VERSION = 2;
+
+    /** Версия без водяного знака архива; читается по-прежнему. */
+    private static final int VERSION_WITHOUT_WATERMARK = 1;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_REF = -1;
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Сохраняет состояние библиотеки в файл снимка.
+     *
+     * @param manager библиотека
+     * @param file    путь к файлу снимка
+     * @throws IOException при ошибке записи
+     */
+    public static void write(LibraryManager manager, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeTo(manager, channel);
+            channel.force(true);
+        }
+        replace(tmp, file);
+    }
+
+    /**
+     * Кодирует снимок в память. Позволяет зафиксировать состояние под
+     * блокировкой, а запись на диск ({@link #write(byte[], Path)}) сделать уже без неё.
+     *
+     * @param manager библиотека
+     * @return содержимое файла снимка
+     */
+    static byte[] toByteArray(LibraryManager manager) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(manager, Channels.newChannel(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Запись в память не бросает IOException", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Сохраняет снимок, закодированный {@link #toByteArray(LibraryManager)}.
+     *
+     * @param image содержимое файла снимка
+     * @param file  путь к файлу снимка
+     * @throws IOException при ошибке записи
+     */
+    static void write(byte[] image, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(image);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        replace(tmp, file);
+    }
+
+    private static void writeTo(LibraryManager manager, WritableByteChannel channel) throws IOException {
+        try (ChannelDataOutput out = new ChannelDataOutput(channel)) {
+            SectionWriter writer = new SectionWriter(out);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writer.writeBooks(manager.getAllBooks());
+            writer.writeReaders(manager.getAllReaders());
+            writer.writeBorrowings(manager.getAllBorrowings());
+            out.writeInt(toDay(manager.getArchivedThrough()));
+        }
+    }
+
+    private static void replace(Path tmp, Path file) throws IOException {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Сбрасывает на диск каталог, чтобы переименование или удаление файла
+     * в нём пережило сбой питания.
+     *
+     * @param directory каталог
+     * @throws IOException при ошибке сброса
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows не даёт открыть каталог как файл, сбросить его там нельзя
+        }
+    }
+
+    /**
+     * Загружает снимок в новую библиотеку.
+     *
+     * @param file путь к файлу снимка
+     * @return загруженная библиотека
+     * @throws IOException при ошибке чтения или неподдерживаемой версии формата
+     */
+    public static LibraryManager read(Path file) throws IOException {
+        LibraryManager manager = new LibraryManager();
+        read(file, manager);
+        return manager;
+    }
+
+    /**
+     * Загружает снимок в переданную пустую библиотеку. Позволяет восстановить
+     * состояние, например, в {@link ConcurrentLibraryManager}.
+     *
+     * @param file    путь к файлу снимка
+     * @param manager пустая библиотека, которую нужно заполнить
+     * @throws IOException при ошибке чтения, повреждённом файле или неподдерживаемой версии формата
+     */
+    public static void read(Path file, LibraryManager manager) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelDataInput in = new ChannelDataInput(channel);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл не является снимком библиотеки: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != VERSION_WITHOUT_WATERMARK) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            SectionReader reader = new SectionReader(in, file, channel.size());
+            manager.setBooksByIsbn(reader.readBooks());
+            manager.setReadersById(reader.readReaders());
+            manager.setBorrowings(reader.readBorrowings());
+            manager.setArchivedThrough(version == VERSION ? reader.readDate() : null);
+        }
+    }
+
+    /**
+     * Проверяет, начинается ли файл с сигнатуры снимка.
+     *
+     * @param file путь к файлу
+     * @return {@code true}, если файл в формате снимка
+     * @throws IOException при ошибке чтения
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    static int toDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * Запись секций снимка с общей таблицей строк.
+     */
+    private static final class SectionWriter {
+
+        private final ChannelDataOutput out;
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        SectionWriter(ChannelDataOutput out) {
+            this.out = out;
+        }
+
+        void writeBooks(Collection<Book> books) throws IOException {
+            out.writeInt(books.size());
+            for (Book book : books) {
+                writeRef(book.getIsbn());
+                out.writeString(book.getTitle());
+                out.writeByte(book.getGenre() == null ? -1 : book.getGenre().ordinal());
+                out.writeInt(book.getPublicationYear());
+                out.writeInt(book.getPageCount());
+                out.writeByte(book.isAvailable() ? 1 : 0);
+                out.writeInt(book.getAuthors().size());
+                for (String author : book.getAuthors()) {
+                    writeRef(author);
+                }
+            }
+        }
+
+        void writeReaders(Collection<Reader> readers) throws IOException {
+            out.writeInt(readers.size());
+            for (Reader reader : readers) {
+                writeRef(reader.getId());
+                out.writeString(reader.getName());
+                out.writeString(reader.getEmail());
+                out.writeByte(reader.getCategory() == null ? -1 : reader.getCategory().ordinal());
+            }
+        }
+
+        void writeBorrowings(List<Borrowing> borrowings) throws IOException {
+            out.writeInt(borrowings.size());
+            for (Borrowing borrowing : borrowings) {
+                writeRef(borrowing.getIsbn());
+                writeRef(borrowing.getReaderId());
+                out.writeInt(toDay(borrowing.getBorrowDate()));
+                out.writeInt(toDay(borrowing.getDueDate()));
+                out.writeInt(toDay(borrowing.getReturnDate()));
+            }
+        }
+
+        /**
+         * Пишет номер строки в таблице. Новая строка получает следующий
+         * номер и записывается сразу за ним.
+         */
+        private void writeRef(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(NO_REF);
+                return;
+            }
+            Integer ref = refs.get(value);
+            if (ref != null) {
+                out.writeInt(ref);
+                return;
+            }
+            int next = refs.size();
+            refs.put(value, next);
+            out.writeInt(next);
+            out.writeString(value);
+        }
+    }
+
+    /**
+     * Чтение секций снимка с восстановлением таблицы строк.
+     */
+    private static final class SectionReader {
+
+        private static final Book.Genre[] GENRES = Book.Genre.values();
+        private static final Reader.ReaderCategory[] CATEGORIES = Reader.ReaderCategory.values();
+
+        private final ChannelDataInput in;
+        private final Path file;
+        private final long fileSize;
+        private final List<String> strings = new ArrayList<>();
+
+        /** Номер дня → дата. Выдачи часто приходятся на одни и те же дни. */
+        private final Map<Integer, LocalDate> dates = new HashMap<>();
+
+        SectionReader(ChannelDataInput in, Path file, long fileSize) {
+            this.in = in;
+            this.file = file;
+            this.fileSize = fileSize;
+        }
+
+        Map<String, Book> readBooks() throws IOException {
+            int count = readCount();
+            Map<String, Book> books = new HashMap<>(capacity(count));
+            for (int i = 0; i < count; i++) {
+                String isbn = readRef();
+                String title = in.readString();
+                int genre = in.readByte();
+                int year = in.readInt();
+                Book book = new Book(isbn, title, year, genre < 0 ? null : ordinal(GENRES, genre));
+                book.setPageCount(in.readInt());
+                book.setAvailable(in.readByte() != 0);
+                int authors = in.readInt();
+                for (int a = 0; a < authors; a++) {
+                    book.addAuthor(readRef());
+                }
+                books.put(isbn, book);
+            }
+            return books;
+        }
+
+        Map<String, Reader> readReaders() throws IOException {
+            int count = readCount();
+            Map<String, Reader> readers = new HashMap<>(capacity(count));
+            for (int i = 0; i < count; i++) {
+                String id = readRef();
+                String name = in.readString();
+                String email = in.readString();
+                int category = in.readByte();
+                readers.put(id, new Reader(
+                        id, name, email, category < 0 ? null : ordinal(CATEGORIES, category)));
+            }
+            return readers;
+        }
+
+        List<Borrowing> readBorrowings() throws IOException {
+            int count = readCount();
+            List<Borrowing> borrowings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String isbn = readRef();
+                String readerId = readRef();
+                Borrowing borrowing = new Borrowing(isbn, readerId, readDate(), readDate());
+                borrowing.setReturnDate(readDate());
+                borrowings.add(borrowing);
+            }
+            return borrowings;
+        }
+
+        private LocalDate readDate() throws IOException {
+            int day = in.readInt();
+            // Любой int — допустимый номер дня для LocalDate, проверять диапазон не нужно
+            return day == NO_DATE ? null : dates.computeIfAbsent(day, LocalDate::ofEpochDay);
+        }
+
+        private String readRef() throws IOException {
+            int ref = in.readInt();
+            if (ref == NO_REF) {
+                return null;
+            }
+            if (ref == strings.size()) {
+                strings.add(in.readString());
+            } else if (ref < 0 || ref > strings.size()) {
+                throw corrupted("ссылка на строку " + ref + " вне таблицы из " + strings.size());
+            }
+            return strings.get(ref);
+        }
+
+        private int readCount() throws IOException {
+            int count = in.readInt();
+            // Каждая запись занимает хотя бы байт: большее число — мусор, под который нельзя выделять память
+            if (count < 0 || count > fileSize) {
+                throw corrupted("неверное количество записей " + count);
+            }
+            return count;
+        }
+
+        private <E> E ordinal(E[] values, int ordinal) throws IOException {
+            if (ordinal >= values.length) {
+                throw corrupted("неизвестный номер значения " + ordinal);
+            }
+            return values[ordinal];
+        }
+
+        private IOException corrupted(String reason) {
+            return new IOException("Повреждён снимок библиотеки " + file + ": " + reason);
+        }
+
+        private static int capacity(int count) {
+            return (int) (count / 0.75f) + 1;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ru.mentee.power.collections.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сравнение скорости и размера бинарного снимка {@link LibrarySnapshot}
+ * с прежним способом сохранения через Java-сериализацию.
+ *
+ * <p>Аргументы: количество книг и количество выдач (по умолчанию 100 000 и 1 000 000).
+ * Для замера на 1M книг и 10M выдач запускайте с {@code 1000000 10000000} и {@code -Xmx8g}.
+ */
+public class LibrarySnapshotBenchmark {
+
+    private static final int DEFAULT_BOOKS = 100_000;
+    private static final int DEFAULT_BORROWINGS = 1_000_000;
+    private static final int READERS = 50_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        int borrowings = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BORROWINGS;
+
+        System.out.println("Генерация библиотеки: " + books + " книг, " + borrowings + " выдач...");
+        LibraryManager manager = createLibrary(books, borrowings);
+
+        Path snapshotFile = Files.createTempFile("library", ".snapshot");
+        Path serializedFile = Files.createTempFile("library", ".ser");
+        try {
+            // Берём лучшее время из нескольких прогонов, чтобы исключить прогрев JIT
+            long serializedSave = Long.MAX_VALUE;
+            long serializedLoad = Long.MAX_VALUE;
+            long snapshotSave = Long.MAX_VALUE;
+            long snapshotLoad = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                saveSerialized(manager, serializedFile);
+                serializedSave = Math.min(serializedSave, (System.nanoTime() - start) / 1_000_000);
+
+                start = System.nanoTime();
+                loadSerialized(serializedFile);
+                serializedLoad = Math.min(serializedLoad, (System.nanoTime() - start) / 1_000_000);
+
+                start = System.nanoTime();
+                LibrarySnapshot.write(manager, snapshotFile);
+                snapshotSave = Math.min(snapshotSave, (System.nanoTime() - start) / 1_000_000);
+
+                start = System.nanoTime();
+                LibrarySnapshot.read(snapshotFile);
+                snapshotLoad = Math.min(snapshotLoad, (System.nanoTime() - start) / 1_000_000);
+            }
+
+            System.out.printf("Java-сериализация: запись %d мс, чтение %d мс, размер %d КБ%n",
+                    serializedSave, serializedLoad, Files.size(serializedFile) / 1024);
+            System.out.printf("Бинарный снимок:   запись %d мс, чтение %d мс, размер %d КБ%n",
+                    snapshotSave, snapshotLoad, Files.size(snapshotFile) / 1024);
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+            Files.deleteIfExists(serializedFile);
+        }
+    }
+
+    static LibraryManager createLibrary(int books, int borrowings) {
+        LibraryManager manager = new LibraryManager();
+        Book.Genre[] genres = Book.Genre.values();
+        for (int i = 0; i < books; i++) {
+            Book book = new Book("ISBN-" + i, "Книга номер " + i, 1900 + i % 125, genres[i % genres.length]);
+            book.addAuthor("Автор " + i % 20_000);
+            book.setPageCount(100 + i % 900);
+            manager.addBook(book);
+        }
+        for (int i = 0; i < READERS; i++) {
+            manager.addReader(new Reader("RDR" + i, "Читатель " + i, "reader" + i + "@example.com",
+                    Reader.ReaderCategory.REGULAR));
+        }
+        LocalDate start = LocalDate.of(2000, 1, 1);
+        List<Borrowing> history = new ArrayList<>(borrowings);
+        for (int i = 0; i < borrowings; i++) {
+            LocalDate borrowDate = start.plusDays(i % 9_000);
+            Borrowing borrowing = new Borrowing("ISBN-" + i % books, "RDR" + i % READERS,
+                    borrowDate, borrowDate.plusDays(14));
+            borrowing.setReturnDate(borrowDate.plusDays(10));
+            history.add(borrowing);
+        }
+        manager.setBorrowings(history);
+        return manager;
+    }
+
+    private static void saveSerialized(LibraryManager manager, Path file) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            oos.writeObject(manager);
+        }
+    }
+
+    private static LibraryManager loadSerialized(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (LibraryManager) ois.readObject();
+        }
+    }
+}
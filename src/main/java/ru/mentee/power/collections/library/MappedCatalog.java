@@ -0,0 +1,585 @@
+package ru.mentee.power.collections.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Каталог книг только для чтения, отображённый в память из файла.
+ *
+ * <p>Книги не превращаются в объекты {@link Book}: запросы возвращают лёгкие
+ * представления {@link BookView}, которые хранят только номер записи и читают
+ * поля прямо из отображённого файла. Поэтому открытие каталога занимает
+ * миллисекунды, а занятая куча не зависит от размера каталога.
+ *
+ * <p>Структура файла (все смещения — от начала файла):
+ * <pre>
+ * заголовок    MAGIC ("LIBC"), VERSION, число книг, число авторов, число ячеек
+ *              хеш-таблицы и смещения таблиц ниже
+ * записи книг  byte жанр, byte доступность, int год, int страницы,
+ *              int число авторов, int[] номера авторов, строка ISBN, строка названия
+ * имена авторов
+ * int[]        смещения записей книг по номеру книги
+ * int[]        хеш-таблица ISBN с открытой адресацией: номер книги + 1, 0 — пусто
+ * int[]        начало диапазона каждого жанра: книги упорядочены по жанру
+ * int[3][]     авторы в порядке байтов UTF-8: смещение имени, начало и длина списка книг
+ * int[]        списки книг авторов
+ * </pre>
+ * Строки хранятся как длина в байтах UTF-8 и сами байты, {@code null} — длиной -1.
+ *
+ * <p>Доступность книг фиксируется на момент построения файла.
+ */
+public final class MappedCatalog {
+
+    /** Сигнатура файла каталога: байты "LIBC". */
+    static final int MAGIC = 0x4C494243;
+
+    /** Текущая версия формата. */
+    static final int VERSION = 1;
+
+    private static final Book.Genre[] GENRES = Book.Genre.values();
+
+    /** Книги без жанра идут отдельной последней группой. */
+    private static final int GENRE_GROUPS = GENRES.length + 1;
+
+    private static final int HEADER_INTS = 10;
+    private static final int HEADER_SIZE = HEADER_INTS * Integer.BYTES;
+    private static final int AUTHOR_ENTRY_INTS = 3;
+
+    /** Смещения полей внутри записи книги. */
+    private static final int GENRE_FIELD = 0;
+    private static final int AVAILABLE_FIELD = 1;
+    private static final int YEAR_FIELD = 2;
+    private static final int PAGES_FIELD = 6;
+    private static final int AUTHOR_COUNT_FIELD = 10;
+    private static final int AUTHORS_FIELD = 14;
+
+    private final MappedByteBuffer buffer;
+    private final int bookCount;
+    private final int authorCount;
+    private final int hashSlots;
+    private final int recordOffsetsPos;
+    private final int hashPos;
+    private final int genresPos;
+    private final int authorsPos;
+    private final int postingsPos;
+
+    private MappedCatalog(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Файл не является каталогом библиотеки");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия каталога: " + version);
+        }
+        this.bookCount = buffer.getInt(8);
+        this.authorCount = buffer.getInt(12);
+        this.hashSlots = buffer.getInt(16);
+        this.recordOffsetsPos = buffer.getInt(20);
+        this.hashPos = buffer.getInt(24);
+        this.genresPos = buffer.getInt(28);
+        this.authorsPos = buffer.getInt(32);
+        this.postingsPos = buffer.getInt(36);
+        validateHeader();
+    }
+
+    /**
+     * Проверяет, что счётчики заголовка согласованы, а таблицы лежат внутри
+     * файла друг за другом. Иначе повреждённый файл приводил бы к исключениям
+     * индексов или бесконечному поиску уже при запросах.
+     */
+    private void validateHeader() throws IOException {
+        if (bookCount < 0 || authorCount < 0
+                || hashSlots < 2 || Integer.bitCount(hashSlots) != 1 || hashSlots <= bookCount) {
+            throw new IOException("Повреждён заголовок каталога: неверные счётчики");
+        }
+        long capacity = buffer.capacity();
+        checkTable(HEADER_SIZE, recordOffsetsPos, (long) bookCount * Integer.BYTES, capacity);
+        checkTable(recordOffsetsPos, hashPos, (long) hashSlots * Integer.BYTES, capacity);
+        checkTable(hashPos, genresPos, (long) (GENRE_GROUPS + 1) * Integer.BYTES, capacity);
+        checkTable(genresPos, authorsPos, (long) authorCount * AUTHOR_ENTRY_INTS * Integer.BYTES, capacity);
+        checkTable(authorsPos, postingsPos, 0, capacity);
+    }
+
+    private static void checkTable(long previous, long position, long length, long capacity) throws IOException {
+        if (position < previous || position + length > capacity) {
+            throw new IOException("Повреждён заголовок каталога: таблица по смещению " + position
+                    + " выходит за пределы файла");
+        }
+    }
+
+    /**
+     * Отображает файл каталога в память.
+     *
+     * @param file путь к файлу, записанному {@link #write(Collection, Path)}
+     * @return каталог
+     * @throws IOException при ошибке чтения или неподдерживаемой версии формата
+     */
+    public static MappedCatalog open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Каталог слишком велик для отображения: " + file);
+            }
+            // Отображение остаётся действительным и после закрытия канала
+            return new MappedCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Записывает книги в файл каталога.
+     *
+     * @param books книги, например {@link LibraryManager#getAllBooks()}
+     * @param file  путь к файлу каталога
+     * @throws IOException при ошибке записи или если каталог не помещается в 2 ГБ
+     */
+    public static void write(Collection<Book> books, Path file) throws IOException {
+        List<Book> ordered = new ArrayList<>(books);
+        ordered.sort(Comparator.comparingInt(MappedCatalog::genreGroup)
+                .thenComparing(Book::getIsbn));
+
+        // Авторы упорядочены по байтам UTF-8, чтобы искать их без декодирования строк
+        Map<String, byte[]> authorBytes = new HashMap<>();
+        for (Book book : ordered) {
+            for (String author : book.getAuthors()) {
+                authorBytes.computeIfAbsent(author, key -> key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        List<String> authors = new ArrayList<>(authorBytes.keySet());
+        authors.sort((left, right) -> Arrays.compareUnsigned(authorBytes.get(left), authorBytes.get(right)));
+        Map<String, Integer> authorIds = new HashMap<>();
+        for (String author : authors) {
+            authorIds.put(author, authorIds.size());
+        }
+        List<List<Integer>> postings = new ArrayList<>(authors.size());
+        for (int i = 0; i < authors.size(); i++) {
+            postings.add(new ArrayList<>());
+        }
+
+        int[] recordOffsets = new int[ordered.size()];
+        int[] nameOffsets = new int[authors.size()];
+        int[] genreStarts = new int[GENRE_GROUPS + 1];
+        int[] slots = new int[hashSlots(ordered.size())];
+        int[] header = new int[HEADER_INTS];
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            try (ChannelDataOutput out = new ChannelDataOutput(channel)) {
+                out.writeBytes(new byte[HEADER_SIZE]);
+
+                for (int ordinal = 0; ordinal < ordered.size(); ordinal++) {
+                    Book book = ordered.get(ordinal);
+                    recordOffsets[ordinal] = position(out);
+                    genreStarts[genreGroup(book) + 1]++;
+                    byte[] isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+                    insert(slots, hash(isbn), ordinal);
+
+                    out.writeByte(book.getGenre() == null ? -1 : book.getGenre().ordinal());
+                    out.writeByte(book.isAvailable() ? 1 : 0);
+                    out.writeInt(book.getPublicationYear());
+                    out.writeInt(book.getPageCount());
+                    out.writeInt(book.getAuthors().size());
+                    for (String author : book.getAuthors()) {
+                        int id = authorIds.get(author);
+                        out.writeInt(id);
+                        postings.get(id).add(ordinal);
+                    }
+                    out.writeInt(isbn.length);
+                    out.writeBytes(isbn);
+                    out.writeString(book.getTitle());
+                }
+
+                for (int i = 0; i < authors.size(); i++) {
+                    nameOffsets[i] = position(out);
+                    byte[] name = authorBytes.get(authors.get(i));
+                    out.writeInt(name.length);
+                    out.writeBytes(name);
+                }
+
+                header[5] = position(out);
+                writeInts(out, recordOffsets);
+
+                header[6] = position(out);
+                writeInts(out, slots);
+
+                header[7] = position(out);
+                for (int g = 1; g < genreStarts.length; g++) {
+                    genreStarts[g] += genreStarts[g - 1];
+                }
+                writeInts(out, genreStarts);
+
+                header[8] = position(out);
+                int postingsStart = 0;
+                for (int i = 0; i < authors.size(); i++) {
+                    out.writeInt(nameOffsets[i]);
+                    out.writeInt(postingsStart);
+                    out.writeInt(postings.get(i).size());
+                    postingsStart += postings.get(i).size();
+                }
+
+                header[9] = position(out);
+                for (List<Integer> list : postings) {
+                    for (int ordinal : list) {
+                        out.writeInt(ordinal);
+                    }
+                }
+                // Проверяем, что и последняя таблица укладывается в отображаемый размер
+                position(out);
+            }
+
+            header[0] = MAGIC;
+            header[1] = VERSION;
+            header[2] = ordered.size();
+            header[3] = authors.size();
+            header[4] = slots.length;
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            headerBuffer.asIntBuffer().put(header);
+            while (headerBuffer.hasRemaining()) {
+                channel.write(headerBuffer, headerBuffer.position());
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LibrarySnapshot.syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * @return количество книг в каталоге
+     */
+    public int size() {
+        return bookCount;
+    }
+
+    /**
+     * Ищет книгу по ISBN через хеш-таблицу, не создавая строк из файла.
+     * Просматривается не больше {@code hashSlots} ячеек, поэтому таблица
+     * без пустых ячеек в повреждённом файле не зацикливает поиск.
+     *
+     * @param isbn ISBN книги
+     * @return представление книги или {@code null}, если не найдено
+     * @throws IllegalStateException если хеш-таблица или запись книги повреждены
+     */
+    public BookView getBookByIsbn(String isbn) {
+        if (isbn == null || bookCount == 0) {
+            return null;
+        }
+        byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+        int mask = hashSlots - 1;
+        int slot = hash(key) & mask;
+        for (int probe = 0; probe < hashSlots; probe++, slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(hashPos + slot * Integer.BYTES);
+            if (entry == 0) {
+                return null;
+            }
+            if (entry < 0 || entry > bookCount) {
+                throw new IllegalStateException("Повреждён каталог: ячейка " + slot
+                        + " хеш-таблицы ссылается на книгу " + (entry - 1) + " из " + bookCount);
+            }
+            int ordinal = entry - 1;
+            if (bytesEqual(isbnOffset(ordinal), key)) {
+                return new BookView(ordinal);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает книги жанра. Список — представление над файлом,
+     * книги в нём упорядочены по ISBN.
+     *
+     * @param genre жанр
+     * @return неизменяемый список книг жанра
+     */
+    public List<BookView> getBooksByGenre(Book.Genre genre) {
+        int group = genre == null ? GENRES.length : genre.ordinal();
+        int from = buffer.getInt(genresPos + group * Integer.BYTES);
+        int to = buffer.getInt(genresPos + (group + 1) * Integer.BYTES);
+        return new ViewList(to - from) {
+            @Override
+            int ordinal(int index) {
+                return from + index;
+            }
+        };
+    }
+
+    /**
+     * Возвращает книги автора. Автор ищется двоичным поиском по байтам имени.
+     *
+     * @param author имя автора
+     * @return неизменяемый список книг автора (пустой, если автор не найден)
+     */
+    public List<BookView> getBooksByAuthor(String author) {
+        if (author == null) {
+            return Collections.emptyList();
+        }
+        byte[] key = author.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = authorCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = authorsPos + mid * AUTHOR_ENTRY_INTS * Integer.BYTES;
+            int cmp = compareBytes(buffer.getInt(entry), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int start = postingsPos + buffer.getInt(entry + Integer.BYTES) * Integer.BYTES;
+                return new ViewList(buffer.getInt(entry + 2 * Integer.BYTES)) {
+                    @Override
+                    int ordinal(int index) {
+                        return buffer.getInt(start + index * Integer.BYTES);
+                    }
+                };
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Лёгкое представление книги в отображённом каталоге. Хранит только номер
+     * записи; каждое поле читается из файла при обращении.
+     */
+    public final class BookView {
+
+        private final int ordinal;
+
+        private BookView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        public String getIsbn() {
+            return readString(isbnOffset());
+        }
+
+        public String getTitle() {
+            int isbnOffset = isbnOffset();
+            return readString(isbnOffset + Integer.BYTES + buffer.getInt(isbnOffset));
+        }
+
+        public Book.Genre getGenre() {
+            int genre = buffer.get(recordOffset(ordinal) + GENRE_FIELD);
+            return genre < 0 ? null : GENRES[genre];
+        }
+
+        public int getPublicationYear() {
+            return buffer.getInt(recordOffset(ordinal) + YEAR_FIELD);
+        }
+
+        public int getPageCount() {
+            return buffer.getInt(recordOffset(ordinal) + PAGES_FIELD);
+        }
+
+        public boolean isAvailable() {
+            return buffer.get(recordOffset(ordinal) + AVAILABLE_FIELD) != 0;
+        }
+
+        public Set<String> getAuthors() {
+            int offset = recordOffset(ordinal);
+            int count = authorCount(offset);
+            Set<String> authors = new LinkedHashSet<>();
+            for (int i = 0; i < count; i++) {
+                int author = buffer.getInt(offset + AUTHORS_FIELD + i * Integer.BYTES);
+                authors.add(readString(buffer.getInt(authorsPos + author * AUTHOR_ENTRY_INTS * Integer.BYTES)));
+            }
+            return authors;
+        }
+
+        /**
+         * Создаёт обычный объект {@link Book} с теми же данными.
+         *
+         * @return новая книга
+         */
+        public Book toBook() {
+            Book book = new Book(getIsbn(), getTitle(), getPublicationYear(), getGenre());
+            book.setPageCount(getPageCount());
+            book.setAvailable(isAvailable());
+            for (String author : getAuthors()) {
+                book.addAuthor(author);
+            }
+            return book;
+        }
+
+        private int isbnOffset() {
+            return MappedCatalog.this.isbnOffset(ordinal);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BookView)) {
+                return false;
+            }
+            BookView other = (BookView) o;
+            return ordinal == other.ordinal && catalog() == other.catalog();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(catalog()), ordinal);
+        }
+
+        @Override
+        public String toString() {
+            return "BookView{isbn='" + getIsbn() + "', title='" + getTitle() + "'}";
+        }
+
+        private MappedCatalog catalog() {
+            return MappedCatalog.this;
+        }
+    }
+
+    /**
+     * Неизменяемый список представлений по номерам книг.
+     */
+    private abstract class ViewList extends AbstractList<BookView> implements RandomAccess {
+
+        private final int size;
+
+        ViewList(int size) {
+            this.size = size;
+        }
+
+        abstract int ordinal(int index);
+
+        @Override
+        public BookView get(int index) {
+            Objects.checkIndex(index, size);
+            return new BookView(ordinal(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Возвращает смещение записи книги. Записи лежат между заголовком
+     * и таблицей смещений; номер и смещение вне этих границ значат, что файл повреждён.
+     *
+     * @throws IllegalStateException если номер книги или смещение записи вне файла
+     */
+    private int recordOffset(int ordinal) {
+        if (ordinal < 0 || ordinal >= bookCount) {
+            throw new IllegalStateException("Повреждён каталог: номер книги " + ordinal + " из " + bookCount);
+        }
+        int offset = buffer.getInt(recordOffsetsPos + ordinal * Integer.BYTES);
+        if (offset < HEADER_SIZE || offset > recordOffsetsPos - AUTHORS_FIELD) {
+            throw new IllegalStateException("Повреждён каталог: запись книги " + ordinal
+                    + " по смещению " + offset + " вне области записей");
+        }
+        return offset;
+    }
+
+    private int authorCount(int recordOffset) {
+        int count = buffer.getInt(recordOffset + AUTHOR_COUNT_FIELD);
+        if (count < 0 || count > (recordOffsetsPos - recordOffset - AUTHORS_FIELD) / Integer.BYTES) {
+            throw new IllegalStateException("Повреждён каталог: неверное число авторов по смещению " + recordOffset);
+        }
+        return count;
+    }
+
+    private int isbnOffset(int ordinal) {
+        int offset = recordOffset(ordinal);
+        return offset + AUTHORS_FIELD + authorCount(offset) * Integer.BYTES;
+    }
+
+    private String readString(int offset) {
+        int length = buffer.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean bytesEqual(int offset, byte[] key) {
+        if (buffer.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Сравнивает строку в файле с ключом как беззнаковые последовательности байт.
+     */
+    private int compareBytes(int offset, byte[] key) {
+        int length = buffer.getInt(offset);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(offset + Integer.BYTES + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static int genreGroup(Book book) {
+        return book.getGenre() == null ? GENRES.length : book.getGenre().ordinal();
+    }
+
+    /**
+     * @return степень двойки, не меньше удвоенного числа книг
+     */
+    private static int hashSlots(int count) {
+        return Math.max(2, Integer.highestOneBit(Math.max(1, count * 2 - 1)) << 1);
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static void insert(int[] slots, int hash, int ordinal) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = ordinal + 1;
+    }
+
+    private static void writeInts(ChannelDataOutput out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int position(ChannelDataOutput out) throws IOException {
+        long size = out.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Каталог не помещается в 2 ГБ");
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.mentee.power.collections.library;
+
+import java.util.List;
+
+/**
+ * Страница результатов запроса.
+ *
+ * @param items      элементы страницы
+ * @param page       номер страницы, начиная с 0
+ * @param pageSize   размер страницы
+ * @param totalCount сколько всего элементов нашлось
+ * @param <T>        тип элементов
+ */
+public record Page<T>(List<T> items, int page, int pageSize, int totalCount) {
+
+    /**
+     * Вырезает страницу из полного упорядоченного списка результатов.
+     *
+     * @param all      все результаты
+     * @param page     номер страницы, начиная с 0
+     * @param pageSize размер страницы
+     * @param <T>      тип элементов
+     * @return страница
+     */
+    public static <T> Page<T> of(List<T> all, int page, int pageSize) {
+        checkBounds(page, pageSize);
+        int from = (int) Math.min((long) page * pageSize, all.size());
+        int to = (int) Math.min((long) from + pageSize, all.size());
+        return new Page<>(List.copyOf(all.subList(from, to)), page, pageSize, all.size());
+    }
+
+    static void checkBounds(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Неверные параметры страницы: page=" + page + ", pageSize=" + pageSize);
+        }
+    }
+
+    /**
+     * @return {@code true}, если после этой страницы есть ещё результаты
+     */
+    public boolean hasNext() {
+        return (long) (page + 1) * pageSize < totalCount;
+    }
+}
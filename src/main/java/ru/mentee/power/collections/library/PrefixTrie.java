@@ -0,0 +1,262 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Сжатое префиксное дерево (radix trie) над нормализованными строками
+ * (именами авторов или названиями) с книгами, к которым они относятся.
+ *
+ * <p>Каждый узел хранит кэш лучших {@link #CACHED_COMPLETIONS} дополнений своего
+ * поддерева — строки, у которых больше всего книг. Изменение строки сбрасывает
+ * кэш только на пути от корня до неё, а пересчёт при следующем запросе
+ * затрагивает лишь сброшенные узлы. Поэтому запрос дополнений стоит
+ * O(длина префикса + K), а добавление и удаление — O(длина строки).
+ *
+ * <p>Изменять дерево может только один поток, а запрашивать дополнения —
+ * несколько потоков сразу (как под блокировкой чтения в
+ * {@link ConcurrentLibraryManager}). Кэш пересчитывается при запросе, поэтому
+ * он публикуется неизменяемым списком через {@code volatile}-поле: потоки,
+ * одновременно пересчитавшие один узел, записывают равные списки, и ни один
+ * читатель не видит список в процессе заполнения.
+ */
+final class PrefixTrie {
+
+    /** Сколько дополнений кэшируется в каждом узле. */
+    static final int CACHED_COMPLETIONS = 16;
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator
+            .comparingInt((Entry entry) -> entry.books.size()).reversed()
+            .thenComparing(entry -> entry.key);
+
+    private final Node root = new Node("");
+
+    /**
+     * Добавляет книгу к строке.
+     *
+     * @param text исходная строка (отображается в дополнениях)
+     * @param book книга
+     */
+    void add(String text, Book book) {
+        String key = TextSearchIndex.normalize(text);
+        Node node = root;
+        node.top = null;
+        int depth = 0;
+        while (depth < key.length()) {
+            char next = key.charAt(depth);
+            Node child = node.children.get(next);
+            if (child == null) {
+                child = new Node(key.substring(depth));
+                node.children.put(next, child);
+            } else {
+                int common = commonPrefix(child.label, key, depth);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+            }
+            node = child;
+            node.top = null;
+            depth += node.label.length();
+        }
+        if (node.entry == null) {
+            node.entry = new Entry(key, text);
+        }
+        node.entry.books.add(book);
+    }
+
+    /**
+     * Убирает книгу у строки; строка без книг удаляется из дерева.
+     *
+     * @param text исходная строка
+     * @param book книга
+     */
+    void remove(String text, Book book) {
+        String key = TextSearchIndex.normalize(text);
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int depth = 0;
+        while (depth < key.length()) {
+            node = node.children.get(key.charAt(depth));
+            if (node == null || !key.startsWith(node.label, depth)) {
+                return;
+            }
+            path.add(node);
+            depth += node.label.length();
+        }
+        if (node.entry == null || !node.entry.books.remove(book)) {
+            return;
+        }
+        for (Node onPath : path) {
+            onPath.top = null;
+        }
+        if (!node.entry.books.isEmpty()) {
+            return;
+        }
+        node.entry = null;
+
+        // Удаляем опустевшие узлы и склеиваем узлы с единственным потомком
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            Node parent = path.get(i - 1);
+            if (current.entry == null && current.children.isEmpty()) {
+                parent.children.remove(current.label.charAt(0));
+            } else if (current.entry == null && current.children.size() == 1) {
+                Node only = current.children.values().iterator().next();
+                only.label = current.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Возвращает до {@code limit} строк, начинающихся с префикса,
+     * начиная со строк с наибольшим числом книг.
+     *
+     * @param prefix префикс, регистр не важен
+     * @param limit  максимальное количество дополнений
+     * @return дополнения в исходном написании
+     */
+    List<String> complete(String prefix, int limit) {
+        Node node = find(TextSearchIndex.normalize(prefix));
+        List<String> result = new ArrayList<>();
+        if (node == null || limit <= 0) {
+            return result;
+        }
+        List<Entry> entries;
+        if (limit <= CACHED_COMPLETIONS) {
+            entries = top(node);
+        } else {
+            entries = new ArrayList<>();
+            collect(node, entries);
+            entries.sort(BY_WEIGHT);
+        }
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            result.add(entries.get(i).text);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает книги всех строк, начинающихся с префикса.
+     *
+     * @param prefix префикс, регистр не важен
+     * @return книги без повторов
+     */
+    Set<Book> books(String prefix) {
+        Node node = find(TextSearchIndex.normalize(prefix));
+        Set<Book> books = new LinkedHashSet<>();
+        if (node != null) {
+            List<Entry> entries = new ArrayList<>();
+            collect(node, entries);
+            entries.sort(Comparator.comparing(entry -> entry.key));
+            for (Entry entry : entries) {
+                books.addAll(entry.books);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * @return узел, в поддереве которого лежат все строки с префиксом, или {@code null}
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length()) {
+            node = node.children.get(prefix.charAt(depth));
+            if (node == null) {
+                return null;
+            }
+            int common = commonPrefix(node.label, prefix, depth);
+            if (common < node.label.length() && depth + common < prefix.length()) {
+                return null;
+            }
+            depth += common;
+        }
+        return node;
+    }
+
+    private List<Entry> top(Node node) {
+        List<Entry> top = node.top;
+        if (top == null) {
+            List<Entry> candidates = new ArrayList<>();
+            if (node.entry != null) {
+                candidates.add(node.entry);
+            }
+            for (Node child : node.children.values()) {
+                candidates.addAll(top(child));
+            }
+            candidates.sort(BY_WEIGHT);
+            top = List.copyOf(candidates.subList(0, Math.min(candidates.size(), CACHED_COMPLETIONS)));
+            node.top = top;
+        }
+        return top;
+    }
+
+    private static void collect(Node node, List<Entry> entries) {
+        if (node.entry != null) {
+            entries.add(node.entry);
+        }
+        for (Node child : node.children.values()) {
+            collect(child, entries);
+        }
+    }
+
+    /**
+     * Делит ребро {@code child} после {@code common} символов.
+     *
+     * @return новый промежуточный узел
+     */
+    private static Node split(Node parent, Node child, int common) {
+        Node middle = new Node(child.label.substring(0, common));
+        child.label = child.label.substring(common);
+        middle.children.put(child.label.charAt(0), child);
+        parent.children.put(middle.label.charAt(0), middle);
+        return middle;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+
+        /** Часть ключа на ребре от родителя к этому узлу. */
+        String label;
+        final Map<Character, Node> children = new TreeMap<>();
+        /** Строка, заканчивающаяся в этом узле, или {@code null}. */
+        Entry entry;
+        /** Неизменяемый кэш лучших дополнений поддерева; {@code null} — нужно пересчитать. */
+        volatile List<Entry> top;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Entry {
+
+        final String key;
+        final String text;
+        final Set<Book> books = new HashSet<>();
+
+        Entry(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.mentee.power.collections.library;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Счётчик по строковым ключам с поддержкой упорядоченности по значению.
+ * Кроме самих счётчиков хранит «корзины» ключей по количеству, поэтому
+ * изменение счётчика стоит O(log n), а выборка первых K ключей — O(K + log n)
+ * без сортировки всех значений.
+ *
+ * <p>При равных значениях ключи идут в порядке убывания, чтобы результат
+ * не зависел от порядка обхода хеш-таблиц.
+ */
+class RankedCounter {
+
+    /** Ключ → текущее значение счётчика. */
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    /** Значение счётчика → ключи с этим значением. */
+    private final NavigableMap<Integer, NavigableSet<String>> buckets = new TreeMap<>();
+
+    /**
+     * Создаёт счётчик, в котором значение каждого ключа равно размеру его списка.
+     *
+     * @param lists ключ → список элементов
+     * @return заполненный счётчик
+     */
+    static RankedCounter fromSizes(Map<String, ? extends Collection<?>> lists) {
+        RankedCounter counter = new RankedCounter();
+        lists.forEach((key, list) -> counter.put(key, list.size()));
+        return counter;
+    }
+
+    /**
+     * Создаёт счётчик по словарю ключей и массиву значений по их номерам.
+     *
+     * @param keys   номер → ключ
+     * @param values номер → значение счётчика
+     * @return заполненный счётчик
+     */
+    static RankedCounter fromCounts(List<String> keys, int[] values) {
+        RankedCounter counter = new RankedCounter();
+        for (int i = 0; i < keys.size(); i++) {
+            counter.put(keys.get(i), values[i]);
+        }
+        return counter;
+    }
+
+    /**
+     * Увеличивает счётчик ключа на единицу.
+     *
+     * @param key ключ
+     */
+    void increment(String key) {
+        move(key, counts.getOrDefault(key, 0), 1);
+    }
+
+    /**
+     * Уменьшает счётчик ключа на единицу. Ключ с нулевым значением удаляется.
+     *
+     * @param key ключ
+     */
+    void decrement(String key) {
+        Integer current = counts.get(key);
+        if (current != null) {
+            move(key, current, -1);
+        }
+    }
+
+    /**
+     * Возвращает значение счётчика.
+     *
+     * @param key ключ
+     * @return значение или 0, если ключ не встречался
+     */
+    int get(String key) {
+        return counts.getOrDefault(key, 0);
+    }
+
+    /**
+     * Возвращает пары (ключ, значение) по убыванию значения. Поток ленивый:
+     * при {@code limit(k)} просматриваются только первые k ключей.
+     *
+     * @return поток пар по убыванию значения
+     */
+    Stream<Entry<String, Integer>> descending() {
+        return buckets.descendingMap().entrySet().stream()
+                .flatMap(bucket -> bucket.getValue().stream()
+                        .map(key -> Map.entry(key, bucket.getKey())));
+    }
+
+    private void put(String key, int value) {
+        if (value > 0) {
+            counts.put(key, value);
+            buckets.computeIfAbsent(value, k -> new TreeSet<>(Collections.reverseOrder())).add(key);
+        }
+    }
+
+    private void move(String key, int current, int delta) {
+        if (current > 0) {
+            NavigableSet<String> bucket = buckets.get(current);
+            bucket.remove(key);
+            if (bucket.isEmpty()) {
+                buckets.remove(current);
+            }
+        }
+        int updated = current + delta;
+        if (updated > 0) {
+            counts.put(key, updated);
+            buckets.computeIfAbsent(updated, k -> new TreeSet<>(Collections.reverseOrder())).add(key);
+        } else {
+            counts.remove(key);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Поддерживаемый отсортированный список книг с доступом по позиции.
+ *
+ * <p>Книги хранятся в отсортированных блоках по {@link #MAX_BLOCK} элементов,
+ * как листья B-дерева. Блок для книги находится двоичным поиском по последним
+ * элементам блоков, позиция в блоке — двоичным поиском внутри блока. Размеры
+ * блоков хранятся в дереве Фенвика, поэтому блок, содержащий i-ю книгу,
+ * находится за O(log n), а страница читается подряд из блоков. Вставка и
+ * удаление стоят O(log n) сравнений плюс сдвиг внутри одного блока; дерево
+ * Фенвика перестраивается только при делении или удалении блока.
+ *
+ * <p>Порядок должен быть строгим: книги, равные по компаратору, считаются
+ * одной и той же книгой.
+ */
+final class SortedBookIndex {
+
+    static final int MAX_BLOCK = 512;
+
+    private final Comparator<Book> order;
+    private final List<List<Book>> blocks = new ArrayList<>();
+    /** Дерево Фенвика по размерам блоков, индексы с 1. */
+    private int[] tree = new int[1];
+    private int size;
+
+    SortedBookIndex(Comparator<Book> order) {
+        this.order = order;
+    }
+
+    /**
+     * Строит индекс одной сортировкой.
+     *
+     * @param books книги
+     * @param order строгий порядок
+     * @return заполненный индекс
+     */
+    static SortedBookIndex build(Collection<Book> books, Comparator<Book> order) {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(order);
+        SortedBookIndex index = new SortedBookIndex(order);
+        for (int from = 0; from < sorted.size(); from += MAX_BLOCK / 2) {
+            index.blocks.add(new ArrayList<>(sorted.subList(from, Math.min(sorted.size(), from + MAX_BLOCK / 2))));
+        }
+        index.size = sorted.size();
+        index.rebuildTree();
+        return index;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(Book book) {
+        int block = blockFor(book);
+        return block < blocks.size() && Collections.binarySearch(blocks.get(block), book, order) >= 0;
+    }
+
+    /**
+     * @return {@code false}, если такая книга уже есть
+     */
+    boolean add(Book book) {
+        if (blocks.isEmpty()) {
+            blocks.add(new ArrayList<>(List.of(book)));
+            size = 1;
+            rebuildTree();
+            return true;
+        }
+        int blockIndex = Math.min(blockFor(book), blocks.size() - 1);
+        List<Book> block = blocks.get(blockIndex);
+        int position = Collections.binarySearch(block, book, order);
+        if (position >= 0) {
+            return false;
+        }
+        block.add(-position - 1, book);
+        size++;
+        if (block.size() > MAX_BLOCK) {
+            List<Book> tail = new ArrayList<>(block.subList(MAX_BLOCK / 2, block.size()));
+            block.subList(MAX_BLOCK / 2, block.size()).clear();
+            blocks.add(blockIndex + 1, tail);
+            rebuildTree();
+        } else {
+            update(blockIndex, 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code false}, если такой книги нет
+     */
+    boolean remove(Book book) {
+        int blockIndex = blockFor(book);
+        if (blockIndex == blocks.size()) {
+            return false;
+        }
+        List<Book> block = blocks.get(blockIndex);
+        int position = Collections.binarySearch(block, book, order);
+        if (position < 0) {
+            return false;
+        }
+        block.remove(position);
+        size--;
+        if (block.isEmpty()) {
+            blocks.remove(blockIndex);
+            rebuildTree();
+        } else {
+            update(blockIndex, -1);
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает подряд идущие книги начиная с позиции {@code from}.
+     *
+     * @param from  позиция первой книги
+     * @param count сколько книг вернуть
+     * @return книги (меньше {@code count}, если список кончился)
+     */
+    List<Book> slice(int from, int count) {
+        List<Book> result = new ArrayList<>(Math.max(0, Math.min(count, size - from)));
+        if (from >= size || count <= 0) {
+            return result;
+        }
+        // Спуск по дереву Фенвика: ищем блок, перед которым меньше from + 1 книг
+        int blockIndex = 0;
+        int skipped = 0;
+        for (int step = Integer.highestOneBit(blocks.size()); step > 0; step >>= 1) {
+            int next = blockIndex + step;
+            if (next <= blocks.size() && skipped + tree[next] <= from) {
+                blockIndex = next;
+                skipped += tree[next];
+            }
+        }
+        int offset = from - skipped;
+        while (blockIndex < blocks.size() && result.size() < count) {
+            List<Book> block = blocks.get(blockIndex++);
+            int to = Math.min(block.size(), offset + count - result.size());
+            result.addAll(block.subList(offset, to));
+            offset = 0;
+        }
+        return result;
+    }
+
+    /**
+     * @return первый блок, последний элемент которого не меньше книги, или число блоков
+     */
+    private int blockFor(Book book) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            List<Book> block = blocks.get(middle);
+            if (order.compare(block.get(block.size() - 1), book) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void update(int blockIndex, int delta) {
+        for (int i = blockIndex + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void rebuildTree() {
+        tree = new int[blocks.size() + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += blocks.get(i - 1).size();
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ru.mentee.power.collections.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Инвертированный n-граммный индекс по названиям и авторам книг для
+ * поиска без учёта регистра.
+ *
+ * <p>Для каждой книги индексируются все подстроки длиной от 1 до {@link #MAX_GRAM}
+ * символов нормализованного названия и имён авторов. Запрос не длиннее
+ * {@link #MAX_GRAM} символов сам является ключом индекса, поэтому его список
+ * книг — это уже готовые кандидаты. Для более длинного запроса берётся самый
+ * короткий из списков его триграмм, и кандидаты проверяются по полному
+ * вхождению. Так время поиска зависит от числа подходящих книг, а не от размера
+ * каталога.
+ *
+ * <p>Результаты ранжируются: точное совпадение названия, начало названия,
+ * начало слова в названии, вхождение в название, затем те же варианты для авторов.
+ *
+ * <p>Для автодополнения названия и имена авторов дополнительно хранятся
+ * в префиксных деревьях {@link PrefixTrie}.
+ */
+final class TextSearchIndex {
+
+    static final int MAX_GRAM = 3;
+
+    // Категории совпадений — чем меньше, тем выше в выдаче
+    private static final int TITLE_EXACT = 0;
+    private static final int TITLE_PREFIX = 1;
+    private static final int TITLE_WORD = 2;
+    private static final int TITLE_SUBSTRING = 3;
+    private static final int AUTHOR_PREFIX = 4;
+    private static final int AUTHOR_WORD = 5;
+    private static final int AUTHOR_SUBSTRING = 6;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final Map<String, Set<Book>> postings = new HashMap<>();
+
+    /** Нормализованные поля книги: название, затем авторы. */
+    private final Map<Book, String[]> fields = new HashMap<>();
+
+    private final PrefixTrie titles = new PrefixTrie();
+    private final PrefixTrie authors = new PrefixTrie();
+
+    /**
+     * Строит индекс по коллекции книг.
+     *
+     * @param books книги каталога
+     * @return заполненный индекс
+     */
+    static TextSearchIndex build(Collection<Book> books) {
+        TextSearchIndex index = new TextSearchIndex();
+        for (Book book : books) {
+            index.add(book);
+        }
+        return index;
+    }
+
+    void add(Book book) {
+        String[] normalized = new String[1 + book.getAuthors().size()];
+        normalized[0] = normalize(book.getTitle());
+        int i = 1;
+        for (String author : book.getAuthors()) {
+            normalized[i++] = normalize(author);
+        }
+        fields.put(book, normalized);
+        for (String gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(book);
+        }
+        if (book.getTitle() != null) {
+            titles.add(book.getTitle(), book);
+        }
+        for (String author : book.getAuthors()) {
+            authors.add(author, book);
+        }
+    }
+
+    void remove(Book book) {
+        String[] normalized = fields.remove(book);
+        if (normalized == null) {
+            return;
+        }
+        for (String gram : grams(normalized)) {
+            Set<Book> books = postings.get(gram);
+            books.remove(book);
+            if (books.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        if (book.getTitle() != null) {
+            titles.remove(book.getTitle(), book);
+        }
+        for (String author : book.getAuthors()) {
+            authors.remove(author, book);
+        }
+    }
+
+    /**
+     * @return дерево названий для автодополнения
+     */
+    PrefixTrie titles() {
+        return titles;
+    }
+
+    /**
+     * @return дерево имён авторов для автодополнения
+     */
+    PrefixTrie authors() {
+        return authors;
+    }
+
+    /**
+     * Ищет книги, в названии (или в имени автора) которых встречается запрос.
+     *
+     * @param query      подстрока, регистр не важен
+     * @param titlesOnly искать только по названию
+     * @return подходящие книги, отсортированные по релевантности
+     */
+    List<Book> search(String query, boolean titlesOnly) {
+        String normalized = normalize(query);
+        Collection<Book> candidates = candidates(normalized);
+
+        List<Match> matches = new ArrayList<>();
+        for (Book book : candidates) {
+            String[] bookFields = fields.get(book);
+            int rank = rank(bookFields, normalized, titlesOnly);
+            if (rank != NO_MATCH) {
+                matches.add(new Match(book, bookFields[0], rank));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::rank)
+                .thenComparingInt(match -> match.title().length())
+                .thenComparing(Match::title)
+                .thenComparing(match -> match.book().getIsbn()));
+
+        List<Book> result = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            result.add(match.book());
+        }
+        return result;
+    }
+
+    private Collection<Book> candidates(String query) {
+        if (query.isEmpty()) {
+            return fields.keySet();
+        }
+        if (query.length() <= MAX_GRAM) {
+            return postings.getOrDefault(query, Set.of());
+        }
+        Set<Book> smallest = null;
+        for (int i = 0; i + MAX_GRAM <= query.length(); i++) {
+            Set<Book> books = postings.get(query.substring(i, i + MAX_GRAM));
+            if (books == null) {
+                return Set.of();
+            }
+            if (smallest == null || books.size() < smallest.size()) {
+                smallest = books;
+            }
+        }
+        return smallest;
+    }
+
+    private static int rank(String[] bookFields, String query, boolean titlesOnly) {
+        String title = bookFields[0];
+        if (title.equals(query)) {
+            return TITLE_EXACT;
+        }
+        int titleRank = rank(title, query, TITLE_PREFIX);
+        if (titleRank != NO_MATCH || titlesOnly) {
+            return titleRank;
+        }
+        int best = NO_MATCH;
+        for (int i = 1; i < bookFields.length; i++) {
+            best = Math.min(best, rank(bookFields[i], query, AUTHOR_PREFIX));
+        }
+        return best;
+    }
+
+    /**
+     * @param prefixRank категория «начало поля»; следующие две — начало слова и вхождение
+     */
+    private static int rank(String text, String query, int prefixRank) {
+        int index = text.indexOf(query);
+        if (index < 0) {
+            return NO_MATCH;
+        }
+        if (index == 0) {
+            return prefixRank;
+        }
+        while (index > 0) {
+            if (!Character.isLetterOrDigit(text.charAt(index - 1))) {
+                return prefixRank + 1;
+            }
+            index = text.indexOf(query, index + 1);
+        }
+        return prefixRank + 2;
+    }
+
+    private static Set<String> grams(String[] normalized) {
+        Set<String> grams = new HashSet<>();
+        for (String text : normalized) {
+            for (int start = 0; start < text.length(); start++) {
+                for (int end = start + 1; end <= Math.min(text.length(), start + MAX_GRAM); end++) {
+                    grams.add(text.substring(start, end));
+                }
+            }
+        }
+        return grams;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private record Match(Book book, String title, int rank) {
+    }
+}
@@ -5,7 +5,19 @@ import java.util.Comparator;
 
 public class GenreAndTitleComparator implements Comparator<Book> {
 
-    private final TitleComparator titleComparator = new TitleComparator();
+    private final TitleComparator titleComparator;
+
+    public GenreAndTitleComparator() {
+        this(false);
+    }
+
+    /**
+     * @param cachedKeys сравнивать названия через закэшированные ключи сортировки
+     * @see TitleComparator#TitleComparator(boolean)
+     */
+    public GenreAndTitleComparator(boolean cachedKeys) {
+        this.titleComparator = new TitleComparator(cachedKeys);
+    }
 
     @Override
     public int compare(Book b1, Book b2) {
@@ -5,6 +5,22 @@ import java.util.Comparator;
 
 public class TitleComparator implements Comparator<Book> {
 
+    private final boolean cachedKeys;
+
+    public TitleComparator() {
+        this(false);
+    }
+
+    /**
+     * @param cachedKeys сравнивать через ключи сортировки, закэшированные в книгах
+     *                   ({@link Book#compareTitleIgnoreCase(Book)}); порядок тот же,
+     *                   но каждое сравнение — это сравнение массивов байтов.
+     *                   Подходит для больших сортировок и отсортированных индексов
+     */
+    public TitleComparator(boolean cachedKeys) {
+        this.cachedKeys = cachedKeys;
+    }
+
     @Override
     public int compare(Book b1, Book b2) {
         // Сначала проверяем сами объекты
@@ -31,7 +47,7 @@ public class TitleComparator implements Comparator<Book> {
             return -1;
         }
         // Собственно сравниваем
-        return t1.compareToIgnoreCase(t2);
+        return cachedKeys ? b1.compareTitleIgnoreCase(b2) : t1.compareToIgnoreCase(t2);
     }
 
 }
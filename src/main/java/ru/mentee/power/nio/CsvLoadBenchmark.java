@@ -0,0 +1,88 @@
+package ru.mentee.power.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Сравнение построчной загрузки CSV ({@link CsvProductManager#loadProductsFromCsv})
+ * с загрузкой через отображение файла в память ({@link CsvProductManager#loadProductsMapped})
+ * и с чтением того же набора из бинарного файла ({@link ProductBinaryFile}).
+ *
+ * <p>Аргумент: количество продуктов в файле (по умолчанию 5 000 000, около 200 МБ).
+ */
+public class CsvLoadBenchmark {
+
+    private static final int DEFAULT_PRODUCTS = 5_000_000;
+    private static final int ROUNDS = 5;
+    private static final String DELIMITER = ";";
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PRODUCTS;
+
+        Path file = Files.createTempFile("products", ".csv");
+        Path binaryFile = Files.createTempFile("products", ".bin");
+        try {
+            CsvProductManager.saveProductsToCsv(generate(count), file.toString(), DELIMITER);
+            ProductBinaryFile.convertCsvToBinary(file, binaryFile, DELIMITER);
+            System.out.printf("Файл: %,d продуктов, CSV %,d МБ, бинарный %,d МБ%n", count,
+                    Files.size(file) / (1024 * 1024), Files.size(binaryFile) / (1024 * 1024));
+
+            // Прогоны чередуются, берётся лучшее время, чтобы исключить прогрев JIT
+            long lineBased = Long.MAX_VALUE;
+            long mapped = Long.MAX_VALUE;
+            long binary = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                lineBased = Math.min(lineBased, measure(file, name -> CsvProductManager.loadProductsFromCsv(name, DELIMITER)));
+                mapped = Math.min(mapped, measure(file, name -> CsvProductManager.loadProductsMapped(name, DELIMITER)));
+                binary = Math.min(binary, measure(binaryFile, CsvLoadBenchmark::readBinary));
+            }
+
+            long bytes = Files.size(file);
+            System.out.printf("BufferedReader + split: %,d мс (%.0f МБ/с)%n", lineBased, throughput(bytes, lineBased));
+            System.out.printf("FileChannel.map:        %,d мс (%.0f МБ/с)%n", mapped, throughput(bytes, mapped));
+            System.out.printf("Бинарный формат:        %,d мс (%.0f МБ/с)%n", binary,
+                    throughput(Files.size(binaryFile), binary));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(binaryFile);
+        }
+    }
+
+    private static long measure(Path file, Function<String, List<Product>> loader) {
+        long start = System.nanoTime();
+        List<Product> products = loader.apply(file.toString());
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (products.isEmpty()) {
+            throw new IllegalStateException("Загрузчик не прочитал ни одного продукта");
+        }
+        return millis;
+    }
+
+    private static List<Product> readBinary(String name) {
+        try (ProductBinaryFile binary = ProductBinaryFile.open(Path.of(name))) {
+            return binary.readAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double throughput(long bytes, long millis) {
+        return bytes / (1024.0 * 1024.0) / Math.max(millis, 1) * 1000;
+    }
+
+    private static List<Product> generate(int count) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(i, "Продукт " + random.nextInt(100_000),
+                    random.nextInt(10_000_000) / 100.0, random.nextInt(1_000)));
+        }
+        return products;
+    }
+}
@@ -1,60 +1,16 @@
 package ru.mentee.power.nio;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
-
-class Product {
-    private int id;
-    private String name;
-    private double price;
-    private int quantity;
-
-    public Product(int id, String name, double price, int quantity) {
-        this.id = id;
-        this.name = name;
-        this.price = price;
-        this.quantity = quantity;
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public double getPrice() {
-        return price;
-    }
-
-    public int getQuantity() {
-        return quantity;
-    }
-
-    @Override
-    public String toString() {
-        return "Product{id=" + id + ", name='" + name + "', price=" + price + ", quantity=" + quantity + '}';
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj) return true;
-        if (!(obj instanceof Product)) return false;
-        Product other = (Product) obj;
-        return id == other.id && Double.compare(price, other.price) == 0 && quantity == other.quantity && name.equals(other.name);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(id, name, price, quantity);
-    }
-}
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CsvProductManager {
     static final String CSV_HEADER = "ID;Name;Price;Quantity";
@@ -83,7 +39,7 @@ public class CsvProductManager {
         }
     }
 
-    private static String formatProductAsCsv(Product product, String delimiter) {
+    static String formatProductAsCsv(Product product, String delimiter) {
         return product.getId() + delimiter +
                 product.getName() + delimiter +
                 product.getPrice() + delimiter +
@@ -128,6 +84,116 @@ public class CsvProductManager {
         return products;
     }
 
+    /**
+     * Загружает список продуктов из CSV файла, отображённого в память.
+     * <p>
+     * В отличие от {@link #loadProductsFromCsv}, не создаёт строку на каждую строку файла
+     * и не использует регулярные выражения: числа разбираются прямо из байт файла,
+     * строка создаётся только для названия продукта. Подходит для многогигабайтных файлов.
+     *
+     * @param filename Имя файла.
+     * @param delimiter Разделитель полей (один ASCII-символ, без регулярных выражений).
+     * @return Список загруженных продуктов или пустой список в случае ошибки.
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ.
+     */
+    public static List<Product> loadProductsMapped(String filename, String delimiter) {
+        List<Product> products = new ArrayList<>();
+        readMapped(filename, delimiter, (id, buffer, nameFrom, nameTo, price, quantity) ->
+                products.add(new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity)));
+        return products;
+    }
+
+    /**
+     * Загружает продукты из CSV файла сразу в колоночный {@link ProductBatch}.
+     * <p>
+     * Файл читается так же, как в {@link #loadProductsMapped}, но объекты {@link Product}
+     * не создаются: поля пишутся в массивы, а названия кодируются словарём прямо по байтам файла.
+     *
+     * @param filename Имя файла.
+     * @param delimiter Разделитель полей (один ASCII-символ, без регулярных выражений).
+     * @return Пакет загруженных продуктов или пустой пакет в случае ошибки.
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ.
+     */
+    public static ProductBatch loadProductBatch(String filename, String delimiter) {
+        ProductBatch batch = new ProductBatch();
+        readMapped(filename, delimiter, batch::add);
+        return batch;
+    }
+
+    private static void readMapped(String filename, String delimiter, MappedCsvReader.RowVisitor visitor) {
+        byte delimiterByte = MappedCsvReader.toDelimiterByte(delimiter);
+        Path filePath = Paths.get(filename);
+
+        if (!Files.exists(filePath)) {
+            System.err.println("Файл не найден: " + filename);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            MappedCsvReader reader = new MappedCsvReader(channel, delimiterByte);
+            long dataStart = reader.skipHeader();
+            if (dataStart < 0) {
+                System.err.println("Ошибка: Файл не содержит правильного заголовка");
+                return;
+            }
+            reader.readRows(dataStart, channel.size(), 2, visitor);
+        } catch (IOException e) {
+            System.err.println("Ошибка при чтении файла CSV: " + filename + " -> " + e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает ленивый поток продуктов из CSV файла.
+     * <p>
+     * Файл читается через отображение в память порциями по мере потребления потока, поэтому
+     * фильтрация и агрегация работают в постоянной памяти независимо от размера файла.
+     * Параллельный поток делит файл по границам строк. Поток держит файл открытым —
+     * закрывайте его через try-with-resources.
+     *
+     * @param file Путь к файлу.
+     * @param delimiter Разделитель полей (один ASCII-символ, без регулярных выражений).
+     * @return Поток продуктов или пустой поток, если файл не найден или без заголовка.
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ.
+     * @throws java.io.UncheckedIOException при ошибке чтения во время обхода потока.
+     */
+    public static Stream<Product> streamProducts(Path file, String delimiter) {
+        byte delimiterByte = MappedCsvReader.toDelimiterByte(delimiter);
+        if (!Files.exists(file)) {
+            System.err.println("Файл не найден: " + file);
+            return Stream.empty();
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            MappedCsvReader reader = new MappedCsvReader(channel, delimiterByte);
+            long dataStart = reader.skipHeader();
+            if (dataStart < 0) {
+                System.err.println("Ошибка: Файл не содержит правильного заголовка");
+                channel.close();
+                return Stream.empty();
+            }
+            FileChannel opened = channel;
+            return StreamSupport.stream(new ProductSpliterator(reader, dataStart, channel.size(), 2), false)
+                    .onClose(() -> closeQuietly(opened));
+        } catch (IOException e) {
+            System.err.println("Ошибка при чтении файла CSV: " + file + " -> " + e.getMessage());
+            closeQuietly(channel);
+            return Stream.empty();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии файла: " + e.getMessage());
+        }
+    }
+
     /**
      * Загружает список продуктов из строки, содержащей CSV данные.
      *
@@ -141,15 +207,17 @@ public class CsvProductManager {
             return products;
         }
 
-        String[] lines = csvData.split("\\R"); // Универсальное разбиение на строки
-        if (lines.length <= 1) {
+        // Строки перебираются лениво, без промежуточного массива всех строк
+        Iterator<String> lines = csvData.lines().iterator();
+        lines.next(); // Пропускаем заголовок (первая строка)
+        if (!lines.hasNext()) {
             System.err.println("Ошибка: Данные CSV не содержат строк после заголовка.");
             return products;
         }
 
-        // Пропускаем заголовок (первая строка)
-        for (int i = 1; i < lines.length; i++) {
-            Product product = parseProductFromCsvLine(lines[i], delimiter, i + 1); // i+1 — номер строки
+        int lineNumber = 2;
+        while (lines.hasNext()) {
+            Product product = parseProductFromCsvLine(lines.next(), delimiter, lineNumber++);
             if (product != null) {
                 products.add(product);
             }
@@ -0,0 +1,375 @@
+package ru.mentee.power.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Читатель CSV продуктов поверх отображённого в память файла.
+ *
+ * <p>Файл отображается окнами через {@link FileChannel#map}, разделители и переводы строк
+ * ищутся прямо в байтах, а {@code int}/{@code double} разбираются из диапазонов байт без
+ * промежуточных строк. Строка создаётся только для названия продукта, и то лишь если
+ * получатель строк сам её попросит (см. {@link #decode}).
+ *
+ * <p>Формат тот же, что пишет {@link CsvProductManager#saveProductsToCsv}: четыре поля
+ * {@code ID;Name;Price;Quantity}, пробелы по краям полей игнорируются, пустые строки
+ * пропускаются, некорректные строки выводятся в {@code System.err} и пропускаются.
+ */
+final class MappedCsvReader {
+
+    /** Размер окна отображения по умолчанию: одно окно не может превышать 2 ГБ. */
+    static final long DEFAULT_WINDOW = 256L << 20;
+    /** Номер строки неизвестен (чтение с середины файла): ошибки указываются смещением. */
+    static final long UNKNOWN_LINE = 0;
+    /** Начальный запас на дочитывание последней строки диапазона. */
+    private static final long LINE_TAIL = 64L << 10;
+
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    /** Больше 18 значащих цифр не помещаются в long без потери точности. */
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    /** Мантисса до 2^53 и степени десяти до 10^22 представимы в double точно. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Получатель разобранных строк. Название передаётся диапазоном байт буфера,
+     * который действителен только во время вызова.
+     */
+    @FunctionalInterface
+    interface RowVisitor {
+        void row(int id, ByteBuffer buffer, int nameFrom, int nameTo, double price, int quantity);
+    }
+
+    private final FileChannel channel;
+    private final byte delimiter;
+    private final long window;
+    /** Некорректные строки; счётчик общий для частей файла, читаемых параллельно. */
+    private final AtomicLong errors = new AtomicLong();
+
+    MappedCsvReader(FileChannel channel, byte delimiter) {
+        this(channel, delimiter, DEFAULT_WINDOW);
+    }
+
+    MappedCsvReader(FileChannel channel, byte delimiter, long window) {
+        this.channel = channel;
+        this.delimiter = delimiter;
+        this.window = window;
+    }
+
+    /**
+     * Проверяет разделитель: сканирование по байтам возможно только для одного ASCII-символа.
+     *
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ
+     */
+    static byte toDelimiterByte(String delimiter) {
+        if (delimiter == null || delimiter.length() != 1 || delimiter.charAt(0) > 0x7F
+                || delimiter.charAt(0) == NEWLINE || delimiter.charAt(0) == CARRIAGE_RETURN) {
+            throw new IllegalArgumentException("Разделитель должен быть одним ASCII-символом: " + delimiter);
+        }
+        return (byte) delimiter.charAt(0);
+    }
+
+    /** Количество некорректных строк, пропущенных этим читателем. */
+    long getErrorCount() {
+        return errors.get();
+    }
+
+    // === Заголовок ===
+
+    /**
+     * Читает первую строку файла.
+     *
+     * @return смещение начала данных после заголовка или -1, если заголовок не содержит
+     *         {@link CsvProductManager#CSV_HEADER}
+     */
+    long skipHeader() throws IOException {
+        long size = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(window, size));
+        int end = indexOf(buffer, NEWLINE, 0, buffer.limit());
+        int lineEnd = end < 0 ? buffer.limit() : end;
+        String header = decode(buffer, 0, stripCarriageReturn(buffer, 0, lineEnd));
+        if (!header.contains(CsvProductManager.CSV_HEADER)) {
+            return -1;
+        }
+        return end < 0 ? size : end + 1;
+    }
+
+    // === Разбор строк ===
+
+    /**
+     * Разбирает строки, начинающиеся в диапазоне {@code [from, to)}. Смещение {@code from}
+     * должно указывать на начало строки; строка, начавшаяся до {@code to}, дочитывается целиком.
+     * Отображается только диапазон и небольшой запас на последнюю строку, а не всё окно.
+     *
+     * @param firstLine номер первой строки диапазона для сообщений об ошибках
+     *                  или {@link #UNKNOWN_LINE}, тогда строки указываются смещением в файле
+     * @return количество прочитанных строк, включая пустые и некорректные
+     * @throws IOException если строка длиннее окна отображения
+     */
+    long readRows(long from, long to, long firstLine, RowVisitor visitor) throws IOException {
+        long size = channel.size();
+        long position = from;
+        long lineNumber = firstLine;
+        long lines = 0;
+        long tail = LINE_TAIL;
+        while (position < to && position < size) {
+            long available = Math.min(window, size - position);
+            long length = Math.min(available, to - position + tail);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int limit = (int) length;
+            boolean lastWindow = position + length == size;
+            int start = 0;
+            while (start < limit && position + start < to) {
+                int end = indexOf(buffer, NEWLINE, start, limit);
+                if (end < 0) {
+                    if (!lastWindow) {
+                        break; // строка продолжается за окном — перечитаем её в следующем
+                    }
+                    end = limit;
+                }
+                parseLine(buffer, start, end, lineNumber, position + start, visitor);
+                lines++;
+                if (lineNumber != UNKNOWN_LINE) {
+                    lineNumber++;
+                }
+                start = end < limit ? end + 1 : limit;
+            }
+            if (start == 0) {
+                if (length == available) {
+                    throw new IOException("Строка по смещению " + position + " длиннее окна отображения ("
+                            + window + " байт)");
+                }
+                tail *= 2; // последняя строка не поместилась в запас — расширяем его
+                continue;
+            }
+            position += start;
+        }
+        return lines;
+    }
+
+    /**
+     * Находит начало первой строки, начинающейся не раньше {@code offset}.
+     *
+     * @return смещение начала строки или размер файла, если таких строк нет
+     */
+    long nextLineStart(long offset) throws IOException {
+        long size = channel.size();
+        if (offset <= 0 || offset >= size) {
+            return Math.max(0, Math.min(offset, size));
+        }
+        // Смотрим с предыдущего байта: если это перевод строки, offset уже начало строки
+        long position = offset - 1;
+        while (position < size) {
+            long length = Math.min(Math.min(window, LINE_TAIL), size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int end = indexOf(buffer, NEWLINE, 0, (int) length);
+            if (end >= 0) {
+                return position + end + 1;
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    private void parseLine(ByteBuffer buffer, int from, int to, long lineNumber, long offset,
+                           RowVisitor visitor) {
+        to = stripCarriageReturn(buffer, from, to);
+        if (isBlank(buffer, from, to)) {
+            return;
+        }
+
+        int first = indexOf(buffer, delimiter, from, to);
+        int second = first < 0 ? -1 : indexOf(buffer, delimiter, first + 1, to);
+        int third = second < 0 ? -1 : indexOf(buffer, delimiter, second + 1, to);
+        if (third < 0 || indexOf(buffer, delimiter, third + 1, to) >= 0) {
+            System.err.println("Ошибка в " + describeLine(lineNumber, offset) + ": неверное количество полей ("
+                    + countFields(buffer, from, to) + ").");
+            errors.incrementAndGet();
+            return;
+        }
+
+        try {
+            int id = parseInt(buffer, from, first);
+            double price = parseDouble(buffer, second + 1, third);
+            int quantity = parseInt(buffer, third + 1, to);
+            int nameFrom = skipSpaces(buffer, first + 1, second);
+            int nameTo = trimSpaces(buffer, nameFrom, second);
+            visitor.row(id, buffer, nameFrom, nameTo, price, quantity);
+        } catch (NumberFormatException e) {
+            System.err.println("Ошибка в " + describeLine(lineNumber, offset) + ": невозможно распарсить число.");
+            errors.incrementAndGet();
+        }
+    }
+
+    private static String describeLine(long lineNumber, long offset) {
+        return lineNumber == UNKNOWN_LINE ? "строке по смещению " + offset : "строке №" + lineNumber;
+    }
+
+    private int countFields(ByteBuffer buffer, int from, int to) {
+        int fields = 1;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == delimiter) {
+                fields++;
+            }
+        }
+        return fields;
+    }
+
+    // === Числа из байт ===
+
+    /** Разбирает целое со знаком, как {@link Integer#parseInt} после {@code trim()}. */
+    static int parseInt(ByteBuffer buffer, int from, int to) {
+        from = skipSpaces(buffer, from, to);
+        to = trimSpaces(buffer, from, to);
+        boolean negative = false;
+        if (from < to && (buffer.get(from) == '-' || buffer.get(from) == '+')) {
+            negative = buffer.get(from) == '-';
+            from++;
+        }
+        if (from == to || to - from > 10) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Разбирает десятичную дробь вида {@code -123.45e6}. Если мантисса и порядок позволяют
+     * получить точно округлённый результат одним умножением или делением, строка не создаётся;
+     * иначе (очень длинные числа, {@code NaN}, шестнадцатеричная запись) разбор передаётся
+     * {@link Double#parseDouble}.
+     */
+    static double parseDouble(ByteBuffer buffer, int from, int to) {
+        from = skipSpaces(buffer, from, to);
+        to = trimSpaces(buffer, from, to);
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (significant > 0 || b != '0') {
+                    significant++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (point) {
+                    scale--;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        int exponent = 0;
+        if (i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E') && digits > 0) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < to && exponentDigits < 4; i++, exponentDigits++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                exponent = exponent * 10 + digit;
+            }
+            if (exponentDigits == 0) {
+                return slowParseDouble(buffer, from, to);
+            }
+            exponent = negativeExponent ? -exponent : exponent;
+        }
+        if (i != to || digits == 0 || significant > MAX_MANTISSA_DIGITS || mantissa > MAX_EXACT_MANTISSA) {
+            return slowParseDouble(buffer, from, to);
+        }
+
+        int power = scale + exponent;
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (power >= 0 && power < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[power];
+        } else if (power < 0 && -power < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-power];
+        } else {
+            return slowParseDouble(buffer, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(ByteBuffer buffer, int from, int to) {
+        return Double.parseDouble(decode(buffer, from, to));
+    }
+
+    // === Байтовые утилиты ===
+
+    /** Декодирует диапазон байт буфера как UTF-8. */
+    static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int stripCarriageReturn(ByteBuffer buffer, int from, int to) {
+        return to > from && buffer.get(to - 1) == CARRIAGE_RETURN ? to - 1 : to;
+    }
+
+    /** Пробелом, как и в {@link String#trim()}, считается любой байт не больше {@code ' '}. */
+    private static int skipSpaces(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimSpaces(ByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int from, int to) {
+        return skipSpaces(buffer, from, to) == to;
+    }
+}
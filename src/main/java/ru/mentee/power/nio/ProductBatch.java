@@ -0,0 +1,312 @@
+package ru.mentee.power.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+
+/**
+ * Колоночное представление набора продуктов: {@code int[]} идентификаторов,
+ * {@code double[]} цен, {@code int[]} количеств и коды названий в словаре.
+ *
+ * <p>Агрегации написаны простыми циклами по примитивным массивам без ветвлений в теле,
+ * чтобы JIT мог их векторизовать. Отбор строк возвращает вектор выбора — массив номеров
+ * подходящих строк, — который передаётся в агрегации вместо копирования данных.
+ *
+ * <p>Названия кодируются словарём: каждое различное название хранится один раз, а строки
+ * ссылаются на него кодом. При заполнении из CSV ({@link CsvProductManager#loadProductBatch})
+ * название ищется в словаре прямо по байтам файла, и строка создаётся только для новых названий.
+ */
+public final class ProductBatch {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+
+    // === Словарь названий ===
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> nameBytes = new ArrayList<>();
+    /** Открытая адресация по хешу байт названия: код + 1, 0 — пустая ячейка. */
+    private int[] nameTable = new int[INITIAL_CAPACITY];
+
+    /** Собирает пакет из списка продуктов. */
+    public static ProductBatch of(List<Product> products) {
+        ProductBatch batch = new ProductBatch();
+        for (Product product : products) {
+            batch.add(product);
+        }
+        return batch;
+    }
+
+    // === Заполнение ===
+
+    /** Добавляет продукт в конец пакета. */
+    public void add(Product product) {
+        byte[] bytes = product.getName().getBytes(StandardCharsets.UTF_8);
+        append(product.getId(), encode(ByteBuffer.wrap(bytes), 0, bytes.length), product.getPrice(),
+                product.getQuantity());
+    }
+
+    /** Добавляет строку, название которой задано диапазоном байт UTF-8 (см. {@link MappedCsvReader.RowVisitor}). */
+    void add(int id, ByteBuffer buffer, int nameFrom, int nameTo, double price, int quantity) {
+        append(id, encode(buffer, nameFrom, nameTo), price, quantity);
+    }
+
+    private void append(int id, int nameCode, double price, int quantity) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+        }
+        ids[size] = id;
+        prices[size] = price;
+        quantities[size] = quantity;
+        nameCodes[size] = nameCode;
+        size++;
+    }
+
+    private int encode(ByteBuffer buffer, int from, int to) {
+        int hash = hash(buffer, from, to);
+        int mask = nameTable.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = nameTable[slot] - 1;
+            if (code < 0) {
+                break;
+            }
+            if (sameBytes(nameBytes.get(code), buffer, from, to)) {
+                return code;
+            }
+        }
+
+        int code = names.size();
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        nameBytes.add(bytes);
+        names.add(new String(bytes, StandardCharsets.UTF_8));
+        if (names.size() * 2 > nameTable.length) {
+            rehash(nameTable.length * 2);
+        } else {
+            insert(nameTable, hash, code);
+        }
+        return code;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        for (int code = 0; code < nameBytes.size(); code++) {
+            byte[] bytes = nameBytes.get(code);
+            insert(table, hash(ByteBuffer.wrap(bytes), 0, bytes.length), code);
+        }
+        nameTable = table;
+    }
+
+    private static void insert(int[] table, int hash, int code) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = code + 1;
+    }
+
+    private static int hash(ByteBuffer buffer, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameBytes(byte[] bytes, ByteBuffer buffer, int from, int to) {
+        if (bytes.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // === Доступ к строкам ===
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[checkRow(row)];
+    }
+
+    public String getName(int row) {
+        return names.get(nameCodes[checkRow(row)]);
+    }
+
+    public double getPrice(int row) {
+        return prices[checkRow(row)];
+    }
+
+    public int getQuantity(int row) {
+        return quantities[checkRow(row)];
+    }
+
+    /** Байты UTF-8 названия строки; массив общий со словарём, изменять его нельзя. */
+    byte[] getNameBytes(int row) {
+        return nameBytes.get(nameCodes[checkRow(row)]);
+    }
+
+    /** Байты UTF-8 названия из словаря; массив общий со словарём, изменять его нельзя. */
+    byte[] getNameBytesByCode(int code) {
+        return nameBytes.get(code);
+    }
+
+    /** Количество различных названий в словаре. */
+    public int getNameCount() {
+        return names.size();
+    }
+
+    /** Создаёт объект продукта для строки пакета. */
+    public Product toProduct(int row) {
+        checkRow(row);
+        return new Product(ids[row], names.get(nameCodes[row]), prices[row], quantities[row]);
+    }
+
+    /** Представление пакета списком продуктов; объекты создаются при обращении. */
+    public List<Product> asProducts() {
+        return new AbstractList<>() {
+            @Override
+            public Product get(int index) {
+                return toProduct(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне пакета из " + size + " строк");
+        }
+        return row;
+    }
+
+    // === Агрегации ===
+
+    /** Общая стоимость запасов: сумма {@code price * quantity} по всем строкам. */
+    public double totalStockValue() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += prices[i] * quantities[i];
+        }
+        return total;
+    }
+
+    /** Стоимость запасов по строкам вектора выбора. */
+    public double totalStockValue(int[] selection) {
+        double total = 0;
+        for (int row : selection) {
+            total += prices[row] * quantities[row];
+        }
+        return total;
+    }
+
+    /** Общее количество единиц товара. */
+    public long totalQuantity() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += quantities[i];
+        }
+        return total;
+    }
+
+    // === Отбор строк ===
+
+    /**
+     * Отбирает строки с ценой в диапазоне {@code [min, max]}.
+     *
+     * @return вектор выбора: номера подходящих строк по возрастанию
+     */
+    public int[] selectPriceBetween(double min, double max) {
+        int[] selection = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            // Номер пишется всегда, а счётчик сдвигается только для подходящих строк — без ветвления
+            selection[count] = i;
+            count += (prices[i] >= min & prices[i] <= max) ? 1 : 0;
+        }
+        return Arrays.copyOf(selection, count);
+    }
+
+    /**
+     * Отбирает строки, цена которых удовлетворяет условию.
+     *
+     * @return вектор выбора: номера подходящих строк по возрастанию
+     */
+    public int[] selectByPrice(DoublePredicate predicate) {
+        int[] selection = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (predicate.test(prices[i])) {
+                selection[count++] = i;
+            }
+        }
+        return Arrays.copyOf(selection, count);
+    }
+
+    // === Группировка по названию ===
+
+    /**
+     * Стоимость запасов по названиям.
+     *
+     * @return массив, индексированный кодом названия (см. {@link #getNameByCode})
+     */
+    public double[] stockValueByNameCode() {
+        double[] totals = new double[names.size()];
+        for (int i = 0; i < size; i++) {
+            totals[nameCodes[i]] += prices[i] * quantities[i];
+        }
+        return totals;
+    }
+
+    /**
+     * Количество единиц товара по названиям.
+     *
+     * @return массив, индексированный кодом названия (см. {@link #getNameByCode})
+     */
+    public long[] quantityByNameCode() {
+        long[] totals = new long[names.size()];
+        for (int i = 0; i < size; i++) {
+            totals[nameCodes[i]] += quantities[i];
+        }
+        return totals;
+    }
+
+    public String getNameByCode(int code) {
+        return names.get(code);
+    }
+
+    /** Стоимость запасов по названиям в порядке первого появления названия. */
+    public Map<String, Double> stockValueByName() {
+        double[] totals = stockValueByNameCode();
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int code = 0; code < totals.length; code++) {
+            result.put(names.get(code), totals[code]);
+        }
+        return result;
+    }
+}
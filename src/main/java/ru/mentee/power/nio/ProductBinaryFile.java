@@ -0,0 +1,312 @@
+package ru.mentee.power.nio;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Бинарный файл продуктов с записями фиксированной длины.
+ *
+ * <p>Структура файла:
+ * <pre>
+ * int  MAGIC ("PRDB"), int VERSION
+ * long количество строк
+ * int  ширина поля названия в байтах, int длина строки в байтах
+ * 8 байт резерва (заголовок — {@link #HEADER_SIZE} байт)
+ * строки: int id, double price, int quantity,
+ *         unsigned short длина названия, название UTF-8, дополненное нулями до ширины поля
+ * </pre>
+ * Цена хранится как {@code double} целиком, поэтому при повторной загрузке не разбирается
+ * из текста и не теряет точность. Ширина поля названия равна самому длинному названию
+ * в файле, так что строка {@code n} находится по смещению
+ * {@code HEADER_SIZE + n * rowSize} и читается одним позиционным чтением.
+ * Запись идёт во временный файл, который затем атомарно заменяет старый.
+ */
+public final class ProductBinaryFile implements Closeable {
+
+    /** Сигнатура файла: байты "PRDB". */
+    static final int MAGIC = 0x50524442;
+
+    /** Текущая версия формата. */
+    static final int VERSION = 1;
+
+    /** Размер заголовка в байтах. */
+    static final int HEADER_SIZE = 32;
+
+    /** Длина строки без поля названия: id, цена, количество и длина названия. */
+    private static final int ROW_FIXED = Integer.BYTES + Double.BYTES + Integer.BYTES + Short.BYTES;
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long rowCount;
+    private final int nameWidth;
+    private final int rowSize;
+
+    private ProductBinaryFile(Path file, FileChannel channel, long rowCount, int nameWidth) {
+        this.file = file;
+        this.channel = channel;
+        this.rowCount = rowCount;
+        this.nameWidth = nameWidth;
+        this.rowSize = ROW_FIXED + nameWidth;
+    }
+
+    // === Запись ===
+
+    /**
+     * Записывает продукты в бинарный файл.
+     *
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если название длиннее 65535 байт в UTF-8
+     */
+    public static void write(List<Product> products, Path file) throws IOException {
+        write(ProductBatch.of(products), file);
+    }
+
+    /**
+     * Записывает колоночный пакет продуктов в бинарный файл.
+     *
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если название длиннее 65535 байт в UTF-8
+     */
+    public static void write(ProductBatch batch, Path file) throws IOException {
+        int nameWidth = 0;
+        for (int code = 0; code < batch.getNameCount(); code++) {
+            nameWidth = Math.max(nameWidth, batch.getNameBytesByCode(code).length);
+        }
+        if (nameWidth > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Название длиннее " + MAX_NAME_BYTES + " байт");
+        }
+        int rowSize = ROW_FIXED + nameWidth;
+        byte[] padding = new byte[nameWidth];
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(batch.size()).putInt(nameWidth).putInt(rowSize).putLong(0);
+            for (int row = 0; row < batch.size(); row++) {
+                if (buffer.remaining() < rowSize) {
+                    flush(channel, buffer);
+                }
+                byte[] name = batch.getNameBytes(row);
+                buffer.putInt(batch.getId(row))
+                        .putDouble(batch.getPrice(row))
+                        .putInt(batch.getQuantity(row))
+                        .putShort((short) name.length)
+                        .put(name)
+                        .put(padding, 0, nameWidth - name.length);
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /** Сбрасывает на диск каталог, чтобы переименование временного файла пережило сбой питания. */
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows не даёт открыть каталог как файл, сбросить его там нельзя
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // === Чтение ===
+
+    /**
+     * Открывает бинарный файл продуктов для чтения.
+     *
+     * @throws IOException если файл повреждён, обрезан или записан другой версией формата
+     */
+    public static ProductBinaryFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Файл не является бинарным файлом продуктов: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия файла продуктов: " + version);
+            }
+            long rowCount = header.getLong();
+            int nameWidth = header.getInt();
+            int rowSize = header.getInt();
+            if (rowCount < 0 || nameWidth < 0 || nameWidth > MAX_NAME_BYTES || rowSize != ROW_FIXED + nameWidth
+                    || channel.size() != HEADER_SIZE + rowCount * rowSize) {
+                throw new IOException("Повреждён заголовок или файл обрезан: " + file);
+            }
+            return new ProductBinaryFile(file, channel, rowCount, nameWidth);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Количество строк в файле. */
+    public long size() {
+        return rowCount;
+    }
+
+    /**
+     * Читает строку по номеру одним позиционным чтением. Можно вызывать из разных потоков.
+     *
+     * @throws IndexOutOfBoundsException если номер вне файла
+     * @throws IOException               при ошибке чтения
+     */
+    public Product get(long row) throws IOException {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне файла из " + rowCount + " строк");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(rowSize);
+        readFully(channel, buffer, HEADER_SIZE + row * rowSize);
+        return decodeRow(buffer, row);
+    }
+
+    /** Читает все строки в список продуктов. */
+    public List<Product> readAll() throws IOException {
+        List<Product> products = new ArrayList<>((int) Math.min(rowCount, Integer.MAX_VALUE));
+        forEachRow((id, buffer, nameFrom, nameTo, price, quantity) ->
+                products.add(new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity)));
+        return products;
+    }
+
+    /** Читает все строки в колоночный пакет; каждое различное название декодируется один раз. */
+    public ProductBatch readBatch() throws IOException {
+        ProductBatch batch = new ProductBatch();
+        forEachRow(batch::add);
+        return batch;
+    }
+
+    /**
+     * Последовательно читает строки крупными блоками и передаёт их получателю.
+     * Название передаётся диапазоном байт буфера, действительным только во время вызова.
+     */
+    void forEachRow(MappedCsvReader.RowVisitor visitor) throws IOException {
+        int rowsPerBlock = Math.max(1, BUFFER_SIZE / rowSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowsPerBlock * rowSize);
+        for (long row = 0; row < rowCount; row += rowsPerBlock) {
+            int rows = (int) Math.min(rowsPerBlock, rowCount - row);
+            buffer.clear().limit(rows * rowSize);
+            readFully(channel, buffer, HEADER_SIZE + row * rowSize);
+            for (int i = 0, offset = 0; i < rows; i++, offset += rowSize) {
+                int nameLength = buffer.getShort(offset + ROW_FIXED - Short.BYTES) & 0xFFFF;
+                if (nameLength > nameWidth) {
+                    throw new IOException("Повреждена строка " + (row + i) + " файла продуктов: " + file);
+                }
+                visitor.row(buffer.getInt(offset), buffer, offset + ROW_FIXED, offset + ROW_FIXED + nameLength,
+                        buffer.getDouble(offset + Integer.BYTES), buffer.getInt(offset + Integer.BYTES + Double.BYTES));
+            }
+        }
+    }
+
+    private Product decodeRow(ByteBuffer buffer, long row) throws IOException {
+        int nameLength = buffer.getShort(ROW_FIXED - Short.BYTES) & 0xFFFF;
+        if (nameLength > nameWidth) {
+            throw new IOException("Повреждена строка " + row + " файла продуктов: " + file);
+        }
+        return new Product(buffer.getInt(0),
+                MappedCsvReader.decode(buffer, ROW_FIXED, ROW_FIXED + nameLength),
+                buffer.getDouble(Integer.BYTES),
+                buffer.getInt(Integer.BYTES + Double.BYTES));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Неожиданный конец файла продуктов");
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // === Преобразование CSV <-> бинарный формат ===
+
+    /**
+     * Преобразует CSV файл продуктов в бинарный. Некорректные строки CSV пропускаются.
+     * Если CSV не удалось прочитать, существующий бинарный файл не изменяется.
+     *
+     * @return количество записанных продуктов
+     * @throws IOException              если CSV не найден, не содержит заголовка,
+     *                                  или при ошибке чтения или записи
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ
+     */
+    public static long convertCsvToBinary(Path csv, Path binary, String delimiter) throws IOException {
+        byte delimiterByte = MappedCsvReader.toDelimiterByte(delimiter);
+        if (!Files.exists(csv)) {
+            throw new NoSuchFileException(csv.toString());
+        }
+        ProductBatch batch = new ProductBatch();
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            MappedCsvReader reader = new MappedCsvReader(channel, delimiterByte);
+            long dataStart = reader.skipHeader();
+            if (dataStart < 0) {
+                throw new IOException("Файл не содержит правильного заголовка: " + csv);
+            }
+            reader.readRows(dataStart, channel.size(), 2, batch::add);
+        }
+        write(batch, binary);
+        return batch.size();
+    }
+
+    /**
+     * Преобразует бинарный файл продуктов в CSV в формате {@link CsvProductManager#saveProductsToCsv}.
+     *
+     * @return количество записанных продуктов
+     * @throws IOException при ошибке чтения или записи
+     */
+    public static long convertBinaryToCsv(Path binary, Path csv, String delimiter) throws IOException {
+        try (ProductBinaryFile source = open(binary);
+             BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write(CsvProductManager.CSV_HEADER);
+            writer.newLine();
+            try {
+                source.forEachRow((id, buffer, nameFrom, nameTo, price, quantity) -> {
+                    try {
+                        writer.write(CsvProductManager.formatProductAsCsv(
+                                new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity),
+                                delimiter));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return source.size();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ru.mentee.power.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Параллельная загрузка множества CSV файлов продуктов.
+ *
+ * <p>Каждый файл разбирается в своём виртуальном потоке через {@link MappedCsvReader}, но
+ * одновременно разбирается не больше {@code parallelism} файлов. Продукты пачками по
+ * {@link #BATCH_SIZE} передаются через ограниченную очередь получателю, который вызывается
+ * в потоке, запустившем загрузку. Если получатель не успевает, разбор останавливается на
+ * записи в очередь, поэтому в памяти находится не больше
+ * {@code (queueCapacity + parallelism) * BATCH_SIZE} продуктов.
+ *
+ * <p>Ошибка чтения одного файла не прерывает загрузку: она записывается в его статистику,
+ * а продукты, уже переданные получателю до ошибки, остаются переданными. Исключение
+ * получателя, наоборот, прерывает загрузку всех файлов.
+ */
+public final class ProductIngestion {
+
+    /** Количество продуктов в одной пачке очереди. */
+    static final int BATCH_SIZE = 1024;
+    /** Признак конца файла в очереди; сравнивается по ссылке. */
+    private static final List<Product> END_OF_SHARD = new ArrayList<>(0);
+
+    private final int parallelism;
+    private final int queueCapacity;
+
+    /**
+     * @param parallelism   сколько файлов разбирается одновременно
+     * @param queueCapacity сколько пачек продуктов может ждать получателя
+     * @throws IllegalArgumentException если один из параметров не положителен
+     */
+    public ProductIngestion(int parallelism, int queueCapacity) {
+        if (parallelism <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Параллелизм и размер очереди должны быть положительными");
+        }
+        this.parallelism = parallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Загружает все файлы {@code *.csv} каталога в порядке имён.
+     *
+     * @throws IOException если каталог не удалось прочитать
+     * @see #ingest(List, String, Consumer)
+     */
+    public ProductIngestionReport ingestDirectory(Path directory, String delimiter, Consumer<Product> consumer)
+            throws IOException, InterruptedException {
+        List<Path> shards;
+        try (Stream<Path> files = Files.list(directory)) {
+            shards = files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .toList();
+        }
+        return ingest(shards, delimiter, consumer);
+    }
+
+    /**
+     * Загружает файлы и передаёт продукты получателю. Порядок продуктов внутри файла
+     * сохраняется, продукты разных файлов перемешиваются.
+     *
+     * @param shards    файлы с заголовком {@link CsvProductManager#CSV_HEADER}
+     * @param delimiter разделитель полей (один ASCII-символ)
+     * @param consumer  получатель продуктов; вызывается в текущем потоке
+     * @return статистика по каждому файлу
+     * @throws IllegalArgumentException если разделитель не один ASCII-символ
+     * @throws InterruptedException     если текущий поток прерван во время загрузки
+     */
+    public ProductIngestionReport ingest(List<Path> shards, String delimiter, Consumer<Product> consumer)
+            throws InterruptedException {
+        byte delimiterByte = MappedCsvReader.toDelimiterByte(delimiter);
+        long start = System.nanoTime();
+        BlockingQueue<List<Product>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Semaphore permits = new Semaphore(parallelism);
+
+        List<Future<ProductIngestionReport.ShardStats>> futures = new ArrayList<>(shards.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path shard : shards) {
+                futures.add(executor.submit(() -> parseShard(shard, delimiterByte, queue, permits)));
+            }
+            try {
+                drain(queue, shards.size(), consumer);
+            } catch (InterruptedException | RuntimeException | Error e) {
+                // Разбор остальных файлов прерывается, заблокированные на очереди потоки освобождаются
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+
+        List<ProductIngestionReport.ShardStats> stats = new ArrayList<>(futures.size());
+        for (Future<ProductIngestionReport.ShardStats> future : futures) {
+            try {
+                stats.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return new ProductIngestionReport(stats, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static void drain(BlockingQueue<List<Product>> queue, int shards, Consumer<Product> consumer)
+            throws InterruptedException {
+        int remaining = shards;
+        while (remaining > 0) {
+            List<Product> batch = queue.take();
+            if (batch == END_OF_SHARD) {
+                remaining--;
+                continue;
+            }
+            for (Product product : batch) {
+                consumer.accept(product);
+            }
+        }
+    }
+
+    private static ProductIngestionReport.ShardStats parseShard(Path shard, byte delimiter,
+                                                               BlockingQueue<List<Product>> queue,
+                                                               Semaphore permits) throws InterruptedException {
+        permits.acquire();
+        ProductIngestionReport.ShardStats stats;
+        try {
+            stats = parse(shard, delimiter, queue);
+        } catch (Error e) {
+            queue.put(END_OF_SHARD); // получатель не должен ждать файл, разбор которого аварийно прерван
+            throw e;
+        } finally {
+            permits.release();
+        }
+        queue.put(END_OF_SHARD);
+        return stats;
+    }
+
+    private static ProductIngestionReport.ShardStats parse(Path shard, byte delimiter,
+                                                          BlockingQueue<List<Product>> queue) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        BatchSink sink = new BatchSink(queue);
+        MappedCsvReader reader = null;
+        String failure = null;
+        try (FileChannel channel = FileChannel.open(shard, StandardOpenOption.READ)) {
+            bytes = channel.size();
+            reader = new MappedCsvReader(channel, delimiter);
+            long dataStart = reader.skipHeader();
+            if (dataStart < 0) {
+                failure = "Файл не содержит правильного заголовка";
+            } else {
+                reader.readRows(dataStart, bytes, 2, sink);
+                sink.flush();
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            failure = e.toString();
+            sink.flush();
+        }
+        long errors = reader == null ? 0 : reader.getErrorCount();
+        return new ProductIngestionReport.ShardStats(shard, bytes, sink.rows, errors,
+                Duration.ofNanos(System.nanoTime() - start), failure);
+    }
+
+    /**
+     * Собирает продукты файла в пачки и отправляет их в очередь, ожидая свободного места.
+     */
+    private static final class BatchSink implements MappedCsvReader.RowVisitor {
+
+        private final BlockingQueue<List<Product>> queue;
+        private List<Product> batch = new ArrayList<>(BATCH_SIZE);
+        private long rows;
+
+        BatchSink(BlockingQueue<List<Product>> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void row(int id, ByteBuffer buffer, int nameFrom, int nameTo, double price, int quantity) {
+            batch.add(new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity));
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Загрузка прервана");
+            }
+            rows += batch.size();
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+}
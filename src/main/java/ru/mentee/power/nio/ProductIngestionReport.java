@@ -0,0 +1,90 @@
+package ru.mentee.power.nio;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Итог загрузки набора файлов продуктов: статистика по каждому файлу и общее время.
+ * Ошибка в одном файле не прерывает загрузку остальных, а отражается в его статистике.
+ */
+public final class ProductIngestionReport {
+
+    /**
+     * Статистика одного файла.
+     *
+     * @param shard   путь к файлу
+     * @param bytes   размер файла в байтах
+     * @param rows    количество продуктов, переданных получателю
+     * @param errors  количество пропущенных некорректных строк
+     * @param elapsed время разбора, включая ожидание места в очереди
+     * @param failure причина, по которой файл не дочитан, или {@code null}
+     */
+    public record ShardStats(Path shard, long bytes, long rows, long errors, Duration elapsed, String failure) {
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        /**
+         * @return скорость разбора в байтах в секунду
+         */
+        public double bytesPerSecond() {
+            long nanos = Math.max(elapsed.toNanos(), 1);
+            return bytes * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    private final List<ShardStats> shards;
+    private final Duration elapsed;
+
+    ProductIngestionReport(List<ShardStats> shards, Duration elapsed) {
+        this.shards = Collections.unmodifiableList(shards);
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return статистика файлов в порядке, в котором они были переданы
+     */
+    public List<ShardStats> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return файлы, которые не удалось прочитать целиком
+     */
+    public List<ShardStats> getFailedShards() {
+        return shards.stream().filter(ShardStats::isFailed).toList();
+    }
+
+    public long getTotalRows() {
+        return shards.stream().mapToLong(ShardStats::rows).sum();
+    }
+
+    public long getTotalErrors() {
+        return shards.stream().mapToLong(ShardStats::errors).sum();
+    }
+
+    public long getTotalBytes() {
+        return shards.stream().mapToLong(ShardStats::bytes).sum();
+    }
+
+    /**
+     * @return общее время загрузки всех файлов
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductIngestionReport{" +
+                "shards=" + shards.size() +
+                ", failedShards=" + getFailedShards().size() +
+                ", totalRows=" + getTotalRows() +
+                ", totalErrors=" + getTotalErrors() +
+                ", elapsed=" + elapsed +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package ru.mentee.power.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Ленивый {@link Spliterator} продуктов по диапазону байт CSV файла.
+ *
+ * <p>Строки читаются порциями по {@link #CHUNK} байт через {@link MappedCsvReader}, поэтому
+ * в памяти одновременно находится не больше одной порции продуктов. Разделение для
+ * параллельных потоков идёт по границам строк: середина диапазона сдвигается к началу
+ * следующей строки, и каждая строка достаётся ровно одной части.
+ *
+ * <p>Номера строк в сообщениях об ошибках известны только для первой части; в отделённых
+ * частях некорректные строки указываются смещением в файле.
+ */
+final class ProductSpliterator implements Spliterator<Product> {
+
+    /** Размер порции, которую {@link #tryAdvance} разбирает за раз. */
+    static final long CHUNK = 1L << 20;
+    /** Диапазоны меньше этого размера не делятся: накладные расходы превысят выигрыш. */
+    static final long MIN_SPLIT = 4L << 20;
+    /** Грубая оценка длины строки для {@link #estimateSize()}. */
+    private static final long ESTIMATED_LINE_BYTES = 32;
+
+    private final MappedCsvReader reader;
+    private final long minSplit;
+    private long position;
+    private final long end;
+    private long lineNumber;
+    private ArrayDeque<Product> pending = new ArrayDeque<>();
+
+    ProductSpliterator(MappedCsvReader reader, long from, long to, long firstLine) {
+        this(reader, from, to, firstLine, MIN_SPLIT);
+    }
+
+    ProductSpliterator(MappedCsvReader reader, long from, long to, long firstLine, long minSplit) {
+        this.reader = reader;
+        this.position = from;
+        this.end = to;
+        this.lineNumber = firstLine;
+        this.minSplit = minSplit;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Product> action) {
+        while (pending.isEmpty() && position < end) {
+            readChunk();
+        }
+        Product product = pending.poll();
+        if (product == null) {
+            return false;
+        }
+        action.accept(product);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Product> action) {
+        while (!pending.isEmpty()) {
+            action.accept(pending.poll());
+        }
+        if (position < end) {
+            // Остаток диапазона разбирается одним проходом, без промежуточной очереди
+            try {
+                reader.readRows(position, end, lineNumber, (id, buffer, nameFrom, nameTo, price, quantity) ->
+                        action.accept(toProduct(id, buffer, nameFrom, nameTo, price, quantity)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position = end;
+        }
+    }
+
+    @Override
+    public Spliterator<Product> trySplit() {
+        if (end - position < minSplit) {
+            return null;
+        }
+        try {
+            long middle = reader.nextLineStart(position + (end - position) / 2);
+            if (middle <= position || middle >= end) {
+                return null;
+            }
+            // Первая половина (вместе с уже прочитанной очередью) уходит новой части
+            ProductSpliterator prefix = new ProductSpliterator(reader, position, middle, lineNumber, minSplit);
+            prefix.pending = pending;
+            pending = new ArrayDeque<>();
+            position = middle;
+            lineNumber = MappedCsvReader.UNKNOWN_LINE;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return pending.size() + (end - position) / ESTIMATED_LINE_BYTES;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private void readChunk() {
+        long chunkEnd = Math.min(end, position + CHUNK);
+        try {
+            long lines = reader.readRows(position, chunkEnd, lineNumber, (id, buffer, nameFrom, nameTo, price, quantity) ->
+                    pending.add(toProduct(id, buffer, nameFrom, nameTo, price, quantity)));
+            if (lineNumber != MappedCsvReader.UNKNOWN_LINE) {
+                lineNumber += lines;
+            }
+            // Строка, начавшаяся до конца порции, уже дочитана целиком
+            position = chunkEnd < end ? Math.min(end, reader.nextLineStart(chunkEnd)) : end;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Product toProduct(int id, ByteBuffer buffer, int nameFrom, int nameTo,
+                                     double price, int quantity) {
+        return new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты потокового экспорта книг в CSV")
+public class BookCsvExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LibraryManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        Book book1 = new Book("ISBN-1", "Мир; война и \"мир\"", 1869, Book.Genre.FICTION);
+        book1.addAuthor("Лев Толстой");
+        book1.setPageCount(1225);
+        Book book2 = new Book("ISBN-2", "Design Patterns", 1994, Book.Genre.PROGRAMMING);
+        book2.addAuthor("Erich Gamma");
+        book2.addAuthor("Richard Helm");
+        book2.setAvailable(false);
+        Book book3 = new Book("ISBN-3", "  Пробелы по краям ", 2000, Book.Genre.FICTION);
+        manager.addBook(book1);
+        manager.addBook(book2);
+        manager.addBook(book3);
+    }
+
+    private String export(ExportAction action) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        action.run(Channels.newChannel(bytes));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface ExportAction {
+        void run(WritableByteChannel channel) throws IOException;
+    }
+
+    @Test
+    @DisplayName("Должен брать в кавычки поля с разделителем и кавычками по RFC 4180")
+    void shouldQuoteFields() throws IOException {
+        // Когда
+        String csv = export(channel -> manager.exportBooksByGenreToCsv(channel, ";", Book.Genre.PROGRAMMING));
+
+        // Тогда
+        assertThat(csv).isEqualTo(
+                "ISBN;Title;Authors;Genre;Publication Year;Page Count;Available\r\n"
+                        + "ISBN-2;Design Patterns;\"" + String.join(";", manager.getBookByIsbn("ISBN-2").getAuthors())
+                        + "\";PROGRAMMING;1994;0;false\r\n");
+        assertThat(export(channel -> manager.exportBooksToCsv(channel, ";", b -> b.getIsbn().equals("ISBN-1"))))
+                .contains("ISBN-1;\"Мир; война и \"\"мир\"\"\";Лев Толстой;FICTION;1869;1225;true\r\n");
+    }
+
+    @Test
+    @DisplayName("Экспорт и импорт должны давать те же книги, даже если поля содержат разделитель")
+    void shouldRoundTripThroughImport() throws IOException {
+        // Дано
+        Path file = tempDir.resolve("books.csv");
+        manager.exportBooksToCsv(file.toString(), " ");
+
+        // Когда
+        LibraryManager loaded = new LibraryManager();
+        CsvImportReport report = loaded.importBooksFromCsv(file, " ");
+
+        // Тогда
+        assertThat(report.getRejectedRows()).isEmpty();
+        assertThat(loaded.getAllBooks()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("availabilityListener")
+                .containsExactlyInAnyOrderElementsOf(manager.getAllBooks());
+    }
+
+    @Test
+    @DisplayName("Экспорт и импорт должны сохранять авторов с ';' и '\\' в имени и книги без жанра")
+    void shouldRoundTripEscapedAuthorsAndMissingGenre() throws IOException {
+        // Дано
+        Book book = new Book("ISBN-4", "Сборник", 2010, null);
+        book.addAuthor("Иванов; Петров");
+        book.addAuthor("C:\\Авторы\\");
+        book.addAuthor("Сидоров");
+        manager.addBook(book);
+        Path file = tempDir.resolve("books.csv");
+
+        // Когда
+        manager.exportBooksToCsv(file.toString(), "|");
+        LibraryManager loaded = new LibraryManager();
+        CsvImportReport report = loaded.importBooksFromCsv(file, "|");
+
+        // Тогда
+        assertThat(Files.readString(file)).contains("|Сборник|").contains("Иванов\\; Петров").contains("||2010|");
+        assertThat(report.getRejectedRows()).isEmpty();
+        assertThat(loaded.getBookByIsbn("ISBN-4").getAuthors())
+                .containsExactlyInAnyOrder("Иванов; Петров", "C:\\Авторы\\", "Сидоров");
+        assertThat(loaded.getAllBooks()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("availabilityListener")
+                .containsExactlyInAnyOrderElementsOf(manager.getAllBooks());
+    }
+
+    @Test
+    @DisplayName("Должен выгружать отфильтрованные книги в GZIP-поток")
+    void shouldExportFilteredBooksToGzip() throws IOException {
+        // Дано
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        // Когда
+        long count;
+        try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+            count = manager.exportBooksToCsv(Channels.newChannel(gzip), ",", Book::isAvailable);
+        }
+
+        // Тогда
+        assertThat(count).isEqualTo(2);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            String csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(csv.lines()).hasSize(3).noneMatch(line -> line.startsWith("ISBN-2"));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен выгружать книги автора и пустой файл с заголовком для неизвестного автора")
+    void shouldExportBooksByAuthor() throws IOException {
+        assertThat(export(channel -> manager.exportBooksByAuthorToCsv(channel, ",", "Richard Helm")).lines())
+                .hasSize(2);
+        assertThat(export(channel -> manager.exportBooksByAuthorToCsv(channel, ",", "Неизвестный")).lines())
+                .containsExactly("ISBN,Title,Authors,Genre,Publication Year,Page Count,Available");
+    }
+
+    @Test
+    @DisplayName("Ошибка записи в файл не должна проглатываться")
+    void shouldPropagateWriteErrors() throws IOException {
+        // Дано
+        Path directory = Files.createDirectory(tempDir.resolve("dir"));
+
+        // Тогда
+        assertThatThrownBy(() -> manager.exportBooksToCsv(directory.toString(), ";"))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+}
@@ -0,0 +1,181 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты параллельного импорта книг из CSV")
+public class BookCsvImporterTest {
+
+    private static final String HEADER = "ISBN|Title|Authors|Genre|Publication Year|Page Count|Available";
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(List<String> lines) throws IOException {
+        Path file = tempDir.resolve("books.csv");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    @DisplayName("Должен импортировать книги, экспортированные exportBooksToCsv")
+    void shouldImportExportedBooks() throws IOException {
+        // Дано
+        LibraryManager source = new LibraryManager();
+        Book book = new Book("ISBN-1", "Война и мир", 1869, Book.Genre.FICTION);
+        book.addAuthor("Лев Толстой");
+        book.setPageCount(1225);
+        book.setAvailable(false);
+        source.addBook(book);
+        Path file = tempDir.resolve("export.csv");
+        source.exportBooksToCsv(file.toString(), "|");
+
+        // Когда
+        LibraryManager target = new LibraryManager();
+        CsvImportReport report = target.importBooksFromCsv(file, "|");
+
+        // Тогда
+        assertThat(report.getImportedCount()).isEqualTo(1);
+        assertThat(report.getRejectedRows()).isEmpty();
+        assertThat(target.getBookByIsbn("ISBN-1")).usingRecursiveComparison().ignoringFields("availabilityListener").isEqualTo(book);
+        assertThat(target.getBooksByAuthor("Лев Толстой")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Ошибочные строки и повторы ISBN должны попадать в отчёт с номерами строк")
+    void shouldReportRejectedRows() throws IOException {
+        // Дано
+        LibraryManager manager = new LibraryManager();
+        manager.addBook(new Book("ISBN-0", "Уже в каталоге", 2000, Book.Genre.HISTORY));
+        Path file = write(List.of(
+                HEADER,
+                "ISBN-1|Книга|Автор А;Автор Б|fiction|2001|100|true",
+                "ISBN-2|Без полей",
+                "ISBN-3|Книга|Автор|NO_SUCH_GENRE|2001|100|true",
+                "",
+                "ISBN-4|Книга|Автор|SCIENCE|год|100|true",
+                "ISBN-0|Повтор|Автор|SCIENCE|2001|100|true",
+                "ISBN-1|Повтор в файле|Автор|SCIENCE|2001|100|true"));
+
+        // Когда
+        CsvImportReport report = manager.importBooksFromCsv(file, "|");
+
+        // Тогда
+        assertThat(report.getTotalRows()).isEqualTo(6);
+        assertThat(report.getImportedCount()).isEqualTo(1);
+        assertThat(report.getDuplicateCount()).isEqualTo(2);
+        assertThat(report.getRejectedRows())
+                .extracting(CsvImportReport.RejectedRow::lineNumber)
+                .containsExactly(3L, 4L, 6L, 7L, 8L);
+        assertThat(report.getRejectedRows().get(0).line()).isEqualTo("ISBN-2|Без полей");
+        assertThat(manager.getBookByIsbn("ISBN-1").getAuthors()).containsExactlyInAnyOrder("Автор А", "Автор Б");
+        assertThat(manager.getBookByIsbn("ISBN-0").getTitle()).isEqualTo("Уже в каталоге");
+    }
+
+    @Test
+    @DisplayName("Должен разбирать большой файл по частям без потери и повторения строк")
+    void shouldImportLargeFileInChunks() throws IOException {
+        // Дано
+        int count = 60_000;
+        List<String> lines = new ArrayList<>(count + 1);
+        lines.add(HEADER);
+        for (int i = 0; i < count; i++) {
+            lines.add("ISBN-" + i + "|Книга номер " + i + "|Автор " + i % 100 + "|PROGRAMMING|" + (1900 + i % 100)
+                    + "|" + i + "|" + (i % 2 == 0));
+        }
+        lines.add(count / 2, "сломанная строка");
+        Path file = write(lines);
+        assertThat(Files.size(file)).isGreaterThan(2L << 20);
+
+        // Когда
+        LibraryManager manager = new LibraryManager();
+        CsvImportReport report = manager.importBooksFromCsv(file, "|");
+
+        // Тогда
+        assertThat(report.getImportedCount()).isEqualTo(count);
+        assertThat(report.getRejectedRows()).singleElement()
+                .satisfies(row -> assertThat(row.lineNumber()).isEqualTo(count / 2 + 1));
+        assertThat(manager.getAllBooks()).hasSize(count);
+        assertThat(manager.getBooksByGenre(Book.Genre.PROGRAMMING)).hasSize(count);
+        assertThat(manager.getBooksByAuthor("Автор 7")).hasSize(count / 100);
+        assertThat(manager.getBookByIsbn("ISBN-12345").getPageCount()).isEqualTo(12345);
+    }
+
+    @Test
+    @DisplayName("Экспорт и импорт должны сохранять переводы строк в полях и книги без жанра")
+    void shouldRoundTripMultilineFieldsAndMissingGenre() throws IOException {
+        // Дано
+        LibraryManager source = new LibraryManager();
+        Book multiline = new Book("ISBN-1", "Первая строка\nвторая строка\r\nтретья", 1900, Book.Genre.FICTION);
+        multiline.addAuthor("Автор\nс переводом строки");
+        Book withoutGenre = new Book("ISBN-2", "Без жанра", 2000, null);
+        withoutGenre.addAuthor("Автор");
+        source.addBook(multiline);
+        source.addBook(withoutGenre);
+        source.addBook(new Book("ISBN-3", "После многострочной", 2001, Book.Genre.SCIENCE));
+        Path file = tempDir.resolve("export.csv");
+        source.exportBooksToCsv(file.toString(), "|");
+
+        // Когда
+        LibraryManager target = new LibraryManager();
+        CsvImportReport report = target.importBooksFromCsv(file, "|");
+
+        // Тогда
+        assertThat(report.getRejectedRows()).isEmpty();
+        assertThat(target.getAllBooks()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("availabilityListener")
+                .containsExactlyInAnyOrderElementsOf(source.getAllBooks());
+        assertThat(target.getBookByIsbn("ISBN-2").getGenre()).isNull();
+    }
+
+    @Test
+    @DisplayName("Границы частей внутри полей в кавычках не должны терять и дробить записи")
+    void shouldImportMultilineRecordsAcrossChunkBoundaries() throws IOException {
+        // Дано: почти все переводы строк файла стоят внутри полей в кавычках
+        int count = 20_000;
+        String title = "\"" + "строка названия\n".repeat(10) + "\"";
+        List<String> lines = new ArrayList<>(count + 2);
+        lines.add(HEADER);
+        for (int i = 0; i < count; i++) {
+            lines.add("ISBN-" + i + "|" + title + "|Автор|HISTORY|1900|" + i + "|true");
+        }
+        lines.add("сломанная строка");
+        Path file = write(lines);
+        assertThat(Files.size(file)).isGreaterThan(4L << 20);
+
+        // Когда
+        LibraryManager manager = new LibraryManager();
+        CsvImportReport report = manager.importBooksFromCsv(file, "|");
+
+        // Тогда: каждая запись занимает 11 строк файла
+        assertThat(report.getImportedCount()).isEqualTo(count);
+        assertThat(report.getRejectedRows()).singleElement()
+                .satisfies(row -> assertThat(row.lineNumber()).isEqualTo(2 + 11L * count));
+        assertThat(manager.getBookByIsbn("ISBN-12345").getTitle()).isEqualTo("строка названия\n".repeat(10));
+        assertThat(manager.getBookByIsbn("ISBN-12345").getPageCount()).isEqualTo(12345);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять файл с неверным заголовком")
+    void shouldRejectWrongHeader() throws IOException {
+        // Дано
+        Path file = write(List.of("ISBN;Title", "ISBN-1;Книга"));
+        LibraryManager manager = new LibraryManager();
+
+        // Тогда
+        assertThatThrownBy(() -> manager.importBooksFromCsv(file, "|"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("формат");
+        assertThat(manager.importBooksFromCsv(file.toString(), "|", true)).isZero();
+    }
+}
@@ -0,0 +1,228 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты составных запросов к каталогу")
+public class BookQueryTest {
+
+    private LibraryManager manager;
+
+    private Book addBook(String isbn, String title, int year, Book.Genre genre, String... authors) {
+        Book book = new Book(isbn, title, year, genre);
+        for (String author : authors) {
+            book.addAuthor(author);
+        }
+        manager.addBook(book);
+        return book;
+    }
+
+    private static List<String> isbns(Iterator<Book> iterator) {
+        List<String> result = new ArrayList<>();
+        iterator.forEachRemaining(book -> result.add(book.getIsbn()));
+        return result;
+    }
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        addBook("1", "Война и мир", 1869, Book.Genre.FICTION, "Лев Толстой");
+        addBook("2", "Анна Каренина", 1877, Book.Genre.FICTION, "Лев Толстой");
+        addBook("3", "Краткая история времени", 1988, Book.Genre.SCIENCE, "Стивен Хокинг");
+        addBook("4", "Design Patterns", 1994, Book.Genre.PROGRAMMING, "Erich Gamma", "Richard Helm");
+        addBook("5", "Effective Java", 2001, Book.Genre.PROGRAMMING, "Joshua Bloch");
+        addBook("6", "Java Concurrency in Practice", 2006, Book.Genre.PROGRAMMING, "Brian Goetz", "Joshua Bloch");
+        manager.getBookByIsbn("5").setAvailable(false);
+    }
+
+    @Test
+    @DisplayName("Должен пересекать условия по жанру, диапазону лет и автору")
+    void shouldIntersectIndexedConditions() {
+        BookQuery query = BookQuery.genre(Book.Genre.PROGRAMMING)
+                .and(BookQuery.yearBetween(1990, 2005))
+                .and(BookQuery.author("Joshua Bloch"));
+
+        assertThat(isbns(manager.findBooks(query))).containsExactly("5");
+        assertThat(isbns(manager.findBooks(BookQuery.yearBetween(1860, 1990)))).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    @DisplayName("Должен объединять условия и проверять условия без индекса на кандидатах")
+    void shouldCombineOrAndResidualConditions() {
+        BookQuery query = BookQuery.author("Лев Толстой").or(BookQuery.genre(Book.Genre.PROGRAMMING))
+                .and(BookQuery.available(true))
+                .and(BookQuery.minAuthors(1));
+
+        assertThat(isbns(manager.findBooks(query))).containsExactly("1", "2", "4", "6");
+        assertThat(isbns(manager.findBooks(BookQuery.minAuthors(2).or(BookQuery.available(false)))))
+                .containsExactly("4", "5", "6");
+        assertThat(isbns(manager.findBooks(BookQuery.titleContains("JAVA").and(BookQuery.minAuthors(2)))))
+                .containsExactly("6");
+    }
+
+    @Test
+    @DisplayName("Пустой результат не должен зависеть от порядка условий")
+    void shouldReturnEmptyResultForContradictoryConditions() {
+        Iterator<Book> iterator = manager.findBooks(BookQuery.genre(Book.Genre.SCIENCE)
+                .and(BookQuery.author("Joshua Bloch")));
+
+        assertThat(iterator.hasNext()).isFalse();
+        assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+        assertThat(isbns(manager.findBooks(BookQuery.anyOf()))).isEmpty();
+        assertThat(isbns(manager.findBooks(BookQuery.allOf()))).hasSize(6);
+    }
+
+    @Test
+    @DisplayName("Должен разбивать результат на страницы и считать общее количество")
+    void shouldPaginateResults() {
+        // Когда
+        Page<Book> indexed = manager.findBooks(BookQuery.genre(Book.Genre.PROGRAMMING), 1, 2);
+        Page<Book> filtered = manager.findBooks(BookQuery.available(true), 0, 2);
+
+        // Тогда
+        assertThat(indexed.items()).extracting(Book::getIsbn).containsExactly("6");
+        assertThat(indexed.totalCount()).isEqualTo(3);
+        assertThat(indexed.hasNext()).isFalse();
+        assertThat(filtered.items()).extracting(Book::getIsbn).containsExactly("1", "2");
+        assertThat(filtered.totalCount()).isEqualTo(5);
+        assertThatThrownBy(() -> manager.findBooks(BookQuery.available(true), 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Индексы должны обновляться при добавлении и удалении книг")
+    void shouldFollowCatalogChanges() {
+        // Дано: индексы уже построены
+        assertThat(isbns(manager.findBooks(BookQuery.genre(Book.Genre.FICTION)))).containsExactly("1", "2");
+
+        // Когда: удалённая книга освобождает номер, который получает новая
+        manager.removeBook("1");
+        addBook("7", "Воскресение", 1899, Book.Genre.FICTION, "Лев Толстой");
+
+        // Тогда
+        assertThat(isbns(manager.findBooks(BookQuery.author("Лев Толстой")))).containsExactlyInAnyOrder("2", "7");
+        assertThat(isbns(manager.findBooks(BookQuery.year(1869)))).isEmpty();
+        assertThat(manager.findBooks(BookQuery.yearBetween(1800, 1900), 0, 10).totalCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Запрос по жанру null должен находить книги без жанра")
+    void shouldFindBooksWithoutGenre() {
+        // Дано
+        addBook("7", "Без жанра", 1869, null);
+        addBook("8", "Тоже без жанра", 2001, null);
+
+        // Когда / Тогда
+        assertThat(isbns(manager.getBooksByGenreAndYearIterator(null, 1869))).containsExactly("7");
+        assertThat(manager.countBooks(BookQuery.genre(null))).isEqualTo(2);
+        assertThat(isbns(manager.findBooks(BookQuery.genre(null).or(BookQuery.year(1877)))))
+                .containsExactly("2", "7", "8");
+
+        manager.removeBook("7");
+        assertThat(isbns(manager.findBooks(BookQuery.genre(null)))).containsExactly("8");
+    }
+
+    @Test
+    @DisplayName("Выдача и возврат должны обновлять битовое множество доступности")
+    void shouldTrackAvailabilityOnBorrowAndReturn() {
+        // Дано: индексы уже построены
+        assertThat(manager.countBooks(BookQuery.available(true))).isEqualTo(5);
+        manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+
+        // Когда
+        manager.borrowBook("4", "R1", 14);
+        manager.borrowBook("1", "R1", 14);
+        manager.returnBook("1", "R1");
+
+        // Тогда
+        assertThat(manager.countBooks(BookQuery.available(true))).isEqualTo(4);
+        assertThat(manager.countBooks(BookQuery.genre(Book.Genre.PROGRAMMING).and(BookQuery.available(false))))
+                .isEqualTo(2);
+        assertThat(manager.getAvailableBooksByGenre(Book.Genre.PROGRAMMING)).extracting(Book::getIsbn)
+                .containsExactly("6");
+        assertThat(manager.getAvailableBooks()).extracting(Book::getIsbn).containsExactly("1", "2", "3", "6");
+    }
+
+    @Test
+    @DisplayName("Прямое изменение флага книги после построения индексов должно отражаться в запросах")
+    void shouldTrackAvailabilityChangedDirectlyOnBook() {
+        // Дано: индексы и отсортированные представления уже построены
+        assertThat(manager.getAvailableBooks()).hasSize(5);
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 0, 1).items()).hasSize(1);
+
+        // Когда
+        manager.getBookByIsbn("1").setAvailable(false);
+        manager.getBookByIsbn("5").setAvailable(true);
+
+        // Тогда
+        assertThat(manager.getAvailableBooks()).extracting(Book::getIsbn).containsExactly("2", "3", "4", "5", "6");
+        assertThat(manager.countBooks(BookQuery.available(true))).isEqualTo(5);
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 0, 6).items().get(5).getIsbn()).isEqualTo("1");
+
+        // Когда: книга удалена из каталога, её флаг больше не влияет на индексы
+        Book removed = manager.getBookByIsbn("2");
+        manager.removeBook("2");
+        removed.setAvailable(false);
+
+        // Тогда
+        assertThat(manager.countBooks(BookQuery.available(false))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Параллельные выдачи и возвраты не должны рассинхронизировать индекс доступности")
+    void shouldKeepAvailabilityConsistentUnderConcurrentBorrowing() throws InterruptedException {
+        // Дано
+        ConcurrentLibraryManager concurrent = new ConcurrentLibraryManager();
+        for (int i = 0; i < 100; i++) {
+            concurrent.addBook(new Book("C" + i, "Книга " + i, 2000, Book.Genre.FICTION));
+        }
+        concurrent.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+        assertThat(concurrent.countBooks(BookQuery.available(true))).isEqualTo(100);
+
+        // Когда
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int shift = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    String isbn = "C" + ((i * 7 + shift) % 100);
+                    if (!concurrent.borrowBook(isbn, "R1", 14)) {
+                        concurrent.returnBook(isbn, "R1");
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Тогда
+        long actual = concurrent.getAllBooks().stream().filter(Book::isAvailable).count();
+        assertThat(concurrent.countBooks(BookQuery.available(true))).isEqualTo(actual);
+        assertThat(concurrent.getAvailableBooks()).allMatch(Book::isAvailable).hasSize((int) actual);
+    }
+
+    @Test
+    @DisplayName("Многопоточный менеджер должен выполнять запросы так же")
+    void shouldQueryConcurrentManager() {
+        // Дано
+        LibraryManager concurrent = new ConcurrentLibraryManager();
+        for (Book book : manager.getAllBooks()) {
+            concurrent.addBook(book);
+        }
+
+        // Тогда
+        assertThat(isbns(concurrent.findBooks(BookQuery.genre(Book.Genre.PROGRAMMING).and(BookQuery.minAuthors(2)))))
+                .containsExactlyInAnyOrder("4", "6");
+        assertThat(concurrent.findBooks(BookQuery.author("Лев Толстой"), 0, 1).totalCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,200 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Тесты аналитики по истории выдач")
+public class BorrowingAnalyticsTest {
+
+    private LibraryManager manager;
+
+    private void addLoan(String isbn, String readerId, LocalDate borrowDate, int days, Integer returnedAfter) {
+        Borrowing borrowing = new Borrowing(isbn, readerId, borrowDate, borrowDate.plusDays(days));
+        if (returnedAfter != null) {
+            borrowing.setReturnDate(borrowDate.plusDays(returnedAfter));
+        }
+        manager.getAllBorrowings().add(borrowing);
+    }
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        manager.addBook(new Book("F1", "Война и мир", 1869, Book.Genre.FICTION));
+        manager.addBook(new Book("S1", "Краткая история времени", 1988, Book.Genre.SCIENCE));
+        manager.addReader(new Reader("ST", "Студент", "st@example.com", Reader.ReaderCategory.STUDENT));
+        manager.addReader(new Reader("VIP", "Гость", "vip@example.com", Reader.ReaderCategory.VIP));
+
+        addLoan("F1", "ST", LocalDate.of(2024, 1, 10), 14, 10);
+        addLoan("S1", "ST", LocalDate.of(2024, 1, 20), 14, 20);
+        addLoan("F1", "VIP", LocalDate.of(2024, 2, 5), 14, 4);
+        addLoan("S1", "VIP", LocalDate.of(2024, 2, 6), 14, null);
+        addLoan("GONE", "ST", LocalDate.of(2024, 2, 7), 14, 7);
+    }
+
+    @Test
+    @DisplayName("Должен считать выдачи по жанрам за каждый месяц")
+    void shouldCountLoansPerGenreByMonth() {
+        // Когда
+        SortedMap<YearMonth, Map<Book.Genre, Long>> result = manager.loansPerGenreByMonth(LocalDate.of(2023, 12, 1), LocalDate.of(2024, 12, 31));
+
+        // Тогда: книга, которой уже нет в каталоге, не попадает в жанры
+        assertThat(result).containsOnlyKeys(YearMonth.of(2024, 1), YearMonth.of(2024, 2));
+        assertThat(result.get(YearMonth.of(2024, 1)))
+                .containsEntry(Book.Genre.FICTION, 1L)
+                .containsEntry(Book.Genre.SCIENCE, 1L);
+        assertThat(result.get(YearMonth.of(2024, 2))).hasSize(2);
+        assertThat(manager.loansPerGenreByMonth(LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 31)))
+                .containsExactly(Map.entry(YearMonth.of(2024, 1), Map.of(Book.Genre.SCIENCE, 1L)));
+    }
+
+    @Test
+    @DisplayName("Должен считать средний срок чтения по категориям читателей")
+    void shouldAverageLoanDurationByCategory() {
+        Map<Reader.ReaderCategory, Double> result = manager.averageLoanDurationByCategory(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        assertThat(result).containsOnlyKeys(Reader.ReaderCategory.STUDENT, Reader.ReaderCategory.VIP);
+        assertThat(result.get(Reader.ReaderCategory.STUDENT)).isCloseTo(37.0 / 3, within(1e-9));
+        assertThat(result.get(Reader.ReaderCategory.VIP)).isEqualTo(4.0);
+    }
+
+    @Test
+    @DisplayName("Должен считать долю просрочек по неделям с учётом даты оценки")
+    void shouldComputeOverdueRateByWeek() {
+        // Тогда: на 10 февраля невозвращённая книга ещё не просрочена, на 1 марта — уже да
+        assertThat(manager.overdueRateByWeek(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29),
+                LocalDate.of(2024, 2, 10)))
+                .containsEntry(LocalDate.of(2024, 1, 15), 1.0)
+                .containsEntry(LocalDate.of(2024, 2, 5), 0.0)
+                .hasSize(3);
+        assertThat(manager.overdueRateByWeek(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29),
+                LocalDate.of(2024, 3, 1)))
+                .containsExactly(Map.entry(LocalDate.of(2024, 2, 5), 1.0 / 3));
+    }
+
+    @Test
+    @DisplayName("Результаты на большой случайной истории должны совпадать с прямым подсчётом")
+    void shouldMatchDirectComputationOnLargeHistory() {
+        // Дано: даты идут в обе стороны от первой, чтобы агрегаты расширялись и влево, и вправо
+        Random random = new Random(1);
+        BorrowingAnalytics analytics = new BorrowingAnalytics();
+        List<int[]> loans = new ArrayList<>();
+        LocalDate origin = LocalDate.of(2020, 6, 1);
+        for (int i = 0; i < 50_000; i++) {
+            int borrow = random.nextInt(2000) - 1000;
+            int due = borrow + 14;
+            int returned = random.nextInt(4) == 0 ? Integer.MIN_VALUE : borrow + random.nextInt(30);
+            int genre = random.nextInt(Book.Genre.values().length);
+            int category = random.nextInt(Reader.ReaderCategory.values().length);
+            loans.add(new int[]{borrow, due, returned, genre, category});
+            analytics.addLoan("B" + genre, Book.Genre.values()[genre],
+                    "R" + category, Reader.ReaderCategory.values()[category],
+                    origin.plusDays(borrow), origin.plusDays(due),
+                    returned == Integer.MIN_VALUE ? null : origin.plusDays(returned));
+        }
+        LocalDate from = origin.minusDays(300);
+        LocalDate to = origin.plusDays(500);
+        LocalDate asOf = origin.plusDays(200);
+
+        // Когда
+        SortedMap<YearMonth, Map<Book.Genre, Long>> byMonth = analytics.loansPerGenreByMonth(from, to);
+        SortedMap<LocalDate, Double> overdue = analytics.overdueRateByWeek(from, to, asOf);
+
+        // Тогда
+        SortedMap<YearMonth, Long> expectedFiction = new TreeMap<>();
+        SortedMap<LocalDate, long[]> expectedWeeks = new TreeMap<>();
+        for (int[] loan : loans) {
+            LocalDate borrowDate = origin.plusDays(loan[0]);
+            if (borrowDate.isBefore(from) || borrowDate.isAfter(to)) {
+                continue;
+            }
+            if (loan[3] == Book.Genre.FICTION.ordinal()) {
+                expectedFiction.merge(YearMonth.from(borrowDate), 1L, Long::sum);
+            }
+            long[] week = expectedWeeks.computeIfAbsent(borrowDate.with(DayOfWeek.MONDAY), key -> new long[2]);
+            week[0]++;
+            boolean late = loan[2] == Integer.MIN_VALUE
+                    ? ChronoUnit.DAYS.between(origin, asOf) > loan[1]
+                    : loan[2] > loan[1];
+            if (late) {
+                week[1]++;
+            }
+        }
+        expectedFiction.forEach((month, count) ->
+                assertThat(byMonth.get(month).get(Book.Genre.FICTION)).isEqualTo(count));
+        assertThat(overdue.keySet()).containsExactlyElementsOf(expectedWeeks.keySet());
+        expectedWeeks.forEach((week, counts) ->
+                assertThat(overdue.get(week)).isCloseTo((double) counts[1] / counts[0], within(1e-12)));
+    }
+
+    @Test
+    @DisplayName("Аналитика должна пополняться выдачами, возвратами и продлениями без перестроения")
+    void shouldKeepCachedAnalyticsInSyncWithHistory() {
+        // Дано
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.now().plusDays(1);
+        LocalDate asOf = LocalDate.now().plusDays(30);
+        manager.averageLoanDurationByCategory(from, to);
+
+        // Когда
+        assertThat(manager.borrowBook("F1", "ST", 14)).isTrue();
+        assertThat(manager.borrowBook("S1", "ST", 7)).isTrue();
+        assertThat(manager.returnBook("F1", "ST")).isTrue();
+        assertThat(manager.extendBorrowingPeriod("S1", "ST", 30)).isTrue();
+        assertThat(manager.returnBook("S1", "VIP")).isTrue();
+
+        // Тогда: результат совпадает с аналитикой, построенной заново
+        BorrowingAnalytics rebuilt = BorrowingAnalytics.of(manager.getBorrowings(),
+                manager::getBookByIsbn, manager::getReaderById);
+        assertThat(manager.loansPerGenreByMonth(from, to)).isEqualTo(rebuilt.loansPerGenreByMonth(from, to));
+        assertThat(manager.averageLoanDurationByCategory(from, to))
+                .isEqualTo(rebuilt.averageLoanDurationByCategory(from, to));
+        assertThat(manager.overdueRateByWeek(from, to, asOf)).isEqualTo(rebuilt.overdueRateByWeek(from, to, asOf));
+    }
+
+    @Test
+    @DisplayName("Аналитика должна перестраиваться после изменения книги или читателя из истории")
+    void shouldRebuildAnalyticsAfterCatalogChange() {
+        // Дано
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 12, 31);
+        manager.loansPerGenreByMonth(from, to);
+
+        // Когда
+        manager.removeBook("F1");
+        manager.addBook(new Book("F1", "Война и мир", 1869, Book.Genre.HISTORY));
+        manager.removeReader("VIP");
+
+        // Тогда
+        assertThat(manager.loansPerGenreByMonth(from, to).get(YearMonth.of(2024, 1)))
+                .containsEntry(Book.Genre.HISTORY, 1L)
+                .doesNotContainKey(Book.Genre.FICTION);
+        assertThat(manager.averageLoanDurationByCategory(from, to))
+                .containsOnlyKeys(Reader.ReaderCategory.STUDENT);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять выдачу без даты выдачи")
+    void shouldRejectLoanWithoutBorrowDate() {
+        BorrowingAnalytics analytics = new BorrowingAnalytics();
+
+        assertThatThrownBy(() -> analytics.addLoan("F1", Book.Genre.FICTION, "ST",
+                Reader.ReaderCategory.STUDENT, null, null, null))
+                .isInstanceOf(NullPointerException.class);
+    }
+}
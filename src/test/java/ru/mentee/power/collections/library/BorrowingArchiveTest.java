@@ -0,0 +1,241 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты архива истории выдач")
+public class BorrowingArchiveTest {
+
+    private static final LocalDate ORIGIN = LocalDate.of(2020, 1, 1);
+
+    private static Borrowing returned(String isbn, String readerId, LocalDate borrowDate, int days) {
+        Borrowing borrowing = new Borrowing(isbn, readerId, borrowDate, borrowDate.plusDays(14));
+        borrowing.setReturnDate(borrowDate.plusDays(days));
+        return borrowing;
+    }
+
+    /** Сегмент за месяц: 100 выдач, читатели с префиксом месяца. */
+    private static List<Borrowing> month(int month) {
+        List<Borrowing> loans = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            loans.add(returned("ISBN-" + i % 7, "M" + month + "-R" + i % 5,
+                    ORIGIN.plusMonths(month).plusDays(i % 28), i % 20));
+        }
+        return loans;
+    }
+
+    @Test
+    @DisplayName("Запросы должны читать только сегменты, которые могут содержать ответ")
+    void shouldSkipSegmentsThatCannotMatch(@TempDir Path dir) throws IOException {
+        // Дано
+        BorrowingArchive archive = BorrowingArchive.open(dir);
+        for (int month = 0; month < 6; month++) {
+            archive.append(month(month));
+        }
+
+        // Когда
+        int before = archive.segmentsRead();
+        List<Borrowing> march = archive.findBorrowedBetween(ORIGIN.plusMonths(2), ORIGIN.plusMonths(3).minusDays(1));
+        int readForDates = archive.segmentsRead() - before;
+        before = archive.segmentsRead();
+        List<Borrowing> reader = archive.findByReader("M4-R3");
+        int readForReader = archive.segmentsRead() - before;
+
+        // Тогда
+        assertThat(archive.size()).isEqualTo(600);
+        assertThat(archive.segmentCount()).isEqualTo(6);
+        assertThat(march).containsExactlyElementsOf(month(2));
+        assertThat(readForDates).isEqualTo(1);
+        assertThat(reader).hasSize(20).allMatch(b -> b.getReaderId().equals("M4-R3"));
+        assertThat(readForReader).isEqualTo(1);
+        assertThat(archive.findByBook("ISBN-3")).hasSize(6 * 14);
+        assertThat(archive.bookCounts()).containsEntry("ISBN-0", 6 * 15);
+    }
+
+    @Test
+    @DisplayName("Архив должен открываться заново с теми же сегментами и записями")
+    void shouldReopenExistingSegments(@TempDir Path dir) throws IOException {
+        // Дано
+        BorrowingArchive archive = BorrowingArchive.open(dir);
+        archive.append(month(0));
+        archive.append(month(1));
+
+        // Когда
+        BorrowingArchive reopened = BorrowingArchive.open(dir);
+        reopened.append(month(2));
+
+        // Тогда: даты и возвраты восстанавливаются точно
+        List<Borrowing> expected = new ArrayList<>(month(0));
+        expected.addAll(month(1));
+        expected.addAll(month(2));
+        List<Borrowing> all = reopened.readAll();
+        assertThat(all).containsExactlyElementsOf(expected);
+        assertThat(all).extracting(Borrowing::getReturnDate)
+                .containsExactlyElementsOf(expected.stream().map(Borrowing::getReturnDate).toList());
+        assertThat(all).extracting(Borrowing::getDueDate)
+                .containsExactlyElementsOf(expected.stream().map(Borrowing::getDueDate).toList());
+        assertThat(BorrowingArchive.open(dir).segmentCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("В архив нельзя записать невозвращённую выдачу")
+    void shouldRejectActiveBorrowings(@TempDir Path dir) throws IOException {
+        BorrowingArchive archive = BorrowingArchive.open(dir);
+        Borrowing active = new Borrowing("ISBN-1", "R1", ORIGIN, ORIGIN.plusDays(14));
+
+        assertThatThrownBy(() -> archive.append(List.of(active)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(archive.segmentCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("LibraryManager должен держать в памяти только свежие выдачи и прозрачно читать архив")
+    void shouldArchiveOldBorrowingsTransparently(@TempDir Path dir) throws IOException {
+        // Дано
+        LocalDate today = LocalDate.now();
+        LibraryManager manager = new LibraryManager();
+        manager.setCompactHistory(true);
+        manager.addBook(new Book("B1", "Alpha", 2000, Book.Genre.FICTION));
+        manager.addBook(new Book("B2", "Bravo", 2001, Book.Genre.FICTION));
+        manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+        manager.addReader(new Reader("R2", "Пётр", "petr@example.com", Reader.ReaderCategory.REGULAR));
+        for (int i = 0; i < 10; i++) {
+            manager.getAllBorrowings().add(returned("B1", "R1", today.minusYears(2).plusDays(i), 5));
+        }
+        manager.getAllBorrowings().add(returned("B2", "R2", today.minusDays(10), 3));
+        manager.borrowBook("B2", "R1", 14);
+
+        // Когда
+        manager.enableArchiving(dir, Period.ofDays(90));
+
+        // Тогда
+        assertThat(manager.getArchivedBorrowingsCount()).isEqualTo(10);
+        assertThat(manager.getAllBorrowings()).hasSize(2);
+        assertThat(manager.getBorrowings()).hasSize(12);
+        assertThat(manager.getBorrowingsByReader("R1")).hasSize(11);
+        assertThat(manager.getBorrowingsByBook("B1")).hasSize(10);
+        assertThat(manager.getBorrowingsBetween(today.minusYears(3), today.minusYears(1))).hasSize(10);
+        assertThat(manager.getBorrowingsBetween(today.minusDays(30), today)).hasSize(2);
+        assertThat(manager.getTopPopularBooks(1)).extracting(Map.Entry::getValue).containsExactly(10);
+        assertThat(manager.getTopActiveReaders(2)).extracting(Map.Entry::getValue).containsExactly(11, 1);
+        assertThat(manager.returnBook("B2", "R1")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Архивирование должно запускаться автоматически по мере новых выдач")
+    void shouldArchiveAutomaticallyWhileBorrowing(@TempDir Path dir) throws IOException {
+        // Дано
+        LibraryManager manager = new ConcurrentLibraryManager();
+        manager.addBook(new Book("B1", "Alpha", 2000, Book.Genre.FICTION));
+        manager.enableArchiving(dir, Period.ofDays(30));
+        List<Borrowing> old = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            old.add(returned("OLD", "R0", LocalDate.now().minusYears(1), 1));
+        }
+        manager.setBorrowings(old);
+
+        // Когда
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(manager.borrowBook("B1", "R1", 14)).isTrue();
+            assertThat(manager.returnBook("B1", "R1")).isTrue();
+        }
+
+        // Тогда: старые выдачи ушли в архив, свежие остались в памяти
+        assertThat(manager.getArchivedBorrowingsCount()).isEqualTo(50);
+        assertThat(manager.getBorrowingsByReader("R1")).hasSize(1_000);
+        assertThat(manager.getBorrowings()).hasSize(1_050);
+        assertThat(manager.archiveOldBorrowings(LocalDate.now())).isZero();
+    }
+
+    @Test
+    @DisplayName("Полное чтение архива должно распаковывать сегменты один раз и отдавать копии")
+    void shouldCacheFullRead(@TempDir Path dir) throws IOException {
+        // Дано
+        BorrowingArchive archive = BorrowingArchive.open(dir);
+        archive.append(month(0));
+        archive.append(month(1));
+        archive.readAll().get(0).setReturnDate(null);
+        int before = archive.segmentsRead();
+
+        // Когда
+        archive.append(month(2));
+        List<Borrowing> all = archive.readAll();
+
+        // Тогда
+        assertThat(archive.segmentsRead()).isEqualTo(before);
+        assertThat(all).hasSize(300).allMatch(Borrowing::isReturned);
+        assertThat(all).containsExactlyElementsOf(BorrowingArchive.open(dir).readAll());
+    }
+
+    @Test
+    @DisplayName("Выдачи из снимка, сохранённого до архивирования, не должны архивироваться повторно")
+    void shouldNotArchiveTwiceAfterReloadingOlderSnapshot(@TempDir Path dir) throws IOException {
+        // Дано
+        LocalDate today = LocalDate.now();
+        LibraryManager manager = new LibraryManager();
+        for (int i = 0; i < 10; i++) {
+            manager.getAllBorrowings().add(returned("B1", "R1", today.minusYears(2).plusDays(i), 5));
+        }
+        manager.getAllBorrowings().add(returned("B2", "R2", today.minusDays(10), 3));
+        Path beforeArchiving = dir.resolve("before.snapshot");
+        LibrarySnapshot.write(manager, beforeArchiving);
+        Path archiveDir = dir.resolve("archive");
+        manager.enableArchiving(archiveDir, Period.ofDays(90));
+        Path afterArchiving = dir.resolve("after.snapshot");
+        LibrarySnapshot.write(manager, afterArchiving);
+
+        // Когда: снимок до архивирования загружен заново
+        LibraryManager reloaded = LibrarySnapshot.read(beforeArchiving);
+        reloaded.enableArchiving(archiveDir, Period.ofDays(90));
+
+        // Тогда
+        assertThat(reloaded.getArchivedBorrowingsCount()).isEqualTo(10);
+        assertThat(reloaded.getAllBorrowings()).hasSize(1);
+        assertThat(reloaded.getBorrowings()).hasSize(11);
+
+        // Когда: в снимок после архивирования добавлена старая выдача
+        LibraryManager current = LibrarySnapshot.read(afterArchiving);
+        current.getAllBorrowings().add(returned("B3", "R1", today.minusYears(3), 5));
+        current.enableArchiving(archiveDir, Period.ofDays(90));
+
+        // Тогда: она архивируется, а не отбрасывается
+        assertThat(current.getArchivedBorrowingsCount()).isEqualTo(11);
+        assertThat(current.getBorrowingsByBook("B3")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Ошибка записи архива не должна срывать выдачу")
+    void shouldBorrowWhenArchiveCannotBeWritten(@TempDir Path dir) throws IOException {
+        // Дано: каталог архива подменён файлом, записать сегмент нельзя
+        Path archiveDir = dir.resolve("archive");
+        LibraryManager manager = new LibraryManager();
+        manager.addBook(new Book("B1", "Alpha", 2000, Book.Genre.FICTION));
+        manager.enableArchiving(archiveDir, Period.ofDays(30));
+        manager.getAllBorrowings().add(returned("OLD", "R0", LocalDate.now().minusYears(1), 1));
+        Files.delete(archiveDir);
+        Files.createFile(archiveDir);
+
+        // Когда
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(manager.borrowBook("B1", "R1", 14)).isTrue();
+            assertThat(manager.returnBook("B1", "R1")).isTrue();
+        }
+
+        // Тогда: старая выдача осталась в памяти
+        assertThat(manager.getArchivedBorrowingsCount()).isZero();
+        assertThat(manager.getBorrowingsByBook("OLD")).hasSize(1);
+    }
+}
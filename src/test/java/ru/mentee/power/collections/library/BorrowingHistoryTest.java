@@ -0,0 +1,168 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты индексов истории выдач (BorrowingHistory)")
+public class BorrowingHistoryTest {
+
+    private BorrowingHistory history;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        history = new BorrowingHistory();
+        today = LocalDate.now();
+    }
+
+    @Test
+    @DisplayName("Должен находить активную выдачу по ISBN и читателю")
+    void shouldFindActiveBorrowing() {
+        // Дано
+        Borrowing borrowing = new Borrowing("ISBN-1", "R1", today, today.plusDays(7));
+        history.add(borrowing);
+
+        // Когда / Тогда
+        assertThat(history.findActive("ISBN-1", "R1")).isSameAs(borrowing);
+        assertThat(history.findActive("ISBN-1", "R2")).isNull();
+        assertThat(history.findActive("ISBN-2", "R1")).isNull();
+    }
+
+    @Test
+    @DisplayName("После возврата выдача остаётся в истории, но не считается активной")
+    void shouldMoveReturnedBorrowingOutOfActiveIndex() {
+        // Дано
+        Borrowing borrowing = new Borrowing("ISBN-1", "R1", today, today.plusDays(7));
+        history.add(borrowing);
+
+        // Когда
+        history.markReturned(borrowing, today);
+
+        // Тогда
+        assertThat(borrowing.isReturned()).isTrue();
+        assertThat(history.findActive("ISBN-1", "R1")).isNull();
+        assertThat(history.getActive()).isEmpty();
+        assertThat(history.getByBook("ISBN-1")).containsExactly(borrowing);
+        assertThat(history.getByReader("R1")).containsExactly(borrowing);
+    }
+
+    @Test
+    @DisplayName("Повторная выдача той же книги тому же читателю возвращается отдельно от старой")
+    void shouldDistinguishRepeatedBorrowingsOnSameDay() {
+        // Дано: две выдачи, равные по equals
+        Borrowing first = new Borrowing("ISBN-1", "R1", today, today.plusDays(7));
+        history.add(first);
+        history.markReturned(first, today);
+        Borrowing second = new Borrowing("ISBN-1", "R1", today, today.plusDays(14));
+        history.add(second);
+
+        // Тогда
+        assertThat(history.findActive("ISBN-1", "R1")).isSameAs(second);
+        assertThat(history.getByBook("ISBN-1")).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Изменения через List API отражаются в индексах")
+    void shouldKeepIndexesInSyncWithListOperations() {
+        // Дано
+        Borrowing a = new Borrowing("ISBN-1", "R1", today, today.plusDays(7));
+        Borrowing b = new Borrowing("ISBN-2", "R1", today, today.plusDays(7));
+        history.add(a);
+        history.add(b);
+
+        // Когда
+        history.remove(0);
+
+        // Тогда
+        assertThat(history.getByReader("R1")).containsExactly(b);
+        assertThat(history.getByBook("ISBN-1")).isEmpty();
+        assertThat(history.getActiveByReader("R1")).containsExactly(b);
+
+        // Когда
+        history.clear();
+
+        // Тогда
+        assertThat(history.getByReader("R1")).isEmpty();
+        assertThat(history.getActive()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен находить просрочки на дату по индексу сроков возврата")
+    void shouldFindOverdueByDueDate() {
+        // Дано
+        Borrowing early = new Borrowing("ISBN-1", "R1", today.minusDays(20), today.minusDays(10));
+        Borrowing late = new Borrowing("ISBN-2", "R2", today.minusDays(20), today.minusDays(2));
+        Borrowing returned = new Borrowing("ISBN-3", "R3", today.minusDays(20), today.minusDays(5));
+        Borrowing notYet = new Borrowing("ISBN-4", "R4", today, today.plusDays(5));
+        history.addAll(List.of(late, early, returned, notYet));
+        history.markReturned(returned, today);
+
+        // Тогда
+        assertThat(history.getOverdue(today)).containsExactly(early, late);
+        assertThat(history.getOverdue(today.minusDays(5))).containsExactly(early);
+        assertThat(history.getOverdue(today.plusDays(10))).containsExactly(early, late, notYet);
+    }
+
+    @Test
+    @DisplayName("Продление срока переносит выдачу в индексе сроков возврата")
+    void shouldMoveBorrowingOnDueDateUpdate() {
+        // Дано
+        Borrowing borrowing = new Borrowing("ISBN-1", "R1", today.minusDays(20), today.minusDays(1));
+        history.add(borrowing);
+
+        // Когда
+        history.updateDueDate(borrowing, today.plusDays(7));
+
+        // Тогда
+        assertThat(borrowing.getDueDate()).isEqualTo(today.plusDays(7));
+        assertThat(history.getOverdue(today)).isEmpty();
+        assertThat(history.getOverdue(today.plusDays(8))).containsExactly(borrowing);
+    }
+
+    @Test
+    @DisplayName("Выдача, срок которой продлён в обход истории, не считается просроченной")
+    void shouldRecheckDueDateChangedBypassingHistory() {
+        // Дано
+        Borrowing borrowing = new Borrowing("ISBN-1", "R1", today.minusDays(10), today.minusDays(3));
+        history.add(borrowing);
+
+        // Когда: срок меняется прямо у выдачи, индекс по срокам об этом не знает
+        borrowing.setDueDate(today.plusDays(7));
+
+        // Тогда
+        assertThat(history.getOverdue(today)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Индексы выдач переживают сохранение и загрузку LibraryManager")
+    void shouldRestoreIndexesAfterLoad(@TempDir Path tempDir) throws IOException {
+        // Дано
+        LibraryManager manager = new LibraryManager();
+        manager.addBook(new Book("ISBN-1", "Alpha", 2000, Book.Genre.FICTION));
+        manager.addBook(new Book("ISBN-2", "Bravo", 2001, Book.Genre.FICTION));
+        manager.borrowBook("ISBN-1", "R1", 14);
+        manager.borrowBook("ISBN-2", "R1", 14);
+        manager.returnBook("ISBN-2", "R1");
+        Path file = tempDir.resolve("state.ser");
+
+        // Когда
+        manager.saveLibraryState(file.toString());
+        LibraryManager loaded = LibraryManager.loadLibraryState(file.toString());
+
+        // Тогда
+        assertThat(loaded).isNotNull();
+        List<Borrowing> byReader = loaded.getBorrowingsByReader("R1");
+        assertThat(byReader).hasSize(2);
+        assertThat(loaded.returnBook("ISBN-2", "R1")).isFalse();
+        assertThat(loaded.returnBook("ISBN-1", "R1")).isTrue();
+    }
+}
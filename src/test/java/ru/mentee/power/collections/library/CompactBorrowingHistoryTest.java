@@ -0,0 +1,248 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты компактной истории выдач (CompactBorrowingHistory)")
+public class CompactBorrowingHistoryTest {
+
+    private CompactBorrowingHistory history;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        history = new CompactBorrowingHistory();
+        today = LocalDate.now();
+    }
+
+    @Test
+    @DisplayName("Представления должны читать и изменять столбцы истории")
+    void shouldReadAndWriteThroughViews() {
+        // Дано
+        Borrowing original = new Borrowing("ISBN-1", "R1", today.minusDays(20), today.minusDays(1));
+        history.add(original);
+
+        // Когда
+        Borrowing active = history.findActive("ISBN-1", "R1");
+        history.updateDueDate(active, today.plusDays(7));
+
+        // Тогда: добавленный объект скопирован, представление равно ему, но не тождественно
+        assertThat(active).isEqualTo(original).isNotSameAs(original);
+        assertThat(history.get(0).getDueDate()).isEqualTo(today.plusDays(7));
+        assertThat(original.getDueDate()).isEqualTo(today.minusDays(1));
+        assertThat(history.getOverdue(today)).isEmpty();
+        assertThat(history.getOverdue(today.plusDays(8))).containsExactly(original);
+
+        // Когда
+        history.markReturned(active, today);
+
+        // Тогда
+        assertThat(history.get(0).isReturned()).isTrue();
+        assertThat(history.get(0).getReturnDate()).isEqualTo(today);
+        assertThat(history.findActive("ISBN-1", "R1")).isNull();
+        assertThat(history.getActive()).isEmpty();
+        assertThat(history.getByBook("ISBN-1")).containsExactly(original);
+    }
+
+    @Test
+    @DisplayName("Индексы должны совпадать с объектной историей после случайных изменений")
+    void shouldMatchObjectHistoryAfterRandomChanges() {
+        // Дано
+        Random random = new Random(7);
+        BorrowingHistory expected = new BorrowingHistory();
+
+        // Когда
+        for (int i = 0; i < 3000; i++) {
+            String isbn = "ISBN-" + random.nextInt(50);
+            String readerId = "R" + random.nextInt(30);
+            int action = random.nextInt(10);
+            if (action < 5) {
+                LocalDate borrowDate = today.minusDays(random.nextInt(100));
+                Borrowing borrowing = new Borrowing(isbn, readerId, borrowDate, borrowDate.plusDays(14));
+                expected.add(new Borrowing(isbn, readerId, borrowDate, borrowDate.plusDays(14)));
+                history.add(borrowing);
+            } else if (action < 8) {
+                Borrowing active = expected.findActive(isbn, readerId);
+                assertThat(history.findActive(isbn, readerId)).isEqualTo(active);
+                if (active != null) {
+                    expected.markReturned(active, today);
+                    history.markReturned(history.findActive(isbn, readerId), today);
+                }
+            } else if (action < 9) {
+                Borrowing active = expected.findActive(isbn, readerId);
+                if (active != null) {
+                    LocalDate dueDate = active.getDueDate().plusDays(3);
+                    expected.updateDueDate(active, dueDate);
+                    history.updateDueDate(history.findActive(isbn, readerId), dueDate);
+                }
+            } else if (!expected.isEmpty()) {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                history.remove(index);
+            }
+        }
+
+        // Тогда
+        assertThat(history).containsExactlyElementsOf(expected);
+        for (int i = 0; i < 50; i++) {
+            assertThat(history.getByBook("ISBN-" + i)).containsExactlyElementsOf(expected.getByBook("ISBN-" + i));
+        }
+        for (int i = 0; i < 30; i++) {
+            assertThat(history.getByReader("R" + i)).containsExactlyElementsOf(expected.getByReader("R" + i));
+            assertThat(history.getActiveByReader("R" + i))
+                    .containsExactlyInAnyOrderElementsOf(expected.getActiveByReader("R" + i));
+        }
+        assertThat(history.getActive()).containsExactlyInAnyOrderElementsOf(expected.getActive());
+        assertThat(history.getOverdue(today.minusDays(30)))
+                .containsExactlyInAnyOrderElementsOf(expected.getOverdue(today.minusDays(30)));
+        assertThat(history.getMostBorrowedBooks().limit(5))
+                .containsExactlyElementsOf(expected.getMostBorrowedBooks().limit(5).toList());
+        assertThat(history.getMostActiveReaders().limit(5))
+                .containsExactlyElementsOf(expected.getMostActiveReaders().limit(5).toList());
+    }
+
+    @Test
+    @DisplayName("Массовое удаление должно сдвигать столбцы и пересобирать индексы")
+    void shouldRemoveMatchingRowsInOnePass() {
+        // Дано
+        for (int i = 0; i < 100; i++) {
+            Borrowing borrowing = new Borrowing("ISBN-" + i % 10, "R1", today.minusDays(i), today.plusDays(1));
+            if (i % 2 == 0) {
+                borrowing.setReturnDate(today);
+            }
+            history.add(borrowing);
+        }
+
+        // Когда
+        boolean removed = history.removeIf(Borrowing::isReturned);
+
+        // Тогда
+        assertThat(removed).isTrue();
+        assertThat(history).hasSize(50).noneMatch(Borrowing::isReturned);
+        assertThat(history.getByBook("ISBN-1")).hasSize(10);
+        assertThat(history.getByBook("ISBN-2")).isEmpty();
+        assertThat(history.getMostBorrowedBooks().findFirst()).get()
+                .extracting(Map.Entry::getValue).isEqualTo(10);
+        assertThat(history.removeIf(Borrowing::isReturned)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Представления должны оставаться привязаны к своим записям после удалений и вставок")
+    void shouldKeepViewsBoundToTheirRecordsAfterStructuralChanges() {
+        // Дано
+        for (int i = 0; i < 10; i++) {
+            Borrowing borrowing = new Borrowing("ISBN-" + i, "R1", today.minusDays(i), today.plusDays(i));
+            if (i % 3 == 0) {
+                borrowing.setReturnDate(today);
+            }
+            history.add(borrowing);
+        }
+        Borrowing kept = history.findActive("ISBN-7", "R1");
+        Borrowing removed = history.get(3);
+        Borrowing moved = history.get(8);
+
+        // Когда
+        history.removeIf(Borrowing::isReturned);
+        history.remove(0);
+        history.add(0, new Borrowing("ISBN-X", "R2", today, today.plusDays(1)));
+
+        // Тогда
+        assertThat(kept.getIsbn()).isEqualTo("ISBN-7");
+        assertThat(moved.getIsbn()).isEqualTo("ISBN-8");
+        assertThat(moved.getDueDate()).isEqualTo(today.plusDays(8));
+        assertThatThrownBy(removed::getIsbn).isInstanceOf(IllegalStateException.class);
+
+        // Когда: изменения через представления после сдвига строк
+        kept.setDueDate(today.minusDays(1));
+        moved.setReturnDate(today);
+
+        // Тогда: изменены нужные записи, индексы обновлены
+        assertThat(history.getOverdue(today)).containsExactly(kept);
+        assertThat(history.findActive("ISBN-8", "R1")).isNull();
+        assertThat(history.getActiveByReader("R1")).extracting(Borrowing::getIsbn)
+                .containsExactlyInAnyOrder("ISBN-2", "ISBN-4", "ISBN-5", "ISBN-7");
+
+        // Когда: возврат отменён через представление
+        moved.setReturnDate(null);
+
+        // Тогда
+        assertThat(history.findActive("ISBN-8", "R1")).isEqualTo(moved);
+    }
+
+    @Test
+    @DisplayName("Сериализация должна сохранять записи и восстанавливать индексы")
+    void shouldSurviveSerialization() throws IOException, ClassNotFoundException {
+        // Дано
+        history.add(new Borrowing("ISBN-1", "R1", today, today.plusDays(7)));
+        history.add(new Borrowing("ISBN-2", "R2", today, today.plusDays(7)));
+        history.markReturned(history.findActive("ISBN-2", "R2"), today);
+
+        // Когда
+        CompactBorrowingHistory copy = roundTrip(history);
+        Borrowing detached = roundTrip(history.get(0));
+
+        // Тогда: представление сериализуется обычной записью
+        assertThat(copy).containsExactlyElementsOf(history);
+        assertThat(copy.findActive("ISBN-1", "R1")).isNotNull();
+        assertThat(copy.findActive("ISBN-2", "R2")).isNull();
+        assertThat(detached.getClass()).isEqualTo(Borrowing.class);
+        assertThat(detached).isEqualTo(history.get(0));
+    }
+
+    @Test
+    @DisplayName("LibraryManager должен прозрачно работать с компактной историей")
+    void shouldBeUsedTransparentlyByLibraryManager() {
+        // Дано
+        LibraryManager manager = new LibraryManager();
+        manager.addBook(new Book("ISBN-1", "Alpha", 2000, Book.Genre.FICTION));
+        manager.addBook(new Book("ISBN-2", "Bravo", 2001, Book.Genre.FICTION));
+        manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+        manager.borrowBook("ISBN-1", "R1", 14);
+
+        // Когда
+        manager.setCompactHistory(true);
+        manager.borrowBook("ISBN-2", "R1", -1);
+        manager.returnBook("ISBN-1", "R1");
+        manager.setBorrowings(List.copyOf(manager.getBorrowings()));
+
+        // Тогда
+        assertThat(manager.isCompactHistory()).isTrue();
+        assertThat(manager.getAllBorrowings()).isInstanceOf(CompactBorrowingHistory.class).hasSize(2);
+        assertThat(manager.getBorrowingsByReader("R1")).extracting(Borrowing::isReturned)
+                .containsExactly(true, false);
+        assertThat(manager.getOverdueBorrowings(LocalDate.now())).extracting(Borrowing::getIsbn)
+                .containsExactly("ISBN-2");
+        assertThat(manager.extendBorrowingPeriod("ISBN-2", "R1", 5)).isTrue();
+        assertThat(manager.getOverdueBorrowings(LocalDate.now())).isEmpty();
+        assertThat(manager.getTopActiveReaders(1)).extracting(Map.Entry::getValue).containsExactly(2);
+
+        manager.setCompactHistory(false);
+        assertThat(manager.getAllBorrowings()).isInstanceOf(BorrowingHistory.class).hasSize(2);
+        assertThat(manager.returnBook("ISBN-2", "R1")).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+}
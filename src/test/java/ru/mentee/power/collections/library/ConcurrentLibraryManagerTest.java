@@ -0,0 +1,286 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты потокобезопасного менеджера библиотеки (ConcurrentLibraryManager)")
+public class ConcurrentLibraryManagerTest {
+
+    private static final int BOOKS = 16;
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 5_000;
+
+    private ConcurrentLibraryManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new ConcurrentLibraryManager();
+        for (int i = 0; i < BOOKS; i++) {
+            manager.addBook(new Book("ISBN-" + i, "Book " + i, 2000 + i, Book.Genre.FICTION));
+        }
+        for (int t = 0; t < THREADS; t++) {
+            manager.addReader(new Reader("R" + t, "Reader " + t, "r" + t + "@example.com",
+                    Reader.ReaderCategory.REGULAR));
+        }
+    }
+
+    @Test
+    @DisplayName("Параллельные выдачи и возвраты не выдают один экземпляр дважды")
+    void shouldNeverLendSameBookTwice() throws Exception {
+        // Дано: счётчик текущих держателей каждой книги
+        AtomicInteger[] holders = new AtomicInteger[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            holders[i] = new AtomicInteger();
+        }
+        AtomicInteger doubleLends = new AtomicInteger();
+        AtomicInteger failedReturns = new AtomicInteger();
+        AtomicInteger successfulBorrows = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Когда: все потоки одновременно берут и возвращают случайные книги
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String readerId = "R" + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < ITERATIONS; n++) {
+                    int i = random.nextInt(BOOKS);
+                    String isbn = "ISBN-" + i;
+                    if (manager.borrowBook(isbn, readerId, 14)) {
+                        successfulBorrows.incrementAndGet();
+                        if (holders[i].incrementAndGet() > 1) {
+                            doubleLends.incrementAndGet();
+                        }
+                        holders[i].decrementAndGet();
+                        if (!manager.returnBook(isbn, readerId)) {
+                            failedReturns.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        // Тогда
+        assertThat(doubleLends.get()).isZero();
+        assertThat(failedReturns.get()).isZero();
+        assertThat(successfulBorrows.get()).isPositive();
+        assertThat(manager.getAllBorrowings()).hasSize(successfulBorrows.get());
+        assertThat(manager.getAvailableBooks()).hasSize(BOOKS);
+        assertThat(manager.getOverdueBorrowings()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Параллельные корзины с общими книгами выдаются целиком или не выдаются вовсе")
+    void shouldApplyCompetingBasketsAtomically() throws Exception {
+        // Дано: каждая корзина — две соседние книги, соседние корзины пересекаются;
+        // у каждого потока свой читатель, поэтому после отказа у него не должно быть выдач
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger partialBaskets = new AtomicInteger();
+
+        // Когда
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String readerId = "R" + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS / 10; i++) {
+                    int first = ThreadLocalRandom.current().nextInt(BOOKS);
+                    List<String> basket = List.of("ISBN-" + first, "ISBN-" + (first + 1) % BOOKS);
+                    BasketResult result = manager.borrowBooks(readerId, basket, 14);
+                    if (result.applied()) {
+                        BasketResult returned = manager.returnBooks(readerId, basket);
+                        if (!returned.applied()) {
+                            partialBaskets.incrementAndGet();
+                        }
+                    } else if (manager.getBorrowingsByReader(readerId).stream().anyMatch(b -> !b.isReturned())) {
+                        partialBaskets.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        // Тогда: все книги на месте, выдачи и возвраты парные
+        assertThat(partialBaskets.get()).isZero();
+        assertThat(manager.getAvailableBooks()).hasSize(BOOKS);
+        assertThat(manager.getOverdueBorrowings(LocalDate.now().plusYears(1))).isEmpty();
+        assertThat(manager.getAllBorrowings().size() % 2).isZero();
+    }
+
+    @Test
+    @DisplayName("Параллельный возврат одной выдачи засчитывается только один раз")
+    void shouldReturnBookOnlyOnce() throws Exception {
+        // Дано
+        manager.borrowBook("ISBN-0", "R0", 14);
+        AtomicInteger successfulReturns = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Когда
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (manager.returnBook("ISBN-0", "R0")) {
+                    successfulReturns.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        // Тогда
+        assertThat(successfulReturns.get()).isEqualTo(1);
+        assertThat(manager.getBookByIsbn("ISBN-0").isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("getAllBorrowings, как и в базовом классе, возвращает только историю в памяти без архива")
+    void shouldReturnOnlyInMemoryHistoryFromGetAllBorrowings(@TempDir Path dir) throws IOException {
+        // Дано: одна давно возвращённая выдача и одна активная
+        Borrowing old = new Borrowing("ISBN-1", "R1", LocalDate.now().minusYears(1), LocalDate.now().minusYears(1));
+        old.setReturnDate(LocalDate.now().minusYears(1));
+        manager.setBorrowings(new ArrayList<>(List.of(old)));
+        manager.borrowBook("ISBN-0", "R0", 14);
+
+        // Когда
+        manager.enableArchiving(dir, Period.ofDays(30));
+
+        // Тогда
+        assertThat(manager.getArchivedBorrowingsCount()).isEqualTo(1);
+        assertThat(manager.getAllBorrowings()).singleElement()
+                .satisfies(b -> assertThat(b.getIsbn()).isEqualTo("ISBN-0"));
+        assertThat(manager.getBorrowings()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Запросы истории выдач выполняются параллельно и не ждут друг друга")
+    void shouldRunHistoryReadsConcurrently() throws Exception {
+        // Дано: запрос топа читателей останавливается внутри, пока его не отпустят
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentLibraryManager library = new ConcurrentLibraryManager() {
+            @Override
+            public Reader getReaderById(String readerId) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getReaderById(readerId);
+            }
+        };
+        library.addBook(new Book("ISBN-0", "Book 0", 2000, Book.Genre.FICTION));
+        library.addReader(new Reader("R0", "Reader 0", "r0@example.com", Reader.ReaderCategory.REGULAR));
+        library.borrowBook("ISBN-0", "R0", 14);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            // Когда: первый запрос держит блокировку истории, второй запрос идёт в это время
+            Future<?> blocked = pool.submit(() -> library.getTopActiveReaders(1));
+            assertThat(entered.await(1, TimeUnit.MINUTES)).isTrue();
+            Future<List<Borrowing>> concurrent = pool.submit(() -> library.getBorrowingsByReader("R0"));
+
+            // Тогда: второй запрос завершается, не дожидаясь первого
+            assertThat(concurrent.get(1, TimeUnit.MINUTES)).hasSize(1);
+            assertThat(library.getArchivedBorrowingsCount()).isZero();
+            release.countDown();
+            blocked.get(1, TimeUnit.MINUTES);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Выдачи и возвраты во время построения индексов не теряются в индексах доступности")
+    void shouldKeepAvailabilityIndexesConsistentWhileTheyAreBuilt() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            // Дано: большой каталог без построенных индексов
+            ConcurrentLibraryManager library = new ConcurrentLibraryManager();
+            int books = 20_000;
+            List<Book> catalog = new ArrayList<>(books);
+            for (int i = 0; i < books; i++) {
+                catalog.add(new Book("ISBN-" + i, "Book " + i, 2000, Book.Genre.FICTION));
+            }
+            library.addBooks(catalog);
+            for (int t = 0; t < THREADS; t++) {
+                library.addReader(new Reader("R" + t, "Reader " + t, "r" + t + "@example.com",
+                        Reader.ReaderCategory.REGULAR));
+            }
+            CountDownLatch start = new CountDownLatch(1);
+
+            // Когда: читатели берут книги, пока другой поток впервые строит индексы
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String readerId = "R" + t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int n = 0; n < 500; n++) {
+                        String isbn = "ISBN-" + random.nextInt(books);
+                        if (!library.returnBook(isbn, readerId)) {
+                            library.borrowBook(isbn, readerId, 14);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(pool.submit(() -> {
+                start.await();
+                library.countBooks(BookQuery.available(true));
+                library.listBooks(BookOrder.AVAILABILITY, 0, 10);
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            pool.shutdown();
+
+            // Тогда
+            long available = library.getAllBooks().stream().filter(Book::isAvailable).count();
+            assertThat(library.countBooks(BookQuery.available(true))).isEqualTo(available);
+            assertThat(library.listBooks(BookOrder.AVAILABILITY, 0, (int) available).items())
+                    .allSatisfy(book -> assertThat(book.isAvailable()).isTrue());
+        }
+    }
+}
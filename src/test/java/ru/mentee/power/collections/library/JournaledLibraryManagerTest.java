@@ -0,0 +1,290 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты библиотеки с журналом изменений (JournaledLibraryManager)")
+public class JournaledLibraryManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Book book(String isbn, String title) {
+        Book book = new Book(isbn, title, 2000, Book.Genre.FICTION);
+        book.addAuthor("Автор " + isbn);
+        return book;
+    }
+
+    @Test
+    @DisplayName("Должен восстанавливать все изменения из журнала после повторного открытия")
+    void shouldReplayJournalOnOpen() throws IOException {
+        // Дано
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addBook(book("ISBN-1", "Война и мир"));
+            manager.addBook(book("ISBN-2", "Анна Каренина"));
+            manager.addBook(book("ISBN-3", "Воскресение"));
+            manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+            manager.addReader(new Reader("R2", "Анна", null, null));
+            manager.borrowBook("ISBN-1", "R1", 14);
+            manager.borrowBook("ISBN-2", "R2", 7);
+            manager.returnBook("ISBN-2", "R2");
+            manager.extendBorrowingPeriod("ISBN-1", "R1", 5);
+            manager.removeBook("ISBN-3");
+            manager.removeReader("R2");
+        }
+
+        // Когда
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            // Тогда
+            assertThat(reopened.getAllBooks()).extracting(Book::getIsbn)
+                    .containsExactlyInAnyOrder("ISBN-1", "ISBN-2");
+            assertThat(reopened.getAllReaders()).extracting(Reader::getId).containsExactly("R1");
+            assertThat(reopened.getBookByIsbn("ISBN-1").isAvailable()).isFalse();
+            assertThat(reopened.getBookByIsbn("ISBN-2").isAvailable()).isTrue();
+            assertThat(reopened.getBooksByAuthor("Автор ISBN-1")).hasSize(1);
+
+            List<Borrowing> borrowings = reopened.getBorrowings();
+            assertThat(borrowings).hasSize(2);
+            assertThat(borrowings.get(0).getDueDate()).isEqualTo(LocalDate.now().plusDays(19));
+            assertThat(borrowings.get(1).getReturnDate()).isEqualTo(LocalDate.now());
+            assertThat(reopened.returnBook("ISBN-1", "R1")).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Корзины выдачи и возврата должны восстанавливаться из журнала")
+    void shouldReplayBaskets() throws IOException {
+        // Дано
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addBook(book("ISBN-1", "Война и мир"));
+            manager.addBook(book("ISBN-2", "Анна Каренина"));
+            manager.addBook(book("ISBN-3", "Воскресение"));
+            assertThat(manager.borrowBooks("R1", List.of("ISBN-1", "ISBN-2", "ISBN-3"), 14).applied()).isTrue();
+            long size = manager.getJournalSize();
+            assertThat(manager.returnBooks("R1", List.of("ISBN-2", "ISBN-4")).applied()).isFalse();
+            assertThat(manager.getJournalSize()).isEqualTo(size);
+            assertThat(manager.returnBooks("R1", List.of("ISBN-2", "ISBN-3")).applied()).isTrue();
+        }
+
+        // Когда
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            // Тогда
+            assertThat(reopened.getBorrowings()).hasSize(3);
+            assertThat(reopened.getBookByIsbn("ISBN-1").isAvailable()).isFalse();
+            assertThat(reopened.getBookByIsbn("ISBN-2").isAvailable()).isTrue();
+            assertThat(reopened.getBookByIsbn("ISBN-3").isAvailable()).isTrue();
+            assertThat(reopened.returnBook("ISBN-1", "R1")).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Неудачные операции не должны попадать в журнал")
+    void shouldNotJournalFailedOperations() throws IOException {
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            // Когда
+            boolean added = manager.addBook(book("ISBN-1", "Война и мир"));
+            long size = manager.getJournalSize();
+            boolean duplicate = manager.addBook(book("ISBN-1", "Другая книга"));
+            boolean returned = manager.returnBook("ISBN-1", "R1");
+
+            // Тогда
+            assertThat(added).isTrue();
+            assertThat(duplicate).isFalse();
+            assertThat(returned).isFalse();
+            assertThat(manager.getJournalSize()).isEqualTo(size);
+        }
+    }
+
+    @Test
+    @DisplayName("checkpoint должен сжимать журнал в снимок без потери изменений")
+    void checkpointShouldCompactJournal() throws IOException {
+        // Дано
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addBook(book("ISBN-1", "Война и мир"));
+            manager.addReader(new Reader("R1", "Иван", null, null));
+            manager.borrowBook("ISBN-1", "R1", 14);
+
+            // Когда
+            manager.checkpoint();
+            assertThat(manager.getJournalSize()).isZero();
+
+            manager.addBook(book("ISBN-2", "Анна Каренина"));
+            manager.returnBook("ISBN-1", "R1");
+            manager.checkpoint();
+            manager.addBook(book("ISBN-3", "Воскресение"));
+        }
+
+        // Тогда
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".snapshot")))
+                    .hasSize(1);
+        }
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            assertThat(reopened.getAllBooks()).extracting(Book::getIsbn)
+                    .containsExactlyInAnyOrder("ISBN-1", "ISBN-2", "ISBN-3");
+            assertThat(reopened.getBookByIsbn("ISBN-1").isAvailable()).isTrue();
+            assertThat(reopened.getBorrowings()).singleElement()
+                    .satisfies(b -> assertThat(b.isReturned()).isTrue());
+        }
+    }
+
+    @Test
+    @DisplayName("Должен отрезать оборванную последнюю запись журнала")
+    void shouldTruncateTornTail() throws IOException {
+        // Дано
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addBook(book("ISBN-1", "Война и мир"));
+            manager.addBook(book("ISBN-2", "Анна Каренина"));
+        }
+        Path journal = tempDir.resolve(JournaledLibraryManager.JOURNAL_FILE);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // Когда
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            // Тогда
+            assertThat(reopened.getAllBooks()).extracting(Book::getIsbn).containsExactly("ISBN-1");
+            reopened.addBook(book("ISBN-3", "Воскресение"));
+        }
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            assertThat(reopened.getAllBooks()).extracting(Book::getIsbn)
+                    .containsExactlyInAnyOrder("ISBN-1", "ISBN-3");
+        }
+    }
+
+    @Test
+    @DisplayName("Параллельные изменения из разных потоков должны сохраняться все")
+    void shouldPersistConcurrentChanges() throws Exception {
+        // Дано
+        int threads = 8;
+        int booksPerThread = 50;
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < booksPerThread; i++) {
+                            manager.addBook(book("ISBN-" + thread + "-" + i, "Книга " + i));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        // Когда
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            // Тогда
+            assertThat(reopened.getAllBooks()).hasSize(threads * booksPerThread);
+        }
+    }
+
+    @Test
+    @DisplayName("Чтение из других потоков во время изменений видит согласованный каталог")
+    void shouldReadConsistentlyWhileOtherThreadsWrite() throws Exception {
+        // Дано
+        int books = 500;
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> writer = executor.submit(() -> {
+                    for (int i = 0; i < books; i++) {
+                        manager.addBook(book("ISBN-" + i, "Книга " + i));
+                        manager.borrowBook("ISBN-" + i, "R1", 14);
+                    }
+                });
+
+                // Когда: другой поток читает каталог и историю, пока идут изменения
+                Future<?> reader = executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        int total = manager.getAllBooks().size();
+                        assertThat(manager.countBooks(BookQuery.genre(Book.Genre.FICTION))).isGreaterThanOrEqualTo(total);
+                        assertThat(manager.getBorrowingsByReader("R1")).hasSizeLessThanOrEqualTo(books);
+                        manager.findBooks(BookQuery.available(false)).forEachRemaining(Book::getIsbn);
+                    }
+                });
+                writer.get();
+                reader.get();
+            } finally {
+                executor.shutdown();
+            }
+
+            // Тогда
+            assertThat(manager.getAllBooks()).hasSize(books);
+            assertThat(manager.getBorrowingsByReader("R1")).hasSize(books);
+        }
+    }
+
+    @Test
+    @DisplayName("checkpoint не теряет изменения, сделанные другими потоками во время записи снимка")
+    void checkpointShouldKeepChangesMadeDuringIt() throws Exception {
+        // Дано
+        int books = 2_000;
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> writer = executor.submit(() -> {
+                    for (int i = 0; i < books; i++) {
+                        manager.addBook(book("ISBN-" + i, "Книга " + i));
+                    }
+                });
+
+                // Когда: снимки делаются, пока другой поток добавляет книги
+                while (!writer.isDone()) {
+                    manager.checkpoint();
+                }
+                writer.get();
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        // Тогда
+        try (JournaledLibraryManager reopened = JournaledLibraryManager.open(tempDir)) {
+            assertThat(reopened.getAllBooks()).hasSize(books);
+        }
+    }
+
+    @Test
+    @DisplayName("Пропуск в нумерации записей журнала должен обнаруживаться при открытии")
+    void shouldDetectGapInJournal() throws IOException {
+        // Дано: после записи №1 в журнале сразу идёт запись №6
+        try (JournaledLibraryManager manager = JournaledLibraryManager.open(tempDir)) {
+            manager.addBook(book("ISBN-1", "Война и мир"));
+        }
+        try (LibraryJournal journal = new LibraryJournal(tempDir.resolve(JournaledLibraryManager.JOURNAL_FILE))) {
+            journal.continueAfter(5);
+            journal.awaitDurable(journal.append(JournaledLibraryManager.REMOVE_BOOK,
+                    new LibraryJournal.PayloadWriter().writeString("ISBN-1").toByteArray()));
+        }
+
+        // Тогда
+        assertThatThrownBy(() -> JournaledLibraryManager.open(tempDir))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("пропущены");
+    }
+}
@@ -7,8 +7,13 @@ import ru.mentee.power.collections.library.LibraryManager;
 import ru.mentee.power.collections.library.Reader;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -91,5 +96,83 @@ public class LibraryManagerPersistenceTest {
         // Then
         assertThat(loadedManager).isNull();
     }
-}
 
+    @Test
+    @DisplayName("После загрузки индексы по жанру и автору строятся заново")
+    void shouldRebuildSecondaryIndexesOnLoad() throws IOException {
+        // Given
+        Book book = new Book("978-0-13-468599-1", "Effective Java", 2018, Book.Genre.PROGRAMMING);
+        book.addAuthor("Joshua Bloch");
+        managerToSave.addBook(book);
+
+        // When
+        managerToSave.saveLibraryState(stateFilePath.toString());
+        LibraryManager loadedManager = LibraryManager.loadLibraryState(stateFilePath.toString());
+
+        // Then
+        assertThat(loadedManager).isNotNull();
+        assertThat(loadedManager.getBooksByAuthor("Joshua Bloch")).containsExactly(book);
+        assertThat(loadedManager.getBooksByGenre(Book.Genre.PROGRAMMING)).containsExactly(book);
+        assertThat(loadedManager.getBooksByGenre(Book.Genre.SCIENCE)).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("rebuildIndexes не теряет книги и восстанавливает индексы большого каталога")
+    void rebuildIndexesShouldKeepBooksAndRepopulateIndexes() {
+        // Given: каталог больше порога параллельного построения
+        LibraryManager manager = new LibraryManager();
+        int count = CatalogIndexBuilder.PARALLEL_THRESHOLD + 1_000;
+        for (int i = 0; i < count; i++) {
+            Book book = new Book("ISBN-" + i, "Title " + i, 2000, Book.Genre.values()[i % Book.Genre.values().length]);
+            book.addAuthor("Author " + (i % 100));
+            manager.addBook(book);
+        }
+        Map<Book.Genre, Integer> statsBefore = manager.getGenreStatistics();
+        List<Book> byAuthorBefore = manager.getBooksByAuthor("Author 7");
+
+        // When
+        manager.rebuildIndexes();
+
+        // Then
+        assertThat(manager.getAllBooks()).hasSize(count);
+        assertThat(manager.getGenreStatistics()).isEqualTo(statsBefore);
+        assertThat(manager.getBooksByAuthor("Author 7")).containsExactlyInAnyOrderElementsOf(byAuthorBefore);
+    }
+
+    @Test
+    @DisplayName("Должен загружать файл Java-сериализации старого формата с историей выдач в ArrayList")
+    void shouldLoadLegacySerializedFileWithListOfBorrowings() throws IOException {
+        // Given: старые версии сериализовали историю выдач обычным ArrayList
+        managerToSave.borrowBook("978-1-491-91205-8", "RDR001", 14);
+        try (OutputStream file = Files.newOutputStream(stateFilePath);
+             ObjectOutputStream out = new LegacyHistoryOutputStream(file)) {
+            out.writeObject(managerToSave);
+        }
+
+        // When
+        LibraryManager loadedManager = LibraryManager.loadLibraryState(stateFilePath.toString());
+
+        // Then
+        assertThat(loadedManager).isNotNull();
+        assertThat(loadedManager.getAllBooks()).hasSize(2);
+        assertThat(loadedManager.getBorrowings()).singleElement()
+                .satisfies(b -> assertThat(b.getReaderId()).isEqualTo("RDR001"));
+        assertThat(loadedManager.getBorrowingsByReader("RDR001")).hasSize(1);
+        assertThat(loadedManager.returnBook("978-1-491-91205-8", "RDR001")).isTrue();
+        assertThat(loadedManager.getBooksByGenre(Book.Genre.SCIENCE)).hasSize(2);
+    }
+
+    /** Записывает историю выдач так, как её записывали старые версии: обычным ArrayList. */
+    private static final class LegacyHistoryOutputStream extends ObjectOutputStream {
+
+        LegacyHistoryOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            return obj instanceof BorrowingStore store ? new ArrayList<>(store) : obj;
+        }
+    }
+}
@@ -388,6 +388,64 @@ public class LibraryManagerTest {
             assertThat(libraryManager.getBookByIsbn(isbn).isAvailable()).isTrue();
         }
 
+        @Test
+        @DisplayName("Должен выдавать корзину целиком или не выдавать ничего")
+        void shouldBorrowBasketAllOrNothing() {
+            // Дано: одна книга корзины уже выдана другому читателю
+            libraryManager.borrowBook("978-0-321-35668-0", "RDR002", 14);
+
+            // Когда
+            BasketResult rejected = libraryManager.borrowBooks("RDR001",
+                    List.of("978-3-16-148410-0", "978-0-321-35668-0", "UNKNOWN", "978-3-16-148410-0"), 14);
+
+            // Тогда: ни одна книга не выдана, статусы указывают на проблемные позиции
+            assertThat(rejected.applied()).isFalse();
+            assertThat(rejected.statuses()).containsExactly(BasketResult.ItemStatus.OK,
+                    BasketResult.ItemStatus.UNAVAILABLE, BasketResult.ItemStatus.UNKNOWN_BOOK,
+                    BasketResult.ItemStatus.DUPLICATE);
+            assertThat(book1.isAvailable()).isTrue();
+            assertThat(libraryManager.getBorrowingsByReader("RDR001")).isEmpty();
+
+            // Когда
+            BasketResult applied = libraryManager.borrowBooks("RDR001",
+                    List.of("978-3-16-148410-0", "978-1-491-91205-8"), 14);
+
+            // Тогда
+            assertThat(applied.applied()).isTrue();
+            assertThat(applied.statuses()).containsOnly(BasketResult.ItemStatus.OK);
+            assertThat(libraryManager.getAvailableBooks()).isEmpty();
+            assertThat(libraryManager.getBorrowingsByReader("RDR001")).extracting(Borrowing::getIsbn)
+                    .containsExactly("978-3-16-148410-0", "978-1-491-91205-8");
+        }
+
+        @Test
+        @DisplayName("Должен принимать корзину возвратов целиком или не принимать ничего")
+        void shouldReturnBasketAllOrNothing() {
+            // Дано
+            libraryManager.borrowBooks("RDR001", List.of("978-3-16-148410-0", "978-1-491-91205-8"), 14);
+            libraryManager.borrowBook("978-0-321-35668-0", "RDR002", 14);
+
+            // Когда: третья книга у другого читателя
+            BasketResult rejected = libraryManager.returnBooks("RDR001",
+                    List.of("978-3-16-148410-0", "978-0-321-35668-0"));
+
+            // Тогда
+            assertThat(rejected.applied()).isFalse();
+            assertThat(rejected.statuses()).containsExactly(BasketResult.ItemStatus.OK,
+                    BasketResult.ItemStatus.NOT_BORROWED);
+            assertThat(book1.isAvailable()).isFalse();
+
+            // Когда
+            BasketResult applied = libraryManager.returnBooks("RDR001",
+                    List.of("978-1-491-91205-8", "978-3-16-148410-0"));
+
+            // Тогда
+            assertThat(applied.applied()).isTrue();
+            assertThat(book1.isAvailable()).isTrue();
+            assertThat(book2.isAvailable()).isTrue();
+            assertThat(libraryManager.getBorrowingsByReader("RDR001")).allMatch(Borrowing::isReturned);
+        }
+
         @Test
         @DisplayName("Должен возвращать список просроченных выдач")
         void shouldReturnOverdueBorrowings() {
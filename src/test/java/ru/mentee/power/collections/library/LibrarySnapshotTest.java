@@ -0,0 +1,173 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты бинарного снимка библиотеки (LibrarySnapshot)")
+public class LibrarySnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LibraryManager manager;
+    private Path snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = tempDir.resolve("library.snapshot");
+        manager = new LibraryManager();
+
+        Book book1 = new Book("ISBN-1", "Война и мир", 1869, Book.Genre.FICTION);
+        book1.addAuthor("Лев Толстой");
+        book1.setPageCount(1225);
+        Book book2 = new Book("ISBN-2", "Design Patterns", 1994, Book.Genre.PROGRAMMING);
+        book2.addAuthor("Erich Gamma");
+        book2.addAuthor("Richard Helm");
+        Book book3 = new Book("ISBN-3", null, 2000, Book.Genre.HISTORY);
+        manager.addBook(book1);
+        manager.addBook(book2);
+        manager.addBook(book3);
+
+        manager.addReader(new Reader("R1", "Иван Петров", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+        manager.addReader(new Reader("R2", "Анна Смирнова", null, null));
+
+        manager.borrowBook("ISBN-1", "R1", 14);
+        manager.borrowBook("ISBN-2", "R2", 7);
+        manager.returnBook("ISBN-2", "R2");
+        manager.borrowBook("ISBN-2", "R1", -3);
+    }
+
+    @Test
+    @DisplayName("Должен сохранять и загружать книги, читателей и выдачи без потерь")
+    void shouldRoundTripLibrary() throws IOException {
+        // Когда
+        LibrarySnapshot.write(manager, snapshot);
+        LibraryManager loaded = LibrarySnapshot.read(snapshot);
+
+        // Тогда
+        assertThat(loaded.getAllBooks()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("availabilityListener")
+                .containsExactlyInAnyOrderElementsOf(manager.getAllBooks());
+        assertThat(loaded.getAllReaders()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(manager.getAllReaders());
+        assertThat(loaded.getBorrowings()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(manager.getBorrowings());
+        assertThat(loaded.getBooksByAuthor("Лев Толстой")).extracting(Book::getIsbn).containsExactly("ISBN-1");
+        assertThat(loaded.getOverdueBorrowings()).extracting(Borrowing::getIsbn).containsExactly("ISBN-2");
+        assertThat(loaded.returnBook("ISBN-1", "R1")).isTrue();
+    }
+
+    @Test
+    @DisplayName("loadLibraryState должен читать файлы старого формата Java-сериализации")
+    void shouldLoadLegacySerializedState() throws IOException {
+        // Дано
+        Path legacy = tempDir.resolve("legacy.ser");
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+            oos.writeObject(manager);
+        }
+
+        // Когда
+        LibraryManager loaded = LibraryManager.loadLibraryState(legacy.toString());
+
+        // Тогда
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getAllBooks()).hasSize(3);
+        assertThat(loaded.getBorrowings()).hasSize(3);
+        assertThat(LibrarySnapshot.isSnapshot(legacy)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен сохранять водяной знак архива и читать снимки версии 1 без него")
+    void shouldRoundTripArchiveWatermarkAndReadVersionOne() throws IOException {
+        // Дано
+        LocalDate archivedThrough = LocalDate.of(2024, 3, 1);
+        manager.setArchivedThrough(archivedThrough);
+        LibrarySnapshot.write(manager, snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Path versionOne = tempDir.resolve("v1.snapshot");
+        ByteBuffer legacy = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - Integer.BYTES));
+        legacy.putInt(Integer.BYTES, 1);
+        Files.write(versionOne, legacy.array());
+
+        // Когда
+        LibraryManager loaded = LibrarySnapshot.read(snapshot);
+        LibraryManager legacyLoaded = LibrarySnapshot.read(versionOne);
+
+        // Тогда
+        assertThat(loaded.getArchivedThrough()).isEqualTo(archivedThrough);
+        assertThat(legacyLoaded.getArchivedThrough()).isNull();
+        assertThat(legacyLoaded.getAllBorrowings()).containsExactlyElementsOf(manager.getAllBorrowings());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять снимок неизвестной версии")
+    void shouldRejectUnknownVersion() throws IOException {
+        // Дано
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(LibrarySnapshot.MAGIC).putInt(LibrarySnapshot.VERSION + 1);
+        Files.write(snapshot, header.array());
+
+        // Тогда
+        assertThatThrownBy(() -> LibrarySnapshot.read(snapshot))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("версия");
+    }
+
+    @Test
+    @DisplayName("Повреждённые ссылки, номера жанров и счётчики дают IOException, а не исключения индексов")
+    void shouldReportCorruptedSnapshotAsIOException() throws IOException {
+        // Дано: книга со ссылкой на строку вне таблицы
+        Path badRef = tempDir.resolve("bad-ref.snapshot");
+        Files.write(badRef, ByteBuffer.allocate(16)
+                .putInt(LibrarySnapshot.MAGIC).putInt(LibrarySnapshot.VERSION).putInt(1).putInt(5).array());
+        // книга с несуществующим номером жанра
+        Path badGenre = tempDir.resolve("bad-genre.snapshot");
+        Files.write(badGenre, ByteBuffer.allocate(64)
+                .putInt(LibrarySnapshot.MAGIC).putInt(LibrarySnapshot.VERSION).putInt(1)
+                .putInt(0).putInt(1).put((byte) 'X')
+                .putInt(-1).put((byte) 100).array());
+        // огромное количество книг
+        Path badCount = tempDir.resolve("bad-count.snapshot");
+        Files.write(badCount, ByteBuffer.allocate(12)
+                .putInt(LibrarySnapshot.MAGIC).putInt(LibrarySnapshot.VERSION).putInt(Integer.MAX_VALUE).array());
+
+        // Тогда
+        for (Path file : new Path[]{badRef, badGenre, badCount}) {
+            assertThatThrownBy(() -> LibrarySnapshot.read(file))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Повреждён снимок");
+            assertThat(LibraryManager.loadLibraryState(file.toString())).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("Общая таблица строк делает снимок меньше Java-сериализации")
+    void snapshotShouldBeSmallerThanSerializedState() throws IOException {
+        // Дано
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 1_000; i++) {
+            manager.getAllBorrowings().add(new Borrowing("ISBN-1", "R1", today.minusDays(i), today));
+        }
+        Path legacy = tempDir.resolve("legacy.ser");
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+            oos.writeObject(manager);
+        }
+
+        // Когда
+        LibrarySnapshot.write(manager, snapshot);
+
+        // Тогда
+        assertThat(Files.size(snapshot)).isLessThan(Files.size(legacy));
+    }
+}
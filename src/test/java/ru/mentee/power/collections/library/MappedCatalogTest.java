@@ -0,0 +1,187 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты отображённого в память каталога (MappedCatalog)")
+public class MappedCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LibraryManager manager;
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = tempDir.resolve("catalog.bin");
+        manager = new LibraryManager();
+
+        Book book1 = new Book("ISBN-1", "Война и мир", 1869, Book.Genre.FICTION);
+        book1.addAuthor("Лев Толстой");
+        book1.setPageCount(1225);
+        Book book2 = new Book("ISBN-2", "Анна Каренина", 1877, Book.Genre.FICTION);
+        book2.addAuthor("Лев Толстой");
+        book2.setAvailable(false);
+        Book book3 = new Book("ISBN-3", "Design Patterns", 1994, Book.Genre.PROGRAMMING);
+        book3.addAuthor("Erich Gamma");
+        book3.addAuthor("Richard Helm");
+        manager.addBook(book1);
+        manager.addBook(book2);
+        manager.addBook(book3);
+    }
+
+    @Test
+    @DisplayName("Должен находить книгу по ISBN со всеми полями")
+    void shouldFindBookByIsbn() throws IOException {
+        // Когда
+        MappedCatalog.write(manager.getAllBooks(), file);
+        MappedCatalog catalog = MappedCatalog.open(file);
+
+        // Тогда
+        assertThat(catalog.size()).isEqualTo(3);
+        for (Book book : manager.getAllBooks()) {
+            assertThat(catalog.getBookByIsbn(book.getIsbn()).toBook())
+                    .usingRecursiveComparison().ignoringFields("availabilityListener")
+                    .isEqualTo(book);
+        }
+        assertThat(catalog.getBookByIsbn("ISBN-2").isAvailable()).isFalse();
+        assertThat(catalog.getBookByIsbn("ISBN-404")).isNull();
+    }
+
+    @Test
+    @DisplayName("Должен возвращать книги по жанру и по автору")
+    void shouldFindBooksByGenreAndAuthor() throws IOException {
+        // Когда
+        MappedCatalog.write(manager.getAllBooks(), file);
+        MappedCatalog catalog = MappedCatalog.open(file);
+
+        // Тогда
+        assertThat(catalog.getBooksByGenre(Book.Genre.FICTION))
+                .extracting(MappedCatalog.BookView::getIsbn)
+                .containsExactly("ISBN-1", "ISBN-2");
+        assertThat(catalog.getBooksByGenre(Book.Genre.PROGRAMMING))
+                .extracting(MappedCatalog.BookView::getTitle)
+                .containsExactly("Design Patterns");
+        assertThat(catalog.getBooksByGenre(Book.Genre.HISTORY)).isEmpty();
+        assertThat(catalog.getBooksByAuthor("Лев Толстой"))
+                .extracting(MappedCatalog.BookView::getIsbn)
+                .containsExactly("ISBN-1", "ISBN-2");
+        assertThat(catalog.getBooksByAuthor("Richard Helm")).singleElement()
+                .satisfies(view -> assertThat(view.getAuthors())
+                        .containsExactlyInAnyOrder("Erich Gamma", "Richard Helm"));
+        assertThat(catalog.getBooksByAuthor("Неизвестный")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен находить все книги большого каталога")
+    void shouldHandleLargeCatalog() throws IOException {
+        // Дано
+        LibraryManager large = LibrarySnapshotBenchmark.createLibrary(20_000, 0);
+
+        // Когда
+        MappedCatalog.write(large.getAllBooks(), file);
+        MappedCatalog catalog = MappedCatalog.open(file);
+
+        // Тогда
+        for (Book book : large.getAllBooks()) {
+            assertThat(catalog.getBookByIsbn(book.getIsbn()).getTitle()).isEqualTo(book.getTitle());
+        }
+        for (Book.Genre genre : Book.Genre.values()) {
+            assertThat(catalog.getBooksByGenre(genre)).hasSize(large.getBooksByGenre(genre).size());
+        }
+        List<Book> byAuthor = large.getBooksByAuthor("Автор 7");
+        assertThat(catalog.getBooksByAuthor("Автор 7"))
+                .extracting(MappedCatalog.BookView::getIsbn)
+                .containsExactlyInAnyOrderElementsOf(byAuthor.stream().map(Book::getIsbn).toList());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять файл другого формата")
+    void shouldRejectForeignFile() throws IOException {
+        // Дано
+        LibrarySnapshot.write(manager, file);
+
+        // Тогда
+        assertThatThrownBy(() -> MappedCatalog.open(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("каталог");
+        assertThat(Files.exists(file)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять каталог с повреждёнными счётчиками и смещениями таблиц")
+    void shouldRejectCorruptedHeader() throws IOException {
+        // Дано: число книг, смещение хеш-таблицы и смещение авторов указывают за конец файла
+        MappedCatalog.write(manager.getAllBooks(), file);
+        int[][] corruptions = {{8, Integer.MAX_VALUE}, {24, Integer.MAX_VALUE - 4}, {32, -1}};
+
+        for (int[] corruption : corruptions) {
+            Path corrupted = tempDir.resolve("corrupted-" + corruption[0] + ".catalog");
+            Files.copy(file, corrupted);
+            try (FileChannel channel = FileChannel.open(corrupted, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, corruption[1]), corruption[0]);
+            }
+
+            // Тогда
+            assertThatThrownBy(() -> MappedCatalog.open(corrupted))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Повреждён заголовок");
+        }
+    }
+
+    @Test
+    @DisplayName("Поиск по ISBN не зацикливается на полной хеш-таблице и отклоняет ссылки вне каталога")
+    void shouldBoundProbingAndRejectCorruptedHashEntries() throws IOException {
+        // Дано: смещения таблицы записей и хеш-таблицы из заголовка
+        MappedCatalog.write(manager.getAllBooks(), file);
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file));
+        int hashSlots = header.getInt(16);
+        int recordOffsetsPos = header.getInt(20);
+        int hashPos = header.getInt(24);
+
+        // Когда: в одной копии нет пустых ячеек и все указывают на первую книгу,
+        // в другой ячейки ссылаются за пределы каталога, в третьей запись
+        // первой книги указывает в заголовок
+        Path full = corruptCopy("full.catalog", hashPos, hashSlots, 1);
+        Path outOfRange = corruptCopy("out-of-range.catalog", hashPos, hashSlots, 99);
+        Path badOffset = corruptCopy("bad-offset.catalog", recordOffsetsPos, 1, 4);
+
+        // Тогда
+        assertThat(MappedCatalog.open(full).getBookByIsbn("ISBN-404")).isNull();
+        assertThatThrownBy(() -> MappedCatalog.open(outOfRange).getBookByIsbn("ISBN-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Повреждён каталог");
+        // Первая книга файла — ISBN-1: книги упорядочены по жанру и ISBN
+        assertThatThrownBy(() -> MappedCatalog.open(badOffset).getBookByIsbn("ISBN-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Повреждён каталог");
+    }
+
+    private Path corruptCopy(String name, int position, int count, int value) throws IOException {
+        Path corrupted = tempDir.resolve(name);
+        Files.copy(file, corrupted);
+        ByteBuffer values = ByteBuffer.allocate(count * Integer.BYTES);
+        for (int i = 0; i < count; i++) {
+            values.putInt(value);
+        }
+        values.flip();
+        try (FileChannel channel = FileChannel.open(corrupted, StandardOpenOption.WRITE)) {
+            channel.write(values, position);
+        }
+        return corrupted;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты автодополнения авторов и названий")
+public class PrefixTrieTest {
+
+    private LibraryManager manager;
+
+    private Book addBook(String isbn, String title, String... authors) {
+        Book book = new Book(isbn, title, 2000, Book.Genre.FICTION);
+        for (String author : authors) {
+            book.addAuthor(author);
+        }
+        manager.addBook(book);
+        return book;
+    }
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        addBook("1", "Война и мир", "Лев Толстой");
+        addBook("2", "Анна Каренина", "Лев Толстой");
+        addBook("3", "Детство", "Алексей Толстой");
+        addBook("4", "Лесков. Рассказы", "Николай Лесков");
+        addBook("5", "The Hobbit", "Tolkien");
+        addBook("6", "The Silmarillion", "Tolkien");
+        addBook("7", "Anna Karenina", "Tolstoy");
+    }
+
+    @Test
+    @DisplayName("Должен предлагать авторов по префиксу без учёта регистра, начиная с самых частых")
+    void shouldCompleteAuthorsByWeight() {
+        assertThat(manager.completeAuthors("tol", 10)).containsExactly("Tolkien", "Tolstoy");
+        assertThat(manager.completeAuthors("ЛЕ", 10)).containsExactly("Лев Толстой");
+        assertThat(manager.completeAuthors("Tolk", 10)).containsExactly("Tolkien");
+        assertThat(manager.completeAuthors("Tolkiens", 10)).isEmpty();
+        assertThat(manager.completeAuthors("", 2)).containsExactly("Tolkien", "Лев Толстой");
+    }
+
+    @Test
+    @DisplayName("Должен предлагать названия по префиксу")
+    void shouldCompleteTitles() {
+        assertThat(manager.completeTitles("the ", 10)).containsExactly("The Hobbit", "The Silmarillion");
+        assertThat(manager.completeTitles("анна", 10)).containsExactly("Анна Каренина");
+        assertThat(manager.completeTitles("x", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен возвращать книги всех авторов с данным префиксом")
+    void shouldReturnBooksByAuthorPrefix() {
+        assertThat(manager.getBooksByAuthorPrefix("Tol"))
+                .extracting(Book::getIsbn)
+                .containsExactly("5", "6", "7");
+        assertThat(manager.getBooksByAuthorPrefix("толстой")).isEmpty();
+        assertThat(manager.getBooksByAuthorPrefix("Л"))
+                .extracting(Book::getIsbn)
+                .containsExactly("1", "2");
+    }
+
+    @Test
+    @DisplayName("Дерево должно обновляться при добавлении и удалении книг")
+    void shouldFollowCatalogChanges() {
+        // Дано: дерево и кэши дополнений уже построены
+        assertThat(manager.completeAuthors("tol", 10)).containsExactly("Tolkien", "Tolstoy");
+
+        // Когда
+        addBook("8", "War and Peace", "Tolstoy");
+        addBook("9", "Resurrection", "Tolstoy");
+        manager.removeBook("5");
+        manager.removeBook("6");
+
+        // Тогда
+        assertThat(manager.completeAuthors("tol", 10)).containsExactly("Tolstoy");
+        assertThat(manager.completeAuthors("tolk", 10)).isEmpty();
+        assertThat(manager.getBooksByAuthorPrefix("to"))
+                .extracting(Book::getIsbn)
+                .containsExactlyInAnyOrder("7", "8", "9");
+    }
+
+    @Test
+    @DisplayName("Должен склеивать узлы после удаления и возвращать больше дополнений, чем хранит кэш")
+    void shouldMergeNodesAndReturnLongCompletionLists() {
+        // Дано
+        PrefixTrie trie = new PrefixTrie();
+        Book book = new Book("X", "X", 2000, Book.Genre.FICTION);
+        for (int i = 0; i < 40; i++) {
+            trie.add("author" + i, book);
+        }
+        trie.add("auth", book);
+
+        // Когда
+        for (int i = 0; i < 40; i++) {
+            trie.remove("author" + i, book);
+        }
+        trie.add("authentic", book);
+
+        // Тогда
+        assertThat(trie.complete("aut", 10)).containsExactly("auth", "authentic");
+        assertThat(trie.complete("author", 10)).isEmpty();
+
+        for (int i = 0; i < 40; i++) {
+            trie.add("name" + i, book);
+        }
+        assertThat(trie.complete("name", 100)).hasSize(40);
+        assertThat(trie.complete("name", PrefixTrie.CACHED_COMPLETIONS)).hasSize(PrefixTrie.CACHED_COMPLETIONS);
+    }
+
+    @Test
+    @DisplayName("Параллельные запросы дополнений должны видеть одинаковый кэш")
+    void shouldCompleteConcurrently() {
+        // Дано
+        PrefixTrie trie = new PrefixTrie();
+        for (int i = 0; i < 2_000; i++) {
+            Book book = new Book("ISBN-" + i, "Книга " + i, 2000, Book.Genre.FICTION);
+            for (int j = 0; j <= i % 50; j++) {
+                trie.add("author" + j, book);
+            }
+        }
+        List<String> expected = IntStream.range(0, PrefixTrie.CACHED_COMPLETIONS)
+                .mapToObj(j -> "author" + j)
+                .toList();
+
+        for (int round = 0; round < 20; round++) {
+            // Когда: кэш сброшен, и его одновременно пересчитывают несколько потоков
+            trie.add("author" + round, new Book("X" + round, "X", 2000, Book.Genre.FICTION));
+            List<List<String>> results = IntStream.range(0, 64).parallel()
+                    .mapToObj(i -> trie.complete("auth", PrefixTrie.CACHED_COMPLETIONS))
+                    .toList();
+
+            // Тогда
+            assertThat(results).allSatisfy(result -> assertThat(result).containsExactlyElementsOf(expected));
+        }
+    }
+}
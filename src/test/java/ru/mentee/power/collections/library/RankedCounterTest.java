@@ -0,0 +1,68 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты упорядоченного счётчика (RankedCounter)")
+public class RankedCounterTest {
+
+    private RankedCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        counter = new RankedCounter();
+    }
+
+    @Test
+    @DisplayName("Должен возвращать ключи по убыванию значения")
+    void shouldReturnKeysInDescendingOrder() {
+        // Дано
+        counter.increment("a");
+        counter.increment("b");
+        counter.increment("b");
+        counter.increment("c");
+        counter.increment("c");
+        counter.increment("c");
+
+        // Когда
+        List<Map.Entry<String, Integer>> top = counter.descending().limit(2).collect(Collectors.toList());
+
+        // Тогда
+        assertThat(top).containsExactly(Map.entry("c", 3), Map.entry("b", 2));
+        assertThat(counter.get("a")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("При уменьшении до нуля ключ исчезает из рейтинга")
+    void shouldDropKeyWhenCountReachesZero() {
+        // Дано
+        counter.increment("a");
+        counter.increment("b");
+
+        // Когда
+        counter.decrement("a");
+        counter.decrement("missing");
+
+        // Тогда
+        assertThat(counter.get("a")).isZero();
+        assertThat(counter.descending()).containsExactly(Map.entry("b", 1));
+    }
+
+    @Test
+    @DisplayName("При равных значениях порядок определяется ключом")
+    void shouldOrderTiesByKey() {
+        // Дано
+        counter.increment("x1");
+        counter.increment("x2");
+
+        // Тогда
+        assertThat(counter.descending().map(Map.Entry::getKey)).containsExactly("x2", "x1");
+    }
+}
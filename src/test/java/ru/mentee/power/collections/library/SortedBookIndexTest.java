@@ -0,0 +1,137 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты поддерживаемых отсортированных представлений каталога")
+public class SortedBookIndexTest {
+
+    private LibraryManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        manager.addBook(new Book("1", "clean code", 2008, Book.Genre.PROGRAMMING));
+        manager.addBook(new Book("2", "Anna Karenina", 1877, Book.Genre.FICTION));
+        manager.addBook(new Book("3", "Brief History of Time", 1988, Book.Genre.SCIENCE));
+        manager.addBook(new Book("4", "Dune", 1965, Book.Genre.FICTION));
+        manager.addBook(new Book("5", "Effective Java", 2008, Book.Genre.PROGRAMMING));
+        manager.addReader(new Reader("R1", "Иван", "ivan@example.com", Reader.ReaderCategory.STUDENT));
+    }
+
+    @Test
+    @DisplayName("Должен листать каталог страницами в каждом порядке")
+    void shouldListPagesInEveryOrder() {
+        // Когда
+        Page<Book> first = manager.listBooks(BookOrder.TITLE, 0, 2);
+        Page<Book> last = manager.listBooks(BookOrder.TITLE, 2, 2);
+
+        // Тогда
+        assertThat(first.items()).extracting(Book::getIsbn).containsExactly("2", "3");
+        assertThat(first.totalCount()).isEqualTo(5);
+        assertThat(last.items()).extracting(Book::getIsbn).containsExactly("5");
+        assertThat(last.hasNext()).isFalse();
+        assertThat(manager.listBooks(BookOrder.TITLE, 3, 2).items()).isEmpty();
+        assertThat(manager.listBooks(BookOrder.GENRE_AND_TITLE, 0, 10).items())
+                .extracting(Book::getIsbn).containsExactly("2", "4", "3", "1", "5");
+        assertThat(manager.listBooks(BookOrder.PUBLICATION_YEAR, 0, 10).items())
+                .extracting(Book::getIsbn).containsExactly("1", "5", "3", "4", "2");
+        assertThatThrownBy(() -> manager.listBooks(BookOrder.TITLE, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Представления должны обновляться при изменении каталога и выдаче книг")
+    void shouldFollowCatalogAndAvailabilityChanges() {
+        // Дано: представления уже построены
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 0, 10).items())
+                .extracting(Book::getIsbn).containsExactly("2", "3", "1", "4", "5");
+
+        // Когда
+        manager.borrowBook("3", "R1", 14);
+        manager.removeBook("2");
+        manager.addBook(new Book("6", "Anathem", 2008, Book.Genre.FICTION));
+
+        // Тогда
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 0, 10).items())
+                .extracting(Book::getIsbn).containsExactly("6", "1", "4", "5", "3");
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 1, 3).items())
+                .extracting(Book::getIsbn).containsExactly("5", "3");
+        assertThat(manager.listBooks(BookOrder.TITLE, 0, 10).items())
+                .extracting(Book::getIsbn).containsExactly("6", "3", "1", "4", "5");
+
+        manager.returnBook("3", "R1");
+        assertThat(manager.listBooks(BookOrder.AVAILABILITY, 0, 2).items())
+                .extracting(Book::getIsbn).containsExactly("6", "3");
+    }
+
+    @Test
+    @DisplayName("sortBooksBy* сохраняют прежний порядок: названия с учётом регистра, равные ключи — в исходном порядке")
+    void shouldKeepLegacySortOrder() {
+        // Дано: «Dune» с другим ISBN, год как у двух книг и выданная книга
+        manager.addBook(new Book("0", "Dune", 2008, Book.Genre.FICTION));
+        manager.borrowBook("5", "R1", 14);
+        List<Book> books = new ArrayList<>();
+        for (String isbn : List.of("4", "0", "1", "5", "3", "2")) {
+            books.add(manager.getBookByIsbn(isbn));
+        }
+        List<Book> reversed = new ArrayList<>(books);
+        Collections.reverse(reversed);
+
+        // Тогда: строчная «clean code» после заглавных, равные ключи — как во входном списке
+        assertThat(manager.sortBooksByTitle(books)).extracting(Book::getIsbn)
+                .containsExactly("2", "3", "4", "0", "5", "1");
+        assertThat(manager.sortBooksByTitle(reversed)).extracting(Book::getIsbn)
+                .containsExactly("2", "3", "0", "4", "5", "1");
+        assertThat(manager.sortBooksByPublicationYear(books)).extracting(Book::getIsbn)
+                .containsExactly("0", "1", "5", "3", "4", "2");
+        assertThat(manager.sortBooksByPublicationYear(reversed)).extracting(Book::getIsbn)
+                .containsExactly("5", "1", "0", "3", "4", "2");
+        assertThat(manager.sortBooksByAvailability(books)).extracting(Book::getIsbn)
+                .containsExactly("4", "0", "1", "3", "2", "5");
+        assertThat(manager.sortBooksByAvailability(reversed)).extracting(Book::getIsbn)
+                .containsExactly("2", "3", "1", "0", "4", "5");
+    }
+
+    @Test
+    @DisplayName("Индекс из многих блоков должен совпадать с отсортированным списком после случайных изменений")
+    void shouldMatchSortedListAfterRandomChanges() {
+        // Дано
+        Random random = new Random(42);
+        List<Book> initial = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            initial.add(new Book("B" + i, "Title " + random.nextInt(1000), 2000, Book.Genre.FICTION));
+        }
+        SortedBookIndex index = SortedBookIndex.build(initial, BookOrder.TITLE.comparator());
+        List<Book> expected = new ArrayList<>(initial);
+
+        // Когда
+        for (int i = 0; i < 5000; i++) {
+            if (random.nextBoolean() && !expected.isEmpty()) {
+                Book book = expected.remove(random.nextInt(expected.size()));
+                assertThat(index.remove(book)).isTrue();
+            } else {
+                Book book = new Book("N" + i, "Title " + random.nextInt(1000), 2000, Book.Genre.FICTION);
+                expected.add(book);
+                assertThat(index.add(book)).isTrue();
+            }
+        }
+        expected.sort(BookOrder.TITLE.comparator());
+
+        // Тогда
+        assertThat(index.size()).isEqualTo(expected.size());
+        assertThat(index.slice(0, expected.size())).containsExactlyElementsOf(expected);
+        assertThat(index.slice(1234, 100)).containsExactlyElementsOf(expected.subList(1234, 1334));
+        assertThat(index.contains(expected.get(77))).isTrue();
+        assertThat(index.add(expected.get(77))).isFalse();
+    }
+}
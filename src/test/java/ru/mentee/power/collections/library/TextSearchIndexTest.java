@@ -0,0 +1,86 @@
+package ru.mentee.power.collections.library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты полнотекстового поиска по названиям и авторам")
+public class TextSearchIndexTest {
+
+    private LibraryManager manager;
+
+    private Book addBook(String isbn, String title, String author) {
+        Book book = new Book(isbn, title, 2000, Book.Genre.FICTION);
+        book.addAuthor(author);
+        manager.addBook(book);
+        return book;
+    }
+
+    @BeforeEach
+    void setUp() {
+        manager = new LibraryManager();
+        addBook("1", "Java: The Complete Reference", "Herbert Schildt");
+        addBook("2", "Effective Java", "Joshua Bloch");
+        addBook("3", "Java", "James Gosling");
+        addBook("4", "JavaScript: The Good Parts", "Douglas Crockford");
+        addBook("5", "Clean Code", "Robert C. Martin");
+        addBook("6", "Ёлка и ель", "Автор");
+    }
+
+    @Test
+    @DisplayName("Поиск по названию не должен зависеть от регистра и ранжирует совпадения")
+    void shouldSearchTitlesCaseInsensitivelyWithRanking() {
+        assertThat(manager.searchBooksByTitle("JAVA"))
+                .extracting(Book::getIsbn)
+                .containsExactly("3", "4", "1", "2");
+        assertThat(manager.searchBooksByTitle("елк")).extracting(Book::getIsbn).containsExactly("6");
+        assertThat(manager.searchBooksByTitle("od")).extracting(Book::getIsbn).containsExactly("5", "4");
+        assertThat(manager.searchBooksByTitle("отсутствует")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Общий поиск должен находить книги и по автору, ставя их после совпадений в названии")
+    void shouldSearchAuthorsAfterTitles() {
+        // Когда
+        Page<Book> page = manager.searchBooks("ja", 0, 10);
+
+        // Тогда
+        assertThat(page.items()).extracting(Book::getIsbn).containsExactly("3", "4", "1", "2");
+        assertThat(manager.searchBooks("bloch", 0, 10).items()).extracting(Book::getIsbn).containsExactly("2");
+        assertThat(manager.searchBooks("mart", 0, 10).items()).extracting(Book::getIsbn).containsExactly("5");
+    }
+
+    @Test
+    @DisplayName("Результаты должны разбиваться на страницы")
+    void shouldPaginateResults() {
+        // Когда
+        Page<Book> first = manager.searchBooks("java", 0, 3);
+        Page<Book> second = manager.searchBooks("java", 1, 3);
+
+        // Тогда
+        assertThat(first.items()).hasSize(3);
+        assertThat(first.totalCount()).isEqualTo(4);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.items()).extracting(Book::getIsbn).containsExactly("2");
+        assertThat(second.hasNext()).isFalse();
+        assertThatThrownBy(() -> manager.searchBooks("java", -1, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Индекс должен обновляться при добавлении и удалении книг")
+    void shouldFollowCatalogChanges() {
+        // Дано: индекс уже построен
+        assertThat(manager.searchBooksByTitle("kotlin")).isEmpty();
+
+        // Когда
+        addBook("7", "Kotlin in Action", "Dmitry Jemerov");
+        manager.removeBook("3");
+
+        // Тогда
+        assertThat(manager.searchBooksByTitle("kotlin")).extracting(Book::getIsbn).containsExactly("7");
+        assertThat(manager.searchBooksByTitle("java")).extracting(Book::getIsbn).doesNotContain("3");
+    }
+}
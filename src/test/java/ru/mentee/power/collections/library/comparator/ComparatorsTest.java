@@ -4,9 +4,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.mentee.power.collections.library.Book;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.tuple;
@@ -108,4 +110,47 @@ public class ComparatorsTest {
                         tuple(Book.Genre.SCIENTIFIC,  "Zoology")
                 );
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Сравнение через закэшированные ключи должно давать тот же порядок, что и compareToIgnoreCase")
+    void cachedTitleKeysShouldMatchCompareToIgnoreCase() {
+        // Дано: названия из латиницы, кириллицы, цифр и знаков в разных регистрах
+        String alphabet = "aAbBzZяЯёЁжЖ09 -:ßİıΣσς";
+        Random random = new Random(7);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int length = random.nextInt(6); length > 0; length--) {
+                title.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            books.add(new Book(String.valueOf(i), title.toString(), 2000, Book.Genre.FICTION));
+        }
+
+        // Тогда
+        TitleComparator cached = new TitleComparator(true);
+        for (Book left : books) {
+            for (Book right : books.subList(0, 50)) {
+                assertThat(Integer.signum(cached.compare(left, right)))
+                        .as("%s <-> %s", left.getTitle(), right.getTitle())
+                        .isEqualTo(Integer.signum(left.getTitle().compareToIgnoreCase(right.getTitle())));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("GenreAndTitleComparator с ключами сортировки должен сортировать так же")
+    void genreAndTitleComparatorWithCachedKeysShouldSortTheSame() {
+        List<Book> books = Arrays.asList(
+                new Book("1", "война и мир", 1869, Book.Genre.FICTION),
+                new Book("2", "Анна Каренина", 1877, Book.Genre.FICTION),
+                new Book("3", null, 2000, Book.Genre.FICTION),
+                new Book("4", "Алгоритмы", 2009, Book.Genre.PROGRAMMING));
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(new GenreAndTitleComparator());
+
+        books.sort(new GenreAndTitleComparator(true));
+
+        assertThat(books).containsExactlyElementsOf(expected);
+        assertThat(books).extracting(Book::getIsbn).containsExactly("2", "1", "3", "4");
+    }
+}
@@ -0,0 +1,107 @@
+package ru.mentee.power.nio;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты чтения CSV через отображение в память (MappedCsvReader)")
+public class MappedCsvReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен загружать те же продукты, что и построчный загрузчик, пропуская некорректные строки")
+    void shouldMatchLineBasedLoader() throws IOException {
+        // Дано
+        Path file = tempDir.resolve("products.csv");
+        Files.writeString(file, CsvProductManager.CSV_HEADER + "\r\n"
+                + " 1 ; Ноутбук Alpha ; 75000.5 ; 15 \r\n"
+                + "\n"
+                + "invalid line data\n"
+                + "3;AnotherProduct;twenty;15\n"
+                + "4;TooMany;1.0;2;3\n"
+                + "5;Exponent;1.25E7;-2\n"
+                + "6;LastProduct;-0.001;2147483647");
+
+        // Когда
+        List<Product> mapped = CsvProductManager.loadProductsMapped(file.toString(), ";");
+
+        // Тогда
+        assertThat(mapped).containsExactlyElementsOf(CsvProductManager.loadProductsFromCsv(file.toString(), ";"));
+        assertThat(mapped).extracting(Product::getName).containsExactly("Ноутбук Alpha", "Exponent", "LastProduct");
+        assertThat(mapped.get(1).getPrice()).isEqualTo(1.25E7);
+    }
+
+    @Test
+    @DisplayName("Строки на границе окон отображения должны перечитываться целиком")
+    void shouldReadLinesAcrossWindowBoundaries() throws IOException {
+        // Дано
+        Random random = new Random(3);
+        List<Product> expected = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            expected.add(new Product(i, "Product-" + random.nextInt(1_000_000),
+                    random.nextInt(10_000_000) / 100.0, random.nextInt(500)));
+        }
+        Path file = tempDir.resolve("windows.csv");
+        CsvProductManager.saveProductsToCsv(expected, file.toString(), ";");
+
+        // Когда: окно в 64 байта вмещает две-три строки
+        List<Product> loaded = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedCsvReader reader = new MappedCsvReader(channel, (byte) ';', 64);
+            long lines = reader.readRows(reader.skipHeader(), channel.size(), 2,
+                    (id, buffer, nameFrom, nameTo, price, quantity) -> loaded.add(
+                            new Product(id, MappedCsvReader.decode(buffer, nameFrom, nameTo), price, quantity)));
+
+            // Тогда
+            assertThat(lines).isEqualTo(expected.size());
+        }
+        assertThat(loaded).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Разбор double из байт должен совпадать с Double.parseDouble бит в бит")
+    void shouldParseDoublesExactly() {
+        // Дано
+        Random random = new Random(11);
+        List<String> values = new ArrayList<>(List.of("0", "-0.0", "+1.5", "1.", ".5", "007.25", " 3.14 ",
+                "1e22", "1e23", "4.9E-324", "1.7976931348623157E308", "123456789012345678901",
+                "0.30000000000000004", "NaN", "-Infinity"));
+        for (int i = 0; i < 10_000; i++) {
+            values.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 5)));
+            values.add(Double.toString(random.nextInt(100_000_000) / 100.0));
+        }
+
+        // Тогда
+        for (String value : values) {
+            ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+            double parsed = MappedCsvReader.parseDouble(buffer, 0, buffer.limit());
+            assertThat(Double.doubleToLongBits(parsed))
+                    .as(value)
+                    .isEqualTo(Double.doubleToLongBits(Double.parseDouble(value.trim())));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен отклонять разделитель, который нельзя искать по одному байту")
+    void shouldRejectMultiByteDelimiter() {
+        assertThatThrownBy(() -> CsvProductManager.loadProductsMapped(tempDir.resolve("x.csv").toString(), "::"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(CsvProductManager.loadProductsMapped(tempDir.resolve("missing.csv").toString(), ";")).isEmpty();
+    }
+}
@@ -0,0 +1,103 @@
+package ru.mentee.power.nio;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Тесты колоночного пакета продуктов (ProductBatch)")
+public class ProductBatchTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(17);
+        products = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            products.add(new Product(i, "Товар-" + random.nextInt(700),
+                    random.nextInt(1_000_000) / 100.0, random.nextInt(50)));
+        }
+    }
+
+    @Test
+    @DisplayName("Пакет из CSV должен совпадать с построчной загрузкой и кодировать названия словарём")
+    void shouldLoadFromCsvWithDictionaryNames() {
+        // Дано
+        Path file = tempDir.resolve("batch.csv");
+        CsvProductManager.saveProductsToCsv(products, file.toString(), ";");
+
+        // Когда
+        ProductBatch batch = CsvProductManager.loadProductBatch(file.toString(), ";");
+
+        // Тогда
+        assertThat(batch.size()).isEqualTo(products.size());
+        assertThat(batch.asProducts()).containsExactlyElementsOf(products);
+        assertThat(batch.getNameCount())
+                .isEqualTo((int) products.stream().map(Product::getName).distinct().count());
+    }
+
+    @Test
+    @DisplayName("Агрегации и группировка должны совпадать с расчётом по объектам")
+    void shouldAggregateLikeObjectLoops() {
+        // Дано
+        ProductBatch batch = ProductBatch.of(products);
+
+        // Когда
+        double total = batch.totalStockValue();
+        Map<String, Double> byName = batch.stockValueByName();
+
+        // Тогда
+        assertThat(total).isCloseTo(products.stream().mapToDouble(p -> p.getPrice() * p.getQuantity()).sum(),
+                within(1e-3));
+        assertThat(batch.totalQuantity()).isEqualTo(products.stream().mapToLong(Product::getQuantity).sum());
+        Map<String, Double> expected = products.stream().collect(Collectors.groupingBy(Product::getName,
+                Collectors.summingDouble(p -> p.getPrice() * p.getQuantity())));
+        assertThat(byName).hasSameSizeAs(expected);
+        expected.forEach((name, value) -> assertThat(byName.get(name)).isCloseTo(value, within(1e-6)));
+    }
+
+    @Test
+    @DisplayName("Отбор по цене должен возвращать вектор выбора подходящих строк")
+    void shouldSelectRowsByPrice() {
+        // Дано
+        ProductBatch batch = ProductBatch.of(products);
+
+        // Когда
+        int[] between = batch.selectPriceBetween(1_000, 2_000);
+        int[] cheap = batch.selectByPrice(price -> price < 100);
+
+        // Тогда
+        assertThat(between).containsExactly(IntStream.range(0, products.size())
+                .filter(i -> products.get(i).getPrice() >= 1_000 && products.get(i).getPrice() <= 2_000)
+                .toArray());
+        assertThat(cheap).containsExactly(IntStream.range(0, products.size())
+                .filter(i -> products.get(i).getPrice() < 100).toArray());
+        assertThat(batch.totalStockValue(between)).isCloseTo(IntStream.of(between)
+                .mapToDouble(i -> products.get(i).getPrice() * products.get(i).getQuantity()).sum(), within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Обращение к строке вне пакета должно приводить к исключению")
+    void shouldRejectRowOutOfRange() {
+        ProductBatch batch = ProductBatch.of(List.of(new Product(1, "A", 1.0, 1)));
+
+        assertThat(batch.toProduct(0)).isEqualTo(new Product(1, "A", 1.0, 1));
+        assertThatThrownBy(() -> batch.getPrice(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
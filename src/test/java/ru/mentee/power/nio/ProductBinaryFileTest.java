@@ -0,0 +1,136 @@
+package ru.mentee.power.nio;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты бинарного файла продуктов (ProductBinaryFile)")
+public class ProductBinaryFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(23);
+        products = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            // Цены с полной точностью double: через CSV они бы сохранились текстом
+            products.add(new Product(i, i % 3 == 0 ? "Ноутбук " + i : "Item" + random.nextInt(100),
+                    random.nextDouble() * 1_000, random.nextInt(1_000)));
+        }
+        products.add(new Product(-1, "", -0.0, Integer.MIN_VALUE));
+    }
+
+    @Test
+    @DisplayName("Должен записывать и читать продукты без потери точности")
+    void shouldRoundTripProductsExactly() throws IOException {
+        // Дано
+        Path file = tempDir.resolve("products.bin");
+
+        // Когда
+        ProductBinaryFile.write(products, file);
+
+        // Тогда
+        try (ProductBinaryFile binary = ProductBinaryFile.open(file)) {
+            assertThat(binary.size()).isEqualTo(products.size());
+            assertThat(binary.readAll()).containsExactlyElementsOf(products);
+            assertThat(binary.readBatch().asProducts()).containsExactlyElementsOf(products);
+        }
+    }
+
+    @Test
+    @DisplayName("Должен читать произвольную строку по номеру")
+    void shouldReadRowByIndex() throws IOException {
+        // Дано
+        Path file = tempDir.resolve("products.bin");
+        ProductBinaryFile.write(products, file);
+
+        // Тогда
+        try (ProductBinaryFile binary = ProductBinaryFile.open(file)) {
+            for (int row : new int[]{0, 1, 3, 12_345, products.size() - 1}) {
+                assertThat(binary.get(row)).isEqualTo(products.get(row));
+            }
+            assertThatThrownBy(() -> binary.get(products.size())).isInstanceOf(IndexOutOfBoundsException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("Должен преобразовывать CSV в бинарный формат и обратно")
+    void shouldConvertBetweenCsvAndBinary() throws IOException {
+        // Дано
+        Path csv = tempDir.resolve("products.csv");
+        Path binary = tempDir.resolve("products.bin");
+        Path back = tempDir.resolve("back.csv");
+        CsvProductManager.saveProductsToCsv(products, csv.toString(), ";");
+
+        // Когда
+        long written = ProductBinaryFile.convertCsvToBinary(csv, binary, ";");
+        long restored = ProductBinaryFile.convertBinaryToCsv(binary, back, ";");
+
+        // Тогда: Double.toString однозначно восстанавливает double, поэтому CSV совпадает
+        assertThat(written).isEqualTo(products.size());
+        assertThat(restored).isEqualTo(products.size());
+        assertThat(Files.readAllLines(back)).isEqualTo(Files.readAllLines(csv));
+        try (ProductBinaryFile file = ProductBinaryFile.open(binary)) {
+            assertThat(file.readAll()).containsExactlyElementsOf(products);
+        }
+    }
+
+    @Test
+    @DisplayName("Должен бросать IOException и не трогать бинарный файл, если у CSV неверный заголовок")
+    void shouldKeepBinaryWhenCsvHeaderIsWrong() throws IOException {
+        // Дано
+        Path binary = tempDir.resolve("products.bin");
+        ProductBinaryFile.write(products.subList(0, 1), binary);
+        byte[] before = Files.readAllBytes(binary);
+        Path csv = tempDir.resolve("broken.csv");
+        Files.writeString(csv, "id;title;cost;count\n1;A;1.0;1\n");
+
+        // Когда / Тогда
+        assertThatThrownBy(() -> ProductBinaryFile.convertCsvToBinary(csv, binary, ";"))
+                .isInstanceOf(IOException.class);
+        assertThat(Files.readAllBytes(binary)).isEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять чужой, обрезанный и будущей версии файл")
+    void shouldRejectInvalidFiles() throws IOException {
+        // Дано
+        Path file = tempDir.resolve("products.bin");
+        ProductBinaryFile.write(products.subList(0, 10), file);
+        Path foreign = tempDir.resolve("foreign.bin");
+        Files.writeString(foreign, CsvProductManager.CSV_HEADER + "\n1;A;1.0;1\n" + "x".repeat(32));
+        Path truncated = tempDir.resolve("truncated.bin");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        Path future = tempDir.resolve("future.bin");
+        Files.write(future, bytes);
+        try (FileChannel channel = FileChannel.open(future, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, ProductBinaryFile.VERSION + 1), Integer.BYTES);
+        }
+
+        // Тогда
+        assertThatThrownBy(() -> ProductBinaryFile.open(foreign)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ProductBinaryFile.open(truncated)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ProductBinaryFile.open(future)).isInstanceOf(IOException.class)
+                .hasMessageContaining("версия");
+    }
+}
@@ -0,0 +1,112 @@
+package ru.mentee.power.nio;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты параллельной загрузки файлов продуктов (ProductIngestion)")
+public class ProductIngestionTest {
+
+    @TempDir
+    Path tempDir;
+
+    /** Файл из {@code count} продуктов; id кодирует номер файла и номер строки. */
+    private Path shard(int number, int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(number * 1_000_000 + i, "Shard" + number, i / 10.0, i % 7));
+        }
+        Path file = tempDir.resolve(String.format("shard-%02d.csv", number));
+        CsvProductManager.saveProductsToCsv(products, file.toString(), ";");
+        return file;
+    }
+
+    @Test
+    @DisplayName("Должен загружать все файлы каталога и собирать статистику по каждому")
+    void shouldIngestDirectoryWithPerShardStats() throws IOException, InterruptedException {
+        // Дано
+        for (int i = 0; i < 6; i++) {
+            shard(i, 5_000 + i);
+        }
+        Files.writeString(tempDir.resolve("shard-06.csv"), "no header\n1;A;1.0;1\n");
+        Files.writeString(tempDir.resolve("shard-07.csv"), CsvProductManager.CSV_HEADER
+                + "\n1;A;1.0;1\nbroken\n2;B;x;2\n3;C;3.0;3\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "не CSV");
+
+        // Когда
+        List<Product> received = new ArrayList<>();
+        ProductIngestionReport report = new ProductIngestion(3, 4).ingestDirectory(tempDir, ";", received::add);
+
+        // Тогда
+        assertThat(report.getShards()).hasSize(8)
+                .extracting(s -> s.shard().getFileName().toString())
+                .containsExactly("shard-00.csv", "shard-01.csv", "shard-02.csv", "shard-03.csv",
+                        "shard-04.csv", "shard-05.csv", "shard-06.csv", "shard-07.csv");
+        assertThat(report.getShards().get(5).rows()).isEqualTo(5_005);
+        assertThat(report.getShards().get(5).bytesPerSecond()).isPositive();
+        assertThat(report.getFailedShards()).singleElement()
+                .satisfies(s -> assertThat(s.shard().getFileName().toString()).isEqualTo("shard-06.csv"));
+        assertThat(report.getShards().get(7).rows()).isEqualTo(2);
+        assertThat(report.getTotalErrors()).isEqualTo(2);
+        assertThat(report.getTotalRows()).isEqualTo(6 * 5_000 + 15 + 2).isEqualTo(received.size());
+    }
+
+    @Test
+    @DisplayName("Очередь из одной пачки не должна терять продукты и нарушать порядок внутри файла")
+    void shouldPreserveOrderWithinShardUnderBackPressure() throws InterruptedException {
+        // Дано
+        List<Path> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(shard(i, 10 * ProductIngestion.BATCH_SIZE + 17));
+        }
+
+        // Когда: четыре файла разбираются одновременно, а в очереди место только для одной пачки
+        Map<Integer, Integer> lastRowByShard = new HashMap<>();
+        List<Integer> outOfOrder = new ArrayList<>();
+        ProductIngestionReport report = new ProductIngestion(4, 1).ingest(shards, ";", product -> {
+            int shard = product.getId() / 1_000_000;
+            int row = product.getId() % 1_000_000;
+            Integer previous = lastRowByShard.put(shard, row);
+            if (previous != null && previous != row - 1) {
+                outOfOrder.add(product.getId());
+            }
+        });
+
+        // Тогда
+        assertThat(outOfOrder).isEmpty();
+        assertThat(lastRowByShard).containsOnlyKeys(0, 1, 2, 3)
+                .allSatisfy((shard, row) -> assertThat(row).isEqualTo(10 * ProductIngestion.BATCH_SIZE + 16));
+        assertThat(report.getFailedShards()).isEmpty();
+    }
+
+    @Test
+    @Timeout(10)
+    @DisplayName("Исключение получателя должно прерывать загрузку, не оставляя заблокированных потоков")
+    void shouldAbortWhenConsumerFails() {
+        // Дано
+        List<Path> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(shard(i, 20_000));
+        }
+        ProductIngestion ingestion = new ProductIngestion(2, 1);
+
+        // Тогда
+        assertThatThrownBy(() -> ingestion.ingest(shards, ";", product -> {
+            if (product.getId() % 1_000_000 == 100) {
+                throw new IllegalStateException("получатель упал");
+            }
+        })).isInstanceOf(IllegalStateException.class).hasMessage("получатель упал");
+    }
+}
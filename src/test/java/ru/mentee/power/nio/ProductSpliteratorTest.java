@@ -0,0 +1,107 @@
+package ru.mentee.power.nio;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Тесты ленивого потока продуктов (streamProducts, ProductSpliterator)")
+public class ProductSpliteratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private List<Product> expected;
+
+    @BeforeEach
+    void setUp() {
+        // Около 3 МБ: несколько порций по ProductSpliterator.CHUNK
+        Random random = new Random(5);
+        expected = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            expected.add(new Product(i, "Product-" + random.nextInt(1_000),
+                    random.nextInt(1_000_000) / 100.0, random.nextInt(100)));
+        }
+        file = tempDir.resolve("feed.csv");
+        CsvProductManager.saveProductsToCsv(expected, file.toString(), ";");
+    }
+
+    @Test
+    @DisplayName("Последовательный поток должен отдавать все продукты по порядку")
+    void shouldStreamAllProductsInOrder() {
+        // Когда
+        List<Product> streamed;
+        long expensiveCount;
+        try (Stream<Product> products = CsvProductManager.streamProducts(file, ";")) {
+            streamed = products.toList();
+        }
+        try (Stream<Product> products = CsvProductManager.streamProducts(file, ";")) {
+            expensiveCount = products.filter(p -> p.getPrice() > 5_000).count();
+        }
+
+        // Тогда
+        assertThat(streamed).containsExactlyElementsOf(expected);
+        assertThat(expensiveCount).isEqualTo(expected.stream().filter(p -> p.getPrice() > 5_000).count());
+    }
+
+    @Test
+    @DisplayName("Параллельный поток должен делить файл по границам строк без потерь и повторов")
+    void shouldSplitOnLineBoundaries() throws IOException {
+        // Дано: порог деления в 64 КБ, чтобы получить десятки частей
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedCsvReader reader = new MappedCsvReader(channel, (byte) ';');
+            Spliterator<Product> spliterator =
+                    new ProductSpliterator(reader, reader.skipHeader(), channel.size(), 2, 64 << 10);
+
+            // Когда
+            List<Product> products = StreamSupport.stream(spliterator, true).toList();
+
+            // Тогда: порядок сохраняется, каждая строка прочитана ровно один раз
+            assertThat(products).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Агрегация по параллельному потоку должна совпадать с агрегацией по списку")
+    void shouldAggregateInParallel() {
+        // Когда
+        double stockValue;
+        try (Stream<Product> products = CsvProductManager.streamProducts(file, ";")) {
+            stockValue = products.parallel()
+                    .collect(Collectors.summingDouble(p -> p.getPrice() * p.getQuantity()));
+        }
+
+        // Тогда
+        double expectedValue = expected.stream().mapToDouble(p -> p.getPrice() * p.getQuantity()).sum();
+        assertThat(stockValue).isCloseTo(expectedValue, within(1e-3));
+    }
+
+    @Test
+    @DisplayName("Должен возвращать пустой поток для отсутствующего файла или файла без заголовка")
+    void shouldReturnEmptyStreamForInvalidFile() throws IOException {
+        // Дано
+        Path headerless = tempDir.resolve("headerless.csv");
+        Files.writeString(headerless, "1;A;1.0;1\n");
+
+        // Тогда
+        assertThat(CsvProductManager.streamProducts(tempDir.resolve("missing.csv"), ";")).isEmpty();
+        assertThat(CsvProductManager.streamProducts(headerless, ";")).isEmpty();
+    }
+}